@@ -0,0 +1,195 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.benchmark.Fixtures;
+import net.dv8tion.jda.managers.impl.AudioManagerImpl;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame work of the audio send loop, one frame every 20ms per connection.
+ * <p>
+ * Run with {@code -prof gc} to see the allocations per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioBenchmark
+{
+    private InetSocketAddress address;
+    private byte[] secretKey;
+    private PacketCipher cipher;
+    private byte[] opus;
+    private byte[] pcm;
+    private int ssrc;
+    private char seq;
+    private int timestamp;
+
+    @Setup
+    public void setup()
+    {
+        JSONObject fixture = Fixtures.readJson(Fixtures.VOICE_FRAME);
+        JSONArray key = fixture.getJSONObject("session_description").getJSONObject("d").getJSONArray("secret_key");
+        secretKey = new byte[key.length()];
+        for (int i = 0; i < secretKey.length; i++)
+            secretKey[i] = (byte) key.getInt(i);
+        cipher = new PacketCipher(secretKey);
+
+        JSONObject frame = fixture.getJSONObject("frame");
+        opus = Base64.getDecoder().decode(frame.getString("opus"));
+        pcm = Base64.getDecoder().decode(frame.getString("pcm"));
+        ssrc = frame.getInt("ssrc");
+        seq = (char) frame.getInt("sequence");
+        timestamp = frame.getInt("timestamp");
+        address = new InetSocketAddress("127.0.0.1", 50000);
+    }
+
+    @Benchmark
+    public DatagramPacket asEncryptedUdpPacket()
+    {
+        AudioPacket packet = new AudioPacket(seq++, timestamp, ssrc, opus);
+        timestamp += AudioConnection.OPUS_FRAME_SIZE;
+        return packet.asEncryptedUdpPacket(address, cipher);
+    }
+
+    @Benchmark
+    public int encryptInPlace(CipherState state)
+    {
+        byte[] packet = state.packet.array();
+        System.arraycopy(opus, 0, packet, PacketCipher.AUDIO_OFFSET, opus.length);
+        AudioPacket.writeHeader(state.packet, seq++, timestamp, ssrc);
+        timestamp += AudioConnection.OPUS_FRAME_SIZE;
+        return state.sendCipher.encrypt(packet, opus.length);
+    }
+
+    @Benchmark
+    public int decryptInPlace(CipherState state)
+    {
+        byte[] packet = state.packet.array();
+        System.arraycopy(state.encrypted, 0, packet, 0, state.encrypted.length);
+        return state.receiveCipher.decrypt(packet, state.encrypted.length);
+    }
+
+    @Benchmark
+    public int encodeBigEndianBytes(OpusState state)
+    {
+        state.encoder.getByteBuffer().put(pcm);
+        return state.encoded(state.encoder.encodeBytes());
+    }
+
+    @Benchmark
+    public int encodeNativeSamples(OpusState state)
+    {
+        state.encoder.getSampleBuffer().put(state.samples);
+        return state.encoded(state.encoder.encodeSamples());
+    }
+
+    @State(Scope.Thread)
+    public static class CipherState
+    {
+        private PacketCipher sendCipher;
+        private PacketCipher receiveCipher;
+        private ByteBuffer packet;
+        private byte[] encrypted;
+
+        @Setup
+        public void setup(AudioBenchmark benchmark)
+        {
+            sendCipher = new PacketCipher(benchmark.secretKey);
+            receiveCipher = new PacketCipher(benchmark.secretKey);
+            packet = ByteBuffer.allocate(PacketCipher.AUDIO_OFFSET + OpusEncoder.MAX_ENCODED_BYTES);
+            encrypted = Arrays.copyOf(benchmark.asEncryptedUdpPacket().getData(), PacketCipher.AUDIO_OFFSET + benchmark.opus.length);
+        }
+    }
+
+    /**
+     * Only needed by the encoding benchmarks, so the other benchmarks also run where no opus library is available.
+     * <p>
+     * Encoding has to be free of allocations once warmed up, so every measurement iteration fails if more than
+     * {@value #MAX_BYTES_PER_FRAME} bytes were allocated per encoded frame on average.
+     */
+    @State(Scope.Thread)
+    public static class OpusState
+    {
+        static final double MAX_BYTES_PER_FRAME = 1;
+
+        private OpusEncoder encoder;
+        private short[] samples;
+        private long frames;
+        private long allocatedBefore;
+
+        @Setup
+        public void setup(AudioBenchmark benchmark)
+        {
+            if (!AudioManagerImpl.init())
+                throw new IllegalStateException("Opus is not supported on this platform");
+            encoder = new OpusEncoder();
+            samples = new short[benchmark.pcm.length / 2];
+            ByteBuffer.wrap(benchmark.pcm).asShortBuffer().get(samples);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            encoder.close();
+        }
+
+        @Setup(Level.Iteration)
+        public void startIteration()
+        {
+            frames = 0;
+            allocatedBefore = getAllocatedBytes();
+        }
+
+        @TearDown(Level.Iteration)
+        public void checkAllocations()
+        {
+            long allocated = getAllocatedBytes() - allocatedBefore;
+            if (allocatedBefore >= 0 && frames > 0 && (double) allocated / frames > MAX_BYTES_PER_FRAME)
+                throw new IllegalStateException("Encoding allocated " + allocated + " bytes for " + frames + " frames");
+        }
+
+        int encoded(ByteBuffer frame)
+        {
+            if (frame == null)
+                throw new IllegalStateException("Encoding failed");
+            frames++;
+            return frame.remaining();
+        }
+
+        private static long getAllocatedBytes()
+        {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean)
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+            return -1;
+        }
+    }
+}
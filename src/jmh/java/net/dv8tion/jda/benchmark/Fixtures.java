@@ -0,0 +1,82 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.benchmark;
+
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.handle.EntityBuilder;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the payloads the benchmarks run on. They live in src/jmh/resources/fixtures.
+ * <ul>
+ *     <li>guild_create.json: a GUILD_CREATE dispatch of a guild with 250 members, 20 roles and 31 channels.</li>
+ *     <li>message_create.json: a MESSAGE_CREATE dispatch in that guild with user, role and channel mentions and markdown.</li>
+ *     <li>voice_frame.json: the voice SESSION_DESCRIPTION payload and one 20ms frame as PCM and as Opus.</li>
+ * </ul>
+ * The gateway payloads are synthetic, not recorded: ids, names and the guild layout are generated, following the structure
+ * and field set of gateway v4 dispatches. Real guilds differ in the share of members with nicknames, roles and games,
+ * in permission overrides per channel and in the length of message contents, all of which change the numbers.
+ * Benchmark results on them are good for comparing changes, not for predicting the cost on a given bot.
+ * The Opus data of the voice frame is the output of libopus for its PCM data.
+ */
+public class Fixtures
+{
+    public static final String GUILD_CREATE = "guild_create.json";
+    public static final String MESSAGE_CREATE = "message_create.json";
+    public static final String VOICE_FRAME = "voice_frame.json";
+
+    public static String read(String name)
+    {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name))
+        {
+            if (in == null)
+                throw new IllegalStateException("Missing fixture " + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Could not read fixture " + name, e);
+        }
+    }
+
+    public static JSONObject readJson(String name)
+    {
+        return new JSONObject(read(name));
+    }
+
+    /**
+     * Creates a JDA instance without connection or audio whose cache holds the guild of the GUILD_CREATE fixture.
+     *
+     * @return
+     *      The populated JDA instance.
+     */
+    public static JDAImpl createApi()
+    {
+        JDAImpl api = new JDAImpl(false, false);
+        new EntityBuilder(api).createGuildFirstPass(readJson(GUILD_CREATE).getJSONObject("d"), null);
+        return api;
+    }
+}
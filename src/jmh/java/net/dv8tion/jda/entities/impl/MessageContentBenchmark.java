@@ -0,0 +1,69 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.entities.impl;
+
+import net.dv8tion.jda.benchmark.Fixtures;
+import net.dv8tion.jda.entities.Message;
+import net.dv8tion.jda.handle.EntityBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageImpl caches the resolved content, so every invocation works on a fresh copy of the MESSAGE_CREATE fixture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageContentBenchmark
+{
+    private JDAImpl api;
+    private Message message;
+
+    @Setup
+    public void setup()
+    {
+        api = Fixtures.createApi();
+        message = new EntityBuilder(api).createMessage(Fixtures.readJson(Fixtures.MESSAGE_CREATE).getJSONObject("d"));
+    }
+
+    @Benchmark
+    public String getContent()
+    {
+        return copy().getContent();
+    }
+
+    @Benchmark
+    public String getStrippedContent()
+    {
+        return copy().getStrippedContent();
+    }
+
+    private MessageImpl copy()
+    {
+        return new MessageImpl(message.getId(), api)
+                .setAuthor(message.getAuthor())
+                .setContent(message.getRawContent())
+                .setChannelId(message.getChannelId())
+                .setIsPrivate(false)
+                .setMentionedUsers(message.getMentionedUsers())
+                .setMentionedChannels(message.getMentionedChannels())
+                .setMentionedRoles(message.getMentionedRoles());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.handle;
+
+import net.dv8tion.jda.benchmark.Fixtures;
+import net.dv8tion.jda.entities.Guild;
+import net.dv8tion.jda.entities.Message;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBuilderBenchmark
+{
+    private JDAImpl api;
+    private EntityBuilder builder;
+    private JSONObject guild;
+    private JSONObject message;
+
+    @Setup
+    public void setup()
+    {
+        api = Fixtures.createApi();
+        builder = new EntityBuilder(api);
+        guild = Fixtures.readJson(Fixtures.GUILD_CREATE).getJSONObject("d");
+        message = Fixtures.readJson(Fixtures.MESSAGE_CREATE).getJSONObject("d");
+    }
+
+    /**
+     * Builds the guild from scratch. Emptying the cache is part of the measurement, a new JDA instance
+     * per invocation is not an option as every EntityBuilder keeps its JDA instance in a static map.
+     */
+    @Benchmark
+    public Guild createGuildFirstPass()
+    {
+        api.getGuildMap().clear();
+        api.getUserMap().clear();
+        api.getChannelMap().clear();
+        api.getVoiceChannelMap().clear();
+        return builder.createGuildFirstPass(guild, null);
+    }
+
+    /**
+     * Builds the guild again on top of the existing cache, like it happens when a guild becomes available again.
+     */
+    @Benchmark
+    public Guild updateGuildFirstPass()
+    {
+        return builder.createGuildFirstPass(guild, null);
+    }
+
+    @Benchmark
+    public Message createMessage()
+    {
+        return builder.createMessage(message);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.hooks;
+
+import net.dv8tion.jda.OnlineStatus;
+import net.dv8tion.jda.benchmark.Fixtures;
+import net.dv8tion.jda.entities.Message;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.events.user.UserOnlineStatusUpdateEvent;
+import net.dv8tion.jda.handle.EntityBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles one event through every registered listener, each of which only listens for guild messages.
+ * <p>
+ * The message event reaches every listener, the presence update, which is by far the most frequent event, reaches none.
+ * "compiled" and "compiled-annotated" register the same listeners as "interfaced" and "annotated" with the
+ * {@link net.dv8tion.jda.hooks.CompiledEventManager CompiledEventManager}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventManagerBenchmark
+{
+    @Param({"interfaced", "annotated", "compiled", "compiled-annotated"})
+    public String manager;
+
+    @Param({"10"})
+    public int listeners;
+
+    private IEventManager eventManager;
+    private GuildMessageReceivedEvent messageEvent;
+    private UserOnlineStatusUpdateEvent presenceEvent;
+    private int handled;
+
+    @Setup
+    public void setup()
+    {
+        JDAImpl api = Fixtures.createApi();
+        Message message = new EntityBuilder(api).createMessage(Fixtures.readJson(Fixtures.MESSAGE_CREATE).getJSONObject("d"));
+        messageEvent = new GuildMessageReceivedEvent(api, 1, message, api.getTextChannelById(message.getChannelId()));
+        presenceEvent = new UserOnlineStatusUpdateEvent(api, 2, message.getAuthor(), OnlineStatus.OFFLINE);
+
+        boolean annotated = manager.endsWith("annotated");
+        switch (manager)
+        {
+            case "interfaced":
+                eventManager = new InterfacedEventManager();
+                break;
+            case "annotated":
+                eventManager = new AnnotatedEventManager();
+                break;
+            default:
+                eventManager = new CompiledEventManager();
+        }
+        for (int i = 0; i < listeners; i++)
+            eventManager.register(annotated ? new AnnotatedListener() : new Listener());
+    }
+
+    @Benchmark
+    public int messageReceived()
+    {
+        eventManager.handle(messageEvent);
+        return handled;
+    }
+
+    @Benchmark
+    public int presenceUpdate()
+    {
+        eventManager.handle(presenceEvent);
+        return handled;
+    }
+
+    public class Listener extends ListenerAdapter
+    {
+        @Override
+        public void onGuildMessageReceived(GuildMessageReceivedEvent event)
+        {
+            handled++;
+        }
+    }
+
+    public class AnnotatedListener
+    {
+        @SubscribeEvent
+        public void onGuildMessageReceived(GuildMessageReceivedEvent event)
+        {
+            handled++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import net.dv8tion.jda.benchmark.Fixtures;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+/**
+ * Covers what happens to a binary frame after {@link WebSocketClient#onBinaryMessage(com.neovisionaries.ws.client.WebSocket, byte[])}
+ * queued it: inflating on the gateway worker and decoding the payload.
+ * <p>
+ * Run with {@code -prof gc} to see the allocation rate per decoded payload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayBenchmark
+{
+    private static final int STREAM_FRAMES = 256;
+
+    private String guildCreate;
+    private String messageCreate;
+    private byte[] guildCreateFrame;
+    private byte[][] streamFrames;
+    private int streamIndex;
+
+    private GatewayInflater payloadInflater;
+    private GatewayInflater streamInflater;
+
+    @Setup
+    public void setup()
+    {
+        guildCreate = Fixtures.read(Fixtures.GUILD_CREATE);
+        messageCreate = Fixtures.read(Fixtures.MESSAGE_CREATE);
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(guildCreate.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        guildCreateFrame = deflate(deflater, Deflater.NO_FLUSH);
+        deflater.end();
+
+        //zlib-stream frames depend on the frames before them, so a whole connection is recorded and replayed
+        JSONObject message = new JSONObject(messageCreate);
+        Deflater streamDeflater = new Deflater();
+        streamFrames = new byte[STREAM_FRAMES][];
+        for (int i = 0; i < STREAM_FRAMES; i++)
+        {
+            message.put("s", i + 1);
+            streamDeflater.setInput(message.toString().getBytes(StandardCharsets.UTF_8));
+            streamFrames[i] = deflate(streamDeflater, Deflater.SYNC_FLUSH);
+        }
+        streamDeflater.end();
+
+        payloadInflater = new GatewayInflater(false);
+        streamInflater = new GatewayInflater(true);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        payloadInflater.close();
+        streamInflater.close();
+    }
+
+    @Benchmark
+    public String inflateGuildCreate() throws DataFormatException
+    {
+        return payloadInflater.inflate(guildCreateFrame);
+    }
+
+    @Benchmark
+    public String inflateStreamMessage() throws DataFormatException
+    {
+        if (streamIndex == STREAM_FRAMES)
+        {
+            streamIndex = 0;
+            streamInflater.reset();
+        }
+        return streamInflater.inflate(streamFrames[streamIndex++]);
+    }
+
+    @Benchmark
+    public Object decodeGuildCreate()
+    {
+        return GatewayPayload.read(guildCreate, type -> false);
+    }
+
+    @Benchmark
+    public Object decodeMessageCreate()
+    {
+        return GatewayPayload.read(messageCreate, type -> false);
+    }
+
+    @Benchmark
+    public Object decodeIgnoredEvent()
+    {
+        return GatewayPayload.read(messageCreate, type -> true);
+    }
+
+    @Benchmark
+    public JSONObject parseGuildCreateTree()
+    {
+        return new JSONObject(guildCreate);
+    }
+
+    private static byte[] deflate(Deflater deflater, int flush)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = deflater.deflate(buffer, 0, buffer.length, flush)) > 0)
+            out.write(buffer, 0, length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.utils;
+
+import net.dv8tion.jda.Permission;
+import net.dv8tion.jda.benchmark.Fixtures;
+import net.dv8tion.jda.entities.Guild;
+import net.dv8tion.jda.entities.TextChannel;
+import net.dv8tion.jda.entities.User;
+import net.dv8tion.jda.entities.impl.GuildImpl;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the permissions of the author of the MESSAGE_CREATE fixture, the way JDA does before every REST call.
+ * The uncached variants invalidate the guild's permission cache first and therefore measure the full computation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionUtilBenchmark
+{
+    private User user;
+    private Guild guild;
+    private TextChannel channel;
+
+    @Setup
+    public void setup()
+    {
+        JDAImpl api = Fixtures.createApi();
+        JSONObject message = Fixtures.readJson(Fixtures.MESSAGE_CREATE).getJSONObject("d");
+        user = api.getUserById(message.getJSONObject("author").getString("id"));
+        channel = api.getTextChannelById(message.getString("channel_id"));
+        guild = channel.getGuild();
+    }
+
+    @Benchmark
+    public boolean checkChannelPermission()
+    {
+        return PermissionUtil.checkPermission(user, Permission.MESSAGE_WRITE, channel);
+    }
+
+    @Benchmark
+    public boolean checkChannelPermissionUncached()
+    {
+        ((GuildImpl) guild).getPermissionCache().invalidate();
+        return PermissionUtil.checkPermission(user, Permission.MESSAGE_WRITE, channel);
+    }
+
+    @Benchmark
+    public boolean checkGuildPermission()
+    {
+        return PermissionUtil.checkPermission(user, Permission.MANAGE_ROLES, guild);
+    }
+
+    @Benchmark
+    public boolean checkGuildPermissionUncached()
+    {
+        ((GuildImpl) guild).getPermissionCache().invalidate();
+        return PermissionUtil.checkPermission(user, Permission.MANAGE_ROLES, guild);
+    }
+}
@@ -562,6 +562,89 @@ public final class TweetNaclFast {
             return ret;
         }
 
+        // scratch state of the in place methods, reused for every message
+        private final byte [] subkey = new byte[32];
+        private final byte [] counter = new byte[16];
+        private final byte [] block = new byte[64];
+        private final byte [] tag = new byte[overheadLength];
+        private poly1305 authenticator;
+        private int blockPos;
+
+        /*
+         * @description
+         *   Encrypts and authenticates the message in place, without allocating.
+         *   The mlen message bytes start at boxoff+overheadLength and are replaced by the cipher text,
+         *   the authenticator is written to the overheadLength bytes at boxoff.
+         *   The result is the same box that box(message, theNonce) returns.
+         *
+         *   Returns the length of the box, or -1 if the arguments are invalid.
+         *   Not thread safe, use one instance per thread.
+         * */
+        public int boxInPlace(byte [] buffer, final int boxoff, final int mlen, byte [] theNonce) {
+            if (!(buffer!=null && boxoff>=0 && mlen>=0 && buffer.length>=(boxoff+overheadLength+mlen) &&
+                    theNonce!=null && theNonce.length==nonceLength))
+                return -1;
+
+            startStream(theNonce);
+            xorStream(buffer, boxoff+overheadLength, mlen);
+            authenticator.update(buffer, boxoff+overheadLength, mlen);
+            authenticator.finish(buffer, boxoff);
+            return mlen+overheadLength;
+        }
+
+        /*
+         * @description
+         *   Authenticates and decrypts the box of boxlen bytes at boxoff in place, without allocating.
+         *   The decrypted message starts at boxoff+overheadLength.
+         *
+         *   Returns the length of the message, or -1 if authentication fails.
+         *   Not thread safe, use one instance per thread.
+         * */
+        public int openInPlace(byte [] buffer, final int boxoff, final int boxlen, byte [] theNonce) {
+            if (!(buffer!=null && boxoff>=0 && boxlen>=overheadLength && buffer.length>=(boxoff+boxlen) &&
+                    theNonce!=null && theNonce.length==nonceLength))
+                return -1;
+
+            startStream(theNonce);
+            authenticator.update(buffer, boxoff+overheadLength, boxlen-overheadLength);
+            authenticator.finish(tag, 0);
+            if (crypto_verify_16(buffer, boxoff, tag, 0) != 0)
+                return -1;
+
+            xorStream(buffer, boxoff+overheadLength, boxlen-overheadLength);
+            return boxlen-overheadLength;
+        }
+
+        // derives the xsalsa20 key stream of the nonce, its first 32 bytes are the poly1305 key
+        private void startStream(byte [] theNonce) {
+            crypto_core_hsalsa20(subkey, theNonce, key, sigma);
+            for (int i = 0; i < 8; i++) counter[i] = theNonce[i+16];
+            for (int i = 8; i < 16; i++) counter[i] = 0;
+            crypto_core_salsa20(block, counter, subkey, sigma);
+
+            if (authenticator == null)
+                authenticator = new poly1305(block);
+            else
+                authenticator.reset(block);
+            blockPos = 32;
+        }
+
+        private void xorStream(byte [] buffer, int pos, int len) {
+            for (int i = 0; i < len; i++) {
+                if (blockPos == 64) {
+                    int u = 1;
+                    for (int j = 8; j < 16; j++) {
+                        u = u + (counter[j] & 0xff);
+                        counter[j] = (byte) (u & 0xff);
+                        u >>>= 8;
+                    }
+                    crypto_core_salsa20(block, counter, subkey, sigma);
+                    blockPos = 0;
+                }
+                buffer[pos+i] ^= block[blockPos++];
+            }
+        }
+
         /*
          * @description
          *   Length of key in bytes.
@@ -1459,6 +1542,7 @@ public final class TweetNaclFast {
         private int[] r;
         private int[] h;
         private int[] pad;
+        private int[] g;
         private int leftover;
         private int fin;
 
@@ -1467,8 +1551,18 @@ public final class TweetNaclFast {
             this.r = new int[10];
             this.h = new int[10];
             this.pad = new int[8];
+            this.g = new int[10];
+            reset(key);
+        }
+
+        /*
+         * @description
+         *   Starts a new authenticator with the key, reusing this instance.
+         * */
+        public poly1305 reset(byte [] key) {
             this.leftover = 0;
             this.fin = 0;
+            for (int i = 0; i < 10; i++) this.h[i] = 0;
 
             int t0, t1, t2, t3, t4, t5, t6, t7;
 
@@ -1491,6 +1585,7 @@ public final class TweetNaclFast {
             this.pad[5] = key[26] & 0xff | (key[27] & 0xff) << 8;
             this.pad[6] = key[28] & 0xff | (key[29] & 0xff) << 8;
             this.pad[7] = key[30] & 0xff | (key[31] & 0xff) << 8;
+            return this;
         }
 
         public poly1305 blocks(byte [] m, int mpos, int bytes) {
@@ -1709,7 +1804,7 @@ public final class TweetNaclFast {
         }
 
         public poly1305 finish(byte [] mac, int macpos) {
-            int [] g = new int[10];
+            int [] g = this.g;
             int c, mask, f, i;
 
             if (this.leftover != 0) {
@@ -23,7 +23,9 @@ import net.dv8tion.jda.managers.AccountManager;
 import net.dv8tion.jda.managers.AudioManager;
 import org.apache.http.HttpHost;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 /**
@@ -82,12 +84,42 @@ public interface JDA
      * An unmodifiable list of all known {@link net.dv8tion.jda.entities.User Users}.<br>
      * This list will never contain duplicates and represents all {@link net.dv8tion.jda.entities.User Users} that
      * JDA can currently see.
+     * <p>
+     * The list is a snapshot that is copied on every call. To only count or iterate the users use
+     * {@link #getUserCount()}, {@link #getUserView()} or {@link #streamUsers()} instead.
      *
      * @return
      *      List of all known {@link net.dv8tion.jda.entities.User Users}.
      */
     List<User> getUsers();
 
+    /**
+     * An unmodifiable live view of all known {@link net.dv8tion.jda.entities.User Users}.<br>
+     * The view is not copied and reflects all changes made by JDA after it was retrieved. Iterating it while
+     * users are added or removed is safe, but may or may not show those changes.
+     *
+     * @return
+     *      Live view of all known {@link net.dv8tion.jda.entities.User Users}.
+     */
+    Collection<User> getUserView();
+
+    /**
+     * A {@link java.util.stream.Stream Stream} over all known {@link net.dv8tion.jda.entities.User Users}.
+     * Nothing is copied to create the stream.
+     *
+     * @return
+     *      Stream of all known {@link net.dv8tion.jda.entities.User Users}.
+     */
+    Stream<User> streamUsers();
+
+    /**
+     * The amount of all known {@link net.dv8tion.jda.entities.User Users}.
+     *
+     * @return
+     *      The amount of known {@link net.dv8tion.jda.entities.User Users}.
+     */
+    int getUserCount();
+
     /**
      * This returns the {@link net.dv8tion.jda.entities.User User} who has the same id as the one provided.<br>
      * If there is no known user with an id that matches the provided one, this this returns <code>null</code>.
@@ -120,6 +152,15 @@ public interface JDA
      */
     List<Guild> getGuilds();
 
+    /**
+     * A {@link java.util.stream.Stream Stream} over all {@link net.dv8tion.jda.entities.Guild Guilds} that this account
+     * is connected to. Nothing is copied to create the stream.
+     *
+     * @return
+     *      Stream of all connected {@link net.dv8tion.jda.entities.Guild Guilds}.
+     */
+    Stream<Guild> streamGuilds();
+
     /**
      * This returns the {@link net.dv8tion.jda.entities.Guild Guild} which has the same id as the one provided.<br>
      * If there is no known guild with an id that matches the provided one, then this returns <code>null</code>.
@@ -158,6 +199,15 @@ public interface JDA
      */
     List<TextChannel> getTextChannels();
 
+    /**
+     * A {@link java.util.stream.Stream Stream} over all {@link net.dv8tion.jda.entities.TextChannel TextChannels} of all
+     * {@link net.dv8tion.jda.entities.Guild Guilds} that this account is a member of. Nothing is copied to create the stream.
+     *
+     * @return
+     *      Stream of all known {@link net.dv8tion.jda.entities.TextChannel TextChannels}.
+     */
+    Stream<TextChannel> streamTextChannels();
+
     /**
      * This returns the {@link net.dv8tion.jda.entities.TextChannel TextChannel} which has the same id as the one provided.<br>
      * If there is no known {@link net.dv8tion.jda.entities.TextChannel TextChannel} with an id that matches the provided
@@ -203,6 +253,15 @@ public interface JDA
      */
     List<VoiceChannel> getVoiceChannels();
 
+    /**
+     * A {@link java.util.stream.Stream Stream} over all {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannels} of all
+     * {@link net.dv8tion.jda.entities.Guild Guilds} that this account is a member of. Nothing is copied to create the stream.
+     *
+     * @return
+     *      Stream of all known {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannels}.
+     */
+    Stream<VoiceChannel> streamVoiceChannels();
+
     /**
      * This returns the {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannel} which has the same id as the one provided.<br>
      * If there is no known {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannel} with an id that matches the provided
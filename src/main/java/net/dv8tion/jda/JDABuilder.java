@@ -18,13 +18,22 @@ package net.dv8tion.jda;
 import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.events.ReadyEvent;
 import net.dv8tion.jda.hooks.AnnotatedEventManager;
+import net.dv8tion.jda.hooks.EventDispatcher;
 import net.dv8tion.jda.hooks.IEventManager;
 import net.dv8tion.jda.hooks.ListenerAdapter;
 import net.dv8tion.jda.hooks.SubscribeEvent;
+import net.dv8tion.jda.requests.GuildLock;
+import net.dv8tion.jda.requests.InviteResolver;
+import net.dv8tion.jda.requests.MemberLoader;
+import net.dv8tion.jda.requests.MessageSender;
+import net.dv8tion.jda.requests.RequestEngine;
+import net.dv8tion.jda.requests.WebSocketClient;
 
 import javax.security.auth.login.LoginException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -51,7 +60,25 @@ public class JDABuilder
     protected boolean useAnnotatedManager = false;
     protected IEventManager eventManager = null;
     protected boolean reconnect = true;
+    protected boolean transportCompression = false;
+    protected int maxQueuedFrames = WebSocketClient.DEFAULT_MAX_QUEUED_FRAMES;
     protected int[] sharding = null;
+    protected int requestPoolSize = RequestEngine.DEFAULT_POOL_SIZE;
+    protected Executor messageSendExecutor = null;
+    protected int messageQueueSize = MessageSender.DEFAULT_QUEUE_SIZE;
+    protected MessageSender.OverflowPolicy messageOverflowPolicy = MessageSender.OverflowPolicy.REJECT;
+    protected Executor eventExecutor = null;
+    protected int maxQueuedEvents = EventDispatcher.DEFAULT_MAX_QUEUED_EVENTS;
+    protected EventDispatcher.OverflowPolicy eventOverflowPolicy = EventDispatcher.OverflowPolicy.BLOCK;
+    protected boolean inviteScan = true;
+    protected int inviteCacheSize = InviteResolver.DEFAULT_CACHE_SIZE;
+    protected long inviteTtl = InviteResolver.DEFAULT_TTL;
+    protected long inviteNegativeTtl = InviteResolver.DEFAULT_NEGATIVE_TTL;
+    protected int guildLockQueueSize = GuildLock.DEFAULT_MAX_QUEUED_EVENTS;
+    protected GuildLock.OverflowPolicy guildLockOverflowPolicy = GuildLock.OverflowPolicy.DROP_OLDEST;
+    protected boolean lazyMemberLoading = false;
+    protected MemberLoader.CachePolicy memberCachePolicy = MemberLoader.CachePolicy.ALL;
+    protected long memberRetention = MemberLoader.DEFAULT_RETENTION;
 
     /**
      * Creates a completely empty JDABuilder.<br>
@@ -156,6 +183,46 @@ public class JDABuilder
         return this;
     }
 
+    /**
+     * Enables/Disables zlib-stream transport compression for the connection to Discord.<br>
+     * Without it, only big payloads are compressed individually. With it, the whole connection shares a single
+     * compression context which results in a much smaller bandwidth usage, especially for bots in many big guilds.
+     * <p>
+     * Default: false
+     *
+     * @param enabled
+     *      True - enables transport compression.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setTransportCompression(boolean enabled)
+    {
+        this.transportCompression = enabled;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of frames received from Discord that may wait to be handled.<br>
+     * Frames are never dropped, as every one of them updates the cache. While the limit is reached, the thread
+     * reading from the connection blocks until a frame was handled. If that takes too long, heartbeats are delayed
+     * as well and Discord may close the connection, so event listeners should not block the gateway for long.
+     * To limit the events waiting for the listeners instead, see {@link #setEventQueue(int, EventDispatcher.OverflowPolicy)}.
+     * <p>
+     * Default: {@value net.dv8tion.jda.requests.WebSocketClient#DEFAULT_MAX_QUEUED_FRAMES} frames
+     *
+     * @param maxQueuedFrames
+     *      The maximum amount of waiting frames. Has to be at least 1.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setFrameQueue(int maxQueuedFrames)
+    {
+        if (maxQueuedFrames < 1)
+            throw new IllegalArgumentException("The maximum amount of queued frames has to be at least 1");
+        this.maxQueuedFrames = maxQueuedFrames;
+        return this;
+    }
+
     /**
      * <b>This method is deprecated! Please switch to {@link #setEventManager(IEventManager)}.</b>
      * <p>
@@ -177,11 +244,13 @@ public class JDABuilder
 
     /**
      * Changes the internally used EventManager.
-     * There are 2 provided Implementations:
+     * There are 3 provided Implementations:
      * <ul>
      *     <li>{@link net.dv8tion.jda.hooks.InterfacedEventManager} which uses the Interface {@link net.dv8tion.jda.hooks.EventListener}
      *     (tip: use the {@link net.dv8tion.jda.hooks.ListenerAdapter}). This is the default EventManager.</li>
      *     <li>{@link net.dv8tion.jda.hooks.AnnotatedEventManager} which uses the Annotation {@link net.dv8tion.jda.hooks.SubscribeEvent} to mark the methods that listen for events.</li>
+     *     <li>{@link net.dv8tion.jda.hooks.CompiledEventManager} which accepts both kinds of listeners and dispatches every
+     *     event only to the listeners and methods that can handle it, without locking.</li>
      * </ul>
      * You can also create your own EventManager (See {@link net.dv8tion.jda.hooks.IEventManager}).
      *
@@ -254,6 +323,234 @@ public class JDABuilder
         return this;
     }
 
+    /**
+     * Sets the amount of threads that are used to send queued requests to Discord.<br>
+     * Requests are queued per rate-limit bucket (e.g. per channel), so this is the maximum amount of
+     * buckets that are worked on in parallel.
+     * <p>
+     * Default: {@value net.dv8tion.jda.requests.RequestEngine#DEFAULT_POOL_SIZE}
+     *
+     * @param poolSize
+     *      The amount of threads. Has to be at least 1.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setRequestPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("The request pool-size has to be at least 1");
+        this.requestPoolSize = poolSize;
+        return this;
+    }
+
+    /**
+     * Sets the executor that is used by the asynchronous message methods (e.g.
+     * {@link net.dv8tion.jda.entities.MessageChannel#sendMessageAsync(String, java.util.function.Consumer) sendMessageAsync})
+     * to dispatch queued messages and to run their callbacks.<br>
+     * Messages of the same channel are always sent in order, messages of different channels are sent concurrently.
+     * <p>
+     * Default: a daemon pool with one thread per available processor.
+     *
+     * @param executor
+     *      The executor to use or null to use the default one.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setMessageSendExecutor(Executor executor)
+    {
+        this.messageSendExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of asynchronous messages that may wait to be sent per channel and what should happen
+     * if a message is queued into a full channel-queue.
+     * <p>
+     * Default: {@value net.dv8tion.jda.requests.MessageSender#DEFAULT_QUEUE_SIZE} messages,
+     * {@link net.dv8tion.jda.requests.MessageSender.OverflowPolicy#REJECT REJECT}
+     *
+     * @param queueSize
+     *      The maximum amount of waiting messages per channel. Has to be at least 1.
+     * @param policy
+     *      The {@link net.dv8tion.jda.requests.MessageSender.OverflowPolicy OverflowPolicy} to apply on full queues.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setMessageQueue(int queueSize, MessageSender.OverflowPolicy policy)
+    {
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The message queue-size has to be at least 1");
+        if (policy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.messageQueueSize = queueSize;
+        this.messageOverflowPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Sets the executor that delivers events to the registered listeners.<br>
+     * Events are handed to this executor after JDA has updated its cache, so slow listeners do not block the
+     * connection to Discord.
+     * <p>
+     * Default: a single daemon thread. With more than one thread, listeners may receive events out of order.
+     *
+     * @param executor
+     *      The executor to use or null to use the default one.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setEventExecutor(Executor executor)
+    {
+        this.eventExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of events that may wait for delivery to the listeners and what should happen
+     * if an event is fired while that many events are waiting.
+     * <p>
+     * Default: {@value net.dv8tion.jda.hooks.EventDispatcher#DEFAULT_MAX_QUEUED_EVENTS} events,
+     * {@link net.dv8tion.jda.hooks.EventDispatcher.OverflowPolicy#BLOCK BLOCK}
+     *
+     * @param maxQueuedEvents
+     *      The maximum amount of waiting events. Has to be at least 1.
+     * @param policy
+     *      The {@link net.dv8tion.jda.hooks.EventDispatcher.OverflowPolicy OverflowPolicy} to apply on a full queue.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setEventQueue(int maxQueuedEvents, EventDispatcher.OverflowPolicy policy)
+    {
+        if (maxQueuedEvents < 1)
+            throw new IllegalArgumentException("The maximum amount of queued events has to be at least 1");
+        if (policy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.eventOverflowPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Sets whether received messages are searched for invite links, which are then resolved and fired as
+     * {@link net.dv8tion.jda.events.InviteReceivedEvent InviteReceivedEvents}. Bots that do not listen for that
+     * event can disable the search and save the requests.
+     * <p>
+     * Default: true
+     *
+     * @param enabled
+     *      True - searches messages for invites.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setInviteScanEnabled(boolean enabled)
+    {
+        this.inviteScan = enabled;
+        return this;
+    }
+
+    /**
+     * Sets how many resolved invite codes are cached and for how long, so invites that are posted repeatedly
+     * are only resolved once. Codes that turned out to be no invite are cached as well, usually for a shorter time.
+     * <p>
+     * Default: {@value net.dv8tion.jda.requests.InviteResolver#DEFAULT_CACHE_SIZE} codes,
+     * cached for 10 minutes and 1 minute respectively
+     *
+     * @param cacheSize
+     *      The maximum amount of cached codes. 0 disables the cache.
+     * @param ttl
+     *      How long a resolved invite is cached.
+     * @param negativeTtl
+     *      How long a code that is no invite is cached.
+     * @param unit
+     *      The unit of both durations.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setInviteCache(int cacheSize, long ttl, long negativeTtl, TimeUnit unit)
+    {
+        if (cacheSize < 0 || ttl < 0 || negativeTtl < 0)
+            throw new IllegalArgumentException("The invite cache-size and durations may not be negative");
+        this.inviteCacheSize = cacheSize;
+        this.inviteTtl = unit.toMillis(ttl);
+        this.inviteNegativeTtl = unit.toMillis(negativeTtl);
+        return this;
+    }
+
+    /**
+     * Sets how many events are held back for a guild that is still loading and what should happen
+     * if another event for it arrives while that many are held back. The held back events are handled
+     * once the guild finished loading.
+     * <p>
+     * Default: {@value net.dv8tion.jda.requests.GuildLock#DEFAULT_MAX_QUEUED_EVENTS} events per guild,
+     * {@link net.dv8tion.jda.requests.GuildLock.OverflowPolicy#DROP_OLDEST DROP_OLDEST}
+     *
+     * @param queueSize
+     *      The maximum amount of held back events per guild. Has to be at least 1.
+     * @param policy
+     *      The {@link net.dv8tion.jda.requests.GuildLock.OverflowPolicy OverflowPolicy} to apply on a full queue.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setGuildLockQueue(int queueSize, GuildLock.OverflowPolicy policy)
+    {
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The maximum amount of queued events has to be at least 1");
+        if (policy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.guildLockQueueSize = queueSize;
+        this.guildLockOverflowPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Enables or disables lazy member loading.<br>
+     * When enabled, the members of large guilds are not all requested while the guild is loading.
+     * Instead members are cached as they appear in events and can be loaded on demand through
+     * {@link net.dv8tion.jda.entities.Guild#retrieveUserById(String)} and
+     * {@link net.dv8tion.jda.entities.Guild#retrieveUsersByName(String, int)}.
+     * This makes {@link net.dv8tion.jda.entities.Guild#getUsers()} incomplete for large guilds,
+     * but lowers startup time and memory use considerably.
+     * <p>
+     * Default: disabled
+     *
+     * @param enabled
+     *      Whether or not members should be loaded lazily.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setLazyMemberLoading(boolean enabled)
+    {
+        this.lazyMemberLoading = enabled;
+        return this;
+    }
+
+    /**
+     * Sets which members are kept cached while lazy member loading is enabled.
+     * See {@link #setLazyMemberLoading(boolean)}.
+     * <p>
+     * Default: {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy#ALL ALL}, a retention of 30 minutes
+     *
+     * @param policy
+     *      The {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy CachePolicy} to apply.
+     * @param retention
+     *      How long members are kept after they were last seen.
+     *      Only used by {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy#RECENT RECENT}. Has to be positive.
+     * @param unit
+     *      The unit of the retention time.
+     * @return
+     *      Returns the {@link net.dv8tion.jda.JDABuilder JDABuilder} instance. Useful for chaining.
+     */
+    public JDABuilder setMemberCachePolicy(MemberLoader.CachePolicy policy, long retention, TimeUnit unit)
+    {
+        if (policy == null)
+            throw new IllegalArgumentException("The CachePolicy may not be null");
+        if (retention < 1)
+            throw new IllegalArgumentException("The retention time has to be positive");
+        this.memberCachePolicy = policy;
+        this.memberRetention = unit.toMillis(retention);
+        return this;
+    }
+
     /**
      * Builds a new {@link net.dv8tion.jda.JDA} instance and uses the provided email and password to start the login process.<br>
      * The login process runs in a different thread, so while this will return immediately, {@link net.dv8tion.jda.JDA} has not
@@ -279,6 +576,22 @@ public class JDABuilder
         else
             jda = new JDAImpl(enableVoice, enableShutdownHook);
         jda.setAutoReconnect(reconnect);
+        jda.setTransportCompression(transportCompression);
+        jda.setMaxQueuedFrames(maxQueuedFrames);
+        jda.getRequester().getEngine().setPoolSize(requestPoolSize);
+        jda.getMessageSender().setQueueSize(messageQueueSize);
+        jda.getMessageSender().setOverflowPolicy(messageOverflowPolicy);
+        if (messageSendExecutor != null)
+            jda.getMessageSender().setExecutor(messageSendExecutor);
+        jda.getEventManager().setExecutor(eventExecutor);
+        jda.getEventManager().setMaxQueuedEvents(maxQueuedEvents);
+        jda.getEventManager().setOverflowPolicy(eventOverflowPolicy);
+        jda.getInviteResolver().setEnabled(inviteScan);
+        jda.getInviteResolver().setCache(inviteCacheSize, inviteTtl, inviteNegativeTtl, TimeUnit.MILLISECONDS);
+        jda.getGuildLock().setMaxQueuedEvents(guildLockQueueSize);
+        jda.getGuildLock().setOverflowPolicy(guildLockOverflowPolicy);
+        jda.getMemberLoader().setEnabled(lazyMemberLoading);
+        jda.getMemberLoader().setCachePolicy(memberCachePolicy, memberRetention, TimeUnit.MILLISECONDS);
         if (eventManager != null)
         {
             jda.setEventManager(eventManager);
@@ -0,0 +1,62 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The time source that paces the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler}.
+ * <p>
+ * It can be replaced with {@link net.dv8tion.jda.audio.AudioScheduler#setClock(AudioClock)}, for example by a
+ * virtual clock that advances on every {@link #parkNanos(long)}, so the cadence of the ticks can be checked
+ * deterministically.
+ */
+public interface AudioClock
+{
+    /**
+     * The clock of the JVM, based on {@link System#nanoTime()} and {@link java.util.concurrent.locks.LockSupport#parkNanos(long)}.
+     */
+    AudioClock SYSTEM = new AudioClock()
+    {
+        @Override
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void parkNanos(long nanos)
+        {
+            LockSupport.parkNanos(nanos);
+        }
+    };
+
+    /**
+     * The current time. Like {@link System#nanoTime()}, only the difference between two values has a meaning.
+     *
+     * @return
+     *      The current time in nanoseconds.
+     */
+    long nanoTime();
+
+    /**
+     * Blocks the calling thread for about the given time. It may return earlier or later.
+     *
+     * @param nanos
+     *          The time to wait, in nanoseconds.
+     */
+    void parkNanos(long nanos);
+}
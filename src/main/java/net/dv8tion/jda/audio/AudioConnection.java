@@ -15,21 +15,27 @@
  */
 package net.dv8tion.jda.audio;
 
-import com.sun.jna.ptr.PointerByReference;
 import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.entities.Guild;
+import net.dv8tion.jda.entities.User;
 import net.dv8tion.jda.entities.VoiceChannel;
 import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.events.audio.AudioConnectEvent;
 import net.dv8tion.jda.events.audio.AudioTimeoutEvent;
+import net.dv8tion.jda.managers.AudioManager;
 import net.dv8tion.jda.utils.SimpleLog;
 import org.json.JSONObject;
-import tomp2p.opuswrapper.Opus;
 
-import java.net.*;
+import java.net.NoRouteToHostException;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AudioConnection
 {
@@ -39,18 +45,42 @@ public class AudioConnection
     public static final int OPUS_FRAME_TIME_AMOUNT = 20;//This is 20 milliseconds. We are only dealing with 20ms opus packets.
     public static final int OPUS_CHANNEL_COUNT = 2;     //We want to use stereo. If the audio given is mono, the encoder promotes it
                                                         // to Left and Right mono (stereo that is the same on both sides)
+    public static final int OPUS_MAX_PACKET_SIZE = 4096;//The most bytes an encoded 20ms frame may take.
+    public static final int MAX_RECEIVE_DELAY = AudioReceiveStream.MAX_DELAY;
+    public static final int MAX_SEND_BUFFER = 200;
     private final AudioWebSocket webSocket;
-    private DatagramSocket udpSocket;
+    private DatagramChannel udpChannel;
     private VoiceChannel channel;
-    private AudioSendHandler sendHandler = null;
-    private AudioReceiveHandler receiveHandler = null;
+    private volatile AudioSendHandler sendHandler = null;
+    private volatile AudioReceiveHandler receiveHandler = null;
 
-    private PointerByReference opusEncoder;
-    private PointerByReference opusDecoder;
+    private final OpusEncoder encoder;
+    private PacketCipher sendCipher;
+    private PacketCipher receiveCipher;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(PacketCipher.AUDIO_OFFSET + OPUS_MAX_PACKET_SIZE);
+    //The part of the send buffer that handlers providing opus write their packets to
+    private final ByteBuffer opusBuffer = ByteBuffer.wrap(sendBuffer.array(), PacketCipher.AUDIO_OFFSET, OPUS_MAX_PACKET_SIZE).slice();
+    private int droppedPackets = 0;
+    private final AudioSendBuffer sendFrames = new AudioSendBuffer();
+    private final AtomicBoolean providing = new AtomicBoolean(false);
+    private volatile long sendUnderruns = 0;
+    private final JitterHistogram sendJitter = new JitterHistogram();
 
-    private Thread sendThread;
-    private Thread receiveThread;
+    private int receiveMinDelay = AudioManager.DEFAULT_RECEIVE_MIN_DELAY;
+    private int receiveMaxDelay = AudioManager.DEFAULT_RECEIVE_MAX_DELAY;
+    private final Map<Integer, User> ssrcUsers = new ConcurrentHashMap<>();
+    //Copied on write, so the receiving thread can find the stream of a packet without locking or boxing.
+    private volatile AudioReceiveStream[] receiveStreams = new AudioReceiveStream[0];
+    private boolean closed = false;
+    private final AudioMixer mixer = new AudioMixer();
 
+    private boolean readyRequested = false;
+    private boolean started = false;
+    private ScheduledFuture<?> readyTimeout;
+
+    //Only accessed by the worker sending the current frame, see AudioScheduler
+    private char seq = 0;           //Sequence of audio packets. Used to determine the order of the packets.
+    private int timestamp = 0;      //Used to sync up our packets within the same timeframe of other people talking.
     private boolean speaking = false;
 
     public AudioConnection(AudioWebSocket webSocket, VoiceChannel channel)
@@ -58,46 +88,40 @@ public class AudioConnection
         this.channel = channel;
         this.webSocket = webSocket;
 
-        IntBuffer error = IntBuffer.allocate(4);
-        opusEncoder =
-                Opus.INSTANCE.opus_encoder_create(OPUS_SAMPLE_RATE, OPUS_CHANNEL_COUNT, Opus.OPUS_APPLICATION_AUDIO, error);
+        this.encoder = new OpusEncoder();
+        if (webSocket != null)
+            webSocket.setAudioConnection(this);
     }
 
-    public void ready(long timeout)
+    public synchronized void ready(long timeout)
     {
-        Thread readyThread = new Thread()
+        readyRequested = true;
+        if (webSocket.isReady())
+        {
+            start();
+        }
+        else if (timeout > 0)
         {
-            @Override
-            public void run()
+            readyTimeout = AudioScheduler.getInstance().schedule(() ->
             {
-                JDAImpl api = (JDAImpl) getJDA();
-                long started = System.currentTimeMillis();
-                boolean connectionTimeout = false;
-                while (!webSocket.isReady() && !connectionTimeout)
+                synchronized (this)
                 {
-                    if (timeout > 0 && System.currentTimeMillis() - started > timeout)
-                    {
-                        api.getEventManager().handle(new AudioTimeoutEvent(api, channel, timeout));
-                        connectionTimeout = true;
-                    }
-
-                    try
-                    {
-                        Thread.sleep(10);
-                    }
-                    catch (InterruptedException e)
-                    {
-                        LOG.log(e);
-                    }
+                    if (started)
+                        return;
                 }
-                AudioConnection.this.udpSocket = webSocket.getUdpSocket();
-                setupSendThread();
-                setupReceiveThread();
-                api.getEventManager().handle(new AudioConnectEvent(api, AudioConnection.this.channel));
-            }
-        };
-        readyThread.setDaemon(true);
-        readyThread.start();
+                JDAImpl api = (JDAImpl) getJDA();
+                api.getEventManager().handle(new AudioTimeoutEvent(api, channel, timeout));
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Called by the {@link net.dv8tion.jda.audio.AudioWebSocket AudioWebSocket} once the connection is established.
+     */
+    synchronized void onWebSocketReady()
+    {
+        if (readyRequested)
+            start();
     }
 
     public void setSendingHandler(AudioSendHandler handler)
@@ -110,6 +134,65 @@ public class AudioConnection
         this.receiveHandler = handler;
     }
 
+    /**
+     * Sets how far ahead of their tick frames are provided and encoded, see
+     * {@link net.dv8tion.jda.managers.AudioManager#setSendBuffer(int)}.
+     */
+    public void setSendBuffer(int milliseconds)
+    {
+        sendFrames.setCapacity((milliseconds + OPUS_FRAME_TIME_AMOUNT - 1) / OPUS_FRAME_TIME_AMOUNT);
+    }
+
+    /**
+     * The amount of ticks that had no frame ready to send while the send handler was still providing it.
+     *
+     * @return
+     *      The total amount of send buffer underruns.
+     */
+    public long getSendUnderruns()
+    {
+        return sendUnderruns;
+    }
+
+    /**
+     * The amount of frames that were provided ahead of time but never sent, because the send handler was replaced
+     * before their tick. The provider waits while the send buffer is full, so frames are never lost to a full buffer.
+     *
+     * @return
+     *      The total amount of discarded frames.
+     */
+    public long getSendDiscards()
+    {
+        return sendFrames.getDiscarded();
+    }
+
+    /**
+     * How late the frames of this connection were sent compared to the deadline of their tick.
+     *
+     * @return
+     *      The jitter histogram of the sent frames.
+     */
+    public JitterHistogram getSendJitter()
+    {
+        return sendJitter;
+    }
+
+    public AudioReceiveHandler getReceivingHandler()
+    {
+        return receiveHandler;
+    }
+
+    /**
+     * Sets the bounds of the playout delay of decoded audio, see
+     * {@link net.dv8tion.jda.managers.AudioManager#setReceiveDelay(int, int)}.
+     * Only applies to users that start speaking afterwards.
+     */
+    public void setReceiveDelay(int minDelay, int maxDelay)
+    {
+        this.receiveMinDelay = minDelay;
+        this.receiveMaxDelay = maxDelay;
+    }
+
     public VoiceChannel getChannel()
     {
         return channel;
@@ -133,174 +216,280 @@ public class AudioConnection
     public void close(boolean regionChange)
     {
 //        setSpeaking(false);
-        sendThread.interrupt();
-        receiveThread.interrupt();
+        synchronized (this)
+        {
+            if (readyTimeout != null)
+                readyTimeout.cancel(false);
+            if (started)
+                AudioScheduler.getInstance().unregister(this);
+            closed = true;
+        }
         webSocket.close(regionChange, -1);
+        encoder.close();
+        for (AudioReceiveStream stream : removeReceiveStreams())
+            stream.close();
+    }
+
+    DatagramChannel getUdpChannel()
+    {
+        return udpChannel;
+    }
+
+    /**
+     * Called by the {@link net.dv8tion.jda.audio.AudioWebSocket AudioWebSocket} when Discord tells which user sends with an SSRC.
+     */
+    void updateUserSSRC(int ssrc, User user)
+    {
+        ssrcUsers.put(ssrc, user);
+        for (AudioReceiveStream stream : receiveStreams)
+        {
+            if (stream.getSSRC() == ssrc)
+                stream.setUser(user);
+        }
+    }
+
+    private void start()
+    {
+        if (started)
+            return;
+        started = true;
+        if (readyTimeout != null)
+            readyTimeout.cancel(false);
+        udpChannel = webSocket.getUdpChannel();
+        byte[] secretKey = webSocket.getSecretKey();
+        sendCipher = new PacketCipher(secretKey);
+        receiveCipher = new PacketCipher(secretKey);
+        AudioScheduler.getInstance().register(this);
+        JDAImpl api = (JDAImpl) getJDA();
+        api.getEventManager().handle(new AudioConnectEvent(api, channel));
     }
 
-    private void setupSendThread()
+    /**
+     * Sends the next frame of the send handler. Called by the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler}
+     * once per tick.
+     *
+     * @return
+     *      True if a packet was sent.
+     */
+    boolean sendFrame()
     {
-        sendThread = new Thread()
+        try
         {
-            @Override
-            public void run()
+            //The packet is assembled and encrypted in place: header, authenticator, audio.
+            AudioSendHandler sendHandler = this.sendHandler;
+            int audioLength;
+            if (sendFrames.getCapacity() == 0 && !providing.get())
+            {
+                opusBuffer.clear();
+                audioLength = provideFrame(sendHandler, opusBuffer);
+            }
+            else
             {
-                char seq = 0;           //Sequence of audio packets. Used to determine the order of the packets.
-                int timestamp = 0;      //Used to sync up our packets within the same timeframe of other people talking.
-                long lastFrameSent = System.currentTimeMillis();
-                while (!udpSocket.isClosed() && !this.isInterrupted())
+                audioLength = sendFrames.take(sendHandler, sendBuffer.array(), PacketCipher.AUDIO_OFFSET);
+                if (audioLength < 0 && providing.get())
                 {
-                    try
-                    {
-                        //WE NEED TO CONSIDER BUFFERING STUFF BECAUSE REASONS.
-                        //Consider storing 40-60ms of encoded audio as a buffer.
-                        if (sendHandler != null && sendHandler.canProvide())
-                        {
-                            byte[] rawAudio = sendHandler.provide20MsAudio();
-                            if (rawAudio == null || rawAudio.length == 0)
-                            {
-                                if (speaking && (System.currentTimeMillis() - lastFrameSent) > OPUS_FRAME_TIME_AMOUNT)
-                                    setSpeaking(false);
-                            }
-                            else
-                            {
-                                byte[] encodedAudio = encodeToOpus(rawAudio);
-                                AudioPacket packet = new AudioPacket(seq, timestamp, webSocket.getSSRC(), encodedAudio);
-                                if (!speaking)
-                                    setSpeaking(true);
-                                udpSocket.send(packet.asEncryptedUdpPacket(webSocket.getAddress(), webSocket.getSecretKey()));
-
-                                if (seq + 1 > Character.MAX_VALUE)
-                                    seq = 0;
-                                else
-                                    seq++;
-							}
-                        }
-                        else if (speaking && (System.currentTimeMillis() - lastFrameSent) > OPUS_FRAME_TIME_AMOUNT)
-                            setSpeaking(false);
-                    }
-                    catch (NoRouteToHostException e)
-                    {
-                        LOG.warn("Closing AudioConnection due to inability to send audio packets.");
-                        LOG.warn("Cannot send audio packet because JDA navigate the route to Discord.\n" +
-                                "Are you sure you have internet connection? It is likely that you've lost connection.");
-                        webSocket.close(true, -1);
-                    }
-                    catch (SocketException e)
-                    {
-                        //Most likely the socket has been closed due to the audio connection be closed. Next iteration will kill loop.
-                    }
-                    catch (Exception e)
-                    {
-                        LOG.log(e);
-                    }
-                    finally
-                    {
-                        timestamp += OPUS_FRAME_SIZE;
-                        long sleepTime = (OPUS_FRAME_TIME_AMOUNT) - (System.currentTimeMillis() - lastFrameSent);
-                        if (sleepTime > 0)
-                        {
-                            try
-                            {
-                                Thread.sleep(sleepTime);
-                            } catch (InterruptedException e)
-                            {
-                                //We've been asked to stop. The next iteration will kill the loop. 
-                            }
-                        }
-                        lastFrameSent += OPUS_FRAME_TIME_AMOUNT;
-                    }
+                    long underruns = ++sendUnderruns;
+                    if (underruns == 1 || underruns % 1000 == 0)
+                        LOG.warn("The send handler did not provide a frame in time. " + underruns + " send buffer underruns so far.");
                 }
+                provideAhead(sendHandler);
+            }
+            if (audioLength <= 0)
+            {
+                if (speaking)
+                    setSpeaking(false);
+            }
+            else
+            {
+                sendBuffer.clear();
+                AudioPacket.writeHeader(sendBuffer, seq, timestamp, webSocket.getSSRC());
+                sendBuffer.limit(sendCipher.encrypt(sendBuffer.array(), audioLength));
+                if (!speaking)
+                    setSpeaking(true);
+                //a full send buffer drops the frame instead of stalling the other connections of this tick
+                udpChannel.send(sendBuffer, webSocket.getAddress());
+
+                if (seq + 1 > Character.MAX_VALUE)
+                    seq = 0;
+                else
+                    seq++;
+                return true;
             }
-        };
-        sendThread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
-        sendThread.setDaemon(true);
-        sendThread.start();
+        }
+        catch (NoRouteToHostException e)
+        {
+            LOG.warn("Closing AudioConnection due to inability to send audio packets.");
+            LOG.warn("Cannot send audio packet because JDA navigate the route to Discord.\n" +
+                    "Are you sure you have internet connection? It is likely that you've lost connection.");
+            webSocket.close(true, -1);
+        }
+        catch (ClosedChannelException e)
+        {
+            //The channel has been closed due to the audio connection be closed. The next tick will drop this connection.
+        }
+        catch (Exception e)
+        {
+            LOG.log(e);
+        }
+        finally
+        {
+            timestamp += OPUS_FRAME_SIZE;
+        }
+        return false;
     }
 
-    private void setupReceiveThread()
+    /**
+     * Handles a packet read by the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler}.
+     *
+     * @param packet
+     *          The received packet, only valid until this method returns.
+     */
+    void receivePacket(ByteBuffer packet)
     {
-        receiveThread = new Thread()
+        AudioReceiveHandler receiveHandler = this.receiveHandler;
+        if (receiveHandler != null && (receiveHandler.canReceive() || receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined()))
         {
-            @Override
-            public void run()
+            int audioLength = receiveCipher.decrypt(packet.array(), packet.limit());
+            if (audioLength < 0)
             {
-                try
-                {
-                    udpSocket.setSoTimeout(100);
-                }
-                catch (SocketException e)
-                {
-                    LOG.log(e);
-                }
-                while (!udpSocket.isClosed() && !this.isInterrupted())
+                droppedPackets++;
+                if (droppedPackets == 1 || droppedPackets % 1000 == 0)
+                    LOG.warn("Dropped " + droppedPackets + " audio packets that could not be decrypted");
+                return;
+            }
+
+            if (receiveHandler.canReceive())
+                receiveHandler.handleReceivedAudio(AudioPacket.fromDecrypted(packet.array(), audioLength));
+            if (receiveHandler.canReceiveUser() || receiveHandler.canReceiveCombined())
+            {
+                AudioReceiveStream stream = getReceiveStream(packet.getInt(AudioPacket.SSRC_INDEX));
+                if (stream != null)
                 {
-                    DatagramPacket receivedPacket = new DatagramPacket(new byte[1920], 1920);
-                    try
-                    {
-                        udpSocket.receive(receivedPacket);
-
-                        if (receiveHandler != null && receiveHandler.canReceive() && webSocket.getSecretKey() != null)
-                        {
-                            //Currently just gives the raw packet with STILL ENCODED DATA
-                            //This needs to be changed to ->
-                                //1) possibly buffer by 40-60ms (configurable)
-                                //2) decode from Opus -> raw PCM or another format as defined by the receiveHandler.
-                            AudioPacket decryptedPacket = AudioPacket.decryptAudioPacket(receivedPacket, webSocket.getSecretKey());
-
-                            receiveHandler.handleReceivedAudio(decryptedPacket);
-                        }
-                    }
-                    catch (SocketTimeoutException e)
-                    {
-                        //Ignore. We set a low timeout so that we wont block forever so we can properly shutdown the loop.
-                    }
-                    catch (SocketException e)
-                    {
-                        //The socket was closed while we were listening for the next packet.
-                        //This is expected. Ignore the exception. The thread will exit during the next while
-                        // iteration because the udpSocket.isClosed() will return true.
-                    }
-                    catch (Exception e)
-                    {
-                        LOG.log(e);
-                    }
+                    stream.receive(packet.getChar(AudioPacket.SEQ_INDEX), packet.getInt(AudioPacket.TIMESTAMP_INDEX),
+                            packet.array(), PacketCipher.AUDIO_OFFSET, audioLength, System.nanoTime());
                 }
             }
-        };
-        receiveThread.setDaemon(true);
-        receiveThread.start();
+        }
     }
 
-    private byte[] encodeToOpus(byte[] rawAudio)
+    /**
+     * Passes the mix of the previous tick to the receive handler. Called by the
+     * {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler} once per tick, the streams of the previous tick
+     * have all added their frames by then.
+     */
+    void mixFrame(long tick)
     {
-        ShortBuffer nonEncodedBuffer = ShortBuffer.allocate(rawAudio.length / 2);
-        ByteBuffer encoded = ByteBuffer.allocate(4096);
-        for (int i = 0; i < rawAudio.length; i += 2)
+        AudioReceiveHandler receiveHandler = this.receiveHandler;
+        if (tick == 0 || receiveHandler == null || !receiveHandler.canReceiveCombined())
+            return;
+        try
+        {
+            receiveHandler.handleCombinedAudio(mixer.take(tick - 1));
+        }
+        catch (Throwable t)
         {
-            int firstByte =  (0x000000FF & rawAudio[i]);      //Promotes to int and handles the fact that it was unsigned.
-            int secondByte = (0x000000FF & rawAudio[i + 1]);  //
+            LOG.log(t);
+        }
+    }
 
-            //Combines the 2 bytes into a short. Opus deals with unsigned shorts, not bytes.
-            short toShort = (short) ((firstByte << 8) | secondByte);
+    AudioMixer getMixer()
+    {
+        return mixer;
+    }
 
-            nonEncodedBuffer.put(toShort);
+    private AudioReceiveStream getReceiveStream(int ssrc)
+    {
+        for (AudioReceiveStream stream : receiveStreams)
+        {
+            if (stream.getSSRC() == ssrc)
+                return stream;
+        }
+        synchronized (this)
+        {
+            if (closed)
+                return null;
+            AudioReceiveStream stream = new AudioReceiveStream(this, ssrc, ssrcUsers.get(ssrc), receiveMinDelay, receiveMaxDelay);
+            AudioReceiveStream[] streams = Arrays.copyOf(receiveStreams, receiveStreams.length + 1);
+            streams[streams.length - 1] = stream;
+            receiveStreams = streams;
+            return stream;
         }
-        nonEncodedBuffer.flip();
+    }
 
-        //TODO: check for 0 / negative value for error.
-        int result = Opus.INSTANCE.opus_encode(opusEncoder, nonEncodedBuffer, OPUS_FRAME_SIZE, encoded, encoded.capacity());
+    private synchronized AudioReceiveStream[] removeReceiveStreams()
+    {
+        AudioReceiveStream[] streams = receiveStreams;
+        receiveStreams = new AudioReceiveStream[0];
+        return streams;
+    }
 
-        //ENCODING STOPS HERE
+    /**
+     * Starts filling the send buffer on a provider thread of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler},
+     * unless it is full or already being filled.
+     */
+    private void provideAhead(AudioSendHandler sendHandler)
+    {
+        if (sendHandler == null || sendFrames.isFull() || !sendHandler.canProvide() || !providing.compareAndSet(false, true))
+            return;
+        try
+        {
+            AudioScheduler.getInstance().provide(this::fillSendBuffer);
+        }
+        catch (RuntimeException e)
+        {
+            providing.set(false);
+            throw e;
+        }
+    }
 
-        byte[] audio = new byte[result];
-        encoded.get(audio);
-        return audio;
+    private void fillSendBuffer()
+    {
+        try
+        {
+            while (!sendFrames.isFull())
+            {
+                AudioSendHandler sendHandler = this.sendHandler;
+                if (provideFrame(sendHandler, sendFrames.nextFrame()) < 0)
+                    break;
+                sendFrames.add(sendHandler);
+            }
+        }
+        catch (Throwable t)
+        {
+            LOG.log(t);
+        }
+        finally
+        {
+            providing.set(false);
+        }
     }
 
-    private byte[] decodeFromOpus(byte[] encodedAudio)
+    /**
+     * Writes the opus packet of the next frame of the given handler to the target buffer.
+     *
+     * @return
+     *      The length of the packet, or -1 if there is nothing to send.
+     */
+    private int provideFrame(AudioSendHandler sendHandler, ByteBuffer target)
     {
-        return null;
+        if (sendHandler == null || !sendHandler.canProvide())
+            return -1;
+        if (sendHandler.isOpus())
+        {
+            //Passed through as it is, the handler writes straight into the target.
+            return sendHandler.provide20MsAudio(target) ? target.position() : -1;
+        }
+
+        ByteBuffer encoded;
+        if (sendHandler.isNativeSamples())
+            encoded = sendHandler.provide20MsAudio(encoder.getSampleBuffer()) ? encoder.encodeSamples() : null;
+        else
+            encoded = sendHandler.provide20MsAudio(encoder.getByteBuffer()) ? encoder.encodeBytes() : null;
+        if (encoded == null)
+            return -1;
+        int length = encoded.remaining();
+        target.put(encoded);
+        return length;
     }
 
     private void setSpeaking(boolean isSpeaking)
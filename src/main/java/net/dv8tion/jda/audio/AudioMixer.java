@@ -0,0 +1,102 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.entities.User;
+
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mixes the decoded audio of all users of an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}
+ * into one frame per tick of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler}.
+ * <p>
+ * The {@link net.dv8tion.jda.audio.AudioReceiveStream AudioReceiveStreams} add their frames to the tick that the RTP
+ * timestamp of the frame belongs to, while the connection takes the mix of the previous tick, whose frames are complete.
+ * Samples are summed into int accumulators and clipped once the frame is taken.
+ */
+class AudioMixer
+{
+    private static final int SLOTS = 4;
+
+    private final int[][] sums = new int[SLOTS][OpusEncoder.FRAME_SAMPLES];
+    private final long[] ticks = new long[SLOTS];
+    private final List<List<User>> users = new ArrayList<>(SLOTS);
+
+    AudioMixer()
+    {
+        Arrays.fill(ticks, -1);
+        for (int i = 0; i < SLOTS; i++)
+            users.add(new ArrayList<>());
+    }
+
+    /**
+     * Adds a decoded frame to the mix of a tick.
+     */
+    synchronized void add(long tick, ShortBuffer pcm, User user)
+    {
+        int slot = (int) (tick % SLOTS);
+        int[] sum = sums[slot];
+        if (ticks[slot] != tick)
+        {
+            //Whatever is left in this slot was never taken
+            Arrays.fill(sum, 0);
+            users.get(slot).clear();
+            ticks[slot] = tick;
+        }
+
+        int samples = Math.min(pcm.limit(), sum.length);
+        for (int i = 0; i < samples; i++)
+            sum[i] += pcm.get(i);
+        if (user != null)
+            users.get(slot).add(user);
+    }
+
+    /**
+     * Takes the mix of a tick.
+     *
+     * @return
+     *      The mixed audio, silence if nobody spoke during the tick.
+     */
+    synchronized CombinedAudio take(long tick)
+    {
+        short[] samples = new short[OpusEncoder.FRAME_SAMPLES];
+        int slot = (int) (tick % SLOTS);
+        if (ticks[slot] != tick)
+            return new CombinedAudio(Collections.emptyList(), samples);
+
+        int[] sum = sums[slot];
+        for (int i = 0; i < samples.length; i++)
+        {
+            int sample = sum[i];
+            if (sample > Short.MAX_VALUE)
+                samples[i] = Short.MAX_VALUE;
+            else if (sample < Short.MIN_VALUE)
+                samples[i] = Short.MIN_VALUE;
+            else
+                samples[i] = (short) sample;
+        }
+        List<User> mixed = Collections.unmodifiableList(new ArrayList<>(users.get(slot)));
+
+        Arrays.fill(sum, 0);
+        users.get(slot).clear();
+        ticks[slot] = -1;
+        return new CombinedAudio(mixed, samples);
+    }
+}
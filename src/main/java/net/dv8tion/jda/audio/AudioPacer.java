@@ -0,0 +1,82 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+/**
+ * Decides when the ticks of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler} are due.
+ * <p>
+ * Every tick has an absolute deadline, the start plus its index times the period, so a tick that runs late or a wait
+ * that returns early never shifts the ticks after it. Waiting parks until shortly before the deadline and spins for
+ * the rest if a spin time is set, as parking alone often oversleeps by up to a millisecond.
+ * After a stall, the overdue ticks are run right after each other, but at most {@value #CATCH_UP_TICKS} of them.
+ * Older ticks are skipped, so a long stall does not turn into a long burst of frames.
+ */
+class AudioPacer
+{
+    static final int CATCH_UP_TICKS = 5;
+
+    private final AudioClock clock;
+    private final long period;
+    private final long start;
+    private volatile long spinNanos;
+    private long nextTick = 0;
+
+    AudioPacer(AudioClock clock, long period, long spinNanos)
+    {
+        this.clock = clock;
+        this.period = period;
+        this.spinNanos = spinNanos;
+        this.start = clock.nanoTime() + period;
+    }
+
+    AudioClock getClock()
+    {
+        return clock;
+    }
+
+    void setSpinNanos(long spinNanos)
+    {
+        this.spinNanos = spinNanos;
+    }
+
+    long getDeadline(long tick)
+    {
+        return start + tick * period;
+    }
+
+    /**
+     * Waits until the next tick is due.
+     *
+     * @return
+     *      The index of the tick. It is more than one above the previous index if ticks were skipped.
+     */
+    long awaitTick()
+    {
+        long deadline = getDeadline(nextTick);
+        long wait;
+        while ((wait = deadline - clock.nanoTime()) > 0)
+        {
+            long spin = spinNanos;
+            if (wait > spin)
+                clock.parkNanos(wait - spin);
+        }
+
+        long overdue = -wait / period;
+        if (overdue > CATCH_UP_TICKS)
+            nextTick += overdue - CATCH_UP_TICKS;
+        return nextTick++;
+    }
+}
@@ -15,8 +15,6 @@
  */
 package net.dv8tion.jda.audio;
 
-import com.iwebpp.crypto.TweetNaclFast;
-
 import java.net.DatagramPacket;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -87,14 +85,22 @@ public class AudioPacket
         this.encodedAudio = encodedAudio;
 
         ByteBuffer buffer = ByteBuffer.allocate(RTP_HEADER_BYTE_LENGTH + encodedAudio.length);
+        writeHeader(buffer, seq, timestamp, ssrc);                          //0 - 11
+        System.arraycopy(encodedAudio, 0, buffer.array(), RTP_HEADER_BYTE_LENGTH, encodedAudio.length);//12 - n
+        this.rawPacket = buffer.array();
+
+    }
+
+    /**
+     * Writes the RTP header to the start of the buffer, without changing its position.
+     */
+    static void writeHeader(ByteBuffer buffer, char seq, int timestamp, int ssrc)
+    {
         buffer.put(RTP_VERSION_PAD_EXTEND_INDEX, RTP_VERSION_PAD_EXTEND);   //0
         buffer.put(RTP_PAYLOAD_INDEX, RTP_PAYLOAD_TYPE);                    //1
         buffer.putChar(SEQ_INDEX, seq);                                     //2 - 3
         buffer.putInt(TIMESTAMP_INDEX, timestamp);                          //4 - 7
         buffer.putInt(SSRC_INDEX, ssrc);                                    //8 - 11
-        System.arraycopy(encodedAudio, 0, buffer.array(), RTP_HEADER_BYTE_LENGTH, encodedAudio.length);//12 - n
-        this.rawPacket = buffer.array();
-
     }
 
     public byte[] getNonce()
@@ -135,25 +141,35 @@ public class AudioPacket
         return new DatagramPacket(getRawPacket(), rawPacket.length, address);
     }
 
+    /**
+     * <b>This method is deprecated! It sets up a new cipher for every packet.</b>
+     * <p>
+     * The {@link net.dv8tion.jda.audio.AudioConnection AudioConnection} encrypts its packets in place
+     * with one cipher per connection instead.
+     *
+     * @param address
+     *          The address to send the packet to.
+     * @param secretKey
+     *          The secret key of the voice session.
+     * @return
+     *      The encrypted packet.
+     */
+    @Deprecated
     public DatagramPacket asEncryptedUdpPacket(InetSocketAddress address, byte[] secretKey)
     {
-        //Xsalsa20's Nonce is 24 bytes long, however RTP (and consequently Discord)'s nonce is
-        // only 12 bytes long, so we need to create a 24 byte array, and copy the 12 byte nonce into it.
-        // we will leave the extra bytes as nulls. (Java sets non-populated bytes as 0).
-        byte[] extendedNonce = new byte[XSALSA20_NONCE_LENGTH];
-
-        //Copy the RTP nonce into our Xsalsa20 nonce array.
-        // Note, it doesn't fill the Xsalsa20 nonce array completely.
-        System.arraycopy(getNonce(), 0, extendedNonce, 0, RTP_HEADER_BYTE_LENGTH);
-
-        //Create our SecretBox encoder with the secretKey provided by Discord.
-        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(secretKey);
-        byte[] encryptedAudio = boxer.box(encodedAudio, extendedNonce);
+        return asEncryptedUdpPacket(address, new PacketCipher(secretKey));
+    }
 
-        //Create a new temp audio packet using the encrypted audio so that we don't
-        // need to write extra code to create the rawPacket with the encryptedAudio.
-        //Use the temp packet to create a UdpPacket.
-        return new AudioPacket(seq, timestamp, ssrc, encryptedAudio).asUdpPacket(address);
+    DatagramPacket asEncryptedUdpPacket(InetSocketAddress address, PacketCipher cipher)
+    {
+        //The RTP header doubles as the nonce. The audio is copied behind the space of the authenticator
+        // and encrypted in place, so the packet only has to be built once.
+        byte[] packet = new byte[PacketCipher.AUDIO_OFFSET + encodedAudio.length];
+        System.arraycopy(rawPacket, 0, packet, 0, RTP_HEADER_BYTE_LENGTH);
+        System.arraycopy(encodedAudio, 0, packet, PacketCipher.AUDIO_OFFSET, encodedAudio.length);
+
+        int length = cipher.encrypt(packet, encodedAudio.length);
+        return new DatagramPacket(packet, length, address);
     }
 
     public static AudioPacket createEchoPacket(DatagramPacket packet, int ssrc)
@@ -165,20 +181,43 @@ public class AudioPacket
         return new AudioPacket(buffer.array());
     }
 
-    public static AudioPacket decryptAudioPacket(DatagramPacket packet, byte[] secretKey)
+    /**
+     * Creates the packet of a received packet that was decrypted in place by a {@link net.dv8tion.jda.audio.PacketCipher PacketCipher}.
+     */
+    static AudioPacket fromDecrypted(byte[] packet, int audioLength)
     {
-        TweetNaclFast.SecretBox boxer = new TweetNaclFast.SecretBox(secretKey);
-        AudioPacket encryptedPacket = new AudioPacket(packet);
-
-        byte[] extendedNonce = new byte[XSALSA20_NONCE_LENGTH];
-        System.arraycopy(encryptedPacket.getNonce(), 0, extendedNonce, 0, RTP_HEADER_BYTE_LENGTH);
+        byte[] rawPacket = new byte[RTP_HEADER_BYTE_LENGTH + audioLength];
+        System.arraycopy(packet, 0, rawPacket, 0, RTP_HEADER_BYTE_LENGTH);
+        System.arraycopy(packet, PacketCipher.AUDIO_OFFSET, rawPacket, RTP_HEADER_BYTE_LENGTH, audioLength);
+        return new AudioPacket(rawPacket);
+    }
 
-        byte[] decryptedAudio = boxer.open(encryptedPacket.getEncodedAudio(), extendedNonce);
-        byte[] decryptedRawPacket = new byte[RTP_HEADER_BYTE_LENGTH + decryptedAudio.length];
+    /**
+     * <b>This method is deprecated! It sets up a new cipher for every packet.</b>
+     * <p>
+     * The {@link net.dv8tion.jda.audio.AudioConnection AudioConnection} decrypts received packets in place
+     * with one cipher per connection instead.
+     *
+     * @param packet
+     *          The received packet.
+     * @param secretKey
+     *          The secret key of the voice session.
+     * @return
+     *      The decrypted packet or null if it could not be decrypted.
+     */
+    @Deprecated
+    public static AudioPacket decryptAudioPacket(DatagramPacket packet, byte[] secretKey)
+    {
+        return decryptAudioPacket(packet, new PacketCipher(secretKey));
+    }
 
-        System.arraycopy(encryptedPacket.getNonce(), 0, decryptedRawPacket, 0, RTP_HEADER_BYTE_LENGTH);
-        System.arraycopy(decryptedAudio, 0, decryptedRawPacket, RTP_HEADER_BYTE_LENGTH, decryptedAudio.length);
+    static AudioPacket decryptAudioPacket(DatagramPacket packet, PacketCipher cipher)
+    {
+        byte[] data = Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength());
+        int audioLength = cipher.decrypt(data, data.length);
+        if (audioLength < 0)
+            return null;
 
-        return new AudioPacket(decryptedRawPacket);
+        return fromDecrypted(data, audioLength);
     }
 }
@@ -15,8 +15,63 @@
  */
 package net.dv8tion.jda.audio;
 
+/**
+ * Handles the audio received by an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}.
+ * <p>
+ * Audio can be received in two forms:
+ * <ul>
+ *     <li>{@link #handleReceivedAudio(AudioPacket)}: every packet as soon as it arrives, decrypted but still opus encoded.
+ *     Used if {@link #canReceive()} returns true.</li>
+ *     <li>{@link #handleUserAudio(UserAudio)}: 20ms of decoded PCM per speaking user, reordered and with lost packets
+ *     concealed by a jitter buffer. Used if {@link #canReceiveUser()} returns true.</li>
+ *     <li>{@link #handleCombinedAudio(CombinedAudio)}: 20ms of the decoded PCM of all users mixed together, every 20ms.
+ *     Used if {@link #canReceiveCombined()} returns true.</li>
+ * </ul>
+ * Decoded audio is delivered by the shared worker pool of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler},
+ * so handlers should hand off anything slow, like writing to disk, instead of blocking.
+ */
 public interface AudioReceiveHandler
 {
     boolean canReceive();
     void handleReceivedAudio(AudioPacket packet);
+
+    /**
+     * Whether this handler wants decoded audio per user through {@link #handleUserAudio(UserAudio)}.
+     *
+     * @return
+     *      True to receive decoded audio. Default: false
+     */
+    default boolean canReceiveUser()
+    {
+        return false;
+    }
+
+    /**
+     * Handles the next 20ms of decoded audio of a user. Called every 20ms for every user that is currently speaking.
+     *
+     * @param userAudio
+     *          The decoded audio.
+     */
+    default void handleUserAudio(UserAudio userAudio) {}
+
+    /**
+     * Whether this handler wants the decoded audio of all users mixed together through
+     * {@link #handleCombinedAudio(CombinedAudio)}.
+     *
+     * @return
+     *      True to receive mixed audio. Default: false
+     */
+    default boolean canReceiveCombined()
+    {
+        return false;
+    }
+
+    /**
+     * Handles the next 20ms of the mixed audio of all users. Called every 20ms while connected, with silence
+     * if nobody is speaking.
+     *
+     * @param combinedAudio
+     *          The mixed audio.
+     */
+    default void handleCombinedAudio(CombinedAudio combinedAudio) {}
 }
@@ -0,0 +1,365 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.entities.User;
+
+import java.nio.ShortBuffer;
+
+/**
+ * The received audio of one SSRC, meaning one {@link net.dv8tion.jda.entities.User User}, of an
+ * {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}.
+ * <p>
+ * Packets are put into an adaptive jitter buffer by the receiving thread. The buffer reorders them by sequence
+ * and holds back playout until it covers the current jitter estimate, which is kept between the minimum and maximum
+ * delay of the connection. Once per tick of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler} a worker
+ * takes the next frame, decodes it and passes it to the {@link net.dv8tion.jda.audio.AudioReceiveHandler AudioReceiveHandler}.
+ * Missing frames are concealed. A stream that stops receiving packets stops playing and is no longer ticked.
+ * <p>
+ * If the handler wants combined audio, every frame is also added to the {@link net.dv8tion.jda.audio.AudioMixer AudioMixer}
+ * of the connection, at the tick its RTP timestamp maps to. Frames of silence are neither decoded nor mixed unless
+ * the handler also wants the audio of every user.
+ */
+class AudioReceiveStream
+{
+    static final int SLOTS = 32;
+    static final int CATCH_UP_FRAMES = 2;
+    static final int MAX_DELAY = (SLOTS - CATCH_UP_FRAMES - 2) * AudioConnection.OPUS_FRAME_TIME_AMOUNT;
+
+    private static final int MASK = SLOTS - 1;
+    private static final int MAX_PAYLOAD = AudioScheduler.RECEIVE_BUFFER_SIZE - PacketCipher.AUDIO_OFFSET;
+    private static final int IDLE_TICKS = 1000 / AudioConnection.OPUS_FRAME_TIME_AMOUNT;
+    private static final long FRAME_NANOS = AudioConnection.OPUS_FRAME_TIME_AMOUNT * 1000000L;
+
+    //Discord sends a few of these opus frames when a user stops speaking
+    private static final byte[] SILENCE_FRAME = {(byte) 0xF8, (byte) 0xFF, (byte) 0xFE};
+
+    private static final int DECODE = 0;
+    private static final int RECOVER = 1;
+    private static final int CONCEAL = 2;
+
+    private final AudioConnection connection;
+    private final int ssrc;
+    private final int minFrames;
+    private final int maxFrames;
+    private final OpusDecoder decoder = new OpusDecoder();
+    private volatile User user;
+
+    //Guarded by this, shared between the receiving thread and the worker
+    private final byte[][] payloads = new byte[SLOTS][MAX_PAYLOAD];
+    private final int[] lengths = new int[SLOTS];
+    private final int[] timestamps = new int[SLOTS];
+    private final int[] sequences = new int[SLOTS];
+    private int buffered = 0;
+    private int firstSeq;
+    private char newestSeq;
+    private boolean playing = false;
+    private char nextSeq;
+    private int nextTimestamp;
+    private int targetFrames;
+    private long lastArrival = 0;
+    private int lastTimestamp;
+    private long jitter = 0;
+    private boolean scheduled = false;
+    private int idleTicks = 0;
+    private int emptyTicks = 0;
+
+    //Only accessed by the worker
+    private final byte[] frame = new byte[MAX_PAYLOAD];
+    private boolean mixAligned = false;
+    private long mixBaseTick;
+    private int mixBaseTimestamp;
+
+    AudioReceiveStream(AudioConnection connection, int ssrc, User user, int minDelay, int maxDelay)
+    {
+        this.connection = connection;
+        this.ssrc = ssrc;
+        this.user = user;
+        this.minFrames = Math.max(1, minDelay / AudioConnection.OPUS_FRAME_TIME_AMOUNT);
+        this.maxFrames = Math.max(minFrames, maxDelay / AudioConnection.OPUS_FRAME_TIME_AMOUNT);
+        this.targetFrames = minFrames;
+        for (int i = 0; i < SLOTS; i++)
+            sequences[i] = -1;
+    }
+
+    int getSSRC()
+    {
+        return ssrc;
+    }
+
+    AudioConnection getConnection()
+    {
+        return connection;
+    }
+
+    void setUser(User user)
+    {
+        this.user = user;
+    }
+
+    /**
+     * Buffers a received packet. Called by the receiving thread.
+     */
+    synchronized void receive(char seq, int timestamp, byte[] data, int offset, int length, long arrival)
+    {
+        if (length > MAX_PAYLOAD)
+            return;
+
+        updateJitter(timestamp, arrival);
+
+        if (playing && (short) (seq - nextSeq) < 0)
+        {
+            //It arrived after its frame was already concealed.
+            return;
+        }
+        if (!playing)
+        {
+            if (buffered == 0)
+            {
+                firstSeq = seq;
+                newestSeq = seq;
+            }
+            else if ((short) (seq - firstSeq) < 0)
+            {
+                if ((short) (newestSeq - seq) >= SLOTS)
+                    return;
+                firstSeq = seq;
+            }
+        }
+
+        //Make room if the sender got a whole buffer ahead of us.
+        char base = playing ? nextSeq : (char) firstSeq;
+        if ((short) (seq - base) >= SLOTS)
+        {
+            char newBase = (char) (seq - SLOTS + 1);
+            for (int i = 0; i < SLOTS && buffered > 0 && base != newBase; i++)
+            {
+                remove(base);
+                base++;
+            }
+            if (playing)
+            {
+                nextTimestamp += (char) (newBase - nextSeq) * AudioConnection.OPUS_FRAME_SIZE;
+                nextSeq = newBase;
+            }
+            else
+            {
+                firstSeq = newBase;
+            }
+        }
+        if ((short) (seq - newestSeq) > 0 || buffered == 0)
+            newestSeq = seq;
+
+        int slot = seq & MASK;
+        if (sequences[slot] == seq)
+            return;
+        sequences[slot] = seq;
+        timestamps[slot] = timestamp;
+        lengths[slot] = length;
+        System.arraycopy(data, offset, payloads[slot], 0, length);
+        buffered++;
+
+        idleTicks = 0;
+        if (!scheduled)
+        {
+            scheduled = true;
+            AudioScheduler.getInstance().registerStream(this);
+        }
+    }
+
+    /**
+     * Plays the next frame. Called by a worker of the {@link net.dv8tion.jda.audio.AudioScheduler AudioScheduler}
+     * once per tick.
+     */
+    void playFrame(long tick)
+    {
+        int mode;
+        int length;
+        int timestamp;
+        synchronized (this)
+        {
+            if (!playing)
+            {
+                if (buffered == 0)
+                {
+                    if (++idleTicks >= IDLE_TICKS)
+                    {
+                        scheduled = false;
+                        AudioScheduler.getInstance().unregisterStream(this);
+                    }
+                    return;
+                }
+                if (buffered < targetFrames)
+                    return;
+                playing = true;
+                emptyTicks = 0;
+                mixAligned = false;
+                nextSeq = (char) firstSeq;
+                while (sequences[nextSeq & MASK] != nextSeq)
+                    nextSeq++;
+                nextTimestamp = timestamps[nextSeq & MASK];
+            }
+            if (buffered == 0)
+            {
+                //Packets were lost or are late, conceal them for as long as the delay would have covered.
+                //After that the user most likely stopped talking and the next packet starts buffering again.
+                if (++emptyTicks > targetFrames)
+                {
+                    playing = false;
+                    lastArrival = 0;
+                    return;
+                }
+            }
+            else
+            {
+                emptyTicks = 0;
+            }
+
+            //The delay shrank, skip a frame to catch up.
+            if (buffered > targetFrames + CATCH_UP_FRAMES && sequences[nextSeq & MASK] == nextSeq)
+            {
+                remove(nextSeq);
+                nextSeq++;
+                nextTimestamp += AudioConnection.OPUS_FRAME_SIZE;
+            }
+
+            int slot = nextSeq & MASK;
+            int nextSlot = (nextSeq + 1) & MASK;
+            if (sequences[slot] == nextSeq)
+            {
+                mode = DECODE;
+                length = lengths[slot];
+                timestamp = timestamps[slot];
+                System.arraycopy(payloads[slot], 0, frame, 0, length);
+                remove(nextSeq);
+            }
+            else if (sequences[nextSlot] == (char) (nextSeq + 1))
+            {
+                mode = RECOVER;
+                length = lengths[nextSlot];
+                timestamp = nextTimestamp;
+                System.arraycopy(payloads[nextSlot], 0, frame, 0, length);
+            }
+            else
+            {
+                mode = CONCEAL;
+                length = 0;
+                timestamp = nextTimestamp;
+            }
+            nextSeq++;
+            nextTimestamp = timestamp + AudioConnection.OPUS_FRAME_SIZE;
+        }
+
+        AudioReceiveHandler handler = connection.getReceivingHandler();
+        if (handler == null)
+            return;
+        boolean receiveUser = handler.canReceiveUser();
+        boolean receiveCombined = handler.canReceiveCombined();
+        boolean silent = mode == DECODE && isSilence(frame, length);
+        if (!receiveUser && (!receiveCombined || silent))
+            return;
+
+        ShortBuffer pcm;
+        if (mode == DECODE)
+            pcm = decoder.decode(frame, length);
+        else if (mode == RECOVER)
+            pcm = decoder.recover(frame, length);
+        else
+            pcm = decoder.conceal();
+        if (pcm == null)
+            return;
+
+        if (receiveCombined && !silent)
+            connection.getMixer().add(getMixTick(tick, timestamp), pcm, user);
+        if (!receiveUser)
+            return;
+        short[] samples = new short[pcm.remaining()];
+        pcm.get(samples);
+        try
+        {
+            handler.handleUserAudio(new UserAudio(user, ssrc, timestamp, samples, mode != DECODE));
+        }
+        catch (Throwable t)
+        {
+            AudioConnection.LOG.log(t);
+        }
+    }
+
+    void close()
+    {
+        synchronized (this)
+        {
+            if (scheduled)
+            {
+                scheduled = false;
+                AudioScheduler.getInstance().unregisterStream(this);
+            }
+        }
+        decoder.close();
+    }
+
+    //Maps the RTP timestamp of a frame to a tick, so the frames of all users line up in the mix.
+    private long getMixTick(long tick, int timestamp)
+    {
+        if (mixAligned)
+        {
+            long mixTick = mixBaseTick + (timestamp - mixBaseTimestamp) / AudioConnection.OPUS_FRAME_SIZE;
+            //Skipping a frame to catch up puts the stream a tick ahead, anything else aligns it again.
+            if (mixTick == tick || mixTick == tick + 1)
+                return mixTick;
+        }
+        mixAligned = true;
+        mixBaseTick = tick;
+        mixBaseTimestamp = timestamp;
+        return tick;
+    }
+
+    private static boolean isSilence(byte[] frame, int length)
+    {
+        if (length != SILENCE_FRAME.length)
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (frame[i] != SILENCE_FRAME[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void remove(int seq)
+    {
+        int slot = seq & MASK;
+        if (sequences[slot] == seq)
+        {
+            sequences[slot] = -1;
+            buffered--;
+        }
+    }
+
+    //Interarrival jitter as described by RFC 3550, which picks the playout delay.
+    private void updateJitter(int timestamp, long arrival)
+    {
+        if (lastArrival != 0)
+        {
+            long transit = (arrival - lastArrival) - (timestamp - lastTimestamp) * FRAME_NANOS / AudioConnection.OPUS_FRAME_SIZE;
+            jitter += (Math.abs(transit) - jitter) / 16;
+            int frames = (int) ((FRAME_NANOS + 3 * jitter + FRAME_NANOS - 1) / FRAME_NANOS);
+            targetFrames = Math.max(minFrames, Math.min(maxFrames, frames));
+        }
+        lastArrival = arrival;
+        lastTimestamp = timestamp;
+    }
+}
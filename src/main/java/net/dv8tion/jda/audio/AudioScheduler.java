@@ -0,0 +1,600 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.utils.SimpleLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives all {@link net.dv8tion.jda.audio.AudioConnection AudioConnections} of the JVM.
+ * <p>
+ * A single pacer thread ticks every {@value net.dv8tion.jda.audio.AudioConnection#OPUS_FRAME_TIME_AMOUNT}ms and
+ * splits the active connections between a small, fixed pool of workers that send one frame for each of them.
+ * Received packets of all connections are read by one selector thread, and the same workers decode one frame
+ * of every speaking user per tick. A timer thread runs the keep-alives
+ * and connection timeouts of the voice connections, so none of them need a thread of their own.
+ * <p>
+ * Connections with a send buffer have their frames provided ahead of time by a bounded pool of provider threads,
+ * so a handler that blocks, for example on a slow stream, does not delay the tick. At most one provider task runs
+ * per connection, further connections wait in the queue of the pool while all provider threads are busy.
+ * <p>
+ * Ticks are due at absolute deadlines of the {@link net.dv8tion.jda.audio.AudioClock AudioClock}, so late ticks
+ * do not add up to drift. A tick waits for the workers to finish the previous one. After a stall, up to
+ * {@value net.dv8tion.jda.audio.AudioPacer#CATCH_UP_TICKS} overdue ticks are run right after each other,
+ * older ones are skipped. The lateness of every tick and the amount of skipped ticks can be read from this class,
+ * how late the frames of each connection were sent from {@link net.dv8tion.jda.audio.AudioConnection#getSendJitter()}.
+ */
+public class AudioScheduler
+{
+    public static final SimpleLog LOG = SimpleLog.getLog("JDAAudioScheduler");
+    public static final int DEFAULT_POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    public static final int DEFAULT_PROVIDER_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
+    public static final int RECEIVE_BUFFER_SIZE = 1920;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(AudioConnection.OPUS_FRAME_TIME_AMOUNT);
+    private static final long WORKER_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static AudioScheduler instance;
+
+    private final Set<AudioConnection> connections = new CopyOnWriteArraySet<>();
+    private final Set<AudioReceiveStream> receiveStreams = new CopyOnWriteArraySet<>();
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor providers;
+    private volatile int poolSize = DEFAULT_POOL_SIZE;
+    private volatile int providerPoolSize = DEFAULT_PROVIDER_POOL_SIZE;
+    private volatile AudioClock clock = AudioClock.SYSTEM;
+    private volatile long spinNanos = 0;
+    private volatile Thread pacerThread;
+    private AudioPacer pacer;
+
+    private final AtomicInteger runningBatches = new AtomicInteger(0);
+    private final AtomicLong ticks = new AtomicLong(0);
+    private final AtomicLong skippedTicks = new AtomicLong(0);
+    private final AtomicLong lateTicks = new AtomicLong(0);
+    private final AtomicLong totalLateness = new AtomicLong(0);
+    private volatile long lastLateness = 0;
+    private volatile long maxLateness = 0;
+    private volatile long lastTickDuration = 0;
+
+    private Selector selector;
+    private Thread receiveThread;
+    private final Queue<AudioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The scheduler shared by all JDA instances of this JVM.
+     *
+     * @return
+     *      The shared AudioScheduler.
+     */
+    public static synchronized AudioScheduler getInstance()
+    {
+        if (instance == null)
+            instance = new AudioScheduler();
+        return instance;
+    }
+
+    private AudioScheduler()
+    {
+        timer = new ScheduledThreadPoolExecutor(1, r ->
+        {
+            Thread t = new Thread(r, "JDA AudioScheduler Timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        workers = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread t = new Thread(r, "JDA AudioScheduler Worker " + threadCount.incrementAndGet());
+            t.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+            t.setDaemon(true);
+            return t;
+        });
+        workers.allowCoreThreadTimeOut(true);
+
+        //At most one provider task is queued or running per connection, so the queue is bounded by the connections.
+        AtomicInteger providerCount = new AtomicInteger(0);
+        providers = new ThreadPoolExecutor(providerPoolSize, providerPoolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread t = new Thread(r, "JDA AudioScheduler Provider " + providerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        providers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the amount of threads that send the frames of the active connections.
+     * <p>
+     * Default: half of the available processors, at least 1 and at most 4
+     *
+     * @param poolSize
+     *      The amount of threads. Has to be at least 1.
+     */
+    public synchronized void setPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("The audio pool-size has to be at least 1");
+        if (poolSize > workers.getMaximumPoolSize())
+        {
+            workers.setMaximumPoolSize(poolSize);
+            workers.setCorePoolSize(poolSize);
+        }
+        else
+        {
+            workers.setCorePoolSize(poolSize);
+            workers.setMaximumPoolSize(poolSize);
+        }
+        this.poolSize = poolSize;
+    }
+
+    public int getPoolSize()
+    {
+        return poolSize;
+    }
+
+    /**
+     * Sets the amount of threads that fill the send buffers of the connections ahead of time.
+     * A send handler that blocks holds one of them until it returns, so this should be at least the amount
+     * of handlers that are expected to block at the same time.
+     * <p>
+     * Default: the amount of available processors, at least 4
+     *
+     * @param poolSize
+     *      The amount of threads. Has to be at least 1.
+     */
+    public synchronized void setProviderPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("The audio provider pool-size has to be at least 1");
+        if (poolSize > providers.getMaximumPoolSize())
+        {
+            providers.setMaximumPoolSize(poolSize);
+            providers.setCorePoolSize(poolSize);
+        }
+        else
+        {
+            providers.setCorePoolSize(poolSize);
+            providers.setMaximumPoolSize(poolSize);
+        }
+        this.providerPoolSize = poolSize;
+    }
+
+    public int getProviderPoolSize()
+    {
+        return providerPoolSize;
+    }
+
+    /**
+     * Sets the clock that paces the ticks. Only possible while there are no active connections.
+     * <p>
+     * Default: {@link net.dv8tion.jda.audio.AudioClock#SYSTEM}
+     *
+     * @param clock
+     *      The clock to use.
+     *
+     * @throws java.lang.IllegalStateException
+     *      If connections are active.
+     */
+    public synchronized void setClock(AudioClock clock)
+    {
+        if (clock == null)
+            throw new IllegalArgumentException("The audio clock may not be null");
+        if (pacerThread != null)
+            throw new IllegalStateException("The audio clock cannot be replaced while connections are active");
+        this.clock = clock;
+    }
+
+    public AudioClock getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * Sets how long before a tick is due the pacer stops parking and spins instead. Parking often wakes up
+     * late by up to a millisecond, spinning is exact but keeps a core busy for that time every tick.
+     * <p>
+     * Default: 0, which only parks
+     *
+     * @param spinTime
+     *      The spin time, at most one tick.
+     * @param unit
+     *      The unit of the spin time.
+     */
+    public synchronized void setSpinTime(long spinTime, TimeUnit unit)
+    {
+        long spinNanos = unit.toNanos(spinTime);
+        if (spinNanos < 0 || spinNanos > TICK_NANOS)
+            throw new IllegalArgumentException("The spin time has to be between 0 and " + AudioConnection.OPUS_FRAME_TIME_AMOUNT + "ms");
+        this.spinNanos = spinNanos;
+        if (pacer != null)
+            pacer.setSpinNanos(spinNanos);
+    }
+
+    public long getSpinTime(TimeUnit unit)
+    {
+        return unit.convert(spinNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The amount of active connections.
+     *
+     * @return
+     *      The amount of connections that are sent frames to and received packets from.
+     */
+    public int getConnectionCount()
+    {
+        return connections.size();
+    }
+
+    /**
+     * The amount of users whose received audio is currently decoded.
+     *
+     * @return
+     *      The amount of receive streams of all connections that are not idle.
+     */
+    public int getReceiveStreamCount()
+    {
+        return receiveStreams.size();
+    }
+
+    /**
+     * The amount of ticks since the scheduler started.
+     *
+     * @return
+     *      The total amount of ticks, including skipped ones.
+     */
+    public long getTickCount()
+    {
+        return ticks.get();
+    }
+
+    /**
+     * The amount of ticks that were skipped because they were more than
+     * {@value net.dv8tion.jda.audio.AudioPacer#CATCH_UP_TICKS} ticks overdue, for example because the workers
+     * were still sending the frames of earlier ticks. Every skipped tick is a frame that was not sent for every
+     * active connection.
+     *
+     * @return
+     *      The total amount of skipped ticks.
+     */
+    public long getSkippedTicks()
+    {
+        return skippedTicks.get();
+    }
+
+    /**
+     * The amount of ticks that started more than a whole frame late.
+     *
+     * @return
+     *      The total amount of late ticks.
+     */
+    public long getLateTicks()
+    {
+        return lateTicks.get();
+    }
+
+    /**
+     * How late the last tick started compared to its scheduled time.
+     *
+     * @param unit
+     *      The unit of the returned value.
+     * @return
+     *      The lateness of the last tick.
+     */
+    public long getLastLateness(TimeUnit unit)
+    {
+        return unit.convert(lastLateness, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLateness(TimeUnit unit)
+    {
+        return unit.convert(maxLateness, TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageLateness(TimeUnit unit)
+    {
+        long count = ticks.get();
+        return count == 0 ? 0 : unit.convert(totalLateness.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * How long it took the workers to send and decode the frames of all connections in the last completed tick.
+     *
+     * @param unit
+     *      The unit of the returned value.
+     * @return
+     *      The duration of the last tick.
+     */
+    public long getLastTickDuration(TimeUnit unit)
+    {
+        return unit.convert(lastTickDuration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs the given task once on the timer thread. Tasks have to be short, as they delay the other tasks.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        return timer.schedule(wrap(task), delay, unit);
+    }
+
+    /**
+     * Runs the given task periodically on the timer thread. Tasks have to be short, as they delay the other tasks.
+     */
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit)
+    {
+        return timer.scheduleAtFixedRate(wrap(task), initialDelay, period, unit);
+    }
+
+    /**
+     * Runs the given task on a provider thread, which fills the send buffer of a connection.
+     */
+    void provide(Runnable task)
+    {
+        providers.execute(task);
+    }
+
+    /**
+     * Starts sending frames for and receiving packets from the given connection.
+     */
+    synchronized void register(AudioConnection connection)
+    {
+        if (!connections.add(connection))
+            return;
+        pendingRegistrations.add(connection);
+        startReceiving();
+        selector.wakeup();
+        if (pacerThread == null)
+        {
+            //A pacer thread that was just stopped may still be waiting for its tick, it exits once that is due.
+            AudioPacer pacer = new AudioPacer(clock, TICK_NANOS, spinNanos);
+            this.pacer = pacer;
+            pacerThread = new Thread(() -> pace(pacer), "JDA AudioScheduler Pacer");
+            pacerThread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+            pacerThread.setDaemon(true);
+            pacerThread.start();
+        }
+    }
+
+    synchronized void unregister(AudioConnection connection)
+    {
+        if (!connections.remove(connection))
+            return;
+        SelectionKey key = connection.getUdpChannel().keyFor(selector);
+        if (key != null)
+            key.cancel();
+        if (connections.isEmpty() && pacerThread != null)
+        {
+            pacerThread = null;
+            pacer = null;
+        }
+    }
+
+    /**
+     * Starts decoding a frame of the given stream every tick.
+     */
+    void registerStream(AudioReceiveStream stream)
+    {
+        receiveStreams.add(stream);
+    }
+
+    void unregisterStream(AudioReceiveStream stream)
+    {
+        receiveStreams.remove(stream);
+    }
+
+    private void pace(AudioPacer pacer)
+    {
+        AudioClock clock = pacer.getClock();
+        long expected = 0;
+        while (pacerThread == Thread.currentThread())
+        {
+            try
+            {
+                long tick = pacer.awaitTick();
+                if (pacerThread != Thread.currentThread())
+                    return;
+                if (tick > expected)
+                {
+                    long skipped = skippedTicks.addAndGet(tick - expected);
+                    ticks.addAndGet(tick - expected);
+                    if (skipped == tick - expected || skipped / 1000 != (skipped - tick + expected) / 1000)
+                        LOG.warn("Audio ticks fell more than " + AudioPacer.CATCH_UP_TICKS + " ticks behind. Skipped " + skipped + " ticks so far.");
+                }
+                expected = tick + 1;
+
+                //The workers finish the previous tick first. If that takes too long, the pacer skips the ticks it missed.
+                while (runningBatches.get() > 0)
+                    clock.parkNanos(WORKER_POLL_NANOS);
+                tick(clock, tick, pacer.getDeadline(tick));
+            }
+            catch (Throwable t)
+            {
+                LOG.log(t);
+            }
+        }
+    }
+
+    private void tick(AudioClock clock, long tick, long deadline)
+    {
+        long start = clock.nanoTime();
+        long lateness = Math.max(0, start - deadline);
+        ticks.incrementAndGet();
+        lastLateness = lateness;
+        if (lateness > maxLateness)
+            maxLateness = lateness;
+        totalLateness.addAndGet(lateness);
+        if (lateness > TICK_NANOS)
+        {
+            long late = lateTicks.incrementAndGet();
+            if (late == 1 || late % 1000 == 0)
+                LOG.warn("Audio tick started " + TimeUnit.NANOSECONDS.toMillis(lateness) + "ms late. " + late + " late ticks so far.");
+        }
+
+        AudioConnection[] active = connections.toArray(new AudioConnection[0]);
+        AudioReceiveStream[] streams = receiveStreams.toArray(new AudioReceiveStream[0]);
+        if (active.length == 0 && streams.length == 0)
+            return;
+        int batches = Math.min(poolSize, Math.max(active.length, streams.length));
+        runningBatches.set(batches);
+        for (int i = 0; i < batches; i++)
+        {
+            int batch = i;
+            workers.execute(() ->
+            {
+                try
+                {
+                    for (int j = batch; j < active.length; j += batches)
+                    {
+                        AudioConnection connection = active[j];
+                        if (!connection.getUdpChannel().isOpen())
+                            unregister(connection);
+                        else
+                        {
+                            if (connection.sendFrame())
+                                connection.getSendJitter().record(clock.nanoTime() - deadline);
+                            connection.mixFrame(tick);
+                        }
+                    }
+                    for (int j = batch; j < streams.length; j += batches)
+                    {
+                        AudioReceiveStream stream = streams[j];
+                        if (!stream.getConnection().getUdpChannel().isOpen())
+                            unregisterStream(stream);
+                        else
+                            stream.playFrame(tick);
+                    }
+                }
+                catch (Throwable t)
+                {
+                    LOG.log(t);
+                }
+                finally
+                {
+                    if (runningBatches.decrementAndGet() == 0)
+                        lastTickDuration = clock.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    private void startReceiving()
+    {
+        if (receiveThread != null)
+            return;
+        try
+        {
+            selector = Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Could not open the selector for audio connections", e);
+        }
+        receiveThread = new Thread(this::receive, "JDA AudioScheduler Receive");
+        receiveThread.setPriority((Thread.NORM_PRIORITY + Thread.MAX_PRIORITY) / 2);
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    private void receive()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+        while (true)
+        {
+            try
+            {
+                selector.select();
+                AudioConnection pending;
+                while ((pending = pendingRegistrations.poll()) != null)
+                {
+                    if (!connections.contains(pending))
+                        continue;
+                    try
+                    {
+                        pending.getUdpChannel().register(selector, SelectionKey.OP_READ, pending);
+                    }
+                    catch (ClosedChannelException e)
+                    {
+                        //The connection was closed before it was registered, the next tick will drop it.
+                    }
+                }
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();)
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid())
+                        continue;
+                    AudioConnection connection = (AudioConnection) key.attachment();
+                    DatagramChannel channel = (DatagramChannel) key.channel();
+                    try
+                    {
+                        buffer.clear();
+                        while (channel.receive(buffer) != null)
+                        {
+                            buffer.flip();
+                            connection.receivePacket(buffer);
+                            buffer.clear();
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        //The channel was closed while we were reading from it. The connection is dropped by the next tick.
+                        key.cancel();
+                    }
+                    catch (Exception e)
+                    {
+                        LOG.log(e);
+                    }
+                }
+            }
+            catch (Throwable t)
+            {
+                LOG.log(t);
+            }
+        }
+    }
+
+    private static Runnable wrap(Runnable task)
+    {
+        //an exception would silently cancel a periodic task
+        return () ->
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable t)
+            {
+                LOG.log(t);
+            }
+        };
+    }
+}
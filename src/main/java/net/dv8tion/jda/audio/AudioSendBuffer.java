@@ -0,0 +1,106 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The frames of a connection that were provided and encoded ahead of their tick,
+ * see {@link net.dv8tion.jda.managers.AudioManager#setSendBuffer(int)}.
+ * <p>
+ * The provider task of the connection is the only one adding frames and the worker of the current tick the only one
+ * taking them, so neither side has to lock. Every frame remembers the handler that provided it, frames of a handler
+ * that was replaced in the meantime are discarded instead of sent.
+ */
+class AudioSendBuffer
+{
+    static final int MAX_FRAMES = AudioConnection.MAX_SEND_BUFFER / AudioConnection.OPUS_FRAME_TIME_AMOUNT;
+
+    private final ByteBuffer[] frames = new ByteBuffer[MAX_FRAMES];
+    private final AudioSendHandler[] handlers = new AudioSendHandler[MAX_FRAMES];
+    private volatile long head = 0;     //The next frame to send, only written by the tick
+    private volatile long tail = 0;     //The next frame to provide, only written by the provider
+    private volatile int capacity = 0;
+    private volatile long discarded = 0;
+
+    void setCapacity(int capacity)
+    {
+        this.capacity = Math.min(capacity, MAX_FRAMES);
+    }
+
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    boolean isFull()
+    {
+        return tail - head >= capacity;
+    }
+
+    /**
+     * The buffer the provider writes the next frame to. Only valid while the buffer is not full.
+     */
+    ByteBuffer nextFrame()
+    {
+        int slot = (int) (tail % MAX_FRAMES);
+        if (frames[slot] == null)
+            frames[slot] = ByteBuffer.allocate(AudioConnection.OPUS_MAX_PACKET_SIZE);
+        frames[slot].clear();
+        return frames[slot];
+    }
+
+    /**
+     * Adds the frame written to {@link #nextFrame()}.
+     */
+    void add(AudioSendHandler handler)
+    {
+        handlers[(int) (tail % MAX_FRAMES)] = handler;
+        tail++;
+    }
+
+    /**
+     * Takes the oldest frame of the given handler. Older frames of other handlers are discarded.
+     *
+     * @return
+     *      The length of the frame copied to the target, or -1 if there is none.
+     */
+    int take(AudioSendHandler handler, byte[] target, int offset)
+    {
+        while (head < tail)
+        {
+            int slot = (int) (head % MAX_FRAMES);
+            AudioSendHandler owner = handlers[slot];
+            handlers[slot] = null;
+            int length = frames[slot].position();
+            if (owner == handler)
+                System.arraycopy(frames[slot].array(), 0, target, offset, length);
+            head++;
+            if (owner == handler)
+                return length;
+            discarded++;
+        }
+        return -1;
+    }
+
+    /**
+     * The amount of frames that were provided but never sent, because their handler was replaced.
+     */
+    long getDiscarded()
+    {
+        return discarded;
+    }
+}
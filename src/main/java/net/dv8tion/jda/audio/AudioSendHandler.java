@@ -15,8 +15,87 @@
  */
 package net.dv8tion.jda.audio;
 
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Provides the audio sent by an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}.
+ * <p>
+ * Every 20ms JDA asks for the next frame of 16bit, 48KHz, stereo PCM: 960 samples per channel, interleaved.
+ * Handlers may provide it in one of three ways:
+ * <ul>
+ *     <li>{@link #provide20MsAudio()}: returns the frame as big endian bytes in a new array.</li>
+ *     <li>{@link #provide20MsAudio(java.nio.ByteBuffer)}: writes the frame as big endian bytes into a buffer of JDA.</li>
+ *     <li>{@link #provide20MsAudio(java.nio.ShortBuffer)}: writes the samples into a buffer of JDA, which is passed to
+ *     the encoder without any conversion. Used if {@link #isNativeSamples()} returns true.</li>
+ * </ul>
+ * The buffers provided by JDA are reused for every frame, so the latter two do not allocate anything per frame.
+ * <p>
+ * A handler that already has opus encoded audio, for example from an Ogg/Opus file, returns true from {@link #isOpus()}.
+ * It then provides one opus packet of 20ms per frame in place of the PCM, through either of the first two methods,
+ * and JDA sends it as it is without encoding anything.
+ */
 public interface AudioSendHandler
 {
     boolean canProvide();
     byte[] provide20MsAudio();
+
+    /**
+     * Writes the next 20ms of big endian PCM into the given buffer.
+     * If fewer than 20ms are written, the rest of the frame is silence.
+     * <p>
+     * The default implementation copies the array returned by {@link #provide20MsAudio()}.
+     *
+     * @param pcm
+     *          A cleared buffer with room for exactly one frame. Only valid until this method returns.
+     * @return
+     *      True if audio was written, false if there is nothing to send.
+     */
+    default boolean provide20MsAudio(ByteBuffer pcm)
+    {
+        byte[] audio = provide20MsAudio();
+        if (audio == null || audio.length == 0)
+            return false;
+        pcm.put(audio, 0, Math.min(audio.length, pcm.remaining()));
+        return true;
+    }
+
+    /**
+     * Whether this handler writes its audio with {@link #provide20MsAudio(java.nio.ShortBuffer)}, which skips
+     * the conversion from big endian bytes.
+     *
+     * @return
+     *      True to use {@link #provide20MsAudio(java.nio.ShortBuffer)}. Default: false
+     */
+    default boolean isNativeSamples()
+    {
+        return false;
+    }
+
+    /**
+     * Writes the samples of the next 20ms into the given buffer. Only used if {@link #isNativeSamples()} returns true.
+     * If fewer than 20ms are written, the rest of the frame is silence.
+     *
+     * @param pcm
+     *          A cleared buffer with room for exactly one frame. Only valid until this method returns.
+     * @return
+     *      True if audio was written, false if there is nothing to send.
+     */
+    default boolean provide20MsAudio(ShortBuffer pcm)
+    {
+        return false;
+    }
+
+    /**
+     * Whether this handler provides opus packets instead of PCM. Each packet has to contain exactly 20ms of
+     * 48KHz audio and is written to the buffer of {@link #provide20MsAudio(java.nio.ByteBuffer)}, which then has
+     * room for {@value net.dv8tion.jda.audio.AudioConnection#OPUS_MAX_PACKET_SIZE} bytes.
+     *
+     * @return
+     *      True if the provided audio is opus encoded. Default: false
+     */
+    default boolean isOpus()
+    {
+        return false;
+    }
 }
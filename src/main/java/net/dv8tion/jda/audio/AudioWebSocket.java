@@ -29,14 +29,16 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class AudioWebSocket extends WebSocketAdapter
 {
@@ -51,8 +53,9 @@ public class AudioWebSocket extends WebSocketAdapter
     private final Guild guild;
     private final HttpHost proxy;
     private boolean connected = false;
-    private boolean ready = false;
-    private Thread keepAliveThread;
+    private volatile boolean ready = false;
+    private volatile AudioConnection connection;
+    private ScheduledFuture<?> keepAliveFuture;
     public WebSocket socket;
     private String endpoint;
     private String wssEndpoint;
@@ -63,9 +66,10 @@ public class AudioWebSocket extends WebSocketAdapter
     private String token;
     private byte[] secretKey;
 
-    private DatagramSocket udpSocket;
+    private DatagramChannel udpChannel;
     private InetSocketAddress address;
-    private Thread udpKeepAliveThread;
+    private ScheduledFuture<?> udpKeepAliveFuture;
+    private long udpKeepAliveSeq = 0;
 
     public AudioWebSocket(String endpoint, JDAImpl api, Guild guild, String sessionId, String token)
     {
@@ -156,7 +160,7 @@ public class AudioWebSocket extends WebSocketAdapter
                             )
                         )
                         .toString());
-                setupKeepAliveThread(heartbeatInterval);
+                setupKeepAlive(heartbeatInterval);
 
                 break;
             }
@@ -181,6 +185,9 @@ public class AudioWebSocket extends WebSocketAdapter
 
                 LOG.trace("Audio connection has finished connecting!");
                 ready = true;
+                AudioConnection connection = this.connection;
+                if (connection != null)
+                    connection.onWebSocketReady();
                 break;
             }
             case USER_SPEAKING_UPDATE:
@@ -197,6 +204,10 @@ public class AudioWebSocket extends WebSocketAdapter
                     return;
                 }
 
+                AudioConnection connection = this.connection;
+                if (connection != null)
+                    connection.updateUserSSRC(ssrc, user);
+
                 if (speaking)
                     LOG.trace(user.getUsername() + " started transmitting audio.");    //Replace with event.
                 else
@@ -261,18 +272,27 @@ public class AudioWebSocket extends WebSocketAdapter
                     );
             api.getClient().send(obj.toString());
         }
-        if (keepAliveThread != null)
+        if (keepAliveFuture != null)
+        {
+            keepAliveFuture.cancel(false);
+            keepAliveFuture = null;
+        }
+        if (udpKeepAliveFuture != null)
         {
-            keepAliveThread.interrupt();
-            keepAliveThread = null;
+            udpKeepAliveFuture.cancel(false);
+            udpKeepAliveFuture = null;
         }
-        if (udpKeepAliveThread != null)
+        if (udpChannel != null)
         {
-            udpKeepAliveThread.interrupt();
-            udpKeepAliveThread = null;
+            try
+            {
+                udpChannel.close();
+            }
+            catch (IOException e)
+            {
+                LOG.log(e);
+            }
         }
-        if (udpSocket != null)
-            udpSocket.close();
         if (socket != null && socket.isOpen())
             socket.sendClose(1000);
 
@@ -291,9 +311,9 @@ public class AudioWebSocket extends WebSocketAdapter
         }
     }
 
-    public DatagramSocket getUdpSocket()
+    public DatagramChannel getUdpChannel()
     {
-        return udpSocket;
+        return udpChannel;
     }
 
     public InetSocketAddress getAddress()
@@ -319,34 +339,42 @@ public class AudioWebSocket extends WebSocketAdapter
         return ready;
     }
 
+    void setAudioConnection(AudioConnection connection)
+    {
+        this.connection = connection;
+    }
+
     private InetSocketAddress handleUdpDiscovery(InetSocketAddress address, int ssrc)
     {
         //We will now send a packet to discord to punch a port hole in the NAT wall.
         //This is called UDP hole punching.
         try
         {
-            udpSocket = new DatagramSocket();   //Use UDP, not TCP.
+            udpChannel = DatagramChannel.open();   //Use UDP, not TCP.
 
             //Create a byte array of length 70 containing our ssrc.
             ByteBuffer buffer = ByteBuffer.allocate(70);    //70 taken from https://github.com/Rapptz/discord.py/blob/async/discord/voice_client.py#L208
             buffer.putInt(ssrc);                            //Put the ssrc that we were given into the packet to send back to discord.
 
-            //Construct our packet to be sent loaded with the byte buffer we store the ssrc in.
-            DatagramPacket discoveryPacket = new DatagramPacket(buffer.array(), buffer.array().length, address);
-            udpSocket.send(discoveryPacket);
+            //Send the byte buffer we store the ssrc in.
+            buffer.clear();
+            udpChannel.send(buffer, address);
 
             //Discord responds to our packet, returning a packet containing our external ip and the port we connected through.
-            DatagramPacket receivedPacket = new DatagramPacket(new byte[70], 70);   //Give a buffer the same size as the one we sent.
-            udpSocket.receive(receivedPacket);
+            ByteBuffer receivedPacket = ByteBuffer.allocate(70);   //Give a buffer the same size as the one we sent.
+            udpChannel.receive(receivedPacket);
 
             //The byte array returned by discord containing our external ip and the port that we used
             //to connect to discord with.
-            byte[] received = receivedPacket.getData();
+            byte[] received = receivedPacket.array();
+
+            //From now on the channel is read by the AudioScheduler.
+            udpChannel.configureBlocking(false);
 
             //Example string:"   121.83.253.66                                                   ��"
             //You'll notice that there are 4 leading nulls and a large amount of nulls between the the ip and
             // the last 2 bytes. Not sure why these exist.  The last 2 bytes are the port. More info below.
-            String ourIP = new String(receivedPacket.getData());//Puts the entire byte array in. nulls are converted to spaces.
+            String ourIP = new String(received);//Puts the entire byte array in. nulls are converted to spaces.
             ourIP = ourIP.substring(0, ourIP.length() - 2); //Removes the port that is stuck on the end of this string. (last 2 bytes are the port)
             ourIP = ourIP.trim();                           //Removes the extra whitespace(nulls) attached to both sides of the IP
 
@@ -370,7 +398,7 @@ public class AudioWebSocket extends WebSocketAdapter
             int ourPort = (firstByte << 8) | secondByte;
 
             this.address = address;
-            setupUdpKeepAliveThread(address);
+            setupUdpKeepAlive(address);
 
             return new InetSocketAddress(ourIP, ourPort);
         }
@@ -381,79 +409,49 @@ public class AudioWebSocket extends WebSocketAdapter
         return null;
     }
 
-    private void setupUdpKeepAliveThread(final InetSocketAddress address)
+    private void setupUdpKeepAlive(final InetSocketAddress address)
     {
-        udpKeepAliveThread = new Thread()
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1);
+        udpKeepAliveFuture = AudioScheduler.getInstance().scheduleAtFixedRate(() ->
         {
-            @Override
-            public void run()
+            if (!socket.isOpen() || !udpChannel.isOpen())
+                return;
+            try
             {
-                while (socket.isOpen() && !udpSocket.isClosed() && !this.isInterrupted())
-                {
-                    long seq = 0;
-                    try
-                    {
-                        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1);
-                        buffer.put((byte)0xC9);
-                        buffer.putLong(seq);
-                        DatagramPacket keepAlivePacket = new DatagramPacket(buffer.array(), buffer.array().length, address);
-                        udpSocket.send(keepAlivePacket);
-
-                        Thread.sleep(5000); //Wait 5 seconds to send next keepAlivePacket.
-                    }
-                    catch (NoRouteToHostException e)
-                    {
-                        LOG.warn("Closing AudioConnection due to inability to ping audio packets.");
-                        LOG.warn("Cannot send audio packet because JDA navigate the route to Discord.\n" +
-                                "Are you sure you have internet connection? It is likely that you've lost connection.");
-                        AudioWebSocket.this.close(true, -1);
-                        break;
-                    }
-                    catch (IOException e)
-                    {
-                        LOG.log(e);
-                    }
-                    catch (InterruptedException e)
-                    {
-                        //We were asked to close.
-//                        e.printStackTrace();
-                    }
-                }
+                buffer.clear();
+                buffer.put((byte)0xC9);
+                buffer.putLong(udpKeepAliveSeq++);
+                buffer.flip();
+                udpChannel.send(buffer, address);
+            }
+            catch (NoRouteToHostException e)
+            {
+                LOG.warn("Closing AudioConnection due to inability to ping audio packets.");
+                LOG.warn("Cannot send audio packet because JDA navigate the route to Discord.\n" +
+                        "Are you sure you have internet connection? It is likely that you've lost connection.");
+                AudioWebSocket.this.close(true, -1);
+            }
+            catch (ClosedChannelException e)
+            {
+                //We were asked to close.
+            }
+            catch (IOException e)
+            {
+                LOG.log(e);
             }
-        };
-        udpKeepAliveThread.setPriority(Thread.NORM_PRIORITY + 1);
-        udpKeepAliveThread.setDaemon(true);
-        udpKeepAliveThread.start();
+        }, 0, 5, TimeUnit.SECONDS);    //Send a keepAlivePacket every 5 seconds.
     }
 
-    private void setupKeepAliveThread(int keepAliveInterval)
+    private void setupKeepAlive(int keepAliveInterval)
     {
-        keepAliveThread = new Thread()
+        keepAliveFuture = AudioScheduler.getInstance().scheduleAtFixedRate(() ->
         {
-            @Override
-            public void run()
-            {
-                while (socket.isOpen() && !this.isInterrupted())
-                {
-                    send(new JSONObject()
-                            .put("op", 3)
-                            .put("d", System.currentTimeMillis())
-                            .toString());
-                    try
-                    {
-                        Thread.sleep(keepAliveInterval);
-                    }
-                    catch (InterruptedException e)
-                    {
-                        //We were asked to close.
-//                        e.printStackTrace();
-                    }
-                }
-            }
-        };
-        keepAliveThread.setPriority(Thread.MAX_PRIORITY);
-        keepAliveThread.setDaemon(true);
-        keepAliveThread.start();
+            if (!socket.isOpen())
+                return;
+            send(new JSONObject()
+                    .put("op", 3)
+                    .put("d", System.currentTimeMillis())
+                    .toString());
+        }, 0, keepAliveInterval, TimeUnit.MILLISECONDS);
     }
 }
-
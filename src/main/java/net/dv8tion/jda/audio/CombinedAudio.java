@@ -0,0 +1,71 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.entities.User;
+
+import java.util.List;
+
+/**
+ * 20ms of the decoded audio of all users of an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}, mixed
+ * into one 48KHz, 16bit, stereo frame. Users that were silent during these 20ms are not part of the mix.
+ */
+public class CombinedAudio
+{
+    private final List<User> users;
+    private final short[] samples;
+
+    public CombinedAudio(List<User> users, short[] samples)
+    {
+        this.users = users;
+        this.samples = samples;
+    }
+
+    /**
+     * The {@link net.dv8tion.jda.entities.User Users} whose audio is part of this mix.
+     *
+     * @return
+     *      An unmodifiable list of the mixed users, empty if this frame is silence.
+     */
+    public List<User> getUsers()
+    {
+        return users;
+    }
+
+    /**
+     * The interleaved stereo samples of this audio. The array is not copied.
+     *
+     * @return
+     *      The samples, left channel first.
+     */
+    public short[] getSamples()
+    {
+        return samples;
+    }
+
+    /**
+     * The audio as big endian PCM with the given volume applied.
+     *
+     * @param volume
+     *          The volume, 1.0 keeps the audio as it is. Louder samples are clipped.
+     * @return
+     *      The 16bit, 48KHz, stereo, big endian PCM.
+     */
+    public byte[] getAudioData(double volume)
+    {
+        return UserAudio.getAudioData(samples, volume);
+    }
+}
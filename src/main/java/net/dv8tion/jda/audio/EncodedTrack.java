@@ -0,0 +1,218 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The opus frames of one track of the {@link net.dv8tion.jda.audio.TrackCache TrackCache}.
+ * <p>
+ * The frames are written once by the encoding thread and can be read by any amount of players at the same time,
+ * already while the rest of the track is still being encoded. They are stored in chunks of
+ * {@value #CHUNK_SIZE} bytes, either on the heap or mapped from a file of the cache's storage directory.
+ * <p>
+ * Every {@link net.dv8tion.jda.audio.TrackCache#acquire(String, java.util.concurrent.Callable) acquire}
+ * has to be followed by exactly one {@link #release()} once the track is no longer played.
+ */
+public class EncodedTrack
+{
+    public static final int CHUNK_SIZE = 256 * 1024;
+
+    private final TrackCache cache;
+    private final String key;
+    private final File file;
+    private final FileChannel channel;
+
+    //Only written by the encoding thread, published to the readers by the write of frameCount.
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int[] positions = new int[1024];
+    private int[] lengths = new int[1024];
+    private int chunkPosition = CHUNK_SIZE;
+
+    private volatile int frameCount = 0;
+    private volatile long size = 0;
+    private volatile boolean complete = false;
+    private volatile boolean failed = false;
+    private volatile boolean evicted = false;
+    int references = 0;
+
+    EncodedTrack(TrackCache cache, String key, File file, FileChannel channel)
+    {
+        this.cache = cache;
+        this.key = key;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * The amount of frames encoded so far. Once the track is {@link #isComplete() complete}, this is its length
+     * in 20ms frames.
+     *
+     * @return
+     *      The amount of readable frames.
+     */
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Whether encoding the track failed. The frames encoded before the failure can still be read.
+     *
+     * @return
+     *      True if the source could not be encoded.
+     */
+    public boolean isFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * The bytes taken by this track, which count towards the byte budget of the cache.
+     *
+     * @return
+     *      The size of all chunks of this track.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Copies an encoded frame into the given buffer.
+     *
+     * @param index
+     *          The index of the frame, starting at 0.
+     * @param target
+     *          The buffer to write the frame to.
+     * @return
+     *      The length of the frame, or -1 if the frame is not encoded (yet) or does not fit into the buffer.
+     */
+    public int getFrame(int index, ByteBuffer target)
+    {
+        int count = frameCount;
+        if (index < 0 || index >= count || evicted)
+            return -1;
+
+        int position = positions[index];
+        int length = lengths[index];
+        if (length > target.remaining())
+            return -1;
+
+        ByteBuffer chunk = chunks[position / CHUNK_SIZE];
+        int offset = position % CHUNK_SIZE;
+        if (chunk.hasArray())
+        {
+            target.put(chunk.array(), chunk.arrayOffset() + offset, length);
+        }
+        else
+        {
+            for (int i = 0; i < length; i++)
+                target.put(chunk.get(offset + i));
+        }
+        return length;
+    }
+
+    /**
+     * Hands this track back to the cache. Once no player holds it anymore, it may be evicted.
+     */
+    public void release()
+    {
+        cache.release(this);
+    }
+
+    boolean isEvicted()
+    {
+        return evicted;
+    }
+
+    void addFrame(ByteBuffer frame) throws IOException
+    {
+        if (evicted)
+            return;
+
+        int length = frame.remaining();
+        if (chunkPosition + length > CHUNK_SIZE)
+            addChunk();
+        ByteBuffer chunk = chunks[chunks.length - 1];
+        chunk.position(chunkPosition);
+        chunk.put(frame);
+
+        int index = frameCount;
+        if (index == positions.length)
+        {
+            positions = Arrays.copyOf(positions, index * 2);
+            lengths = Arrays.copyOf(lengths, index * 2);
+        }
+        positions[index] = (chunks.length - 1) * CHUNK_SIZE + chunkPosition;
+        lengths[index] = length;
+        chunkPosition += length;
+        frameCount = index + 1;
+    }
+
+    void finish(boolean failed)
+    {
+        this.failed = failed;
+        this.complete = !failed;
+    }
+
+    void free()
+    {
+        evicted = true;
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                TrackCache.LOG.log(e);
+            }
+            //A mapped file can only be deleted on some platforms once its buffers were collected.
+            if (!file.delete())
+                file.deleteOnExit();
+        }
+    }
+
+    private void addChunk() throws IOException
+    {
+        int index = chunks.length;
+        ByteBuffer chunk = channel == null
+                ? ByteBuffer.allocate(CHUNK_SIZE)
+                : channel.map(FileChannel.MapMode.READ_WRITE, (long) index * CHUNK_SIZE, CHUNK_SIZE);
+        ByteBuffer[] newChunks = Arrays.copyOf(chunks, index + 1);
+        newChunks[index] = chunk;
+        chunks = newChunks;
+        chunkPosition = 0;
+        size += CHUNK_SIZE;
+        cache.grown(this, CHUNK_SIZE);
+    }
+}
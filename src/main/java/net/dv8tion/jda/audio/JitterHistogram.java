@@ -0,0 +1,115 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * How late the frames of an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection} were sent compared to
+ * the deadline of their tick.
+ * <p>
+ * Frames are counted in buckets with fixed upper limits from 250 microseconds to 20 milliseconds,
+ * the last bucket counts all frames that were later than that.
+ */
+public class JitterHistogram
+{
+    private static final long[] LIMITS = {
+            TimeUnit.MICROSECONDS.toNanos(250),
+            TimeUnit.MICROSECONDS.toNanos(500),
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(2),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(20),
+            Long.MAX_VALUE};
+
+    private final AtomicLongArray counts = new AtomicLongArray(LIMITS.length);
+    private final AtomicLong max = new AtomicLong(0);
+
+    void record(long lateness)
+    {
+        lateness = Math.max(0, lateness);
+        int bucket = 0;
+        while (lateness >= LIMITS[bucket])
+            bucket++;
+        counts.incrementAndGet(bucket);
+        if (lateness > max.get())
+            max.set(lateness);
+    }
+
+    public int getBucketCount()
+    {
+        return LIMITS.length;
+    }
+
+    /**
+     * The exclusive upper limit of a bucket. The limit of the last bucket is {@link Long#MAX_VALUE} nanoseconds.
+     *
+     * @param bucket
+     *          The index of the bucket.
+     * @param unit
+     *          The unit of the returned value.
+     * @return
+     *      The limit of the bucket.
+     */
+    public long getBucketLimit(int bucket, TimeUnit unit)
+    {
+        return unit.convert(LIMITS[bucket], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The amount of frames that were sent late by less than the limit of the given bucket,
+     * and at least the limit of the bucket before it.
+     *
+     * @param bucket
+     *          The index of the bucket.
+     * @return
+     *      The amount of frames in the bucket.
+     */
+    public long getCount(int bucket)
+    {
+        return counts.get(bucket);
+    }
+
+    public long getTotalCount()
+    {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++)
+            total += counts.get(i);
+        return total;
+    }
+
+    public long getMax(TimeUnit unit)
+    {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("JitterHistogram[");
+        for (int i = 0; i < LIMITS.length; i++)
+        {
+            if (i > 0)
+                builder.append(", ");
+            builder.append(i < LIMITS.length - 1 ? "<" + TimeUnit.NANOSECONDS.toMicros(LIMITS[i]) + "us" : ">=" + TimeUnit.NANOSECONDS.toMicros(LIMITS[i - 1]) + "us")
+                    .append(": ").append(counts.get(i));
+        }
+        return builder.append(", max: ").append(TimeUnit.NANOSECONDS.toMicros(max.get())).append("us]").toString();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import com.sun.jna.ptr.PointerByReference;
+import tomp2p.opuswrapper.Opus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes 20ms opus frames into 48KHz, 16bit, stereo PCM. Every stream of audio needs its own decoder,
+ * as decoding a frame depends on the frames before it.
+ * <p>
+ * Frames are decoded into a direct buffer that is allocated once, in native byte order.
+ * Lost frames can be concealed, either from the forward error correction data of the following frame
+ * or, if that frame is missing too, by opus' packet loss concealment.
+ */
+public class OpusDecoder
+{
+    private final ShortBuffer pcm = ByteBuffer.allocateDirect(OpusEncoder.FRAME_BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
+    private PointerByReference decoder;
+
+    public OpusDecoder()
+    {
+        IntBuffer error = IntBuffer.allocate(1);
+        decoder = Opus.INSTANCE.opus_decoder_create(AudioConnection.OPUS_SAMPLE_RATE, AudioConnection.OPUS_CHANNEL_COUNT, error);
+        if (error.get(0) != Opus.OPUS_OK)
+            throw new IllegalStateException("Could not create the opus decoder: " + Opus.INSTANCE.opus_strerror(error.get(0)));
+    }
+
+    /**
+     * Decodes a frame.
+     *
+     * @return
+     *      The decoded, interleaved stereo samples, valid until the next frame is decoded.
+     *      Null if the decoder failed or was closed.
+     */
+    public synchronized ShortBuffer decode(byte[] data, int length)
+    {
+        return decode(data, length, 0);
+    }
+
+    /**
+     * Recovers a lost frame from the forward error correction data of the frame that followed it.
+     * The following frame itself still has to be decoded with {@link #decode(byte[], int)} afterwards.
+     *
+     * @return
+     *      The recovered samples, valid until the next frame is decoded. Null if the decoder failed or was closed.
+     */
+    public synchronized ShortBuffer recover(byte[] nextData, int nextLength)
+    {
+        return decode(nextData, nextLength, 1);
+    }
+
+    /**
+     * Conceals a lost frame without any data of it.
+     *
+     * @return
+     *      The concealed samples, valid until the next frame is decoded. Null if the decoder failed or was closed.
+     */
+    public synchronized ShortBuffer conceal()
+    {
+        return decode(null, 0, 0);
+    }
+
+    public synchronized void close()
+    {
+        if (decoder != null)
+        {
+            Opus.INSTANCE.opus_decoder_destroy(decoder);
+            decoder = null;
+        }
+    }
+
+    private ShortBuffer decode(byte[] data, int length, int fec)
+    {
+        if (decoder == null)
+            return null;
+
+        pcm.clear();
+        int result = OpusNative.opus_decode(decoder, data, length, pcm, AudioConnection.OPUS_FRAME_SIZE, fec);
+        if (result < 0)
+        {
+            AudioConnection.LOG.warn("Could not decode audio frame: " + Opus.INSTANCE.opus_strerror(result));
+            return null;
+        }
+        pcm.limit(result * AudioConnection.OPUS_CHANNEL_COUNT);
+        return pcm;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import com.sun.jna.ptr.PointerByReference;
+import tomp2p.opuswrapper.Opus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * The Opus encoder of one {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}.
+ * <p>
+ * The PCM input and the encoded output live in direct buffers that are allocated once and handed to the native
+ * encoder as they are, so encoding a frame neither allocates nor copies on the Java side.
+ * Audio is written into the PCM buffer either as big endian bytes, which are swapped in place if needed,
+ * or as samples in native byte order, which are encoded without any conversion.
+ */
+class OpusEncoder
+{
+    static final int FRAME_SAMPLES = AudioConnection.OPUS_FRAME_SIZE * AudioConnection.OPUS_CHANNEL_COUNT;
+    static final int FRAME_BYTES = FRAME_SAMPLES * 2;
+    static final int MAX_ENCODED_BYTES = AudioConnection.OPUS_MAX_PACKET_SIZE;
+
+    private static final boolean SWAP_BYTES = ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN;
+
+    private final ByteBuffer pcm = ByteBuffer.allocateDirect(FRAME_BYTES);
+    private final ShortBuffer bigEndianSamples = pcm.duplicate().order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+    private final ShortBuffer nativeSamples = pcm.duplicate().order(ByteOrder.nativeOrder()).asShortBuffer();
+    private final ByteBuffer encoded = ByteBuffer.allocateDirect(MAX_ENCODED_BYTES);
+    private PointerByReference encoder;
+
+    OpusEncoder()
+    {
+        IntBuffer error = IntBuffer.allocate(1);
+        encoder = Opus.INSTANCE.opus_encoder_create(AudioConnection.OPUS_SAMPLE_RATE, AudioConnection.OPUS_CHANNEL_COUNT, Opus.OPUS_APPLICATION_AUDIO, error);
+        if (error.get(0) != Opus.OPUS_OK)
+            throw new IllegalStateException("Could not create the opus encoder: " + Opus.INSTANCE.opus_strerror(error.get(0)));
+    }
+
+    /**
+     * The buffer to write 20ms of 16bit, 48KHz, stereo, big endian PCM into before calling {@link #encodeBytes()}.
+     *
+     * @return
+     *      The cleared PCM buffer.
+     */
+    ByteBuffer getByteBuffer()
+    {
+        pcm.clear();
+        return pcm;
+    }
+
+    /**
+     * The buffer to write 20ms of 48KHz, stereo samples into before calling {@link #encodeSamples()}.
+     * It shares its memory with {@link #getByteBuffer()}.
+     *
+     * @return
+     *      The cleared sample buffer.
+     */
+    ShortBuffer getSampleBuffer()
+    {
+        nativeSamples.clear();
+        return nativeSamples;
+    }
+
+    /**
+     * Encodes the big endian bytes written to {@link #getByteBuffer()}.
+     *
+     * @return
+     *      The encoded frame, valid until the next frame is encoded. Null if the encoder failed or was closed.
+     */
+    synchronized ByteBuffer encodeBytes()
+    {
+        int samples = pcm.position() / 2;
+        if (SWAP_BYTES)
+        {
+            for (int i = 0; i < samples; i++)
+                nativeSamples.put(i, bigEndianSamples.get(i));
+        }
+        return encode(samples);
+    }
+
+    /**
+     * Encodes the samples written to {@link #getSampleBuffer()}.
+     *
+     * @return
+     *      The encoded frame, valid until the next frame is encoded. Null if the encoder failed or was closed.
+     */
+    synchronized ByteBuffer encodeSamples()
+    {
+        return encode(nativeSamples.position());
+    }
+
+    synchronized void close()
+    {
+        if (encoder != null)
+        {
+            Opus.INSTANCE.opus_encoder_destroy(encoder);
+            encoder = null;
+        }
+    }
+
+    private ByteBuffer encode(int samples)
+    {
+        if (encoder == null)
+            return null;
+
+        //The encoder always reads a whole frame, a short frame is padded with silence.
+        for (int i = samples; i < FRAME_SAMPLES; i++)
+            nativeSamples.put(i, (short) 0);
+        nativeSamples.clear();
+        encoded.clear();
+
+        int result = OpusNative.opus_encode(encoder, nativeSamples, AudioConnection.OPUS_FRAME_SIZE, encoded, encoded.capacity());
+        if (result < 0)
+        {
+            AudioConnection.LOG.warn("Could not encode audio frame: " + Opus.INSTANCE.opus_strerror(result));
+            return null;
+        }
+        encoded.limit(result);
+        return encoded;
+    }
+}
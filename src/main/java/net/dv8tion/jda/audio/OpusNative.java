@@ -0,0 +1,44 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import com.sun.jna.Native;
+import com.sun.jna.ptr.PointerByReference;
+import net.dv8tion.jda.managers.impl.AudioManagerImpl;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Directly mapped opus functions for the per-frame calls.
+ * <p>
+ * Calls through {@link tomp2p.opuswrapper.Opus Opus} go through a proxy that boxes every argument and the result.
+ * Direct mapping passes them as they are, which keeps encoding and decoding a frame free of allocations.
+ * This class may only be loaded after {@link net.dv8tion.jda.managers.impl.AudioManagerImpl#init()} loaded the library.
+ */
+final class OpusNative
+{
+    static
+    {
+        Native.register(OpusNative.class, AudioManagerImpl.OPUS_LIB_NAME);
+    }
+
+    private OpusNative() {}
+
+    static native int opus_encode(PointerByReference st, ShortBuffer pcm, int frame_size, ByteBuffer data, int max_data_bytes);
+
+    static native int opus_decode(PointerByReference st, byte[] data, int len, ShortBuffer pcm, int frame_size, int decode_fec);
+}
@@ -0,0 +1,77 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import com.iwebpp.crypto.TweetNaclFast;
+
+/**
+ * Encrypts or decrypts the audio packets of one direction of an {@link net.dv8tion.jda.audio.AudioConnection AudioConnection}.
+ * <p>
+ * The {@link com.iwebpp.crypto.TweetNaclFast.SecretBox SecretBox}, its key and the nonce are set up once and reused,
+ * and the audio is encrypted and decrypted in place inside the packet. The packet layout is the RTP header,
+ * followed by the authenticator of the box at {@link #TAG_OFFSET} and the audio at {@link #AUDIO_OFFSET}.
+ * <p>
+ * Not thread safe, every direction needs its own instance.
+ */
+class PacketCipher
+{
+    static final int TAG_OFFSET = AudioPacket.RTP_HEADER_BYTE_LENGTH;
+    static final int AUDIO_OFFSET = TAG_OFFSET + TweetNaclFast.SecretBox.overheadLength;
+
+    private final TweetNaclFast.SecretBox box;
+
+    //Xsalsa20's nonce is 24 bytes long, but the RTP header used as nonce is only 12 bytes long. The rest stays 0.
+    private final byte[] nonce = new byte[AudioPacket.XSALSA20_NONCE_LENGTH];
+
+    PacketCipher(byte[] secretKey)
+    {
+        this.box = new TweetNaclFast.SecretBox(secretKey);
+    }
+
+    /**
+     * Encrypts the audio at {@link #AUDIO_OFFSET} of a packet whose RTP header was already written.
+     *
+     * @param packet
+     *          The packet to encrypt in place.
+     * @param audioLength
+     *          The length of the audio.
+     * @return
+     *      The length of the encrypted packet.
+     */
+    int encrypt(byte[] packet, int audioLength)
+    {
+        System.arraycopy(packet, 0, nonce, 0, AudioPacket.RTP_HEADER_BYTE_LENGTH);
+        return TAG_OFFSET + box.boxInPlace(packet, TAG_OFFSET, audioLength, nonce);
+    }
+
+    /**
+     * Decrypts a received packet. The decrypted audio starts at {@link #AUDIO_OFFSET}.
+     *
+     * @param packet
+     *          The packet to decrypt in place.
+     * @param length
+     *          The length of the received packet.
+     * @return
+     *      The length of the decrypted audio, or -1 if the packet could not be authenticated.
+     */
+    int decrypt(byte[] packet, int length)
+    {
+        if (length < AUDIO_OFFSET)
+            return -1;
+        System.arraycopy(packet, 0, nonce, 0, AudioPacket.RTP_HEADER_BYTE_LENGTH);
+        return box.openInPlace(packet, TAG_OFFSET, length - TAG_OFFSET, nonce);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.audio.player.Player;
+import net.dv8tion.jda.utils.SimpleLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes tracks once into opus frames and shares them between every connection that plays them,
+ * see {@link net.dv8tion.jda.audio.player.CachedTrackPlayer CachedTrackPlayer}.
+ * <p>
+ * Tracks are identified by a key chosen by the user, for example the file path or URL of the source.
+ * The first {@link #acquire(String, java.util.concurrent.Callable) acquire} of a key starts encoding the source
+ * in the background, every following one shares the frames encoded so far. The cached tracks take up to
+ * {@link #getByteBudget()} bytes. Above that, the least recently acquired tracks that are no longer held by any
+ * player are evicted.
+ */
+public class TrackCache
+{
+    public static final SimpleLog LOG = SimpleLog.getLog("JDATrackCache");
+    public static final long DEFAULT_BYTE_BUDGET = 128L * 1024 * 1024;
+    public static final int DEFAULT_POOL_SIZE = AudioScheduler.DEFAULT_POOL_SIZE;
+
+    private static TrackCache instance;
+
+    private final LinkedHashMap<String, EncodedTrack> tracks = new LinkedHashMap<>(16, 0.75F, true);
+    private final ThreadPoolExecutor encoders;
+    private long byteBudget = DEFAULT_BYTE_BUDGET;
+    private long size = 0;
+    private File storageDirectory = null;
+
+    /**
+     * The cache shared by all JDA instances of this JVM.
+     *
+     * @return
+     *      The shared TrackCache.
+     */
+    public static synchronized TrackCache getInstance()
+    {
+        if (instance == null)
+            instance = new TrackCache();
+        return instance;
+    }
+
+    private TrackCache()
+    {
+        AtomicInteger threadCount = new AtomicInteger(0);
+        encoders = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread t = new Thread(r, "JDA TrackCache Encoder " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        encoders.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the track of the given key and holds it until {@link net.dv8tion.jda.audio.EncodedTrack#release()}
+     * is called. If the key is not cached, the player returned by the source is encoded in the background.
+     * That player has to provide PCM and is {@link net.dv8tion.jda.audio.player.Player#play() started} by the cache.
+     *
+     * @param key
+     *          The key of the track.
+     * @param source
+     *          Creates the player of the track. Only called if the key is not cached.
+     * @return
+     *      The track, which may still be encoding.
+     */
+    public synchronized EncodedTrack acquire(String key, Callable<? extends Player> source)
+    {
+        if (key == null || source == null)
+            throw new IllegalArgumentException("The key and source of a cached track may not be null");
+
+        EncodedTrack track = tracks.get(key);
+        if (track != null && track.isFailed() && track.references == 0)
+        {
+            tracks.remove(key);
+            remove(track);
+            track = null;
+        }
+        if (track == null)
+        {
+            track = createTrack(key);
+            tracks.put(key, track);
+            EncodedTrack created = track;
+            encoders.execute(() -> encode(created, source));
+        }
+        track.references++;
+        return track;
+    }
+
+    /**
+     * Sets the amount of bytes the cached tracks may take. Tracks that are held by a player are never evicted,
+     * so the budget can be exceeded while they are played.
+     * <p>
+     * Default: {@value #DEFAULT_BYTE_BUDGET}
+     *
+     * @param byteBudget
+     *          The budget in bytes. Has to be at least 0.
+     */
+    public synchronized void setByteBudget(long byteBudget)
+    {
+        if (byteBudget < 0)
+            throw new IllegalArgumentException("The byte budget of the track cache may not be negative");
+        this.byteBudget = byteBudget;
+        evict();
+    }
+
+    public synchronized long getByteBudget()
+    {
+        return byteBudget;
+    }
+
+    /**
+     * The bytes currently taken by all cached tracks.
+     *
+     * @return
+     *      The size of the cache.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Sets the directory new tracks are stored in. The frames are then written to memory-mapped files instead of
+     * the heap, which are deleted once their track is evicted. Tracks that are already cached are not moved.
+     * <p>
+     * Default: null, which stores the tracks on the heap
+     *
+     * @param storageDirectory
+     *          An existing directory, or null to store new tracks on the heap.
+     */
+    public synchronized void setStorageDirectory(File storageDirectory)
+    {
+        if (storageDirectory != null && !storageDirectory.isDirectory())
+            throw new IllegalArgumentException("The storage directory of the track cache has to be an existing directory");
+        this.storageDirectory = storageDirectory;
+    }
+
+    public synchronized File getStorageDirectory()
+    {
+        return storageDirectory;
+    }
+
+    synchronized void release(EncodedTrack track)
+    {
+        if (track.references <= 0)
+            throw new IllegalStateException("Released the cached track " + track.getKey() + " more often than it was acquired");
+        track.references--;
+        evict();
+    }
+
+    synchronized void grown(EncodedTrack track, long bytes)
+    {
+        //an evicted track was already subtracted with its size including these bytes
+        if (track.isEvicted())
+            return;
+        size += bytes;
+        evict();
+    }
+
+    private EncodedTrack createTrack(String key)
+    {
+        if (storageDirectory != null)
+        {
+            File file = null;
+            try
+            {
+                file = File.createTempFile("jda-track", ".opus", storageDirectory);
+                file.deleteOnExit();
+                return new EncodedTrack(this, key, file, new RandomAccessFile(file, "rw").getChannel());
+            }
+            catch (IOException e)
+            {
+                LOG.warn("Could not create a file for the cached track " + key + ", storing it on the heap instead: " + e);
+                if (file != null)
+                    file.delete();
+            }
+        }
+        return new EncodedTrack(this, key, null, null);
+    }
+
+    private void evict()
+    {
+        Iterator<EncodedTrack> iterator = tracks.values().iterator();
+        while (size > byteBudget && iterator.hasNext())
+        {
+            EncodedTrack track = iterator.next();
+            if (track.references == 0)
+            {
+                iterator.remove();
+                remove(track);
+            }
+        }
+    }
+
+    private void remove(EncodedTrack track)
+    {
+        size -= track.getSize();
+        track.free();
+    }
+
+    private void encode(EncodedTrack track, Callable<? extends Player> source)
+    {
+        OpusEncoder encoder = null;
+        Player player = null;
+        boolean failed = true;
+        try
+        {
+            encoder = new OpusEncoder();
+            player = source.call();
+            player.play();
+            while (player.canProvide() && !track.isEvicted())
+            {
+                if (!player.provide20MsAudio(encoder.getByteBuffer()))
+                    break;
+                ByteBuffer frame = encoder.encodeBytes();
+                if (frame == null)
+                    throw new IllegalStateException("Could not encode the cached track " + track.getKey());
+                track.addFrame(frame);
+            }
+            //The player stops itself at the end of its source, but not if reading the source failed.
+            failed = !player.isStopped() && !track.isEvicted();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Could not encode the cached track " + track.getKey());
+            LOG.log(e);
+        }
+        finally
+        {
+            track.finish(failed);
+            if (player != null)
+                player.stop();
+            if (encoder != null)
+                encoder.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import net.dv8tion.jda.entities.User;
+
+/**
+ * 20ms of decoded audio received from a single {@link net.dv8tion.jda.entities.User User}.
+ * <p>
+ * The audio is 48KHz, 16bit, stereo PCM, just like the audio an {@link net.dv8tion.jda.audio.AudioSendHandler AudioSendHandler}
+ * provides.
+ */
+public class UserAudio
+{
+    private final User user;
+    private final int ssrc;
+    private final int timestamp;
+    private final short[] samples;
+    private final boolean concealed;
+
+    public UserAudio(User user, int ssrc, int timestamp, short[] samples, boolean concealed)
+    {
+        this.user = user;
+        this.ssrc = ssrc;
+        this.timestamp = timestamp;
+        this.samples = samples;
+        this.concealed = concealed;
+    }
+
+    /**
+     * The {@link net.dv8tion.jda.entities.User User} that sent this audio.
+     *
+     * @return
+     *      The sending User, or null if Discord did not tell yet which User sends with the {@link #getSSRC() SSRC}.
+     */
+    public User getUser()
+    {
+        return user;
+    }
+
+    public int getSSRC()
+    {
+        return ssrc;
+    }
+
+    /**
+     * The RTP timestamp of this audio. It advances by {@value net.dv8tion.jda.audio.AudioConnection#OPUS_FRAME_SIZE}
+     * per frame and can be used to align the audio of different users.
+     *
+     * @return
+     *      The RTP timestamp of this frame.
+     */
+    public int getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Whether the packet of this frame was lost and this audio was reconstructed by the decoder.
+     *
+     * @return
+     *      True, if this audio was concealed.
+     */
+    public boolean isConcealed()
+    {
+        return concealed;
+    }
+
+    /**
+     * The interleaved stereo samples of this audio. The array is not copied.
+     *
+     * @return
+     *      The samples, left channel first.
+     */
+    public short[] getSamples()
+    {
+        return samples;
+    }
+
+    /**
+     * The audio as big endian PCM with the given volume applied.
+     *
+     * @param volume
+     *          The volume, 1.0 keeps the audio as it is. Louder samples are clipped.
+     * @return
+     *      The 16bit, 48KHz, stereo, big endian PCM.
+     */
+    public byte[] getAudioData(double volume)
+    {
+        return getAudioData(samples, volume);
+    }
+
+    static byte[] getAudioData(short[] samples, double volume)
+    {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++)
+        {
+            int sample = (int) (samples[i] * volume);
+            if (sample > Short.MAX_VALUE)
+                sample = Short.MAX_VALUE;
+            else if (sample < Short.MIN_VALUE)
+                sample = Short.MIN_VALUE;
+            data[i * 2] = (byte) (sample >> 8);
+            data[i * 2 + 1] = (byte) sample;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio.player;
+
+import net.dv8tion.jda.audio.AudioConnection;
+import net.dv8tion.jda.audio.AudioSendHandler;
+import net.dv8tion.jda.audio.EncodedTrack;
+import net.dv8tion.jda.audio.OpusDecoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Plays a track of the {@link net.dv8tion.jda.audio.TrackCache TrackCache}. Any amount of these players can play
+ * the same track, each with its own position and volume, while the track is only decoded and encoded once.
+ * <p>
+ * At full volume the cached opus frames are sent as they are. Discord clients do not apply any gain to received
+ * opus, so any other volume decodes the frames and hands the scaled samples to the connection's encoder,
+ * which is still cheaper than decoding and resampling the source.
+ * <p>
+ * The track is held until {@link #release()} is called.
+ */
+public class CachedTrackPlayer implements AudioSendHandler
+{
+    private final EncodedTrack track;
+    private final byte[] frameData = new byte[AudioConnection.OPUS_MAX_PACKET_SIZE];
+    private final ByteBuffer frameBuffer = ByteBuffer.wrap(frameData);
+    private OpusDecoder decoder = null;
+    private volatile int frame = 0;
+    private volatile float volume = 1.0F;
+    private boolean released = false;
+    private boolean started = false;
+    private boolean playing = false;
+    private boolean paused = false;
+    private boolean stopped = true;
+
+    public CachedTrackPlayer(EncodedTrack track)
+    {
+        if (track == null)
+            throw new IllegalArgumentException("A null EncodedTrack was provided to the CachedTrackPlayer! Cannot play a null track!");
+        this.track = track;
+    }
+
+    public EncodedTrack getTrack()
+    {
+        return track;
+    }
+
+    public void play()
+    {
+        if (released)
+            throw new IllegalStateException("Cannot start a player after its track has been released.");
+        if (started && stopped)
+            throw new IllegalStateException("Cannot start a player after it has been stopped.\n" +
+                    "Please use the restart method.");
+        started = true;
+        playing = true;
+        paused = false;
+        stopped = false;
+    }
+
+    public void pause()
+    {
+        playing = false;
+        paused = true;
+    }
+
+    public void stop()
+    {
+        playing = false;
+        paused = false;
+        stopped = true;
+    }
+
+    public void restart()
+    {
+        stop();
+        started = false;
+        frame = 0;
+        play();
+    }
+
+    public void fastForward(long milliseconds)
+    {
+        frame += (int) (milliseconds / AudioConnection.OPUS_FRAME_TIME_AMOUNT);
+    }
+
+    public void rewind(long milliseconds)
+    {
+        frame = Math.max(0, frame - (int) (milliseconds / AudioConnection.OPUS_FRAME_TIME_AMOUNT));
+    }
+
+    /**
+     * The position in the track.
+     *
+     * @return
+     *      The position in milliseconds.
+     */
+    public long getPosition()
+    {
+        return (long) frame * AudioConnection.OPUS_FRAME_TIME_AMOUNT;
+    }
+
+    public void setVolume(float volume)
+    {
+        this.volume = volume;
+    }
+
+    public float getVolume()
+    {
+        return volume;
+    }
+
+    /**
+     * Stops this player and hands its track back to the cache. The player cannot be used afterwards.
+     */
+    public synchronized void release()
+    {
+        if (released)
+            return;
+        released = true;
+        stop();
+        track.release();
+        if (decoder != null)
+            decoder.close();
+    }
+
+    public boolean isStarted()
+    {
+        return started;
+    }
+
+    public boolean isPlaying()
+    {
+        return playing;
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    @Override
+    public boolean canProvide()
+    {
+        return !isPaused() && !isStopped();
+    }
+
+    @Override
+    public boolean isOpus()
+    {
+        return volume == 1.0F;
+    }
+
+    @Override
+    public boolean isNativeSamples()
+    {
+        return true;
+    }
+
+    @Override
+    public byte[] provide20MsAudio()
+    {
+        if (isOpus())
+        {
+            frameBuffer.clear();
+            return provide20MsAudio(frameBuffer) ? Arrays.copyOf(frameData, frameBuffer.position()) : null;
+        }
+
+        ShortBuffer samples = ShortBuffer.allocate(AudioConnection.OPUS_FRAME_SIZE * AudioConnection.OPUS_CHANNEL_COUNT);
+        if (!provide20MsAudio(samples))
+            return null;
+        ByteBuffer audio = ByteBuffer.allocate(samples.capacity() * 2);
+        audio.asShortBuffer().put(samples.array());
+        return audio.array();
+    }
+
+    @Override
+    public boolean provide20MsAudio(ByteBuffer opus)
+    {
+        return nextFrame(opus) >= 0;
+    }
+
+    @Override
+    public synchronized boolean provide20MsAudio(ShortBuffer pcm)
+    {
+        if (released)
+            return false;
+        frameBuffer.clear();
+        int length = nextFrame(frameBuffer);
+        if (length < 0)
+            return false;
+
+        if (decoder == null)
+            decoder = new OpusDecoder();
+        ShortBuffer decoded = decoder.decode(frameData, length);
+        if (decoded == null)
+            return false;
+
+        float volume = this.volume;
+        int samples = Math.min(decoded.remaining(), pcm.remaining());
+        for (int i = 0; i < samples; i++)
+        {
+            int sample = (int) (decoded.get(i) * volume);
+            pcm.put((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample)));
+        }
+        return true;
+    }
+
+    private int nextFrame(ByteBuffer target)
+    {
+        int index = frame;
+        int length = track.getFrame(index, target);
+        if (length >= 0)
+        {
+            frame = index + 1;
+        }
+        else if (index >= track.getFrameCount() && (track.isComplete() || track.isFailed()))
+        {
+            stop();
+        }
+        //Otherwise the frame is still being encoded, nothing is sent until it is.
+        return length;
+    }
+}
@@ -15,16 +15,40 @@
  */
 package net.dv8tion.jda.audio.player;
 
+import net.dv8tion.jda.audio.AudioConnection;
 import net.dv8tion.jda.utils.SimpleLog;
 
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Plays audio files of any format supported by {@link javax.sound.sampled.AudioSystem AudioSystem}.
+ * <p>
+ * WAV files that already are 48KHz, 16bit, stereo PCM need no conversion. Their samples are memory-mapped and
+ * handed to the encoder straight from the mapping, and seeking within them only moves the position.
+ */
 public class FilePlayer extends Player
 {
+    //Little endian chunk ids of RIFF/WAVE files
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746D66;
+    private static final int DATA = 0x61746164;
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final int FRAME_SAMPLES = AudioConnection.OPUS_FRAME_SIZE * AudioConnection.OPUS_CHANNEL_COUNT;
+    private static final int SAMPLES_PER_MILLISECOND = AudioConnection.OPUS_SAMPLE_RATE / 1000;
+
     private File audioFile = null;
+    private ShortBuffer mappedSamples = null;   //Null if the file has to be converted
+    private int mappedFrame = 0;
     private boolean started = false;
     private boolean playing = false;
     private boolean paused = false;
@@ -45,7 +69,20 @@ public class FilePlayer extends Player
 
         reset();
         audioFile = file;
-        setAudioSource(AudioSystem.getAudioInputStream(file));
+        mappedSamples = mapSamples(file);
+        if (mappedSamples == null)
+            setAudioSource(AudioSystem.getAudioInputStream(file));
+    }
+
+    /**
+     * Whether the file is played from memory-mapped samples without any conversion.
+     *
+     * @return
+     *      True if the file is a WAV file of 48KHz, 16bit, stereo PCM.
+     */
+    public boolean isMapped()
+    {
+        return mappedSamples != null;
     }
 
     @Override
@@ -97,6 +134,132 @@ public class FilePlayer extends Player
         }
     }
 
+    @Override
+    public synchronized void fastForward(long milliseconds)
+    {
+        if (mappedSamples == null)
+            super.fastForward(milliseconds);
+        else
+            seek(getPosition() + milliseconds);
+    }
+
+    @Override
+    public boolean canRewind()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void rewind(long milliseconds)
+    {
+        seek(Math.max(0, getPosition() - milliseconds));
+    }
+
+    /**
+     * Continues playback at the given time of the file. Only takes constant time for
+     * {@link #isMapped() mapped} files, other files are read and converted up to that time, from the start
+     * if the time lies before the current position.
+     *
+     * @param milliseconds
+     *          The time from the start of the file.
+     */
+    public synchronized void seek(long milliseconds)
+    {
+        if (mappedSamples != null)
+        {
+            long frame = Math.max(0, milliseconds) * SAMPLES_PER_MILLISECOND;
+            mappedFrame = (int) Math.min(frame, mappedSamples.capacity() / AudioConnection.OPUS_CHANNEL_COUNT);
+            return;
+        }
+
+        long target = toBytes(milliseconds);
+        if (target < position)
+        {
+            try
+            {
+                setAudioSource(AudioSystem.getAudioInputStream(audioFile));
+            }
+            catch (IOException | UnsupportedAudioFileException e)
+            {
+                SimpleLog.getLog("JDAPlayer").log(e);
+                return;
+            }
+        }
+        skip(target - position);
+    }
+
+    @Override
+    public long getPosition()
+    {
+        if (mappedSamples == null)
+            return super.getPosition();
+        return mappedFrame / SAMPLES_PER_MILLISECOND;
+    }
+
+    @Override
+    public boolean isNativeSamples()
+    {
+        return mappedSamples != null;
+    }
+
+    @Override
+    public synchronized boolean provide20MsAudio(ShortBuffer pcm)
+    {
+        if (mappedSamples == null)
+        {
+            //not used by JDA for converted files, as they are no native samples
+            byte[] audio = super.provide20MsAudio();
+            if (audio == null)
+                return false;
+            ShortBuffer samples = ByteBuffer.wrap(audio).asShortBuffer();
+            samples.limit(Math.min(samples.limit(), pcm.remaining()));
+            pcm.put(samples);
+            return true;
+        }
+
+        int start = nextSamples(pcm.remaining());
+        if (start < 0)
+            return false;
+        int end = mappedFrame * AudioConnection.OPUS_CHANNEL_COUNT;
+        if (amplitude == 1.0F)
+        {
+            mappedSamples.limit(end);
+            mappedSamples.position(start);
+            pcm.put(mappedSamples);
+        }
+        else
+        {
+            for (int i = start; i < end; i++)
+                pcm.put(scale(mappedSamples.get(i)));
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean provide20MsAudio(ByteBuffer pcm)
+    {
+        if (mappedSamples == null)
+            return super.provide20MsAudio(pcm);
+
+        int start = nextSamples(pcm.remaining() / 2);
+        if (start < 0)
+            return false;
+        int end = mappedFrame * AudioConnection.OPUS_CHANNEL_COUNT;
+        for (int i = start; i < end; i++)
+            pcm.putShort(scale(mappedSamples.get(i)));
+        return true;
+    }
+
+    @Override
+    public byte[] provide20MsAudio()
+    {
+        if (mappedSamples == null)
+            return super.provide20MsAudio();
+
+        ByteBuffer audio = ByteBuffer.allocate(FRAME_SAMPLES * 2);
+        return provide20MsAudio(audio) ? audio.array() : null;
+    }
+
     @Override
     public boolean isStarted()
     {
@@ -124,9 +287,99 @@ public class FilePlayer extends Player
     protected void reset()
     {
         audioFile = null;
+        mappedSamples = null;
+        mappedFrame = 0;
         started = false;
         playing = false;
         paused = false;
         stopped = true;
     }
+
+    /**
+     * Moves the position past the next frame of the mapped samples.
+     *
+     * @return
+     *      The index of the first sample of the frame, or -1 at the end of the file.
+     */
+    private int nextSamples(int maxSamples)
+    {
+        int start = mappedFrame * AudioConnection.OPUS_CHANNEL_COUNT;
+        int samples = Math.min(Math.min(maxSamples, FRAME_SAMPLES), mappedSamples.capacity() - start);
+        if (samples <= 0)
+        {
+            stop();
+            return -1;
+        }
+        mappedFrame += samples / AudioConnection.OPUS_CHANNEL_COUNT;
+        return start;
+    }
+
+    private short scale(short sample)
+    {
+        int scaled = (int) (sample * amplitude);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+
+    /**
+     * Maps the samples of a WAV file that can be played without conversion.
+     *
+     * @return
+     *      The little endian samples of the file, or null if the file has to be converted.
+     */
+    private static ShortBuffer mapSamples(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+            if (!read(channel, header, 0, 12) || header.getInt(0) != RIFF || header.getInt(8) != WAVE)
+                return null;
+
+            boolean playable = false;
+            long offset = 12;
+            while (read(channel, header, offset, 8))
+            {
+                int id = header.getInt(0);
+                long size = header.getInt(4) & 0xFFFFFFFFL;
+                offset += 8;
+                if (id == FMT)
+                {
+                    if (size < 16 || size > header.capacity() || !read(channel, header, offset, (int) size))
+                        return null;
+                    int format = header.getShort(0) & 0xFFFF;
+                    //The actual format of WAVE_FORMAT_EXTENSIBLE starts its sub format GUID
+                    if (format == WAVE_FORMAT_EXTENSIBLE && size >= 26)
+                        format = header.getShort(24) & 0xFFFF;
+                    playable = format == WAVE_FORMAT_PCM
+                            && header.getShort(2) == AudioConnection.OPUS_CHANNEL_COUNT
+                            && header.getInt(4) == AudioConnection.OPUS_SAMPLE_RATE
+                            && header.getShort(14) == 16;
+                    if (!playable)
+                        return null;
+                }
+                else if (id == DATA)
+                {
+                    //Streaming writers may leave the size unset, the data then lasts until the end of the file.
+                    long length = Math.min(size, channel.size() - offset);
+                    length -= length % (2 * AudioConnection.OPUS_CHANNEL_COUNT);
+                    if (!playable || length > Integer.MAX_VALUE)
+                        return null;
+                    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                }
+                offset += size + (size & 1);
+            }
+            return null;
+        }
+    }
+
+    private static boolean read(FileChannel channel, ByteBuffer buffer, long offset, int length) throws IOException
+    {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                return false;
+        }
+        return true;
+    }
 }
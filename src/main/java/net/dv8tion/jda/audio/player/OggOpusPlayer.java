@@ -0,0 +1,283 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio.player;
+
+import net.dv8tion.jda.audio.AudioConnection;
+import net.dv8tion.jda.audio.AudioSendHandler;
+import net.dv8tion.jda.utils.SimpleLog;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Plays Ogg/Opus files without decoding them. The opus packets of the file are sent as they are, see
+ * {@link net.dv8tion.jda.audio.AudioSendHandler#isOpus()}, so playing costs next to no CPU.
+ * <p>
+ * Every packet of the file has to be 20ms long, which is the default of most encoders, for example
+ * {@code opusenc --framesize 20}. As the audio is not decoded, its volume cannot be changed.
+ */
+public class OggOpusPlayer implements AudioSendHandler
+{
+    private static final byte[] OPUS_HEAD = {'O', 'p', 'u', 's', 'H', 'e', 'a', 'd'};
+    private static final byte[] OPUS_TAGS = {'O', 'p', 'u', 's', 'T', 'a', 'g', 's'};
+    private static final int CHANNEL_COUNT_INDEX = 9;
+    private static final int MAPPING_FAMILY_INDEX = 18;
+
+    //Samples per frame at 48KHz of the opus configurations, see RFC 6716 section 3.1
+    private static final int[] SILK_FRAME_SAMPLES = {480, 960, 1920, 2880};
+    private static final int[] HYBRID_FRAME_SAMPLES = {480, 960};
+    private static final int[] CELT_FRAME_SAMPLES = {120, 240, 480, 960};
+
+    private File audioFile = null;
+    private OggPacketReader reader = null;
+    private boolean started = false;
+    private boolean playing = false;
+    private boolean paused = false;
+    private boolean stopped = true;
+
+    public OggOpusPlayer() {}
+    public OggOpusPlayer(File file) throws IOException, UnsupportedAudioFileException
+    {
+        setAudioFile(file);
+    }
+
+    public void setAudioFile(File file) throws IOException, UnsupportedAudioFileException
+    {
+        if (file == null)
+            throw new IllegalArgumentException("A null File was provided to the OggOpusPlayer! Cannot play a null file!");
+        if (!file.exists())
+            throw new IllegalArgumentException("A non-existent file was provided to the OggOpusPlayer! Cannot play a file that doesn't exist!");
+
+        reset();
+        audioFile = file;
+        open();
+    }
+
+    public void play()
+    {
+        if (started && stopped)
+            throw new IllegalStateException("Cannot start a player after it has been stopped.\n" +
+                    "Please use the restart method or load a new file.");
+        started = true;
+        playing = true;
+        paused = false;
+        stopped = false;
+    }
+
+    public void pause()
+    {
+        playing = false;
+        paused = true;
+    }
+
+    public void stop()
+    {
+        playing = false;
+        paused = false;
+        stopped = true;
+    }
+
+    public void restart()
+    {
+        try
+        {
+            File oldFile = audioFile;
+            reset();
+            setAudioFile(oldFile);
+            play();
+        }
+        catch (IOException e)
+        {
+            if (!audioFile.exists())
+                SimpleLog.getLog("JDAPlayer").fatal("Attempted to restart the OggOpusPlayer playback, but the provided file no longer exists!");
+            SimpleLog.getLog("JDAPlayer").log(e);
+        }
+        catch (UnsupportedAudioFileException e)
+        {
+            SimpleLog.getLog("JDAPlayer").log(e);
+        }
+    }
+
+    public boolean isStarted()
+    {
+        return started;
+    }
+
+    public boolean isPlaying()
+    {
+        return playing;
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    @Override
+    public boolean canProvide()
+    {
+        return !isPaused() && !isStopped();
+    }
+
+    @Override
+    public boolean isOpus()
+    {
+        return true;
+    }
+
+    @Override
+    public byte[] provide20MsAudio()
+    {
+        int length = nextPacket();
+        return length < 0 ? null : Arrays.copyOf(reader.getPacket(), length);
+    }
+
+    @Override
+    public boolean provide20MsAudio(ByteBuffer opus)
+    {
+        int length = nextPacket();
+        if (length < 0 || length > opus.remaining())
+            return false;
+        opus.put(reader.getPacket(), 0, length);
+        return true;
+    }
+
+    protected void reset()
+    {
+        closeReader();
+        audioFile = null;
+        started = false;
+        playing = false;
+        paused = false;
+        stopped = true;
+    }
+
+    private void open() throws IOException, UnsupportedAudioFileException
+    {
+        reader = new OggPacketReader(new BufferedInputStream(new FileInputStream(audioFile)));
+        try
+        {
+            int length = reader.nextPacket();
+            byte[] head = reader.getPacket();
+            if (length < MAPPING_FAMILY_INDEX + 1 || !startsWith(head, length, OPUS_HEAD))
+                throw new UnsupportedAudioFileException("The file is not an Ogg/Opus file: " + audioFile);
+            if (head[MAPPING_FAMILY_INDEX] != 0 || head[CHANNEL_COUNT_INDEX] > AudioConnection.OPUS_CHANNEL_COUNT)
+                throw new UnsupportedAudioFileException("Only mono and stereo Ogg/Opus files are supported: " + audioFile);
+            if (!startsWith(reader.getPacket(), reader.nextPacket(), OPUS_TAGS))
+                throw new UnsupportedAudioFileException("The Ogg/Opus file is missing its comment header: " + audioFile);
+        }
+        catch (IOException | UnsupportedAudioFileException e)
+        {
+            closeReader();
+            throw e;
+        }
+    }
+
+    private int nextPacket()
+    {
+        if (reader == null)
+            throw new IllegalStateException("The Audio file was never set for this player!\n" +
+                    "Please provide a File using setAudioFile.");
+        try
+        {
+            //Empty packets carry no audio
+            int length;
+            do
+            {
+                length = reader.nextPacket();
+            }
+            while (length == 0);
+
+            if (length > 0 && getSamples(reader.getPacket(), length) != AudioConnection.OPUS_FRAME_SIZE)
+            {
+                SimpleLog.getLog("JDAPlayer").warn("Stopped playing " + audioFile + " because it contains packets that are not 20ms long");
+                length = -1;
+            }
+            if (length < 0)
+            {
+                stop();
+                closeReader();
+            }
+            return length;
+        }
+        catch (IOException e)
+        {
+            SimpleLog.getLog("JDAPlayer").log(e);
+            stop();
+            closeReader();
+            return -1;
+        }
+    }
+
+    private void closeReader()
+    {
+        if (reader != null)
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException ignored) {}
+            reader = null;
+        }
+    }
+
+    private static int getSamples(byte[] packet, int length)
+    {
+        int toc = packet[0] & 0xFF;
+        int config = toc >> 3;
+        int frameSamples;
+        if (config < 12)
+            frameSamples = SILK_FRAME_SAMPLES[config & 3];
+        else if (config < 16)
+            frameSamples = HYBRID_FRAME_SAMPLES[config & 1];
+        else
+            frameSamples = CELT_FRAME_SAMPLES[config & 3];
+
+        switch (toc & 3)
+        {
+            case 0:
+                return frameSamples;
+            case 1:
+            case 2:
+                return 2 * frameSamples;
+            default:
+                return length < 2 ? 0 : (packet[1] & 0x3F) * frameSamples;
+        }
+    }
+
+    private static boolean startsWith(byte[] packet, int length, byte[] magic)
+    {
+        if (length < magic.length)
+            return false;
+        for (int i = 0; i < magic.length; i++)
+        {
+            if (packet[i] != magic[i])
+                return false;
+        }
+        return true;
+    }
+}
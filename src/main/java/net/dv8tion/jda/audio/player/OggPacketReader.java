@@ -0,0 +1,153 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio.player;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the packets of the first logical stream of an Ogg container. Pages of other streams are skipped.
+ * <p>
+ * The page header, the segment table and the packet are read into buffers that are reused for every packet.
+ */
+class OggPacketReader implements Closeable
+{
+    private static final int HEADER_LENGTH = 27;
+    private static final int SERIAL_INDEX = 14;
+    private static final int SEGMENT_COUNT_INDEX = 26;
+
+    private final InputStream in;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private final byte[] segments = new byte[255];
+    private int segmentCount = 0;
+    private int segmentIndex = 0;
+    private boolean hasSerial = false;
+    private int serial;
+
+    private byte[] packet = new byte[4096];
+    private int packetLength = 0;
+
+    OggPacketReader(InputStream in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next packet.
+     *
+     * @return
+     *      The length of the packet, or -1 at the end of the stream.
+     */
+    int nextPacket() throws IOException
+    {
+        packetLength = 0;
+        while (true)
+        {
+            if (segmentIndex == segmentCount)
+            {
+                if (!readPage())
+                    return packetLength > 0 ? packetLength : -1;
+                continue;
+            }
+
+            int size = segments[segmentIndex++] & 0xFF;
+            if (packet.length < packetLength + size)
+                packet = Arrays.copyOf(packet, Math.max(packet.length * 2, packetLength + size));
+            readFully(packet, packetLength, size);
+            packetLength += size;
+            //A segment of 255 bytes means that the packet continues in the next segment, possibly on the next page.
+            if (size < 255)
+                return packetLength;
+        }
+    }
+
+    /**
+     * The packet read by the last call of {@link #nextPacket()}. Only valid until the next packet is read.
+     */
+    byte[] getPacket()
+    {
+        return packet;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private boolean readPage() throws IOException
+    {
+        while (true)
+        {
+            int first = in.read();
+            if (first == -1)
+                return false;
+            header[0] = (byte) first;
+            readFully(header, 1, HEADER_LENGTH - 1);
+            if (header[0] != 'O' || header[1] != 'g' || header[2] != 'g' || header[3] != 'S')
+                throw new IOException("The stream is not an Ogg stream or it is corrupted");
+
+            int pageSerial = (header[SERIAL_INDEX] & 0xFF) | (header[SERIAL_INDEX + 1] & 0xFF) << 8
+                    | (header[SERIAL_INDEX + 2] & 0xFF) << 16 | (header[SERIAL_INDEX + 3] & 0xFF) << 24;
+            segmentCount = header[SEGMENT_COUNT_INDEX] & 0xFF;
+            segmentIndex = 0;
+            readFully(segments, 0, segmentCount);
+
+            if (!hasSerial)
+            {
+                hasSerial = true;
+                serial = pageSerial;
+            }
+            if (pageSerial == serial)
+                return true;
+
+            //A page of another logical stream
+            for (int i = 0; i < segmentCount; i++)
+                skipFully(segments[i] & 0xFF);
+            segmentCount = 0;
+        }
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            int read = in.read(buffer, offset, length);
+            if (read == -1)
+                throw new EOFException("The Ogg stream ended in the middle of a page");
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private void skipFully(int length) throws IOException
+    {
+        while (length > 0)
+        {
+            long skipped = in.skip(length);
+            if (skipped <= 0)
+            {
+                if (in.read() == -1)
+                    throw new EOFException("The Ogg stream ended in the middle of a page");
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class Player implements AudioSendHandler
 {
@@ -32,13 +33,15 @@ public abstract class Player implements AudioSendHandler
     protected AmplitudeAudioInputStream amplitudeAudioStream = null;
 
     protected float amplitude = 1.0F;
+    //The amount of bytes of the audio source that were played or skipped
+    protected long position = 0;
+
+    private byte[] frameBuffer = null;
 
     public abstract void play();
     public abstract void pause();
     public abstract void stop();
     public abstract void restart();
-//    public abstract void fastForward(long milliseconds);
-//    public abstract void rewind(long milliseconds);
     public abstract boolean isStarted();
     public abstract boolean isPlaying();
     public abstract boolean isPaused();
@@ -56,6 +59,7 @@ public abstract class Player implements AudioSendHandler
             } catch(Exception ignored) {}
         }
 
+        position = 0;
         AudioFormat baseFormat = inSource.getFormat();
 
         //Converts first to PCM data. If the data is already PCM data, this will not change anything.
@@ -96,6 +100,87 @@ public abstract class Player implements AudioSendHandler
         }
     }
 
+    /**
+     * Skips the given time of the audio source. The skipped audio is still read and converted.
+     *
+     * @param milliseconds
+     *          The time to skip.
+     */
+    public void fastForward(long milliseconds)
+    {
+        if (audioSource == null || audioFormat == null)
+            throw new IllegalStateException("The Audio source was never set for this player!\n" +
+                    "Please provide an AudioInputStream using setAudioSource.");
+        skip(toBytes(milliseconds));
+    }
+
+    /**
+     * Whether this player supports {@link #rewind(long)}. A stream cannot be read again, so only players that can
+     * reopen their source support it.
+     *
+     * @return
+     *      True if this player can rewind. Default: false
+     */
+    public boolean canRewind()
+    {
+        return false;
+    }
+
+    /**
+     * Goes back the given time in the audio source. Only supported if {@link #canRewind()} returns true.
+     *
+     * @param milliseconds
+     *          The time to go back.
+     *
+     * @throws java.lang.UnsupportedOperationException
+     *          If this player {@link #canRewind() cannot rewind}.
+     */
+    public void rewind(long milliseconds)
+    {
+        throw new UnsupportedOperationException("The " + getClass().getSimpleName() + " cannot rewind its audio source");
+    }
+
+    /**
+     * The position in the audio source.
+     *
+     * @return
+     *      The played and skipped time in milliseconds.
+     */
+    public long getPosition()
+    {
+        if (audioFormat == null)
+            return 0;
+        return (long) (position / audioFormat.getFrameSize() * 1000 / audioFormat.getFrameRate());
+    }
+
+    protected void skip(long bytes)
+    {
+        try
+        {
+            while (bytes > 0)
+            {
+                long skipped = audioSource.skip(bytes);
+                if (skipped <= 0)
+                    break;
+                bytes -= skipped;
+                position += skipped;
+            }
+        }
+        catch (IOException e)
+        {
+            SimpleLog.getLog("JDAPlayer").log(e);
+        }
+    }
+
+    /**
+     * The converted bytes of the given time of audio, aligned to whole frames.
+     */
+    protected long toBytes(long milliseconds)
+    {
+        long frames = (long) (milliseconds * audioFormat.getFrameRate() / 1000);
+        return Math.max(0, frames) * audioFormat.getFrameSize();
+    }
+
     @Override
     public boolean canProvide()
     {
@@ -115,6 +200,7 @@ public abstract class Player implements AudioSendHandler
             amountRead = audioSource.read(audio, 0, audio.length);
             if (amountRead > -1)
             {
+                position += amountRead;
                 return audio;
             }
             else
@@ -130,4 +216,36 @@ public abstract class Player implements AudioSendHandler
         }
         return new byte[0];
     }
+
+    @Override
+    public boolean provide20MsAudio(ByteBuffer pcm)
+    {
+        if (audioSource == null || audioFormat == null)
+            throw new IllegalStateException("The Audio source was never set for this player!\n" +
+                    "Please provide an AudioInputStream using setAudioSource.");
+        try
+        {
+            int frameLength = AudioConnection.OPUS_FRAME_SIZE * audioFormat.getFrameSize();
+            if (frameBuffer == null || frameBuffer.length != frameLength)
+                frameBuffer = new byte[frameLength];
+            int amountRead = audioSource.read(frameBuffer, 0, frameBuffer.length);
+            if (amountRead > -1)
+            {
+                position += amountRead;
+                pcm.put(frameBuffer, 0, Math.min(amountRead, pcm.remaining()));
+                return true;
+            }
+            else
+            {
+                stop();
+                audioSource.close();
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            SimpleLog.getLog("JDAPlayer").log(e);
+        }
+        return false;
+    }
 }
@@ -24,7 +24,10 @@ import net.dv8tion.jda.managers.RoleManager;
 import net.dv8tion.jda.utils.InviteUtil.AdvancedInvite;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Represents a Discord {@link net.dv8tion.jda.entities.Guild Guild}. This should contain all information provided from Discord about a Guild.
@@ -107,15 +110,44 @@ public interface Guild
 
     /**
      * The {@link net.dv8tion.jda.entities.User Users} that are part of this {@link net.dv8tion.jda.entities.Guild Guild}.
+     * The list is a snapshot that is copied on every call. To only count or iterate the users use
+     * {@link #getUserCount()}, {@link #getUserView()} or {@link #streamUsers()} instead.
      *
      * @return
      *      An Immutable List of {@link net.dv8tion.jda.entities.User Users}.
      */
     List<User> getUsers();
 
+    /**
+     * An unmodifiable live view of the {@link net.dv8tion.jda.entities.User Users} that are part of this
+     * {@link net.dv8tion.jda.entities.Guild Guild}. The view is not copied and reflects all later changes.
+     *
+     * @return
+     *      Live view of the {@link net.dv8tion.jda.entities.User Users} of this Guild.
+     */
+    Collection<User> getUserView();
+
+    /**
+     * A {@link java.util.stream.Stream Stream} over the {@link net.dv8tion.jda.entities.User Users} that are part of this
+     * {@link net.dv8tion.jda.entities.Guild Guild}. Nothing is copied to create the stream.
+     *
+     * @return
+     *      Stream of the {@link net.dv8tion.jda.entities.User Users} of this Guild.
+     */
+    Stream<User> streamUsers();
+
+    /**
+     * The amount of {@link net.dv8tion.jda.entities.User Users} that are part of this {@link net.dv8tion.jda.entities.Guild Guild}.
+     *
+     * @return
+     *      The amount of {@link net.dv8tion.jda.entities.User Users} of this Guild.
+     */
+    int getUserCount();
+
     /**
      * The {@link net.dv8tion.jda.entities.TextChannel TextChannels} available on the {@link net.dv8tion.jda.entities.Guild Guild}.
      * The channels returned will be sorted according to their position.
+     * The sorted list is kept until a channel is added, removed or moved, so repeated calls do not copy it.
      *
      * @return
      *      An Immutable List of {@link net.dv8tion.jda.entities.TextChannel TextChannels}.
@@ -138,6 +170,7 @@ public interface Guild
     /**
      * The {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannels} available on the {@link net.dv8tion.jda.entities.Guild Guild}.
      * The channels returned will be sorted according to their position.
+     * The sorted list is kept until a channel is added, removed or moved, so repeated calls do not copy it.
      *
      * @return
      *      An Immutable List of {@link net.dv8tion.jda.entities.VoiceChannel VoiceChannels}.
@@ -290,6 +323,35 @@ public interface Guild
      */
     List<VoiceStatus> getVoiceStatuses();
 
+    /**
+     * Retrieves the {@link net.dv8tion.jda.entities.User User} with the given id if it is a member of this Guild.<br>
+     * With lazy member loading enabled (see {@link net.dv8tion.jda.JDABuilder#setLazyMemberLoading(boolean)})
+     * members that were not seen yet are loaded from Discord and added to {@link #getUsers()}.
+     * Otherwise the future completes immediately.
+     *
+     * @param id
+     *      The id of the user.
+     * @return
+     *      Future of the user. Completed with <code>null</code> if the user is no member of this Guild.
+     */
+    CompletableFuture<User> retrieveUserById(String id);
+
+    /**
+     * Retrieves the members of this Guild whose username starts with the given prefix, ignoring case.<br>
+     * With lazy member loading enabled (see {@link net.dv8tion.jda.JDABuilder#setLazyMemberLoading(boolean)})
+     * the members are searched by Discord and added to {@link #getUsers()}.
+     * Otherwise the cached members are searched and the future completes immediately.
+     *
+     * @param prefix
+     *      The start of the usernames. An empty prefix matches every member.
+     * @param limit
+     *      The maximum amount of users to return, between 1 and
+     *      {@value net.dv8tion.jda.requests.MemberLoader#MAX_QUERY_LIMIT}.
+     * @return
+     *      Future of the found users.
+     */
+    CompletableFuture<List<User>> retrieveUsersByName(String prefix, int limit);
+
     /**
      * Returns the current nickname of a user in this Guild.
      *
@@ -217,6 +217,9 @@ public interface Message
      * @param callback
      *      the Callback-function that is called upon successful edit with the Message-object of the edited message or null, if editing failed.
      *      You can pass null as callback, if you do not need the updated Message-object.
+     * @throws java.util.concurrent.RejectedExecutionException
+     *      If the message-queue of this channel is full and JDA is configured to reject further messages.
+     *      See {@link net.dv8tion.jda.JDABuilder#setMessageQueue(int, net.dv8tion.jda.requests.MessageSender.OverflowPolicy) JDABuilder.setMessageQueue}.
      */
     void updateMessageAsync(String newContent, Consumer<Message> callback);
 
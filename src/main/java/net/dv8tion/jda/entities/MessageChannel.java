@@ -91,6 +91,9 @@ public interface MessageChannel
      * @throws VerificationLevelException
      *      If this is a {@link net.dv8tion.jda.entities.TextChannel TextChannel}
      *      and you do not meet the required verification-level of the guild.
+     * @throws java.util.concurrent.RejectedExecutionException
+     *      If the message-queue of this channel is full and JDA is configured to reject further messages.
+     *      See {@link net.dv8tion.jda.JDABuilder#setMessageQueue(int, net.dv8tion.jda.requests.MessageSender.OverflowPolicy) JDABuilder.setMessageQueue}.
      */
     void sendMessageAsync(String msg, Consumer<Message> callback);
 
@@ -112,6 +115,9 @@ public interface MessageChannel
      * @throws VerificationLevelException
      *      If this is a {@link net.dv8tion.jda.entities.TextChannel TextChannel}
      *      and you do not meet the required verification-level of the guild.
+     * @throws java.util.concurrent.RejectedExecutionException
+     *      If the message-queue of this channel is full and JDA is configured to reject further messages.
+     *      See {@link net.dv8tion.jda.JDABuilder#setMessageQueue(int, net.dv8tion.jda.requests.MessageSender.OverflowPolicy) JDABuilder.setMessageQueue}.
      */
     void sendMessageAsync(Message msg, Consumer<Message> callback);
 
@@ -26,16 +26,22 @@ import net.dv8tion.jda.managers.AudioManager;
 import net.dv8tion.jda.managers.ChannelManager;
 import net.dv8tion.jda.managers.GuildManager;
 import net.dv8tion.jda.managers.RoleManager;
+import net.dv8tion.jda.requests.MemberLoader;
 import net.dv8tion.jda.requests.Requester;
 import net.dv8tion.jda.utils.InviteUtil;
 import net.dv8tion.jda.utils.InviteUtil.AdvancedInvite;
 import net.dv8tion.jda.utils.MiscUtil;
 import net.dv8tion.jda.utils.PermissionUtil;
+import net.dv8tion.jda.utils.SnowflakeMap;
 import org.json.JSONObject;
 
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GuildImpl implements Guild
 {
@@ -46,13 +52,20 @@ public class GuildImpl implements Guild
     private String ownerId;
     private int afkTimeout;
     private Region region;
-    private final Map<String, TextChannel> textChannels = new HashMap<>();
-    private final Map<String, VoiceChannel> voiceChannels = new HashMap<>();
-    private final Map<User, List<Role>> userRoles = new HashMap<>();
-    private final Map<String, Role> roles = new HashMap<>();
-    private final Map<User, VoiceStatus> voiceStatusMap = new HashMap<>();
-    private final Map<User, OffsetDateTime> joinedAtMap = new HashMap<>();
-    private final Map<User, String> nickMap = new HashMap<>();
+    private final Map<String, TextChannel> textChannels = new SnowflakeMap<>();
+    private final Map<String, VoiceChannel> voiceChannels = new SnowflakeMap<>();
+    private final Map<User, List<Role>> userRoles = new ConcurrentHashMap<>();
+    private final Map<String, Role> roles = new SnowflakeMap<>();
+    private final Map<User, VoiceStatus> voiceStatusMap = new ConcurrentHashMap<>();
+    private final Map<User, OffsetDateTime> joinedAtMap = new ConcurrentHashMap<>();
+    private final Map<User, String> nickMap = new ConcurrentHashMap<>();
+    //member overrides of users that are not loaded in lazy member loading mode, by user id, only accessed by the gateway worker
+    private final Map<String, Map<Channel, JSONObject>> pendingUserOverrides = new HashMap<>();
+    //sorted by position, rebuilt on the next read after a channel or role was added, removed or moved
+    private volatile List<TextChannel> textChannelIndex = null;
+    private volatile List<VoiceChannel> voiceChannelIndex = null;
+    private volatile List<Role> roleIndex = null;
+    private final PermissionCache permissionCache = new PermissionCache();
     private Role publicRole;
     private TextChannel publicChannel;
     private final JDAImpl api;
@@ -133,12 +146,38 @@ public class GuildImpl implements Guild
         return Collections.unmodifiableList(new ArrayList<>(userRoles.keySet()));
     }
 
+    @Override
+    public Collection<User> getUserView()
+    {
+        return Collections.unmodifiableSet(userRoles.keySet());
+    }
+
+    @Override
+    public Stream<User> streamUsers()
+    {
+        return userRoles.keySet().stream();
+    }
+
+    @Override
+    public int getUserCount()
+    {
+        return userRoles.size();
+    }
+
     @Override
     public List<TextChannel> getTextChannels()
     {
-        ArrayList<TextChannel> textChannels = new ArrayList<>(this.textChannels.values());
-        Collections.sort(textChannels, (c1, c2) -> Integer.compare(c1.getPosition(), c2.getPosition()));
-        return Collections.unmodifiableList(textChannels);
+        List<TextChannel> index = textChannelIndex;
+        if (index == null)
+        {
+            synchronized (textChannels)
+            {
+                index = textChannelIndex;
+                if (index == null)
+                    textChannelIndex = index = sorted(textChannels.values(), (c1, c2) -> Integer.compare(c1.getPosition(), c2.getPosition()));
+            }
+        }
+        return index;
     }
 
     @Override
@@ -172,9 +211,17 @@ public class GuildImpl implements Guild
     @Override
     public List<VoiceChannel> getVoiceChannels()
     {
-        List<VoiceChannel> list = new ArrayList<>(voiceChannels.values());
-        Collections.sort(list, (v1, v2) -> Integer.compare(v1.getPosition(), v2.getPosition()));
-        return Collections.unmodifiableList(list);
+        List<VoiceChannel> index = voiceChannelIndex;
+        if (index == null)
+        {
+            synchronized (voiceChannels)
+            {
+                index = voiceChannelIndex;
+                if (index == null)
+                    voiceChannelIndex = index = sorted(voiceChannels.values(), (v1, v2) -> Integer.compare(v1.getPosition(), v2.getPosition()));
+            }
+        }
+        return index;
     }
 
     @Override
@@ -208,9 +255,17 @@ public class GuildImpl implements Guild
     @Override
     public List<Role> getRoles()
     {
-        List<Role> list = new ArrayList<>(roles.values());
-        Collections.sort(list, (r1, r2) -> Integer.compare(r2.getPosition(), r1.getPosition()));
-        return Collections.unmodifiableList(list);
+        List<Role> index = roleIndex;
+        if (index == null)
+        {
+            synchronized (roles)
+            {
+                index = roleIndex;
+                if (index == null)
+                    roleIndex = index = sorted(roles.values(), (r1, r2) -> Integer.compare(r2.getPosition(), r1.getPosition()));
+            }
+        }
+        return index;
     }
 
     @Override
@@ -305,6 +360,31 @@ public class GuildImpl implements Guild
         return Collections.unmodifiableList(new LinkedList<>(voiceStatusMap.values()));
     }
 
+    @Override
+    public CompletableFuture<User> retrieveUserById(String id)
+    {
+        if (api.getMemberLoader().isEnabled())
+            return api.getMemberLoader().retrieveMember(this, id);
+        User user = api.getUserMap().get(id);
+        return CompletableFuture.completedFuture(user != null && userRoles.containsKey(user) ? user : null);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> retrieveUsersByName(String prefix, int limit)
+    {
+        if (prefix == null)
+            throw new IllegalArgumentException("The prefix may not be null");
+        if (limit < 1 || limit > MemberLoader.MAX_QUERY_LIMIT)
+            throw new IllegalArgumentException("The limit has to be between 1 and " + MemberLoader.MAX_QUERY_LIMIT);
+        if (api.getMemberLoader().isEnabled())
+            return api.getMemberLoader().requestMembers(this, prefix, limit);
+        String lowerPrefix = prefix.toLowerCase();
+        return CompletableFuture.completedFuture(Collections.unmodifiableList(userRoles.keySet().stream()
+                .filter(user -> user.getUsername().toLowerCase().startsWith(lowerPrefix))
+                .limit(limit)
+                .collect(Collectors.toList())));
+    }
+
     @Override
     public String getNicknameForUser(User user)
     {
@@ -404,6 +484,11 @@ public class GuildImpl implements Guild
         return this;
     }
 
+    public PermissionCache getPermissionCache()
+    {
+        return permissionCache;
+    }
+
     public Map<String, TextChannel> getTextChannelsMap()
     {
         return textChannels;
@@ -414,6 +499,46 @@ public class GuildImpl implements Guild
         return voiceChannels;
     }
 
+    /**
+     * Has to be called whenever a TextChannel was added, removed or changed its position.
+     */
+    public void invalidateTextChannelIndex()
+    {
+        synchronized (textChannels)
+        {
+            textChannelIndex = null;
+        }
+    }
+
+    /**
+     * Has to be called whenever a VoiceChannel was added, removed or changed its position.
+     */
+    public void invalidateVoiceChannelIndex()
+    {
+        synchronized (voiceChannels)
+        {
+            voiceChannelIndex = null;
+        }
+    }
+
+    /**
+     * Has to be called whenever a Role was added, removed or changed its position.
+     */
+    public void invalidateRoleIndex()
+    {
+        synchronized (roles)
+        {
+            roleIndex = null;
+        }
+    }
+
+    private static <T> List<T> sorted(Collection<T> values, Comparator<T> comparator)
+    {
+        List<T> list = new ArrayList<>(values);
+        list.sort(comparator);
+        return Collections.unmodifiableList(list);
+    }
+
     public Map<User, VoiceStatus> getVoiceStatusMap()
     {
         return voiceStatusMap;
@@ -429,6 +554,11 @@ public class GuildImpl implements Guild
         return nickMap;
     }
 
+    public Map<String, Map<Channel, JSONObject>> getPendingUserOverridesMap()
+    {
+        return pendingUserOverrides;
+    }
+
     public GuildImpl setVerificationLevel(VerificationLevel level)
     {
         this.verificationLevel = level;
@@ -20,6 +20,7 @@ import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.entities.*;
 import net.dv8tion.jda.events.Event;
 import net.dv8tion.jda.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.hooks.EventDispatcher;
 import net.dv8tion.jda.hooks.EventListener;
 import net.dv8tion.jda.hooks.IEventManager;
 import net.dv8tion.jda.hooks.InterfacedEventManager;
@@ -28,9 +29,14 @@ import net.dv8tion.jda.managers.AccountManager;
 import net.dv8tion.jda.managers.AudioManager;
 import net.dv8tion.jda.managers.GuildManager;
 import net.dv8tion.jda.managers.impl.AudioManagerImpl;
+import net.dv8tion.jda.requests.GuildLock;
+import net.dv8tion.jda.requests.InviteResolver;
+import net.dv8tion.jda.requests.MemberLoader;
+import net.dv8tion.jda.requests.MessageSender;
 import net.dv8tion.jda.requests.Requester;
 import net.dv8tion.jda.requests.WebSocketClient;
 import net.dv8tion.jda.utils.SimpleLog;
+import net.dv8tion.jda.utils.SnowflakeMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
 import org.json.JSONException;
@@ -43,8 +49,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -54,24 +62,29 @@ public class JDAImpl implements JDA
 {
     public static final SimpleLog LOG = SimpleLog.getLog("JDA");
     private final HttpHost proxy;
-    private final Map<String, User> userMap = new HashMap<>();
-    private final Map<String, Guild> guildMap = new HashMap<>();
-    private final Map<String, TextChannel> textChannelMap = new HashMap<>();
-    private final Map<String, VoiceChannel> voiceChannelMap = new HashMap<>();
-    private final Map<String, PrivateChannel> pmChannelMap = new HashMap<>();
-    private final Map<String, String> offline_pms = new HashMap<>();    //Userid -> channelid
-    private final Map<Guild, AudioManager> audioManagers = new HashMap<>();
+    private final SnowflakeMap<User> userMap = new SnowflakeMap<>();
+    private final SnowflakeMap<Guild> guildMap = new SnowflakeMap<>();
+    private final SnowflakeMap<TextChannel> textChannelMap = new SnowflakeMap<>();
+    private final SnowflakeMap<VoiceChannel> voiceChannelMap = new SnowflakeMap<>();
+    private final SnowflakeMap<PrivateChannel> pmChannelMap = new SnowflakeMap<>();
+    private final SnowflakeMap<String> offline_pms = new SnowflakeMap<>();    //Userid -> channelid
+    private final Map<Guild, AudioManager> audioManagers = new ConcurrentHashMap<>();
     private final boolean audioEnabled;
     private final boolean useShutdownHook;
-    private IEventManager eventManager = new InterfacedEventManager();
+    private final EventDispatcher eventDispatcher = new EventDispatcher(new InterfacedEventManager());
     private SelfInfo selfInfo = null;
     private AccountManager accountManager;
     private String authToken = null;
     private WebSocketClient client;
     private final Requester requester = new Requester(this);
+    private final MessageSender messageSender = new MessageSender(this);
+    private final InviteResolver inviteResolver = new InviteResolver(this);
+    private final GuildLock guildLock = new GuildLock(this);
+    private final MemberLoader memberLoader = new MemberLoader(this);
     private boolean reconnect;
+    private boolean transportCompression = false;
+    private int maxQueuedFrames = WebSocketClient.DEFAULT_MAX_QUEUED_FRAMES;
     private int responseTotal;
-    private Long messageLimit = null;
 
     public JDAImpl(boolean enableAudio, boolean useShutdownHook)
     {
@@ -126,7 +139,7 @@ public class JDAImpl implements JDA
         }
 
         LOG.info("Login Successful!");
-        client = new WebSocketClient(this, proxy, sharding);
+        client = new WebSocketClient(this, proxy, sharding, transportCompression, maxQueuedFrames);
         client.setAutoReconnect(reconnect);
 
 
@@ -216,7 +229,7 @@ public class JDAImpl implements JDA
     @Override
     public void setEventManager(IEventManager manager)
     {
-        this.eventManager = manager;
+        eventDispatcher.setEventManager(manager);
     }
 
     @Override
@@ -237,9 +250,16 @@ public class JDAImpl implements JDA
         return Collections.unmodifiableList(getEventManager().getRegisteredListeners());
     }
 
-    public IEventManager getEventManager()
+    /**
+     * Returns the {@link net.dv8tion.jda.hooks.EventDispatcher EventDispatcher} which hands all fired events
+     * to the {@link net.dv8tion.jda.hooks.IEventManager IEventManager} set via {@link #setEventManager(IEventManager)}.
+     *
+     * @return
+     *      The EventDispatcher of this JDA instance.
+     */
+    public EventDispatcher getEventManager()
     {
-        return eventManager;
+        return eventDispatcher;
     }
 
     public WebSocketClient getClient()
@@ -247,7 +267,7 @@ public class JDAImpl implements JDA
         return client;
     }
 
-    public Map<String, User> getUserMap()
+    public SnowflakeMap<User> getUserMap()
     {
         return userMap;
     }
@@ -255,7 +275,25 @@ public class JDAImpl implements JDA
     @Override
     public List<User> getUsers()
     {
-        return Collections.unmodifiableList(new LinkedList<>(userMap.values()));
+        return Collections.unmodifiableList(new ArrayList<>(userMap.values()));
+    }
+
+    @Override
+    public Collection<User> getUserView()
+    {
+        return Collections.unmodifiableCollection(userMap.values());
+    }
+
+    @Override
+    public Stream<User> streamUsers()
+    {
+        return userMap.values().stream();
+    }
+
+    @Override
+    public int getUserCount()
+    {
+        return userMap.size();
     }
 
     @Override
@@ -273,7 +311,7 @@ public class JDAImpl implements JDA
                         .collect(Collectors.toList()));
     }
 
-    public Map<String, Guild> getGuildMap()
+    public SnowflakeMap<Guild> getGuildMap()
     {
         return guildMap;
     }
@@ -281,7 +319,13 @@ public class JDAImpl implements JDA
     @Override
     public List<Guild> getGuilds()
     {
-        return Collections.unmodifiableList(new LinkedList<>(guildMap.values()));
+        return Collections.unmodifiableList(new ArrayList<>(guildMap.values()));
+    }
+
+    @Override
+    public Stream<Guild> streamGuilds()
+    {
+        return guildMap.values().stream();
     }
 
     @Override
@@ -314,7 +358,7 @@ public class JDAImpl implements JDA
     @Override
     public List<PrivateChannel> getPrivateChannels()
     {
-        return Collections.unmodifiableList(new LinkedList<>(pmChannelMap.values()));
+        return Collections.unmodifiableList(new ArrayList<>(pmChannelMap.values()));
     }
 
     @Override
@@ -323,7 +367,7 @@ public class JDAImpl implements JDA
         return guildMap.get(id);
     }
 
-    public Map<String, TextChannel> getChannelMap()
+    public SnowflakeMap<TextChannel> getChannelMap()
     {
         return textChannelMap;
     }
@@ -331,7 +375,13 @@ public class JDAImpl implements JDA
     @Override
     public List<TextChannel> getTextChannels()
     {
-        return Collections.unmodifiableList(new LinkedList<>(textChannelMap.values()));
+        return Collections.unmodifiableList(new ArrayList<>(textChannelMap.values()));
+    }
+
+    @Override
+    public Stream<TextChannel> streamTextChannels()
+    {
+        return textChannelMap.values().stream();
     }
 
     @Override
@@ -340,7 +390,7 @@ public class JDAImpl implements JDA
         return textChannelMap.get(id);
     }
 
-    public Map<String, VoiceChannel> getVoiceChannelMap()
+    public SnowflakeMap<VoiceChannel> getVoiceChannelMap()
     {
         return voiceChannelMap;
     }
@@ -348,7 +398,13 @@ public class JDAImpl implements JDA
     @Override
     public List<VoiceChannel> getVoiceChannels()
     {
-        return Collections.unmodifiableList(new LinkedList<>(voiceChannelMap.values()));
+        return Collections.unmodifiableList(new ArrayList<>(voiceChannelMap.values()));
+    }
+
+    @Override
+    public Stream<VoiceChannel> streamVoiceChannels()
+    {
+        return voiceChannelMap.values().stream();
     }
 
     @Override
@@ -363,12 +419,12 @@ public class JDAImpl implements JDA
         return pmChannelMap.get(id);
     }
 
-    public Map<String, PrivateChannel> getPmChannelMap()
+    public SnowflakeMap<PrivateChannel> getPmChannelMap()
     {
         return pmChannelMap;
     }
 
-    public Map<String, String> getOffline_pms()
+    public SnowflakeMap<String> getOffline_pms()
     {
         return offline_pms;
     }
@@ -405,6 +461,26 @@ public class JDAImpl implements JDA
         return requester;
     }
 
+    public MessageSender getMessageSender()
+    {
+        return messageSender;
+    }
+
+    public InviteResolver getInviteResolver()
+    {
+        return inviteResolver;
+    }
+
+    public GuildLock getGuildLock()
+    {
+        return guildLock;
+    }
+
+    public MemberLoader getMemberLoader()
+    {
+        return memberLoader;
+    }
+
     @Override
     public HttpHost getGlobalProxy()
     {
@@ -427,6 +503,32 @@ public class JDAImpl implements JDA
         }
     }
 
+    /**
+     * Enables zlib-stream transport compression for the gateway connection.
+     * Has to be set before logging in.
+     *
+     * @param transportCompression
+     *          True - the whole gateway connection is compressed with one shared zlib context.
+     */
+    public void setTransportCompression(boolean transportCompression)
+    {
+        this.transportCompression = transportCompression;
+    }
+
+    /**
+     * Sets the maximum amount of received frames that may wait for the gateway worker.
+     * Has to be set before logging in.
+     *
+     * @param maxQueuedFrames
+     *          The maximum amount of waiting frames.
+     */
+    public void setMaxQueuedFrames(int maxQueuedFrames)
+    {
+        if (maxQueuedFrames < 1)
+            throw new IllegalArgumentException("The maximum amount of queued frames has to be at least 1");
+        this.maxQueuedFrames = maxQueuedFrames;
+    }
+
     @Override
     public boolean isAutoReconnect()
     {
@@ -451,6 +553,9 @@ public class JDAImpl implements JDA
         audioManagers.values().forEach(mng -> mng.closeAudioConnection());
         client.setAutoReconnect(false);
         client.close();
+        requester.getEngine().shutdown();
+        messageSender.shutdown();
+        memberLoader.shutdown();
         authToken = null; //make further requests fail
         if (free)
         {
@@ -462,20 +567,6 @@ public class JDAImpl implements JDA
         }
     }
 
-    public void setMessageTimeout(long timeout)
-    {
-        this.messageLimit = System.currentTimeMillis() + timeout;
-    }
-
-    public Long getMessageLimit()
-    {
-        if (this.messageLimit != null && this.messageLimit < System.currentTimeMillis())
-        {
-            this.messageLimit = null;
-        }
-        return this.messageLimit;
-    }
-
     @Override
     public synchronized AudioManager getAudioManager(Guild guild)
     {
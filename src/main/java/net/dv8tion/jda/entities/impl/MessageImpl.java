@@ -225,7 +225,7 @@ public class MessageImpl implements Message
         if (api.getSelfInfo() != getAuthor())
             throw new UnsupportedOperationException("Attempted to update message that was not sent by this account. You cannot modify other User's messages!");
         Message newMessage = new MessageImpl(getId(), api).setContent(newContent).setChannelId(getChannelId());
-        TextChannelImpl.AsyncMessageSender.getInstance(api).enqueue(newMessage, true, callback);
+        api.getMessageSender().enqueue(newMessage, true, callback);
     }
 
     @Override
@@ -0,0 +1,147 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.entities.impl;
+
+import net.dv8tion.jda.entities.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches the effective permissions of the members of one guild.
+ * <p>
+ * Every channel of the guild gets a slot, slot 0 holds the guild-level permissions. A member's cached values are
+ * kept in one array of longs, each packing the permissions together with the stamp they were computed for.
+ * The stamp is the sum of the generation counters of the guild, the channel and the member, so bumping any of them
+ * invalidates the affected entries without touching them.
+ * <p>
+ * Readers have to take the stamp before reading the state they compute the permissions from and writers have to
+ * invalidate after changing that state. A computation that raced with a change is then stored with an outdated stamp.
+ */
+public class PermissionCache
+{
+    public static final int GUILD_SLOT = 0;
+    public static final int MISSING = -1;
+    private static final AtomicLongArray EMPTY = new AtomicLongArray(0);
+
+    private final Map<User, Member> members = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger(GUILD_SLOT + 1);
+    private final AtomicInteger generation = new AtomicInteger(1);
+
+    /**
+     * Reserves the slot of a newly created channel.
+     *
+     * @return
+     *      The slot of the channel.
+     */
+    public int nextSlot()
+    {
+        return nextSlot.getAndIncrement();
+    }
+
+    /**
+     * Returns the stamp that values for the given member and channel have to be stored with.
+     *
+     * @param user
+     *          The member.
+     * @param channelGeneration
+     *          The generation of the channel or 0 for the guild-level permissions.
+     * @return
+     *      The current stamp.
+     */
+    public int getStamp(User user, int channelGeneration)
+    {
+        Member member = members.get(user);
+        return generation.get() + channelGeneration + (member == null ? 0 : member.generation.get());
+    }
+
+    /**
+     * Returns the cached permissions if they were stored with the given stamp.
+     *
+     * @param user
+     *          The member.
+     * @param slot
+     *          The slot of the channel or {@link #GUILD_SLOT}.
+     * @param stamp
+     *          The current stamp, see {@link #getStamp(User, int)}.
+     * @return
+     *      The permissions or {@link #MISSING} if nothing valid is cached.
+     */
+    public int get(User user, int slot, int stamp)
+    {
+        Member member = members.get(user);
+        if (member == null)
+            return MISSING;
+        AtomicLongArray values = member.values;
+        if (slot >= values.length())
+            return MISSING;
+        long value = values.get(slot);
+        return (int) (value >>> 32) == stamp ? (int) value : MISSING;
+    }
+
+    public void put(User user, int slot, int stamp, int permissions)
+    {
+        Member member = members.computeIfAbsent(user, u -> new Member());
+        AtomicLongArray values = member.values;
+        if (slot >= values.length())
+        {
+            //growing might lose a concurrent put, which only costs a recomputation
+            AtomicLongArray grown = new AtomicLongArray(Math.max(slot + 1, Math.max(8, values.length() * 2)));
+            for (int i = 0; i < values.length(); i++)
+                grown.set(i, values.get(i));
+            member.values = values = grown;
+        }
+        values.set(slot, ((long) stamp << 32) | (permissions & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Invalidates all cached permissions of this guild. Has to be called whenever roles were changed or removed.
+     */
+    public void invalidate()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Invalidates the cached permissions of one member. Has to be called whenever the roles of the member changed.
+     *
+     * @param user
+     *          The member.
+     */
+    public void invalidate(User user)
+    {
+        members.computeIfAbsent(user, u -> new Member()).generation.incrementAndGet();
+    }
+
+    /**
+     * Drops everything cached for a member that left the guild.
+     *
+     * @param user
+     *          The former member.
+     */
+    public void remove(User user)
+    {
+        members.remove(user);
+    }
+
+    private static class Member
+    {
+        private final AtomicInteger generation = new AtomicInteger(0);
+        private volatile AtomicLongArray values = EMPTY;
+    }
+}
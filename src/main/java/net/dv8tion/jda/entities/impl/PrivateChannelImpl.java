@@ -15,6 +15,7 @@
  */
 package net.dv8tion.jda.entities.impl;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import com.mashape.unirest.request.body.MultipartBody;
@@ -73,19 +74,19 @@ public class PrivateChannelImpl implements PrivateChannel
     @Override
     public Message sendMessage(Message msg)
     {
-        if (api.getMessageLimit() != null)
+        String url = Requester.DISCORD_API_PREFIX + "channels/" + getId() + "/messages";
+        long rateLimit = api.getRequester().getRateLimit(HttpMethod.POST, url);
+        if (rateLimit > 0)
         {
-            throw new RateLimitedException(api.getMessageLimit() - System.currentTimeMillis());
+            throw new RateLimitedException(rateLimit);
         }
         try
         {
-            Requester.Response response = api.getRequester().post(Requester.DISCORD_API_PREFIX + "channels/" + getId() + "/messages",
+            Requester.Response response = api.getRequester().post(url,
                     new JSONObject().put("content", msg.getRawContent()));
             if (response.isRateLimit())
             {
-                long retry_after = response.getObject().getLong("retry_after");
-                api.setMessageTimeout(retry_after);
-                throw new RateLimitedException(retry_after);
+                throw new RateLimitedException(response.getObject().getLong("retry_after"));
             }
             if (!response.isOk())
             {
@@ -111,7 +112,7 @@ public class PrivateChannelImpl implements PrivateChannel
     public void sendMessageAsync(Message msg, Consumer<Message> callback)
     {
         ((MessageImpl) msg).setChannelId(getId());
-        TextChannelImpl.AsyncMessageSender.getInstance(getJDA()).enqueue(msg, false, callback);
+        api.getMessageSender().enqueue(msg, false, callback);
     }
 
     @Override
@@ -141,6 +141,7 @@ public class RoleImpl implements net.dv8tion.jda.entities.Role
     public RoleImpl setPosition(int position)
     {
         this.position = position;
+        ((GuildImpl) guild).invalidateRoleIndex();
         return this;
     }
 
@@ -15,6 +15,7 @@
  */
 package net.dv8tion.jda.entities.impl;
 
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import com.mashape.unirest.request.body.MultipartBody;
@@ -36,6 +37,7 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -48,6 +50,8 @@ public class TextChannelImpl implements TextChannel
     private int position;
     private final Map<User, PermissionOverride> userPermissionOverrides = new HashMap<>();
     private final Map<Role, PermissionOverride> rolePermissionOverrides = new HashMap<>();
+    private final int permissionSlot;
+    private final AtomicInteger permissionGeneration = new AtomicInteger(0);
 
     private ChannelManager manager = null;
 
@@ -55,6 +59,7 @@ public class TextChannelImpl implements TextChannel
     {
         this.id = id;
         this.guild = guild;
+        this.permissionSlot = ((GuildImpl) guild).getPermissionCache().nextSlot();
     }
 
     @Override
@@ -129,7 +134,7 @@ public class TextChannelImpl implements TextChannel
     @Override
     public List<User> getUsers()
     {
-        List<User> users = getGuild().getUsers().stream().filter(user -> checkPermission(user, Permission.MESSAGE_READ)).collect(Collectors.toList());
+        List<User> users = getGuild().streamUsers().filter(user -> checkPermission(user, Permission.MESSAGE_READ)).collect(Collectors.toList());
         return Collections.unmodifiableList(users);
     }
 
@@ -154,19 +159,19 @@ public class TextChannelImpl implements TextChannel
             throw new PermissionException(Permission.MESSAGE_WRITE);
 
         JDAImpl api = (JDAImpl) getJDA();
-        if (api.getMessageLimit() != null)
+        String url = Requester.DISCORD_API_PREFIX + "channels/" + getId() + "/messages";
+        long rateLimit = api.getRequester().getRateLimit(HttpMethod.POST, url);
+        if (rateLimit > 0)
         {
-            throw new RateLimitedException(api.getMessageLimit() - System.currentTimeMillis());
+            throw new RateLimitedException(rateLimit);
         }
         try
         {
-            Requester.Response response = api.getRequester().post(Requester.DISCORD_API_PREFIX + "channels/" + getId() + "/messages",
+            Requester.Response response = api.getRequester().post(url,
                     new JSONObject().put("content", msg.getRawContent()).put("tts", msg.isTTS()));
             if (response.isRateLimit())
             {
-                long retry_after = response.getObject().getLong("retry_after");
-                api.setMessageTimeout(retry_after);
-                throw new RateLimitedException(retry_after);
+                throw new RateLimitedException(response.getObject().getLong("retry_after"));
             }
             if(!response.isOk()) //sending failed (Verification-level?)
                 return null;
@@ -195,7 +200,7 @@ public class TextChannelImpl implements TextChannel
             throw new PermissionException(Permission.MESSAGE_WRITE);
 
         ((MessageImpl) msg).setChannelId(getId());
-        AsyncMessageSender.getInstance(getJDA()).enqueue(msg, false, callback);
+        ((JDAImpl) getJDA()).getMessageSender().enqueue(msg, false, callback);
     }
 
     @Override
@@ -290,7 +295,7 @@ public class TextChannelImpl implements TextChannel
         {
             throw new PermissionException(Permission.MANAGE_PERMISSIONS);
         }
-        if (!getGuild().getUsers().contains(user))
+        if (!getGuild().getUserView().contains(user))
         {
             throw new IllegalArgumentException("Given user is not member of this Guild");
         }
@@ -340,9 +345,29 @@ public class TextChannelImpl implements TextChannel
         return this;
     }
 
+    public int getPermissionSlot()
+    {
+        return permissionSlot;
+    }
+
+    public int getPermissionGeneration()
+    {
+        return permissionGeneration.get();
+    }
+
+    /**
+     * Invalidates the cached permissions of all members in this channel.
+     * Has to be called after the permission overrides of this channel were changed.
+     */
+    public void invalidatePermissions()
+    {
+        permissionGeneration.incrementAndGet();
+    }
+
     public TextChannelImpl setPosition(int position)
     {
         this.position = position;
+        ((GuildImpl) guild).invalidateTextChannelIndex();
         return this;
     }
 
@@ -423,170 +448,4 @@ public class TextChannelImpl implements TextChannel
     {
         return "TC:" + getName() + '(' + getId() + ')';
     }
-
-    public static class AsyncMessageSender
-    {
-        private static final Map<JDA, AsyncMessageSender> instances = new HashMap<>();
-        private final JDAImpl api;
-        private Runner runner = null;
-        private boolean runnerRunning = false;
-
-        private AsyncMessageSender(JDAImpl api)
-        {
-            this.api = api;
-        }
-
-        public static AsyncMessageSender getInstance(JDA api)
-        {
-            if (!instances.containsKey(api))
-            {
-                instances.put(api, new AsyncMessageSender(((JDAImpl) api)));
-            }
-            return instances.get(api);
-        }
-
-        private final Queue<Task> queue = new LinkedList<>();
-
-        public synchronized void enqueue(Message msg, boolean isEdit, Consumer<Message> callback)
-        {
-            enqueue(new Task(msg, isEdit, callback));
-        }
-
-        public synchronized void enqueue(Task task)
-        {
-            queue.add(task);
-            if (runner == null)
-            {
-                runnerRunning = true;
-                runner = new Runner(this);
-                runner.setDaemon(true);
-                runner.start();
-            }
-            else if (!runnerRunning)
-            {
-                runnerRunning = true;
-                notifyAll();
-            }
-        }
-
-        private synchronized void waitNew()
-        {
-            if (!queue.isEmpty())
-                return;
-            runnerRunning = false;
-            while(!runnerRunning) {
-                try {
-                    wait();
-                } catch(InterruptedException ignored) {}
-            }
-        }
-
-        private synchronized Queue<Task> getQueue()
-        {
-            Queue<Task> copy = new LinkedList<>(queue);
-            queue.clear();
-            return copy;
-        }
-
-        public static class Task
-        {
-            public final Message message;
-            public final boolean isEdit;
-            public final Consumer<Message> callback;
-
-            public Task(Message message, boolean isEdit, Consumer<Message> callback)
-            {
-                this.message = message;
-                this.isEdit = isEdit;
-                this.callback = callback;
-            }
-        }
-
-        private static class Runner extends Thread
-        {
-            private final AsyncMessageSender sender;
-
-            public Runner(AsyncMessageSender sender)
-            {
-                this.sender = sender;
-            }
-
-            @Override
-            public void run()
-            {
-                while (true)
-                {
-                    Queue<Task> queue = sender.getQueue();
-                    while (!queue.isEmpty())
-                    {
-                        Long messageLimit = sender.api.getMessageLimit();
-                        if (messageLimit != null)
-                        {
-                            try
-                            {
-                                Thread.sleep(messageLimit - System.currentTimeMillis());
-                            }
-                            catch (InterruptedException e)
-                            {
-                                JDAImpl.LOG.log(e);
-                            }
-                        }
-                        Task task = queue.peek();
-                        Message msg = task.message;
-                        Requester.Response response;
-                        if(task.isEdit)
-                        {
-                            response = sender.api.getRequester().patch(Requester.DISCORD_API_PREFIX + "channels/" + msg.getChannelId() + "/messages/" + msg.getId(),
-                                    new JSONObject().put("content", msg.getRawContent()));
-                        }
-                        else
-                        {
-                            response = sender.api.getRequester().post(Requester.DISCORD_API_PREFIX + "channels/" + msg.getChannelId() + "/messages",
-                                    new JSONObject().put("content", msg.getRawContent()).put("tts", msg.isTTS()));
-                        }
-                        if (response.responseText == null)
-                        {
-                            JDAImpl.LOG.debug("Error sending async-message (returned null-text)... Retrying after 1s");
-                            sender.api.setMessageTimeout(1000);
-                        }
-                        else if (!response.isRateLimit())   //success/unrecoverable error
-                        {
-                            queue.poll();//remove from queue
-                            if (task.callback != null)
-                            {
-                                try
-                                {
-                                    if (response.isOk())
-                                    {
-                                        task.callback.accept(new EntityBuilder(sender.api).createMessage(response.getObject()));
-                                    }
-                                    else
-                                    {
-                                        //if response didn't have id, sending failed (due to permission/blocked pm,...
-                                        JDAImpl.LOG.fatal("Could not send/update async message. Discord-response: " + response.toString());
-                                        task.callback.accept(null);
-                                    }
-                                }
-                                catch (JSONException ex)
-                                {
-                                    //could not generate message from json
-                                    JDAImpl.LOG.log(ex);
-                                }
-                            }
-                        }
-                        else
-                        {
-                            sender.api.setMessageTimeout(response.getObject().getLong("retry_after"));
-                        }
-                        if (queue.isEmpty())
-                        {
-                            queue = sender.getQueue();
-                        }
-                    }
-                    sender.waitNew();
-                }
-            }
-
-        }
-    }
 }
@@ -25,6 +25,7 @@ import net.dv8tion.jda.utils.InviteUtil;
 import net.dv8tion.jda.utils.PermissionUtil;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class VoiceChannelImpl implements VoiceChannel
 {
@@ -35,6 +36,8 @@ public class VoiceChannelImpl implements VoiceChannel
     private List<User> connectedUsers = new ArrayList<>();
     private final Map<User, PermissionOverride> userPermissionOverrides = new HashMap<>();
     private final Map<Role, PermissionOverride> rolePermissionOverrides = new HashMap<>();
+    private final int permissionSlot;
+    private final AtomicInteger permissionGeneration = new AtomicInteger(0);
 
     private ChannelManager manager = null;
 
@@ -42,6 +45,7 @@ public class VoiceChannelImpl implements VoiceChannel
     {
         this.id = id;
         this.guild = guild;
+        this.permissionSlot = ((GuildImpl) guild).getPermissionCache().nextSlot();
     }
 
     @Override
@@ -134,7 +138,7 @@ public class VoiceChannelImpl implements VoiceChannel
         {
             throw new PermissionException(Permission.MANAGE_PERMISSIONS);
         }
-        if (!getGuild().getUsers().contains(user))
+        if (!getGuild().getUserView().contains(user))
         {
             throw new IllegalArgumentException("Given user is not member of this Guild");
         }
@@ -177,9 +181,29 @@ public class VoiceChannelImpl implements VoiceChannel
         return this;
     }
 
+    public int getPermissionSlot()
+    {
+        return permissionSlot;
+    }
+
+    public int getPermissionGeneration()
+    {
+        return permissionGeneration.get();
+    }
+
+    /**
+     * Invalidates the cached permissions of all members in this channel.
+     * Has to be called after the permission overrides of this channel were changed.
+     */
+    public void invalidatePermissions()
+    {
+        permissionGeneration.incrementAndGet();
+    }
+
     public VoiceChannelImpl setPosition(int position)
     {
         this.position = position;
+        ((GuildImpl) guild).invalidateVoiceChannelIndex();
         return this;
     }
 
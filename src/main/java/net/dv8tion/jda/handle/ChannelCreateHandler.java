@@ -25,12 +25,12 @@ import org.json.JSONObject;
 public class ChannelCreateHandler extends SocketHandler
 {
 
-    public ChannelCreateHandler(JDAImpl api, int responseNumber)
+    public ChannelCreateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         String type;
         if (content.has("type"))
@@ -31,13 +31,13 @@ import org.json.JSONObject;
 public class ChannelDeleteHandler extends SocketHandler
 {
 
-    public ChannelDeleteHandler(JDAImpl api, int responseNumber)
+    public ChannelDeleteHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (content.has("is_private") && content.getBoolean("is_private"))
         {
@@ -74,6 +74,7 @@ public class ChannelDeleteHandler extends SocketHandler
                     throw new IllegalArgumentException("CHANNEL_DELETE attempted to delete a channel that doesn't exist! JSON: " + content);
 
                 guild.getTextChannelsMap().remove(channel.getId());
+                guild.invalidateTextChannelIndex();
                 api.getEventManager().handle(
                         new TextChannelDeleteEvent(
                                 api, responseNumber,
@@ -94,6 +95,7 @@ public class ChannelDeleteHandler extends SocketHandler
                     manager.closeAudioConnection();
                 }
                 guild.getVoiceChannelsMap().remove(channel.getId());
+                guild.invalidateVoiceChannelIndex();
                 api.getEventManager().handle(
                         new VoiceChannelDeleteEvent(
                                 api, responseNumber,
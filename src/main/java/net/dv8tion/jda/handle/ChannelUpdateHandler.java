@@ -31,28 +31,29 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class ChannelUpdateHandler extends SocketHandler
 {
-    private List<Role> changedRoles = new ArrayList<>();
-    private List<User> changedUsers = new ArrayList<>();
-    private List<Role> containedRoles = new ArrayList<>();
-    private List<User> containedUsers = new ArrayList<>();
-
-    public ChannelUpdateHandler(JDAImpl api, int responseNumber)
+    public ChannelUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
             return content.getString("guild_id");
         }
 
+        List<Role> changedRoles = new ArrayList<>();
+        List<User> changedUsers = new ArrayList<>();
+        List<Role> containedRoles = new ArrayList<>();
+        List<User> containedUsers = new ArrayList<>();
+
         String name = content.getString("name");
         int position = content.getInt("position");
         JSONArray permOverwrites = content.getJSONArray("permission_overwrites");
@@ -96,9 +97,10 @@ public class ChannelUpdateHandler extends SocketHandler
 
                 //Determines if a new PermissionOverride was created or updated.
                 //If a PermissionOverride was created or updated it stores it in the proper Map to be reported by the Event.
+                removePendingOverrides(channel);
                 for (int i = 0; i < permOverwrites.length(); i++)
                 {
-                    handlePermissionOverride(permOverwrites.getJSONObject(i), channel, content);
+                    handlePermissionOverride(permOverwrites.getJSONObject(i), channel, content, changedRoles, changedUsers, containedRoles, containedUsers);
                 }
 
                 //Check if any overrides were deleted because of this event.
@@ -120,6 +122,7 @@ public class ChannelUpdateHandler extends SocketHandler
                 if (!changedRoles.isEmpty()
                         || !changedUsers.isEmpty())
                 {
+                    channel.invalidatePermissions();
                     api.getEventManager().handle(
                             new TextChannelUpdatePermissionsEvent(
                                     api, responseNumber,
@@ -156,9 +159,10 @@ public class ChannelUpdateHandler extends SocketHandler
 
                 //Determines if a new PermissionOverride was created or updated.
                 //If a PermissionOverride was created or updated it stores it in the proper Map to be reported by the Event.
+                removePendingOverrides(channel);
                 for (int i = 0; i < permOverwrites.length(); i++)
                 {
-                    handlePermissionOverride(permOverwrites.getJSONObject(i), channel, content);
+                    handlePermissionOverride(permOverwrites.getJSONObject(i), channel, content, changedRoles, changedUsers, containedRoles, containedUsers);
                 }
 
                 //Check if any overrides were deleted because of this event.
@@ -180,6 +184,7 @@ public class ChannelUpdateHandler extends SocketHandler
                 if (!changedRoles.isEmpty()
                         || !changedUsers.isEmpty())
                 {
+                    channel.invalidatePermissions();
                     api.getEventManager().handle(
                             new VoiceChannelUpdatePermissionsEvent(
                                     api, responseNumber,
@@ -194,7 +199,8 @@ public class ChannelUpdateHandler extends SocketHandler
         return null;
     }
 
-    private void handlePermissionOverride(JSONObject override, Channel channel, JSONObject content)
+    private void handlePermissionOverride(JSONObject override, Channel channel, JSONObject content,
+            List<Role> changedRoles, List<User> changedUsers, List<Role> containedRoles, List<User> containedUsers)
     {
         String id = override.getString("id");
         int allow = override.getInt("allow");
@@ -231,7 +237,13 @@ public class ChannelUpdateHandler extends SocketHandler
             {
                 User user = api.getUserMap().get(override.getString("id"));
                 if (user == null)
-                    throw new IllegalArgumentException("CHANNEL_UPDATE attempted to create or update a PermissionOverride for User that doesn't exist! JSON: " + content);
+                {
+                    if (!api.getMemberLoader().isEnabled())
+                        throw new IllegalArgumentException("CHANNEL_UPDATE attempted to create or update a PermissionOverride for User that doesn't exist! JSON: " + content);
+                    //Kept until the member is loaded. Not reported by the Event, there is no User to report.
+                    new EntityBuilder(api).createPermissionOverride(override, channel);
+                    break;
+                }
                 PermissionOverride permOverride;
                 if (channel instanceof TextChannel)
                     permOverride = ((TextChannelImpl) channel).getUserPermissionOverridesMap().get(user);
@@ -256,4 +268,12 @@ public class ChannelUpdateHandler extends SocketHandler
                 throw new IllegalArgumentException("CHANNEL_UPDATE provided an unrecognized PermissionOverride type. JSON: " + content);
         }
     }
+
+    //The overrides of members that are not loaded are all contained in the update, so they are set again from it.
+    private void removePendingOverrides(Channel channel)
+    {
+        Map<String, Map<Channel, JSONObject>> pending = ((GuildImpl) channel.getGuild()).getPendingUserOverridesMap();
+        if (!pending.isEmpty())
+            pending.values().removeIf(overrides -> overrides.remove(channel) != null && overrides.isEmpty());
+    }
 }
@@ -165,13 +165,13 @@ public class EntityBuilder
         // to worry about there being a lack of offline Users because there wont be -any users or, at the very
         // most, the only User will be the JDA user that just created the new Guild.
         //This fall through is used by JDAImpl.createGuild(String, Region).
-        if (secondPassCallback != null && guild.has("large") && guild.getBoolean("large"))
+        if (secondPassCallback != null && guild.has("large") && guild.getBoolean("large") && !api.getMemberLoader().isEnabled())
         {
             HashMap<String, JSONObject> cachedGuildJsons = cachedJdaGuildJsons.get(api);
             HashMap<String, Consumer<Guild>> cachedGuildCallbacks = cachedJdaGuildCallbacks.get(api);
             cachedGuildJsons.put(id, guild);
             cachedGuildCallbacks.put(id, secondPassCallback);
-            GuildMembersChunkHandler.setExpectedGuildMembers(api, id, guild.getInt("member_count"));
+            api.getClient().<GuildMembersChunkHandler>getHandler("GUILD_MEMBERS_CHUNK").setExpectedGuildMembers(id, guild.getInt("member_count"));
             if (api.getClient().isReady())
             {
                 JSONObject obj = new JSONObject()
@@ -185,7 +185,7 @@ public class EntityBuilder
             }
             else
             {
-                new ReadyHandler(api, 0).onGuildNeedsMembers(guildObj);
+                api.getClient().<ReadyHandler>getHandler("READY").onGuildNeedsMembers(guildObj);
             }
             GuildLock.get(api).lock(id);
             return null;//Nothing should be using the return of this method besides JDAImpl.createGuild(String, Region)
@@ -237,31 +237,71 @@ public class EntityBuilder
 
     private void createGuildMemberPass(GuildImpl guildObj, JSONArray members)
     {
-        Map<String, Role> rolesMap = guildObj.getRolesMap();
-        Map<User, List<Role>> userRoles = guildObj.getUserRoles();
-        Map<User, VoiceStatus> voiceStatusMap = guildObj.getVoiceStatusMap();
-        Map<User, OffsetDateTime> joinedAtMap = guildObj.getJoinedAtMap();
-        Map<User, String> nickMap = guildObj.getNickMap();
         for (int i = 0; i < members.length(); i++)
         {
-            JSONObject member = members.getJSONObject(i);
-            User user = createUser(member.getJSONObject("user"));
-            userRoles.put(user, new ArrayList<>());
-            JSONArray roleArr = member.getJSONArray("roles");
-            for (int j = 0; j < roleArr.length(); j++)
-            {
-                String roleId = roleArr.getString(j);
-                userRoles.get(user).add(rolesMap.get(roleId));
-            }
-            Collections.sort(userRoles.get(user), (r2, r1) -> Integer.compare(r1.getPosition(), r2.getPosition()));
-            VoiceStatusImpl voiceStatus = new VoiceStatusImpl(user, guildObj);
+            createMember(guildObj, members.getJSONObject(i));
+        }
+    }
+
+    /**
+     * Adds a member to the given guild or updates it. Members that are built from a
+     * GUILD_MEMBER_UPDATE event lack the join date and voice state, those are left as they are.
+     *
+     * @param guildObj
+     *      The guild of the member.
+     * @param member
+     *      The member json, including the user.
+     * @return
+     *      The user of the member.
+     */
+    public User createMember(GuildImpl guildObj, JSONObject member)
+    {
+        User user = createUser(member.getJSONObject("user"));
+        if (api.getOffline_pms().containsKey(user.getId()))
+        {
+            ((UserImpl) user).setPrivateChannel(new PrivateChannelImpl(api.getOffline_pms().remove(user.getId()), user, api));
+        }
+        Map<String, Role> rolesMap = guildObj.getRolesMap();
+        List<Role> roles = new ArrayList<>();
+        JSONArray roleArr = member.getJSONArray("roles");
+        for (int j = 0; j < roleArr.length(); j++)
+        {
+            Role role = rolesMap.get(roleArr.getString(j));
+            if (role != null)
+                roles.add(role);
+        }
+        Collections.sort(roles, (r2, r1) -> Integer.compare(r1.getPosition(), r2.getPosition()));
+        guildObj.getUserRoles().put(user, roles);
+        VoiceStatusImpl voiceStatus = (VoiceStatusImpl) guildObj.getVoiceStatusMap().get(user);
+        if (voiceStatus == null)
+        {
+            voiceStatus = new VoiceStatusImpl(user, guildObj);
+            guildObj.getVoiceStatusMap().put(user, voiceStatus);
+        }
+        if (member.has("deaf"))
             voiceStatus.setServerDeaf(member.getBoolean("deaf"));
+        if (member.has("mute"))
             voiceStatus.setServerMute(member.getBoolean("mute"));
-            voiceStatusMap.put(user, voiceStatus);
-            joinedAtMap.put(user, OffsetDateTime.parse(member.getString("joined_at")));
-            if(member.has("nick") && !member.isNull("nick"))
-                nickMap.put(user, member.getString("nick"));
+        if (member.has("joined_at"))
+            guildObj.getJoinedAtMap().put(user, OffsetDateTime.parse(member.getString("joined_at")));
+        if (member.has("nick") && !member.isNull("nick"))
+            guildObj.getNickMap().put(user, member.getString("nick"));
+        else
+            guildObj.getNickMap().remove(user);
+        Map<Channel, JSONObject> overrides = guildObj.getPendingUserOverridesMap().remove(user.getId());
+        if (overrides != null)
+        {
+            for (Map.Entry<Channel, JSONObject> entry : overrides.entrySet())
+            {
+                //the channel may have been deleted while the member was not loaded
+                Channel chan = entry.getKey();
+                if (guildObj.getTextChannelsMap().get(chan.getId()) == chan || guildObj.getVoiceChannelsMap().get(chan.getId()) == chan)
+                    createPermissionOverride(entry.getValue(), chan);
+            }
         }
+        guildObj.getPermissionCache().invalidate(user);
+        api.getMemberLoader().touch(user);
+        return user;
     }
 
     private void createGuildChannelPass(GuildImpl guildObj, JSONArray channels)
@@ -292,6 +332,7 @@ public class EntityBuilder
                 throw new RuntimeException("Got permission_override for unknown channel with id: " + channel.getString("id"));
             }
         }
+        guildObj.getPermissionCache().invalidate();
     }
 
     public TextChannel createTextChannel(JSONObject json, String guildId)
@@ -410,8 +451,13 @@ public class EntityBuilder
     {
         String id = jsonObject.getString("id");
         String content = jsonObject.getString("content");
+        JSONObject author = jsonObject.getJSONObject("author");
+        User authorObj = api.getUserMap().get(author.getString("id"));
+        //without all members cached, the author may be unknown
+        if (authorObj == null && api.getMemberLoader().isEnabled())
+            authorObj = createUser(author);
         MessageImpl message = new MessageImpl(id, api)
-                .setAuthor(api.getUserMap().get(jsonObject.getJSONObject("author").getString("id")))
+                .setAuthor(authorObj)
                 .setContent(content)
                 .setTime(OffsetDateTime.parse(jsonObject.getString("timestamp")))
                 .setMentionsEveryone(jsonObject.getBoolean("mention_everyone"))
@@ -567,8 +613,18 @@ public class EntityBuilder
         {
             case "member":
                 User user = api.getUserById(id);
+                Map<String, Map<Channel, JSONObject>> pending = ((GuildImpl) chan.getGuild()).getPendingUserOverridesMap();
                 if (user == null)
-                    throw new IllegalArgumentException("Attempted to create a PermissionOverride for a non-existent user. Guild: " + chan.getGuild() + ", Channel: " + chan + ", JSON: " + override);
+                {
+                    if (!api.getMemberLoader().isEnabled())
+                        throw new IllegalArgumentException("Attempted to create a PermissionOverride for a non-existent user. Guild: " + chan.getGuild() + ", Channel: " + chan + ", JSON: " + override);
+                    //the member is not loaded, its override is created once it is, see createMember
+                    pending.computeIfAbsent(id, k -> new HashMap<>()).put(chan, override);
+                    return null;
+                }
+                Map<Channel, JSONObject> pendingOverrides = pending.isEmpty() ? null : pending.get(id);
+                if (pendingOverrides != null && pendingOverrides.remove(chan) != null && pendingOverrides.isEmpty())
+                    pending.remove(id);
 
                 permOverride = (PermissionOverrideImpl) chan.getOverrideForUser(user);
                 if (permOverride == null)
@@ -25,13 +25,13 @@ import org.json.JSONObject;
 public class GuildJoinHandler extends SocketHandler
 {
 
-    public GuildJoinHandler(JDAImpl api, int responseNumber)
+    public GuildJoinHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         Guild g = api.getGuildById(content.getString("id"));
         Boolean wasAvail = (g == null || g.getName() == null) ? null : g.isAvailable();
@@ -41,7 +41,7 @@ public class GuildJoinHandler extends SocketHandler
             {
                 if (!api.getClient().isReady())
                 {
-                    new ReadyHandler(api, responseNumber).onGuildInit(guild);
+                    api.getClient().<ReadyHandler>getHandler("READY").onGuildInit(guild);
                 }
                 else
                 {
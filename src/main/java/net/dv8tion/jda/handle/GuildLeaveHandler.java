@@ -26,20 +26,20 @@ import net.dv8tion.jda.managers.AudioManager;
 import net.dv8tion.jda.requests.GuildLock;
 import org.json.JSONObject;
 
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 public class GuildLeaveHandler extends SocketHandler
 {
 
-    public GuildLeaveHandler(JDAImpl api, int responseNumber)
+    public GuildLeaveHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("id")))
         {
@@ -63,13 +63,13 @@ public class GuildLeaveHandler extends SocketHandler
             api.getAudioManagersMap().remove(guild);
 
         //cleaning up all users that we do not share a guild with anymore
-        List<User> users = guild.getUsers();
+        Collection<User> users = guild.getUserView();
         Set<User> usersInOtherGuilds = new HashSet<>();
         for (Guild g : api.getGuilds())
         {
             if (g == guild)
                 continue;
-            usersInOtherGuilds.addAll(g.getUsers());
+            usersInOtherGuilds.addAll(g.getUserView());
         }
         for (User user : users)
         {
@@ -28,13 +28,13 @@ import java.util.LinkedList;
 public class GuildMemberAddHandler extends SocketHandler
 {
 
-    public GuildMemberAddHandler(JDAImpl api, int responseNumber)
+    public GuildMemberAddHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -50,9 +50,11 @@ public class GuildMemberAddHandler extends SocketHandler
             api.getOffline_pms().remove(user.getId());
         }
         guild.getUserRoles().put(user, new LinkedList<>());
+        guild.getPermissionCache().invalidate(user);
         VoiceStatusImpl voiceStatus = new VoiceStatusImpl(user, guild);
         guild.getVoiceStatusMap().put(user, voiceStatus);
         guild.getJoinedAtMap().put(user, OffsetDateTime.parse(content.getString("joined_at")));
+        api.getMemberLoader().touch(user);
         api.getEventManager().handle(
                 new GuildMemberJoinEvent(
                         api, responseNumber,
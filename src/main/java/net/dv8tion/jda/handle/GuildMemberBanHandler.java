@@ -27,14 +27,14 @@ public class GuildMemberBanHandler extends SocketHandler
 {
     private final boolean banned;
 
-    public GuildMemberBanHandler(JDAImpl api, int responseNumber, boolean banned)
+    public GuildMemberBanHandler(JDAImpl api, boolean banned)
     {
-        super(api, responseNumber);
+        super(api);
         this.banned = banned;
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -15,6 +15,7 @@
  */
 package net.dv8tion.jda.handle;
 
+import net.dv8tion.jda.entities.User;
 import net.dv8tion.jda.entities.VoiceChannel;
 import net.dv8tion.jda.entities.impl.*;
 import net.dv8tion.jda.events.guild.member.GuildMemberLeaveEvent;
@@ -25,13 +26,13 @@ import org.json.JSONObject;
 public class GuildMemberRemoveHandler extends SocketHandler
 {
 
-    public GuildMemberRemoveHandler(JDAImpl api, int responseNumber)
+    public GuildMemberRemoveHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -45,6 +46,17 @@ public class GuildMemberRemoveHandler extends SocketHandler
             return null;
         }
         UserImpl user = ((UserImpl) api.getUserMap().get(content.getJSONObject("user").getString("id")));
+        if (api.getMemberLoader().isEnabled() && (user == null || !guild.getUserRoles().containsKey(user)))
+        {
+            //the member was never loaded or already evicted
+            User leftUser = user != null ? user : new EntityBuilder(api).createUser(content.getJSONObject("user"));
+            api.getEventManager().handle(
+                    new GuildMemberLeaveEvent(
+                            api, responseNumber,
+                            guild, leftUser));
+            api.getMemberLoader().removeIfUnused(leftUser);
+            return null;
+        }
         if (guild.getVoiceStatusMap().get(user).inVoiceChannel())   //If this user was in a VoiceChannel, fire VoiceLeaveEvent.
         {
             VoiceStatusImpl status = (VoiceStatusImpl) guild.getVoiceStatusMap().get(user);
@@ -58,6 +70,7 @@ public class GuildMemberRemoveHandler extends SocketHandler
         }
         guild.getVoiceStatusMap().remove(user);
         guild.getUserRoles().remove(user);
+        guild.getPermissionCache().remove(user);
         guild.getJoinedAtMap().remove(user);
         if (!api.getGuildMap().values().stream().anyMatch(g -> ((GuildImpl) g).getUserRoles().containsKey(user)))
         {
@@ -31,13 +31,13 @@ import java.util.*;
 public class GuildMemberUpdateHandler extends SocketHandler
 {
 
-    public GuildMemberUpdateHandler(JDAImpl api, int responseNumber)
+    public GuildMemberUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -50,6 +50,12 @@ public class GuildMemberUpdateHandler extends SocketHandler
         List<Role> rolesNew = toRolesList(guild, content.getJSONArray("roles"));
         List<Role> rolesOld = guild.getUserRoles().get(user);
 
+        if (rolesOld == null && api.getMemberLoader().isEnabled())
+        {
+            //not all members are cached, this is the first we see of this one
+            new EntityBuilder(api).createMember(guild, content);
+            return null;
+        }
         if(rolesOld == null)
         {
             //something is fishy...
@@ -85,6 +91,8 @@ public class GuildMemberUpdateHandler extends SocketHandler
             rolesOld.addAll(rolesNew);
         }
         Collections.sort(rolesOld, (r2, r1) -> Integer.compare(r1.getPosition(), r2.getPosition()));
+        if (removedRoles.size() > 0 || rolesNew.size() > 0)
+            guild.getPermissionCache().invalidate(user);
         if (removedRoles.size() > 0)
         {
             api.getEventManager().handle(
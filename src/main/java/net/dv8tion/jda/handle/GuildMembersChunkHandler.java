@@ -15,36 +15,41 @@
  */
 package net.dv8tion.jda.handle;
 
-import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.utils.DebugUtil;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class GuildMembersChunkHandler extends SocketHandler
 {
-    private static HashMap<JDA, HashMap<String, Integer>> expectedGuildMembers = new HashMap<>();
-    private static HashMap<JDA, HashMap<String, List<JSONArray>>> memberChunksCache = new HashMap<>();
+    private final Map<String, Integer> expectedGuildMembers = new HashMap<>();
+    private final Map<String, List<JSONArray>> memberChunksCache = new HashMap<>();
 
-    public GuildMembersChunkHandler(JDAImpl api, int responseNumber)
+    public GuildMembersChunkHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         String guildId = content.getString("guild_id");
-        List<JSONArray> memberChunks = memberChunksCache.get(api).get(guildId);
-        Integer expectMemberCount = (Integer) expectedGuildMembers.get(api).get(guildId);
+        List<JSONArray> memberChunks = memberChunksCache.get(guildId);
+        Integer expectMemberCount = expectedGuildMembers.get(guildId);
 
         JSONArray members = content.getJSONArray("members");
         JDAImpl.LOG.debug("GUILD_MEMBER_CHUNK for: " + guildId + "\tMembers: " + members.length());
+        if (memberChunks == null)
+        {
+            //not part of loading the guild, but an answer to a member query
+            api.getMemberLoader().onChunk(guildId, members);
+            return null;
+        }
         memberChunks.add(members);
 
         int currentTotal = 0;
@@ -56,48 +61,30 @@ public class GuildMembersChunkHandler extends SocketHandler
         if (currentTotal >= expectMemberCount)
         {
             new EntityBuilder(api).createGuildSecondPass(guildId, memberChunks);
-            memberChunksCache.get(api).remove(guildId);
-            expectedGuildMembers.get(api).remove(guildId);
+            memberChunksCache.remove(guildId);
+            expectedGuildMembers.remove(guildId);
         }
         return null;
     }
 
-    public static void setExpectedGuildMembers(JDA jda, String guildId, int count)
+    public void setExpectedGuildMembers(String guildId, int count)
     {
-        HashMap<String, Integer> guildMembers = expectedGuildMembers.get(jda);
-        if (guildMembers == null)
-        {
-            guildMembers = new HashMap<>();
-            expectedGuildMembers.put(jda, guildMembers);
-        }
-
-        if (guildMembers.get(guildId) != null)
+        if (expectedGuildMembers.get(guildId) != null)
             JDAImpl.LOG.warn("Set the count of expected users from GuildMembersChunk even though a value already exists! GuildId: " + guildId);
 
-        guildMembers.put(guildId, count);
+        expectedGuildMembers.put(guildId, count);
 
-        HashMap<String, List<JSONArray>> memberChunks = memberChunksCache.get(jda);
-        if (memberChunks == null)
-        {
-            memberChunks = new HashMap<>();
-            memberChunksCache.put(jda, memberChunks);
-        }
-
-        if (memberChunks.get(guildId) != null)
+        if (memberChunksCache.get(guildId) != null)
             JDAImpl.LOG.warn("Set the memberChunks for MemberChunking for a guild that was already setup for chunking! GuildId: " + guildId);
 
-        memberChunks.put(guildId, new LinkedList<>());
+        memberChunksCache.put(guildId, new LinkedList<>());
     }
 
-    public static void modifyExpectedGuildMember(JDA jda, String guildId, int changeAmount)
+    public void modifyExpectedGuildMember(String guildId, int changeAmount)
     {
-        try
-        {
-            Integer i = (Integer) expectedGuildMembers.get(jda).get(guildId);
-            i += changeAmount;
-            expectedGuildMembers.get(jda).put(guildId, i);
-        }
-        //Ignore. If one of the above things doesn't exist, causing an NPE, then we don't need to worry.
-        catch (NullPointerException e) {}
+        Integer i = expectedGuildMembers.get(guildId);
+        //Ignore. If the guild is not being chunked, then we don't need to worry.
+        if (i != null)
+            expectedGuildMembers.put(guildId, i + changeAmount);
     }
 }
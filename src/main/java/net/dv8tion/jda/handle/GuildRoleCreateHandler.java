@@ -25,13 +25,13 @@ import org.json.JSONObject;
 public class GuildRoleCreateHandler extends SocketHandler
 {
 
-    public GuildRoleCreateHandler(JDAImpl api, int responseNumber)
+    public GuildRoleCreateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -27,13 +27,13 @@ import java.util.List;
 public class GuildRoleDeleteHandler extends SocketHandler
 {
 
-    public GuildRoleDeleteHandler(JDAImpl api, int responseNumber)
+    public GuildRoleDeleteHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -44,12 +44,14 @@ public class GuildRoleDeleteHandler extends SocketHandler
         Role removedRole = guild.getRolesMap().remove(content.getString("role_id"));
         if (removedRole == null)
             throw new IllegalArgumentException("GUILD_ROLE_DELETE attempted to delete a role that didn't exist! JSON: " + content);
+        guild.invalidateRoleIndex();
 
         //Now that the role is removed from the Guild, remove it from all users.
         for (List<Role> userRoles : guild.getUserRoles().values())
         {
             userRoles.remove(removedRole);
         }
+        guild.getPermissionCache().invalidate();
         api.getEventManager().handle(
                 new GuildRoleDeleteEvent(
                         api, responseNumber,
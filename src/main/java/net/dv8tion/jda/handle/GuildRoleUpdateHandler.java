@@ -24,13 +24,13 @@ import org.json.JSONObject;
 
 public class GuildRoleUpdateHandler extends SocketHandler
 {
-    public GuildRoleUpdateHandler(JDAImpl api, int responseNumber)
+    public GuildRoleUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -52,6 +52,7 @@ public class GuildRoleUpdateHandler extends SocketHandler
         if (role.getPermissionsRaw() != rolejson.getInt("permissions"))
         {
             role.setPermissions(rolejson.getInt("permissions"));
+            ((GuildImpl) role.getGuild()).getPermissionCache().invalidate();
             api.getEventManager().handle(new GuildRoleUpdatePermissionEvent(api, responseNumber, role));
         }
         if (role.getColor() != rolejson.getInt("color"))
@@ -26,13 +26,13 @@ import org.json.JSONObject;
 public class GuildUpdateHandler extends SocketHandler
 {
 
-    public GuildUpdateHandler(JDAImpl api, int responseNumber)
+    public GuildUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("id")))
         {
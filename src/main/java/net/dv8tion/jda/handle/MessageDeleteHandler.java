@@ -27,13 +27,13 @@ import org.json.JSONObject;
 public class MessageDeleteHandler extends SocketHandler
 {
 
-    public MessageDeleteHandler(JDAImpl api, int responseNumber)
+    public MessageDeleteHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         String messageId = content.getString("id");
         String channelId = content.getString("channel_id");
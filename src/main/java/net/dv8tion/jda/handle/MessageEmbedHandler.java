@@ -31,13 +31,13 @@ import java.util.LinkedList;
 public class MessageEmbedHandler extends SocketHandler
 {
 
-    public MessageEmbedHandler(JDAImpl api, int responseNumber)
+    public MessageEmbedHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         EntityBuilder builder = new EntityBuilder(api);
         String messageId = content.getString("id");
@@ -23,7 +23,7 @@ import net.dv8tion.jda.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.events.message.priv.PrivateMessageReceivedEvent;
 import net.dv8tion.jda.requests.GuildLock;
-import net.dv8tion.jda.utils.InviteUtil;
+import net.dv8tion.jda.requests.InviteResolver;
 import org.json.JSONObject;
 
 import java.util.regex.Matcher;
@@ -33,13 +33,13 @@ public class MessageReceivedHandler extends SocketHandler
 {
     private static final Pattern invitePattern = Pattern.compile("\\bhttps://(?:www\\.)?discord(?:\\.gg|app\\.com/invite)/([a-zA-Z0-9-]+)\\b");
 
-    public MessageReceivedHandler(JDAImpl api, int responseNumber)
+    public MessageReceivedHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         Message message = new EntityBuilder(api).createMessage(content);
         if (!message.isPrivate())
@@ -49,6 +49,7 @@ public class MessageReceivedHandler extends SocketHandler
             {
                 return channel.getGuild().getId();
             }
+            api.getMemberLoader().onActivity(channel.getGuild(), message.getAuthor());
             api.getEventManager().handle(
                     new GuildMessageReceivedEvent(
                             api, responseNumber,
@@ -67,18 +68,28 @@ public class MessageReceivedHandler extends SocketHandler
                         api, responseNumber,
                         message));
 
-        //searching for invites
+        //searching for invites, which are resolved without blocking this thread
+        InviteResolver inviteResolver = api.getInviteResolver();
+        if (!inviteResolver.isEnabled())
+            return null;
         Matcher matcher = invitePattern.matcher(message.getContent());
         while (matcher.find())
         {
-            InviteUtil.Invite invite = InviteUtil.resolve(matcher.group(1));
-            if (invite != null)
+            String code = matcher.group(1);
+            inviteResolver.resolve(code).whenComplete((invite, error) ->
             {
-                api.getEventManager().handle(
-                        new InviteReceivedEvent(
-                                api, responseNumber,
-                                message,invite));
-            }
+                if (error != null)
+                {
+                    InviteResolver.LOG.warn("Could not resolve the invite " + code + " of a received message: " + error.getMessage());
+                }
+                else if (invite != null)
+                {
+                    api.getEventManager().handle(
+                            new InviteReceivedEvent(
+                                    api, responseNumber,
+                                    message, invite));
+                }
+            });
         }
         return null;
     }
@@ -26,15 +26,21 @@ import org.json.JSONObject;
 
 public class MessageUpdateHandler extends SocketHandler
 {
+    private final MessageEmbedHandler embedHandler;
 
-    public MessageUpdateHandler(JDAImpl api, int responseNumber)
+    public MessageUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
+        this.embedHandler = new MessageEmbedHandler(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
+        //updates without author only add embeds to an existing message
+        if (!content.has("author"))
+            return embedHandler.handleInternally(content, responseNumber);
+
         Message message = new EntityBuilder(api).createMessage(content);
         if (!message.isPrivate())
         {
@@ -26,13 +26,13 @@ import org.json.JSONObject;
 public class PresenceUpdateHandler extends SocketHandler
 {
 
-    public PresenceUpdateHandler(JDAImpl api, int responseNumber)
+    public PresenceUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (!content.has("guild_id"))
         {
@@ -107,6 +107,10 @@ public class PresenceUpdateHandler extends SocketHandler
                 new GenericUserEvent(
                         api, responseNumber,
                         user));
+        if (status == OnlineStatus.OFFLINE)
+            api.getMemberLoader().onOffline(user);
+        else
+            api.getMemberLoader().touch(user);
         return null;
     }
 }
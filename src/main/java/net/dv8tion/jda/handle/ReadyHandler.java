@@ -15,7 +15,6 @@
  */
 package net.dv8tion.jda.handle;
 
-import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.OnlineStatus;
 import net.dv8tion.jda.entities.Guild;
 import net.dv8tion.jda.entities.impl.JDAImpl;
@@ -28,22 +27,18 @@ public class ReadyHandler extends SocketHandler
 {
     private final EntityBuilder builder;
 
-    private static Map<JDA, Set<String>> guildIds = new HashMap<>();
-    private static Map<JDA, Set<String>> chunkIds = new HashMap<>();
-    private static Map<JDA, JSONObject> cachedJson = new HashMap<>();
+    private final Set<String> guildIds = new HashSet<>();
+    private final Set<String> chunkIds = new HashSet<>();
+    private JSONObject cachedJson = null;
 
-    public ReadyHandler(JDAImpl api, int responseNumber)
+    public ReadyHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
         this.builder = new EntityBuilder(api);
-        if (!guildIds.containsKey(api))
-            guildIds.put(api, new HashSet<>());
-        if (!chunkIds.containsKey(api))
-            chunkIds.put(api, new HashSet<>());
     }
 
     @Override
-    protected String handleInternally(final JSONObject content)
+    protected String handleInternally(final JSONObject content, int responseNumber)
     {
         String oldGame = null;
         OnlineStatus oldStatus = null;
@@ -68,8 +63,7 @@ public class ReadyHandler extends SocketHandler
         }
         else
         {
-            cachedJson.put(api, content);
-            Set<String> guildIds = ReadyHandler.guildIds.get(api);
+            cachedJson = content;
             Set<JSONObject> guildJsons = new HashSet<>();
             for (int i = 0; i < guilds.length(); i++)
             {
@@ -94,9 +88,8 @@ public class ReadyHandler extends SocketHandler
 
     public void onGuildNeedsMembers(Guild g)
     {
-        Set<String> chunks = chunkIds.get(api);
-        chunks.add(g.getId());
-        if (chunks.size() == guildIds.get(api).size())
+        chunkIds.add(g.getId());
+        if (chunkIds.size() == guildIds.size())
         {
             sendChunks();
         }
@@ -104,13 +97,12 @@ public class ReadyHandler extends SocketHandler
 
     public void onGuildInit(Guild guild)
     {
-        Set<String> ids = guildIds.get(api);
-        ids.remove(guild.getId());
-        if (ids.isEmpty())
+        guildIds.remove(guild.getId());
+        if (guildIds.isEmpty())
         {
-            finishReady(cachedJson.get(api));
+            finishReady(cachedJson);
         }
-        else if (ids.size() == chunkIds.get(api).size())
+        else if (guildIds.size() == chunkIds.size())
         {
             sendChunks();
         }
@@ -118,7 +110,7 @@ public class ReadyHandler extends SocketHandler
 
     private void sendChunks()
     {
-        Iterator<String> iterator = chunkIds.get(api).iterator();
+        Iterator<String> iterator = chunkIds.iterator();
         JSONArray arr = new JSONArray();
         while (iterator.hasNext())
         {
@@ -156,6 +148,9 @@ public class ReadyHandler extends SocketHandler
         {
             builder.createPrivateChannel(priv_chats.getJSONObject(i));
         }
+        //the handler lives as long as the client, nothing may be left over for the next READY
+        chunkIds.clear();
+        cachedJson = null;
         api.getClient().ready();
     }
 }
@@ -19,21 +19,26 @@ import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.requests.GuildLock;
 import org.json.JSONObject;
 
+/**
+ * Handles one type of gateway event.
+ * <p>
+ * Every {@link net.dv8tion.jda.requests.WebSocketClient WebSocketClient} holds a single instance per event type,
+ * so implementations must not keep per-event state in fields. Additional handlers for event types JDA does not
+ * handle itself can be registered via {@link net.dv8tion.jda.requests.WebSocketClient#registerHandler(String, SocketHandler)}.
+ */
 public abstract class SocketHandler
 {
     protected final JDAImpl api;
-    protected final int responseNumber;
 
-    public SocketHandler(JDAImpl api, int responseNumber)
+    public SocketHandler(JDAImpl api)
     {
         this.api = api;
-        this.responseNumber = responseNumber;
     }
 
 
-    public final void handle(JSONObject o)
+    public final void handle(int responseNumber, JSONObject o)
     {
-        String guildId = handleInternally(o.getJSONObject("d"));
+        String guildId = handleInternally(o.getJSONObject("d"), responseNumber);
         if (guildId != null)
         {
             GuildLock.get(api).queue(guildId, o);
@@ -44,8 +49,10 @@ public abstract class SocketHandler
      * Handles a given data-json of the Event handled by this Handler.
      * @param content
      *      the content of the event to handle
+     * @param responseNumber
+     *      the sequence number of the event
      * @return
      *      Guild-id if that guild has a lock, or null if successful
      */
-    protected abstract String handleInternally(JSONObject content);
-}
\ No newline at end of file
+    protected abstract String handleInternally(JSONObject content, int responseNumber);
+}
@@ -31,13 +31,13 @@ import java.time.ZoneOffset;
 public class UserTypingHandler extends SocketHandler
 {
 
-    public UserTypingHandler(JDAImpl api, int responseNumber)
+    public UserTypingHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         MessageChannel channel = api.getChannelMap().get(content.getString("channel_id"));
 
@@ -53,6 +53,7 @@ public class UserTypingHandler extends SocketHandler
         User user = api.getUserMap().get(content.getString("user_id"));
         if (user == null)
             return null;
+        api.getMemberLoader().touch(user);
 
         OffsetDateTime timestamp = Instant.ofEpochSecond(content.getInt("timestamp")).atOffset(ZoneOffset.UTC);
         api.getEventManager().handle(new UserTypingEvent(api, responseNumber, user, channel, timestamp));
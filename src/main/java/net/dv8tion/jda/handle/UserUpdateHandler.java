@@ -20,13 +20,13 @@ import org.json.JSONObject;
 
 public class UserUpdateHandler extends SocketHandler
 {
-    public UserUpdateHandler(JDAImpl api, int responseNumber)
+    public UserUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         new EntityBuilder(api).createSelfInfo(content);
         //TODO: Events?
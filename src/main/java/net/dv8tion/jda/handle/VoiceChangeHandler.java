@@ -23,17 +23,18 @@ import net.dv8tion.jda.entities.impl.VoiceChannelImpl;
 import net.dv8tion.jda.entities.impl.VoiceStatusImpl;
 import net.dv8tion.jda.events.voice.*;
 import net.dv8tion.jda.requests.GuildLock;
+import net.dv8tion.jda.requests.MemberLoader;
 import org.json.JSONObject;
 
 public class VoiceChangeHandler extends SocketHandler
 {
-    public VoiceChangeHandler(JDAImpl api, int responseNumber)
+    public VoiceChangeHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
@@ -41,6 +42,17 @@ public class VoiceChangeHandler extends SocketHandler
         }
 
         User user = api.getUserMap().get(content.getString("user_id"));
+        Guild memberGuild = api.getGuildMap().get(content.getString("guild_id"));
+        MemberLoader memberLoader = api.getMemberLoader();
+        if (memberLoader.isEnabled() && memberGuild != null
+                && (memberLoader.hasPendingRetry(memberGuild, content.getString("user_id"))
+                    || (!content.isNull("channel_id") && (user == null || memberGuild.getVoiceStatusOfUser(user) == null))))
+        {
+            //members in voice channels are needed, load it and handle this event again
+            //later updates of that member wait for it as well, so a quick join and leave is handled in order
+            memberLoader.retryWithMember(memberGuild, content.getString("user_id"), "VOICE_STATE_UPDATE", content);
+            return null;
+        }
         if (user == null)
         {
             if (!content.isNull("channel_id"))
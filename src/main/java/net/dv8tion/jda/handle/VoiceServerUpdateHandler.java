@@ -26,14 +26,20 @@ import org.json.JSONObject;
 
 public class VoiceServerUpdateHandler extends SocketHandler
 {
-    public VoiceServerUpdateHandler(JDAImpl api, int responseNumber)
+    public VoiceServerUpdateHandler(JDAImpl api)
     {
-        super(api, responseNumber);
+        super(api);
     }
 
     @Override
-    protected String handleInternally(JSONObject content)
+    protected String handleInternally(JSONObject content, int responseNumber)
     {
+        if (!api.isAudioEnabled())
+        {
+            WebSocketClient.LOG.debug("Received VOICE_SERVER_UPDATE event but ignoring due to audio being disabled/not supported.");
+            return null;
+        }
+
         if (GuildLock.get(api).isLocked(content.getString("guild_id")))
         {
             return content.getString("guild_id");
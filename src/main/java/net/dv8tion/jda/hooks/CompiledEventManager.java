@@ -0,0 +1,638 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.hooks;
+
+import com.almightyalpaca.discord.bot.system.events.manager.EventHandler;
+import net.dv8tion.jda.entities.Guild;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.events.Event;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link net.dv8tion.jda.hooks.IEventManager IEventManager} that accepts both kinds of listeners and dispatches
+ * events without locking or copying.
+ * <ul>
+ *     <li>{@link net.dv8tion.jda.hooks.EventListener EventListeners} are called through
+ *     {@link net.dv8tion.jda.hooks.EventListener#onEvent(net.dv8tion.jda.events.Event) onEvent(Event)} like the
+ *     {@link net.dv8tion.jda.hooks.InterfacedEventManager InterfacedEventManager} does.
+ *     A {@link net.dv8tion.jda.hooks.ListenerAdapter ListenerAdapter} is only called for the events that reach one of the
+ *     methods it overrides, unless it overrides onEvent itself.</li>
+ *     <li>Any other object is called through its methods annotated with {@link net.dv8tion.jda.hooks.SubscribeEvent SubscribeEvent}
+ *     or {@link com.almightyalpaca.discord.bot.system.events.manager.EventHandler EventHandler}
+ *     like the {@link net.dv8tion.jda.hooks.AnnotatedEventManager AnnotatedEventManager} does.
+ *     An EventListener's annotated methods are not called, only its onEvent method is.</li>
+ * </ul>
+ * The registered listeners are kept in an array that is copied on every register and unregister.
+ * For every concrete event class, the handlers it reaches are collected into an array the first time such an event is handled,
+ * so handling an event walks that array and nothing else.
+ * Annotated methods are bound once per listener class, through generated lambdas where the method is public
+ * and through method handles otherwise.
+ * <p>
+ * Listeners are called in the order they were registered in. A listener that is already registered is not registered again.
+ *
+ * <h2>Asynchronous handlers</h2>
+ * Methods annotated with {@link com.almightyalpaca.discord.bot.system.events.manager.EventHandler#async() EventHandler(async = true)}
+ * are called on the executor of this manager instead of the thread that handles the event.
+ * For a ListenerAdapter this is decided per event, it is called asynchronously if all of its overridden methods
+ * the event reaches are annotated that way.
+ * <br>By default, the asynchronous handlers of all events of one guild run one after another in the order of the events,
+ * while events of different guilds are handled in parallel. Events without a guild are ordered among themselves.
+ * See {@link #setOrderedByGuild(boolean)}.
+ */
+public class CompiledEventManager implements IEventManager
+{
+    private static final Class<?>[] ALL_EVENTS = { Event.class };
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Event.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Object NO_GUILD = new Object();
+    private static final int LANE_BATCH = 32;
+
+    private static final ClassValue<Subscription[]> SUBSCRIPTIONS = new ClassValue<Subscription[]>()
+    {
+        @Override
+        protected Subscription[] computeValue(Class<?> type)
+        {
+            return findSubscriptions(type);
+        }
+    };
+
+    private static final ClassValue<MethodHandle> GUILD_GETTERS = new ClassValue<MethodHandle>()
+    {
+        @Override
+        protected MethodHandle computeValue(Class<?> type)
+        {
+            try
+            {
+                return MethodHandles.publicLookup().findVirtual(type, "getGuild", MethodType.methodType(Guild.class))
+                        .asType(MethodType.methodType(Guild.class, Event.class));
+            }
+            catch (NoSuchMethodException | IllegalAccessException e)
+            {
+                return null;
+            }
+        }
+    };
+
+    private final Executor executor;
+    private final Map<Object, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile State state = new State(new Object[0], new ListenerStatistics[0], new Registration[0]);
+    private volatile boolean orderedByGuild = true;
+    private volatile boolean statisticsEnabled = false;
+
+    /**
+     * Creates a manager that calls asynchronous handlers on a shared pool with one daemon thread per core.
+     */
+    public CompiledEventManager()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a manager that calls asynchronous handlers on the given executor.
+     *
+     * @param executor
+     *          The executor for asynchronous handlers, or null to use a shared pool with one daemon thread per core.
+     */
+    public CompiledEventManager(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean register(Object listener)
+    {
+        Subscription[] subscriptions = SUBSCRIPTIONS.get(listener.getClass());
+        if (subscriptions.length == 0)
+            throw new IllegalArgumentException("Listener must implement EventListener or have methods annotated with @SubscribeEvent");
+
+        synchronized (this)
+        {
+            State current = state;
+            if (indexOf(current.listeners, listener) >= 0)
+                return false;
+
+            int count = current.listeners.length;
+            Object[] listeners = Arrays.copyOf(current.listeners, count + 1);
+            listeners[count] = listener;
+            ListenerStatistics[] statistics = Arrays.copyOf(current.statistics, count + 1);
+            statistics[count] = new ListenerStatistics(listener);
+            Registration[] registrations = Arrays.copyOf(current.registrations, current.registrations.length + subscriptions.length);
+            for (int i = 0; i < subscriptions.length; i++)
+                registrations[current.registrations.length + i] = new Registration(listener, subscriptions[i], statistics[count]);
+            state = new State(listeners, statistics, registrations);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean unregister(Object listener)
+    {
+        synchronized (this)
+        {
+            State current = state;
+            int index = indexOf(current.listeners, listener);
+            if (index < 0)
+                return false;
+
+            Object removed = current.listeners[index];
+            Object[] listeners = remove(current.listeners, index, new Object[current.listeners.length - 1]);
+            ListenerStatistics[] statistics = remove(current.statistics, index, new ListenerStatistics[listeners.length]);
+            List<Registration> registrations = new ArrayList<>(current.registrations.length);
+            for (Registration registration : current.registrations)
+            {
+                if (registration.listener != removed)
+                    registrations.add(registration);
+            }
+            state = new State(listeners, statistics, registrations.toArray(new Registration[registrations.size()]));
+            return true;
+        }
+    }
+
+    @Override
+    public List<Object> getRegisteredListeners()
+    {
+        return Collections.unmodifiableList(Arrays.asList(state.listeners));
+    }
+
+    /**
+     * The statistics of the currently registered listeners, in the order they were registered in.
+     * The statistics of a listener are kept as long as it stays registered.
+     *
+     * @return
+     *      Immutable list of the statistics of every registered listener.
+     */
+    public List<ListenerStatistics> getStatistics()
+    {
+        return Collections.unmodifiableList(Arrays.asList(state.statistics));
+    }
+
+    /**
+     * Enables/Disables recording how long listeners take to handle events, see {@link #getStatistics()}.
+     * Recording costs two reads of the system timer per called handler.
+     * <p>
+     * Default: false
+     *
+     * @param enabled
+     *          True - records the statistics of every handler that is called.
+     */
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        this.statisticsEnabled = enabled;
+    }
+
+    public boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Whether the asynchronous handlers of the events of one guild are called one after another in the order of the events.
+     * If disabled, the asynchronous handlers of every event are handed to the executor on their own and may run
+     * in parallel with those of any other event, while the handlers of a single event are still called in order.
+     * <p>
+     * Default: true
+     *
+     * @param ordered
+     *          True - handles the events of one guild in order.
+     */
+    public void setOrderedByGuild(boolean ordered)
+    {
+        this.orderedByGuild = ordered;
+    }
+
+    public boolean isOrderedByGuild()
+    {
+        return orderedByGuild;
+    }
+
+    @Override
+    public void handle(Event event)
+    {
+        Dispatch dispatch = state.getDispatch(event.getClass());
+        boolean recording = statisticsEnabled;
+        for (Handler handler : dispatch.sync)
+            handler.call(event, recording);
+
+        if (dispatch.async.length > 0)
+        {
+            long queued = recording ? System.nanoTime() : 0;
+            Runnable task = () ->
+            {
+                for (Handler handler : dispatch.async)
+                {
+                    if (recording)
+                        handler.registration.statistics.recordQueued(System.nanoTime() - queued);
+                    handler.call(event, recording);
+                }
+            };
+            if (orderedByGuild)
+                execute(getLaneKey(event), task);
+            else
+                execute(task);
+        }
+    }
+
+    private void execute(Runnable task)
+    {
+        try
+        {
+            (executor != null ? executor : DefaultPool.EXECUTOR).execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            JDAImpl.LOG.fatal("The executor of the EventManager rejected an event, it is not handled asynchronously");
+        }
+    }
+
+    private void execute(Object key, Runnable task)
+    {
+        while (!lanes.computeIfAbsent(key, Lane::new).add(task))
+        {
+            //The lane was removed after it ran empty, a new one takes over.
+        }
+    }
+
+    private static Object getLaneKey(Event event)
+    {
+        MethodHandle getter = GUILD_GETTERS.get(event.getClass());
+        if (getter == null)
+            return NO_GUILD;
+        try
+        {
+            Guild guild = (Guild) getter.invokeExact(event);
+            return guild != null ? guild.getId() : NO_GUILD;
+        }
+        catch (Throwable ignored)
+        {
+            return NO_GUILD;
+        }
+    }
+
+    private static int indexOf(Object[] listeners, Object listener)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (listeners[i].equals(listener))
+                return i;
+        }
+        return -1;
+    }
+
+    private static <T> T[] remove(T[] array, int index, T[] target)
+    {
+        System.arraycopy(array, 0, target, 0, index);
+        System.arraycopy(array, index + 1, target, index, target.length - index);
+        return target;
+    }
+
+    private static Subscription[] findSubscriptions(Class<?> type)
+    {
+        Invoker onEvent = (listener, event) -> ((EventListener) listener).onEvent(event);
+        if (ListenerAdapter.class.isAssignableFrom(type))
+            return new Subscription[] { findOverriddenEvents(type, onEvent) };
+        if (EventListener.class.isAssignableFrom(type))
+        {
+            try
+            {
+                return new Subscription[] { new Subscription(ALL_EVENTS, isAsync(type.getMethod("onEvent", Event.class)), onEvent) };
+            }
+            catch (NoSuchMethodException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods())
+        {
+            if (!method.isAnnotationPresent(SubscribeEvent.class) && !method.isAnnotationPresent(EventHandler.class))
+                continue;
+            Class<?>[] parameters = method.getParameterTypes();
+            if (parameters.length == 1 && Event.class.isAssignableFrom(parameters[0]))
+                subscriptions.add(new Subscription(new Class<?>[] { parameters[0] }, isAsync(method), bind(method)));
+        }
+        return subscriptions.toArray(new Subscription[subscriptions.size()]);
+    }
+
+    /**
+     * ListenerAdapter#onEvent only passes an event to methods whose parameter type it is an instance of,
+     * so a subclass cannot do anything for events that none of its overridden methods accept.
+     */
+    private static Subscription findOverriddenEvents(Class<?> type, Invoker onEvent)
+    {
+        Map<Class<?>, Boolean> eventTypes = new LinkedHashMap<>();
+        for (Class<?> c = type; c != ListenerAdapter.class; c = c.getSuperclass())
+        {
+            for (Method method : c.getDeclaredMethods())
+            {
+                Class<?>[] parameters = method.getParameterTypes();
+                if (Modifier.isStatic(method.getModifiers()) || parameters.length != 1)
+                    continue;
+                try
+                {
+                    Method overridden = ListenerAdapter.class.getDeclaredMethod(method.getName(), parameters);
+                    if (Modifier.isPrivate(overridden.getModifiers()))
+                        continue;
+                    if (overridden.getName().equals("onEvent"))
+                        return new Subscription(ALL_EVENTS, isAsync(type.getMethod("onEvent", Event.class)), onEvent);
+                    //The most derived override decides, it is the one that is found first.
+                    eventTypes.putIfAbsent(parameters[0], isAsyncMethod(method));
+                }
+                catch (NoSuchMethodException ignored) {}
+            }
+        }
+
+        Class<?>[] types = eventTypes.keySet().toArray(new Class<?>[eventTypes.size()]);
+        boolean[] async = new boolean[types.length];
+        for (int i = 0; i < types.length; i++)
+            async[i] = eventTypes.get(types[i]);
+        return new Subscription(types, async, onEvent);
+    }
+
+    private static boolean[] isAsync(Method method)
+    {
+        return new boolean[] { isAsyncMethod(method) };
+    }
+
+    private static boolean isAsyncMethod(Method method)
+    {
+        EventHandler annotation = method.getAnnotation(EventHandler.class);
+        return annotation != null && annotation.async();
+    }
+
+    private static Invoker bind(Method method)
+    {
+        Class<?> type = method.getDeclaringClass();
+        Class<?> eventType = method.getParameterTypes()[0];
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (!isStatic && Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(type.getModifiers())
+                && isVisible(type) && isVisible(eventType))
+        {
+            try
+            {
+                MethodHandle target = LOOKUP.unreflect(method);
+                return (Invoker) LambdaMetafactory.metafactory(LOOKUP, "invoke", MethodType.methodType(Invoker.class),
+                        INVOKER_TYPE, target, MethodType.methodType(void.class, type, eventType))
+                        .getTarget().invokeExact();
+            }
+            catch (Throwable ignored) {}
+        }
+
+        try
+        {
+            method.setAccessible(true);
+            MethodHandle target = LOOKUP.unreflect(method);
+            if (isStatic)
+                target = MethodHandles.dropArguments(target, 0, Object.class);
+            MethodHandle handle = target.asType(INVOKER_TYPE);
+            return (listener, event) -> { handle.invokeExact(listener, event); };
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            throw new IllegalArgumentException("Could not access the event method " + method, e);
+        }
+    }
+
+    //Generated lambdas resolve the listener class through JDA's class loader, which may not see classes loaded elsewhere.
+    private static boolean isVisible(Class<?> type)
+    {
+        try
+        {
+            return Class.forName(type.getName(), false, CompiledEventManager.class.getClassLoader()) == type;
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    interface Invoker
+    {
+        void invoke(Object listener, Event event) throws Throwable;
+    }
+
+    private static class Subscription
+    {
+        private final Class<?>[] eventTypes;
+        private final boolean[] async;
+        private final Invoker invoker;
+
+        private Subscription(Class<?>[] eventTypes, boolean[] async, Invoker invoker)
+        {
+            this.eventTypes = eventTypes;
+            this.async = async;
+            this.invoker = invoker;
+        }
+
+        /**
+         * @return
+         *      Null if the event class is not accepted, otherwise whether all accepting types are asynchronous.
+         */
+        private Boolean accepts(Class<?> eventClass)
+        {
+            Boolean accepted = null;
+            for (int i = 0; i < eventTypes.length; i++)
+            {
+                if (eventTypes[i].isAssignableFrom(eventClass))
+                    accepted = (accepted == null || accepted) && async[i];
+            }
+            return accepted;
+        }
+    }
+
+    private static class Registration
+    {
+        private final Object listener;
+        private final Subscription subscription;
+        private final ListenerStatistics statistics;
+
+        private Registration(Object listener, Subscription subscription, ListenerStatistics statistics)
+        {
+            this.listener = listener;
+            this.subscription = subscription;
+            this.statistics = statistics;
+        }
+    }
+
+    private static class Handler
+    {
+        private final Registration registration;
+
+        private Handler(Registration registration)
+        {
+            this.registration = registration;
+        }
+
+        private void call(Event event, boolean recording)
+        {
+            long start = recording ? System.nanoTime() : 0;
+            boolean failed = false;
+            try
+            {
+                registration.subscription.invoker.invoke(registration.listener, event);
+            }
+            catch (Throwable throwable)
+            {
+                failed = true;
+                JDAImpl.LOG.fatal("One of the EventListeners had an uncaught exception");
+                JDAImpl.LOG.log(throwable);
+            }
+            if (recording)
+                registration.statistics.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static class Dispatch
+    {
+        private final Handler[] sync;
+        private final Handler[] async;
+
+        private Dispatch(Handler[] sync, Handler[] async)
+        {
+            this.sync = sync;
+            this.async = async;
+        }
+    }
+
+    //Immutable apart from the dispatch tables, which only ever hold handlers of the registrations of the same State.
+    private static class State
+    {
+        private final Object[] listeners;
+        private final ListenerStatistics[] statistics;
+        private final Registration[] registrations;
+        private final Map<Class<?>, Dispatch> tables = new ConcurrentHashMap<>();
+
+        private State(Object[] listeners, ListenerStatistics[] statistics, Registration[] registrations)
+        {
+            this.listeners = listeners;
+            this.statistics = statistics;
+            this.registrations = registrations;
+        }
+
+        private Dispatch getDispatch(Class<?> eventClass)
+        {
+            Dispatch dispatch = tables.get(eventClass);
+            if (dispatch == null)
+                dispatch = tables.computeIfAbsent(eventClass, this::select);
+            return dispatch;
+        }
+
+        private Dispatch select(Class<?> eventClass)
+        {
+            List<Handler> sync = new ArrayList<>();
+            List<Handler> async = new ArrayList<>();
+            for (Registration registration : registrations)
+            {
+                Boolean accepted = registration.subscription.accepts(eventClass);
+                if (accepted != null)
+                    (accepted ? async : sync).add(new Handler(registration));
+            }
+            return new Dispatch(sync.toArray(new Handler[sync.size()]), async.toArray(new Handler[async.size()]));
+        }
+    }
+
+    /**
+     * Runs the tasks of one guild one after another on the executor.
+     * It removes itself once it ran out of tasks, so guilds without events do not keep a lane.
+     */
+    private class Lane implements Runnable
+    {
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+        private boolean removed = false;
+
+        private Lane(Object key)
+        {
+            this.key = key;
+        }
+
+        private boolean add(Runnable task)
+        {
+            synchronized (this)
+            {
+                if (removed)
+                    return false;
+                tasks.add(task);
+                if (running)
+                    return true;
+                running = true;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule()
+        {
+            try
+            {
+                (executor != null ? executor : DefaultPool.EXECUTOR).execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                JDAImpl.LOG.fatal("The executor of the EventManager rejected a guild's events, they are not handled asynchronously");
+                synchronized (this)
+                {
+                    tasks.clear();
+                    running = false;
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            for (int i = 0; i < LANE_BATCH; i++)
+            {
+                Runnable task;
+                synchronized (this)
+                {
+                    task = tasks.poll();
+                    if (task == null)
+                    {
+                        running = false;
+                        removed = lanes.remove(key, this);
+                        return;
+                    }
+                }
+                task.run();
+            }
+            //Give the lanes of other guilds a turn before continuing.
+            schedule();
+        }
+    }
+
+    private static class DefaultPool
+    {
+        private static final AtomicInteger threadCount = new AtomicInteger(0);
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r ->
+        {
+            Thread t = new Thread(r, "JDA EventManager Worker " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.hooks;
+
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.events.Event;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last stage of the gateway pipeline. It wraps the {@link net.dv8tion.jda.hooks.IEventManager IEventManager}
+ * set by the user and hands every event to a listener executor, so slow listeners never stall the thread
+ * that reads from the WebSocket and updates JDA's cache.
+ * <p>
+ * The default executor uses a single thread, so events are delivered in the order they were fired.
+ * If an executor with more threads is provided, events may be delivered out of order.
+ */
+public class EventDispatcher implements IEventManager
+{
+    public static final int DEFAULT_MAX_QUEUED_EVENTS = 10000;
+
+    /**
+     * Decides what happens when an event is fired while the maximum amount of events are waiting for delivery.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * The firing thread waits until there is room again. This pushes back on the gateway.
+         */
+        BLOCK,
+        /**
+         * The event is delivered on the firing thread. Listeners may see events out of order.
+         */
+        CALLER_RUNS,
+        /**
+         * The event is dropped. Dropped events are counted, see {@link EventDispatcher#getDroppedEvents()}.
+         */
+        DROP
+    }
+
+    private static final ThreadLocal<Boolean> delivering = ThreadLocal.withInitial(() -> false);
+
+    private volatile IEventManager eventManager;
+    private Executor executor = null;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile int maxQueuedEvents = DEFAULT_MAX_QUEUED_EVENTS;
+    private int queuedEvents = 0;
+    private final AtomicLong droppedEvents = new AtomicLong(0);
+
+    public EventDispatcher(IEventManager eventManager)
+    {
+        setEventManager(eventManager);
+    }
+
+    public void setEventManager(IEventManager eventManager)
+    {
+        if (eventManager == null)
+            throw new IllegalArgumentException("The IEventManager may not be null");
+        this.eventManager = eventManager;
+    }
+
+    public IEventManager getEventManager()
+    {
+        return eventManager;
+    }
+
+    /**
+     * Sets the executor that delivers events to the listeners.
+     * If none is set, a single daemon thread is used.
+     *
+     * @param executor
+     *          The executor to use or null to use the default one.
+     */
+    public synchronized void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        if (overflowPolicy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void setMaxQueuedEvents(int maxQueuedEvents)
+    {
+        if (maxQueuedEvents < 1)
+            throw new IllegalArgumentException("The maximum amount of queued events has to be at least 1");
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    /**
+     * The amount of events that were fired but not yet delivered to all listeners.
+     *
+     * @return
+     *      The current amount of queued events.
+     */
+    public synchronized int getQueuedEvents()
+    {
+        return queuedEvents;
+    }
+
+    /**
+     * The amount of events that were dropped because of the {@link OverflowPolicy#DROP DROP} policy.
+     *
+     * @return
+     *      The total amount of dropped events.
+     */
+    public long getDroppedEvents()
+    {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public boolean register(Object listener)
+    {
+        return eventManager.register(listener);
+    }
+
+    @Override
+    public boolean unregister(Object listener)
+    {
+        return eventManager.unregister(listener);
+    }
+
+    @Override
+    public List<Object> getRegisteredListeners()
+    {
+        return eventManager.getRegisteredListeners();
+    }
+
+    @Override
+    public void handle(Event event)
+    {
+        //events fired by listeners are delivered right away, waiting for the queue to drain could dead-lock
+        if (delivering.get())
+        {
+            eventManager.handle(event);
+            return;
+        }
+        if (!reserve())
+        {
+            if (overflowPolicy == OverflowPolicy.DROP)
+            {
+                long dropped = droppedEvents.incrementAndGet();
+                if (dropped == 1 || dropped % 1000 == 0)
+                    JDAImpl.LOG.warn("The event queue is full! Dropped " + dropped + " events so far.");
+            }
+            else
+            {
+                deliver(event);
+            }
+            return;
+        }
+        try
+        {
+            getExecutor().execute(() ->
+            {
+                try
+                {
+                    deliver(event);
+                }
+                finally
+                {
+                    release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            release();
+            deliver(event);
+        }
+    }
+
+    private void deliver(Event event)
+    {
+        delivering.set(true);
+        try
+        {
+            eventManager.handle(event);
+        }
+        catch (Throwable throwable)
+        {
+            JDAImpl.LOG.fatal("The IEventManager had an uncaught exception");
+            JDAImpl.LOG.log(throwable);
+        }
+        finally
+        {
+            delivering.set(false);
+        }
+    }
+
+    private synchronized boolean reserve()
+    {
+        while (queuedEvents >= maxQueuedEvents)
+        {
+            if (overflowPolicy != OverflowPolicy.BLOCK)
+                return false;
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        queuedEvents++;
+        return true;
+    }
+
+    private synchronized void release()
+    {
+        queuedEvents--;
+        notifyAll();
+    }
+
+    private synchronized Executor getExecutor()
+    {
+        if (executor == null)
+        {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+            {
+                Thread t = new Thread(r, "JDA EventDispatcher");
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+}
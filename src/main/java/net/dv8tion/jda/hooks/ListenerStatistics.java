@@ -0,0 +1,124 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.hooks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long the methods of one listener registered with a {@link net.dv8tion.jda.hooks.CompiledEventManager CompiledEventManager}
+ * took to handle events, and for asynchronous methods, how long events waited before they were handled.
+ * <p>
+ * Only recorded while {@link net.dv8tion.jda.hooks.CompiledEventManager#setStatisticsEnabled(boolean) statistics are enabled}.
+ */
+public class ListenerStatistics
+{
+    private final Object listener;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final LongAdder asyncInvocations = new LongAdder();
+    private final LongAdder totalQueueTime = new LongAdder();
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    ListenerStatistics(Object listener)
+    {
+        this.listener = listener;
+    }
+
+    void record(long nanos, boolean failed)
+    {
+        invocations.increment();
+        if (failed)
+            failures.increment();
+        totalTime.add(nanos);
+        maxTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordQueued(long nanos)
+    {
+        asyncInvocations.increment();
+        totalQueueTime.add(nanos);
+        maxQueueTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Object getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * The amount of times a method of the listener was called, including the calls that threw.
+     *
+     * @return
+     *      The amount of calls.
+     */
+    public long getInvocations()
+    {
+        return invocations.sum();
+    }
+
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+    public long getTotalTime(TimeUnit unit)
+    {
+        return unit.convert(totalTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageTime(TimeUnit unit)
+    {
+        long count = invocations.sum();
+        return count == 0 ? 0 : unit.convert(totalTime.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTime(TimeUnit unit)
+    {
+        return unit.convert(maxTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The average time between an event being handed to the manager and an asynchronous method starting to handle it.
+     *
+     * @param unit
+     *          The unit of the returned value.
+     * @return
+     *      The average waiting time, 0 if no asynchronous method of the listener was called yet.
+     */
+    public long getAverageQueueTime(TimeUnit unit)
+    {
+        long count = asyncInvocations.sum();
+        return count == 0 ? 0 : unit.convert(totalQueueTime.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxQueueTime(TimeUnit unit)
+    {
+        return unit.convert(maxQueueTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ListenerStatistics(" + listener.getClass().getName() + ", invocations: " + getInvocations()
+                + ", failures: " + getFailures() + ", avg: " + getAverageTime(TimeUnit.MICROSECONDS) + "us, max: "
+                + getMaxTime(TimeUnit.MICROSECONDS) + "us, avg queued: " + getAverageQueueTime(TimeUnit.MICROSECONDS)
+                + "us, max queued: " + getMaxQueueTime(TimeUnit.MICROSECONDS) + "us)";
+    }
+}
@@ -18,6 +18,7 @@ package net.dv8tion.jda.managers;
 import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.audio.AudioReceiveHandler;
 import net.dv8tion.jda.audio.AudioSendHandler;
+import net.dv8tion.jda.audio.JitterHistogram;
 import net.dv8tion.jda.entities.Guild;
 import net.dv8tion.jda.entities.VoiceChannel;
 import net.dv8tion.jda.utils.SimpleLog;
@@ -29,6 +30,9 @@ import net.dv8tion.jda.utils.SimpleLog;
 public interface AudioManager
 {
     long DEFAULT_CONNECTION_TIMEOUT = 10000;
+    int DEFAULT_RECEIVE_MIN_DELAY = 40;
+    int DEFAULT_RECEIVE_MAX_DELAY = 200;
+    int DEFAULT_SEND_BUFFER = 100;
     SimpleLog LOG = SimpleLog.getLog("JDAAudioManager");
 
     /**
@@ -156,6 +160,93 @@ public interface AudioManager
      */
     long getConnectTimeout();
 
+    /**
+     * Sets the bounds, in milliseconds, of the delay that decoded audio of users is held back before it is passed to
+     * {@link net.dv8tion.jda.audio.AudioReceiveHandler#handleUserAudio(net.dv8tion.jda.audio.UserAudio)}.
+     * Within these bounds the delay adapts to how irregularly the packets of a user arrive. A longer delay
+     * conceals fewer packets that arrive late, a shorter one keeps the audio closer to real time.<br>
+     * The default values are 40 and 200 milliseconds. This applies to users that start speaking after it was set.
+     *
+     * @param minDelay
+     *          The minimum delay, at least 20 milliseconds.
+     * @param maxDelay
+     *          The maximum delay, at least the minimum delay and at most 560 milliseconds.
+     *
+     * @throws java.lang.IllegalArgumentException
+     *          If the delays are not within these bounds.
+     */
+    void setReceiveDelay(int minDelay, int maxDelay);
+
+    /**
+     * Returns the currently set minimum delay, in milliseconds, of decoded audio.
+     *
+     * @return
+     *      The minimum receive delay.
+     */
+    int getReceiveMinDelay();
+
+    /**
+     * Returns the currently set maximum delay, in milliseconds, of decoded audio.
+     *
+     * @return
+     *      The maximum receive delay.
+     */
+    int getReceiveMaxDelay();
+
+    /**
+     * Sets how many milliseconds of audio are provided and encoded ahead of the time they are sent. A buffer
+     * hides handlers that are sometimes slow to provide a frame, for example while a stream loads or the garbage
+     * collector pauses, but pausing or replacing the handler only takes effect once the buffered audio was sent.<br>
+     * Values between 60 and 200 milliseconds are recommended. 0 provides every frame right before it is sent.
+     * The default value is 100 milliseconds.
+     *
+     * @param milliseconds
+     *          The length of the send buffer, rounded up to whole 20ms frames. At most 200 milliseconds.
+     *
+     * @throws java.lang.IllegalArgumentException
+     *          If the length is negative or above 200 milliseconds.
+     */
+    void setSendBuffer(int milliseconds);
+
+    /**
+     * Returns the currently set length, in milliseconds, of the send buffer.
+     *
+     * @return
+     *      The send buffer length.
+     */
+    int getSendBuffer();
+
+    /**
+     * Returns how often the current audio connection had no frame ready when it was due, because the
+     * {@link net.dv8tion.jda.audio.AudioSendHandler AudioSendHandler} was still providing it.
+     * Frequent underruns call for a longer {@link #setSendBuffer(int) send buffer}.
+     *
+     * @return
+     *      The amount of send buffer underruns, 0 if there is no audio connection.
+     */
+    long getSendUnderruns();
+
+    /**
+     * Returns how many frames the current audio connection provided ahead of time, but never sent because the
+     * {@link net.dv8tion.jda.audio.AudioSendHandler AudioSendHandler} was replaced first.
+     * A full send buffer never loses frames, the handler is simply not asked for more until there is room again.
+     * Many discarded frames mean that a new handler is heard late, which calls for a shorter
+     * {@link #setSendBuffer(int) send buffer}.
+     *
+     * @return
+     *      The amount of discarded frames, 0 if there is no audio connection.
+     */
+    long getSendDiscards();
+
+    /**
+     * Returns how late the current audio connection sent its frames compared to when they were due.
+     *
+     * @return
+     *      The {@link net.dv8tion.jda.audio.JitterHistogram JitterHistogram} of the current connection,
+     *      or null if there is no audio connection.
+     */
+    JitterHistogram getSendJitter();
+
     /**
      * Sets the {@link net.dv8tion.jda.audio.AudioSendHandler}
      * that the manager will use to provide audio data to an audio connection.<br>
@@ -167,6 +258,9 @@ public interface AudioManager
      * Example implementations of an {@link net.dv8tion.jda.audio.AudioSendHandler AudioSendHandler} can be seen in the
      * abstract class {@link net.dv8tion.jda.audio.player.Player Player} and its subclasses
      * {@link net.dv8tion.jda.audio.player.FilePlayer FilePlayer} and {@link net.dv8tion.jda.audio.player.URLPlayer URLPlayer}.
+     * Pre-encoded Ogg/Opus files can be played by the {@link net.dv8tion.jda.audio.player.OggOpusPlayer OggOpusPlayer}.
+     * Tracks played by several guilds can be encoded once with the {@link net.dv8tion.jda.audio.TrackCache TrackCache}
+     * and played by a {@link net.dv8tion.jda.audio.player.CachedTrackPlayer CachedTrackPlayer} each.
      *
      * @param handler
      *          The {@link net.dv8tion.jda.audio.AudioSendHandler AudioSendHandler} used to provide audio data.
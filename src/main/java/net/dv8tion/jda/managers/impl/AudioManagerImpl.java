@@ -20,6 +20,7 @@ import net.dv8tion.jda.JDA;
 import net.dv8tion.jda.audio.AudioConnection;
 import net.dv8tion.jda.audio.AudioReceiveHandler;
 import net.dv8tion.jda.audio.AudioSendHandler;
+import net.dv8tion.jda.audio.JitterHistogram;
 import net.dv8tion.jda.entities.Guild;
 import net.dv8tion.jda.entities.VoiceChannel;
 import net.dv8tion.jda.entities.impl.JDAImpl;
@@ -49,6 +50,9 @@ public class AudioManagerImpl implements AudioManager
     private AudioReceiveHandler receiveHandler;
 
     private long timeout = DEFAULT_CONNECTION_TIMEOUT;
+    private int receiveMinDelay = DEFAULT_RECEIVE_MIN_DELAY;
+    private int receiveMaxDelay = DEFAULT_RECEIVE_MAX_DELAY;
+    private int sendBuffer = DEFAULT_SEND_BUFFER;
 
     public AudioManagerImpl(Guild guild)
     {
@@ -172,6 +176,68 @@ public class AudioManagerImpl implements AudioManager
         return timeout;
     }
 
+    @Override
+    public void setReceiveDelay(int minDelay, int maxDelay)
+    {
+        if (minDelay < AudioConnection.OPUS_FRAME_TIME_AMOUNT)
+            throw new IllegalArgumentException("The minimum receive delay has to be at least " + AudioConnection.OPUS_FRAME_TIME_AMOUNT + "ms");
+        if (maxDelay < minDelay || maxDelay > AudioConnection.MAX_RECEIVE_DELAY)
+            throw new IllegalArgumentException("The maximum receive delay has to be between the minimum delay and " + AudioConnection.MAX_RECEIVE_DELAY + "ms");
+        this.receiveMinDelay = minDelay;
+        this.receiveMaxDelay = maxDelay;
+        if (audioConnection != null)
+            audioConnection.setReceiveDelay(minDelay, maxDelay);
+    }
+
+    @Override
+    public int getReceiveMinDelay()
+    {
+        return receiveMinDelay;
+    }
+
+    @Override
+    public int getReceiveMaxDelay()
+    {
+        return receiveMaxDelay;
+    }
+
+    @Override
+    public void setSendBuffer(int milliseconds)
+    {
+        if (milliseconds < 0 || milliseconds > AudioConnection.MAX_SEND_BUFFER)
+            throw new IllegalArgumentException("The send buffer has to be between 0 and " + AudioConnection.MAX_SEND_BUFFER + "ms");
+        this.sendBuffer = milliseconds;
+        if (audioConnection != null)
+            audioConnection.setSendBuffer(milliseconds);
+    }
+
+    @Override
+    public int getSendBuffer()
+    {
+        return sendBuffer;
+    }
+
+    @Override
+    public long getSendUnderruns()
+    {
+        AudioConnection connection = audioConnection;
+        return connection == null ? 0 : connection.getSendUnderruns();
+    }
+
+    @Override
+    public long getSendDiscards()
+    {
+        AudioConnection connection = audioConnection;
+        return connection == null ? 0 : connection.getSendDiscards();
+    }
+
+    @Override
+    public JitterHistogram getSendJitter()
+    {
+        AudioConnection connection = audioConnection;
+        return connection == null ? null : connection.getSendJitter();
+    }
+
     @Override
     public void setSendingHandler(AudioSendHandler handler)
     {
@@ -209,6 +275,8 @@ public class AudioManagerImpl implements AudioManager
         this.queuedAudioConnection = null;
         audioConnection.setSendingHandler(sendHandler);
         audioConnection.setReceivingHandler(receiveHandler);
+        audioConnection.setReceiveDelay(receiveMinDelay, receiveMaxDelay);
+        audioConnection.setSendBuffer(sendBuffer);
         audioConnection.ready(timeout);
     }
 
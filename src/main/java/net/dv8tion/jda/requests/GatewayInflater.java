@@ -0,0 +1,153 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates the compressed frames of a gateway connection.
+ * <p>
+ * One instance is used per connection and is only ever accessed by the thread handling the frames.
+ * The output buffer grows to fit the biggest payload and is reused for all following frames. The inflated bytes are
+ * decoded to a String only once, so multi-byte UTF-8 characters can never be split.
+ * <p>
+ * Two modes are supported:
+ * <ul>
+ *     <li>payload compression: every binary frame is a complete zlib stream on its own.</li>
+ *     <li>transport compression (zlib-stream): all frames of the connection share one zlib context and
+ *     a message is complete once the received data ends with the Z_SYNC_FLUSH suffix.</li>
+ * </ul>
+ */
+class GatewayInflater
+{
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final boolean stream;
+    private final Inflater inflater = new Inflater();
+
+    private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] input = new byte[0];
+    private int inputLength = 0;
+
+    GatewayInflater(boolean stream)
+    {
+        this.stream = stream;
+    }
+
+    boolean isStream()
+    {
+        return stream;
+    }
+
+    /**
+     * Starts over with a new zlib context. Has to be called whenever a new connection is established.
+     */
+    void reset()
+    {
+        inflater.reset();
+        inputLength = 0;
+    }
+
+    /**
+     * Inflates the given frame.
+     *
+     * @param data
+     *          The compressed frame.
+     * @return
+     *      The inflated message or null if the frame only contained part of a message (zlib-stream only).
+     * @throws DataFormatException
+     *          If the data is not valid zlib data. In zlib-stream mode, no further frame can be inflated until {@link #reset()}.
+     */
+    String inflate(byte[] data) throws DataFormatException
+    {
+        byte[] in = data;
+        int inLength = data.length;
+        if (stream)
+        {
+            if (inputLength > 0 || !hasSuffix(data, data.length))
+            {
+                appendInput(data);
+                if (!hasSuffix(input, inputLength))
+                    return null;
+                in = input;
+                inLength = inputLength;
+            }
+        }
+        else
+        {
+            inflater.reset();
+        }
+
+        inflater.setInput(in, 0, inLength);
+        int length = 0;
+        try
+        {
+            while (true)
+            {
+                if (length == output.length)
+                    output = grow(output, output.length << 1, length);
+                int read = inflater.inflate(output, length, output.length - length);
+                length += read;
+                if (inflater.finished() || (read == 0 && (inflater.needsInput() || inflater.needsDictionary())))
+                    break;
+            }
+        }
+        finally
+        {
+            //also on corrupt data, the next frame may not be appended to it
+            inputLength = 0;
+        }
+        if (input.length > MAX_RETAINED_BUFFER_SIZE)
+            input = new byte[0];
+
+        String message = new String(output, 0, length, StandardCharsets.UTF_8);
+        if (output.length > MAX_RETAINED_BUFFER_SIZE)
+            output = new byte[INITIAL_BUFFER_SIZE];
+        return message;
+    }
+
+    void close()
+    {
+        inflater.end();
+    }
+
+    private void appendInput(byte[] data)
+    {
+        if (inputLength + data.length > input.length)
+            input = grow(input, Math.max(input.length << 1, inputLength + data.length), inputLength);
+        System.arraycopy(data, 0, input, inputLength, data.length);
+        inputLength += data.length;
+    }
+
+    private static byte[] grow(byte[] buffer, int size, int used)
+    {
+        byte[] grown = new byte[size];
+        System.arraycopy(buffer, 0, grown, 0, used);
+        return grown;
+    }
+
+    private static boolean hasSuffix(byte[] data, int length)
+    {
+        return length >= 4
+                && data[length - 4] == 0x00
+                && data[length - 3] == 0x00
+                && data[length - 2] == (byte) 0xFF
+                && data[length - 1] == (byte) 0xFF;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.function.Predicate;
+
+/**
+ * A gateway payload decoded by streaming over the received text.
+ * <p>
+ * The envelope fields "op", "t" and "s" are read as plain values without building a tree for the whole frame.
+ * The "d" field is bound straight into the {@link org.json.JSONObject JSONObject} model used by the handlers
+ * and is not materialized at all for event types that JDA ignores.
+ */
+class GatewayPayload
+{
+    final int op;
+    final String type;
+    final int sequence;
+    final Object data;
+
+    private GatewayPayload(int op, String type, int sequence, Object data)
+    {
+        this.op = op;
+        this.type = type;
+        this.sequence = sequence;
+        this.data = data;
+    }
+
+    boolean hasSequence()
+    {
+        return sequence >= 0;
+    }
+
+    /**
+     * Rebuilds the envelope around the decoded data. This is what the handlers and the
+     * {@link net.dv8tion.jda.requests.GuildLock GuildLock} expect as raw event.
+     *
+     * @return
+     *      The payload as JSONObject.
+     */
+    JSONObject toJson()
+    {
+        JSONObject json = new JSONObject().put("op", op);
+        if (type != null)
+            json.put("t", type);
+        if (hasSequence())
+            json.put("s", sequence);
+        if (data != null)
+            json.put("d", data);
+        return json;
+    }
+
+    /**
+     * Decodes the given gateway message.
+     *
+     * @param message
+     *          The text of the message.
+     * @param skipData
+     *          Decides for a given event type whether its "d" field is skipped. Only consulted if "t" appears before "d".
+     * @return
+     *      The decoded payload.
+     * @throws org.json.JSONException
+     *          If the message is not a valid gateway payload.
+     */
+    static GatewayPayload read(String message, Predicate<String> skipData)
+    {
+        int op = -1;
+        String type = null;
+        int sequence = -1;
+        Object data = null;
+        try (JsonReader reader = new JsonReader(new StringReader(message)))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL)
+                {
+                    reader.nextNull();
+                    if (name.equals("d"))
+                        data = JSONObject.NULL;
+                    continue;
+                }
+                switch (name)
+                {
+                    case "op":
+                        op = reader.nextInt();
+                        break;
+                    case "t":
+                        type = reader.nextString();
+                        break;
+                    case "s":
+                        sequence = reader.nextInt();
+                        break;
+                    case "d":
+                        if (type != null && skipData.test(type))
+                            reader.skipValue();
+                        else
+                            data = readValue(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        catch (IOException | IllegalStateException | NumberFormatException e)
+        {
+            throw new JSONException(e);
+        }
+        if (op == -1)
+            throw new JSONException("Gateway payload is missing the op-code");
+        return new GatewayPayload(op, type, sequence, data);
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException
+    {
+        switch (reader.peek())
+        {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext())
+                    object.put(reader.nextName(), readValue(reader));
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext())
+                    array.put(readValue(reader));
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IllegalStateException("Unexpected token " + reader.peek());
+        }
+    }
+
+    //mirrors the number types produced by org.json's own parser, which keeps numbers that do not fit as strings
+    private static Object toNumber(String number)
+    {
+        try
+        {
+            if (number.indexOf('.') > -1 || number.indexOf('e') > -1 || number.indexOf('E') > -1)
+            {
+                Double value = Double.valueOf(number);
+                if (!value.isInfinite() && !value.isNaN())
+                    return value;
+            }
+            else
+            {
+                long value = Long.parseLong(number);
+                if (number.equals(Long.toString(value)))
+                    return value == (int) value ? (Object) (int) value : (Object) value;
+            }
+        }
+        catch (NumberFormatException ignored) {}
+        return number;
+    }
+}
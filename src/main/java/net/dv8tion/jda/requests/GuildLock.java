@@ -20,72 +20,278 @@ import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.utils.SimpleLog;
 import org.json.JSONObject;
 
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Holds back the events of guilds that are not fully loaded yet, for example while their members are requested.
+ * <p>
+ * While a guild is locked, the events for it are queued, and they are replayed in order on the gateway worker
+ * once the guild is unlocked. Every guild queues at most {@link #setMaxQueuedEvents(int) a maximum amount of events},
+ * see {@link net.dv8tion.jda.requests.GuildLock.OverflowPolicy OverflowPolicy} for what happens to further events.
+ * <p>
+ * Locking, queueing and unlocking may happen on any thread.
+ */
 public class GuildLock
 {
     public static SimpleLog LOG = SimpleLog.getLog("JDAGuildLock");
-    private static Map<JDA, GuildLock> locks = new HashMap<>();
+    public static final int DEFAULT_MAX_QUEUED_EVENTS = 10000;
 
-    public static synchronized GuildLock get(JDA jda)
+    /**
+     * Decides what happens when an event for a locked guild arrives while its queue is full.
+     */
+    public enum OverflowPolicy
     {
-        if (!locks.containsKey(jda))
-        {
-            locks.put(jda, new GuildLock(jda));
-        }
-        return locks.get(jda);
+        /**
+         * The oldest queued event of the guild is dropped. The cache of that guild may be out of date afterwards.
+         */
+        DROP_OLDEST,
+        /**
+         * The queue of the guild is dropped and JDA reconnects with a new session, which loads every guild again.
+         * Without auto-reconnect, this behaves like {@link #DROP_OLDEST}.
+         */
+        RESYNC
     }
 
-    private final JDA api;
-    private final Map<String, List<JSONObject>> cache = new HashMap<>();
-    private final Set<String> cached = new HashSet<>();
+    public static GuildLock get(JDA jda)
+    {
+        return ((JDAImpl) jda).getGuildLock();
+    }
+
+    private final JDAImpl api;
+    private final Map<String, LockedGuild> locks = new ConcurrentHashMap<>();
+    private volatile int maxQueuedEvents = DEFAULT_MAX_QUEUED_EVENTS;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    private final LongAdder bufferedEvents = new LongAdder();
+    private final AtomicLong droppedEvents = new AtomicLong(0);
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder unlocks = new LongAdder();
+    private final LongAdder totalLockedTime = new LongAdder();
+    private final AtomicLong maxLockedTime = new AtomicLong(0);
+
+    public GuildLock(JDAImpl api)
+    {
+        this.api = api;
+    }
+
+    public void setMaxQueuedEvents(int maxQueuedEvents)
+    {
+        if (maxQueuedEvents < 1)
+            throw new IllegalArgumentException("The maximum amount of queued events has to be at least 1");
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        if (overflowPolicy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.overflowPolicy = overflowPolicy;
+    }
 
     public boolean isLocked(String guildId)
     {
-        return cached.contains(guildId);
+        return locks.containsKey(guildId);
     }
 
     public void lock(String guildId)
     {
-        if (!isLocked(guildId))
+        locks.putIfAbsent(guildId, new LockedGuild());
+    }
+
+    public void unlock(String guildId)
+    {
+        LockedGuild lock = locks.remove(guildId);
+        if (lock == null)
+            return;
+
+        long locked = System.nanoTime() - lock.since;
+        unlocks.increment();
+        totalLockedTime.add(locked);
+        maxLockedTime.accumulateAndGet(locked, Math::max);
+
+        ArrayList<JSONObject> events;
+        synchronized (lock)
+        {
+            lock.unlocked = true;
+            events = new ArrayList<>(lock.events);
+        }
+        if (!events.isEmpty())
         {
-            cached.add(guildId);
-            cache.put(guildId, new LinkedList<>());
+            LOG.debug("Replaying " + events.size() + " events for unlocked guild with id " + guildId + " after "
+                    + TimeUnit.NANOSECONDS.toMillis(locked) + "ms");
+            api.getClient().replay(events);
         }
     }
 
-    public void unlock(String guildId)
+    public void queue(String guildId, JSONObject event)
     {
-        if (isLocked(guildId))
+        LockedGuild lock = locks.get(guildId);
+        if (lock == null)
+            return;
+
+        boolean resync = false;
+        long dropped = 0;
+        synchronized (lock)
         {
-            cached.remove(guildId);
-            List<JSONObject> events = cache.remove(guildId);
-            if(events.size() > 0)
+            if (lock.unlocked)
+                return;
+            if (lock.resyncing)
+            {
+                dropped = 1;
+            }
+            else
             {
-                LOG.debug("Replaying " + events.size() + " events for unlocked guild with id " + guildId);
-                ((JDAImpl) api).getClient().handle(events);
-                LOG.debug("Finished replaying events for guild with id " + guildId);
+                if (lock.events.size() >= maxQueuedEvents)
+                {
+                    if (overflowPolicy == OverflowPolicy.RESYNC && api.isAutoReconnect())
+                    {
+                        dropped = lock.events.size() + 1;
+                        lock.events.clear();
+                        lock.resyncing = true;
+                        resync = true;
+                    }
+                    else
+                    {
+                        lock.events.poll();
+                        dropped = 1;
+                    }
+                }
+                if (!lock.resyncing)
+                {
+                    lock.events.add(event);
+                    bufferedEvents.increment();
+                }
             }
         }
+
+        if (resync)
+        {
+            api.getClient().resync();
+            resyncs.increment();
+            LOG.warn("Too many events for locked guild with id " + guildId + ", dropped its " + (dropped - 1) + " queued events to resync");
+        }
+        if (dropped > 0)
+        {
+            long total = droppedEvents.addAndGet(dropped);
+            if (!resync && (total == dropped || total / 1000 != (total - dropped) / 1000))
+                LOG.warn("The event queue of a locked guild is full! Dropped " + total + " events so far.");
+        }
     }
 
-    public void queue(String guildId, JSONObject event)
+    public void clear()
+    {
+        locks.clear();
+    }
+
+    /**
+     * The amount of guilds that are currently locked.
+     *
+     * @return
+     *      The amount of locked guilds.
+     */
+    public int getLockedGuilds()
+    {
+        return locks.size();
+    }
+
+    /**
+     * The amount of events that are currently queued for all locked guilds.
+     *
+     * @return
+     *      The amount of queued events.
+     */
+    public int getQueuedEvents()
     {
-        if (isLocked(guildId))
+        int queued = 0;
+        for (LockedGuild lock : locks.values())
         {
-            LOG.debug("Queueing up event for guild with id " + guildId + ": " + event.toString());
-            cache.get(guildId).add(event);
+            synchronized (lock)
+            {
+                queued += lock.events.size();
+            }
         }
+        return queued;
     }
 
-    public void clear()
+    /**
+     * The amount of events that were queued for locked guilds, including those that were dropped later.
+     *
+     * @return
+     *      The total amount of queued events.
+     */
+    public long getBufferedEvents()
     {
-        cache.clear();
-        cached.clear();
+        return bufferedEvents.sum();
     }
 
-    private GuildLock(JDA api)
+    /**
+     * The amount of events that were dropped because the queue of their guild was full or the session was resynced.
+     *
+     * @return
+     *      The total amount of dropped events.
+     */
+    public long getDroppedEvents()
     {
-        this.api = api;
+        return droppedEvents.get();
+    }
+
+    /**
+     * The amount of times a full queue made JDA resync the session, see {@link OverflowPolicy#RESYNC RESYNC}.
+     *
+     * @return
+     *      The amount of resyncs.
+     */
+    public long getResyncs()
+    {
+        return resyncs.sum();
+    }
+
+    /**
+     * The amount of times a guild was unlocked.
+     *
+     * @return
+     *      The amount of unlocks.
+     */
+    public long getUnlocks()
+    {
+        return unlocks.sum();
+    }
+
+    /**
+     * The time all guilds spent locked, summed up over every lock that was released.
+     *
+     * @param unit
+     *          The unit of the returned value.
+     * @return
+     *      The total time guilds were locked.
+     */
+    public long getTotalLockedTime(TimeUnit unit)
+    {
+        return unit.convert(totalLockedTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageLockedTime(TimeUnit unit)
+    {
+        long count = unlocks.sum();
+        return count == 0 ? 0 : unit.convert(totalLockedTime.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLockedTime(TimeUnit unit)
+    {
+        return unit.convert(maxLockedTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    private static class LockedGuild
+    {
+        private final long since = System.nanoTime();
+        private final ArrayDeque<JSONObject> events = new ArrayDeque<>();
+        private boolean unlocked = false;
+        private boolean resyncing = false;
     }
 }
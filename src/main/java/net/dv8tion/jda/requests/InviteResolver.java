@@ -0,0 +1,205 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.utils.InviteUtil;
+import net.dv8tion.jda.utils.SimpleLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the invite codes found in received messages for the {@link net.dv8tion.jda.events.InviteReceivedEvent InviteReceivedEvent}.
+ * <p>
+ * Codes are resolved through the {@link net.dv8tion.jda.requests.RequestEngine RequestEngine}, so the thread that
+ * reads from Discord never waits for them. Resolved codes are cached for a while, codes that are no invite for a
+ * shorter while, and the least recently used codes are evicted once the cache is full.
+ * A code that is requested again while it is being resolved shares the pending request.
+ * At most {@value #MAX_PENDING} codes are looked up at once, further codes are skipped until lookups finished,
+ * so a wave of messages with distinct codes does not turn into as many requests.
+ * The result is handed back to the gateway worker, so the InviteReceivedEvent is fired on the same thread as,
+ * and in order with, the events of the gateway.
+ */
+public class InviteResolver
+{
+    public static final SimpleLog LOG = SimpleLog.getLog("JDAInviteResolver");
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(1);
+    public static final int MAX_PENDING = 50;
+
+    private final JDAImpl api;
+    private final Map<String, CompletableFuture<InviteUtil.Invite>> pending = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CachedInvite> cache = new LinkedHashMap<>(16, 0.75F, true);
+    private volatile boolean enabled = true;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private long ttl = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL);
+    private long negativeTtl = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NEGATIVE_TTL);
+
+    public InviteResolver(JDAImpl api)
+    {
+        this.api = api;
+    }
+
+    /**
+     * Sets whether received messages are searched for invites at all. Without the search, no
+     * {@link net.dv8tion.jda.events.InviteReceivedEvent InviteReceivedEvent} is fired.
+     *
+     * @param enabled
+     *          Whether to search messages for invites.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Sets how many codes are cached and for how long.
+     *
+     * @param cacheSize
+     *          The maximum amount of cached codes. 0 disables the cache.
+     * @param ttl
+     *          How long a resolved invite is cached.
+     * @param negativeTtl
+     *          How long a code that is no invite is cached.
+     * @param unit
+     *          The unit of both durations.
+     */
+    public void setCache(int cacheSize, long ttl, long negativeTtl, TimeUnit unit)
+    {
+        if (cacheSize < 0 || ttl < 0 || negativeTtl < 0)
+            throw new IllegalArgumentException("The invite cache-size and durations may not be negative");
+        synchronized (cache)
+        {
+            this.cacheSize = cacheSize;
+            this.ttl = unit.toNanos(ttl);
+            this.negativeTtl = unit.toNanos(negativeTtl);
+            trim();
+        }
+    }
+
+    /**
+     * Resolves the given invite code, from the cache if possible.
+     *
+     * @param code
+     *          The invite code.
+     * @return
+     *      A future that completes with the invite or with null if the code is no invite
+     *      or was skipped because {@value #MAX_PENDING} codes are already being looked up.
+     *      It completes exceptionally if Discord could not be asked.
+     *      Codes that had to be looked up complete on the gateway worker, like the events do, cached codes right away.
+     */
+    public CompletableFuture<InviteUtil.Invite> resolve(String code)
+    {
+        CachedInvite cached = getCached(code);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached.invite);
+
+        CompletableFuture<InviteUtil.Invite> existing = pending.get(code);
+        if (existing != null)
+            return existing;
+        if (pending.size() >= MAX_PENDING)
+        {
+            //not cached, the code may be valid
+            LOG.debug("Skipped the invite " + code + ", " + MAX_PENDING + " invites are being resolved already");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<InviteUtil.Invite> future = new CompletableFuture<>();
+        existing = pending.putIfAbsent(code, future);
+        if (existing != null)
+            return existing;
+        //a lookup of the same code may have finished between the cache check and putIfAbsent
+        cached = getCached(code);
+        if (cached != null)
+        {
+            pending.remove(code, future);
+            future.complete(cached.invite);
+            return future;
+        }
+
+        InviteUtil.resolveAsync(code, api).whenComplete((invite, error) ->
+        {
+            if (error == null)
+            {
+                synchronized (cache)
+                {
+                    if (cacheSize > 0)
+                    {
+                        cache.put(code, new CachedInvite(invite, System.nanoTime() + (invite == null ? negativeTtl : ttl)));
+                        trim();
+                    }
+                }
+            }
+            pending.remove(code);
+            Runnable complete = () ->
+            {
+                if (error == null)
+                    future.complete(invite);
+                else
+                    future.completeExceptionally(error);
+            };
+            //the callbacks fire events, which have to be handled in order with the gateway events
+            WebSocketClient client = api.getClient();
+            if (client != null)
+                client.runOnWorker(complete);
+            else
+                complete.run();
+        });
+        return future;
+    }
+
+    private CachedInvite getCached(String code)
+    {
+        synchronized (cache)
+        {
+            CachedInvite cached = cache.get(code);
+            if (cached == null)
+                return null;
+            if (cached.expires - System.nanoTime() > 0)
+                return cached;
+            cache.remove(code);
+            return null;
+        }
+    }
+
+    private void trim()
+    {
+        while (cache.size() > cacheSize)
+            cache.remove(cache.keySet().iterator().next());
+    }
+
+    private static class CachedInvite
+    {
+        private final InviteUtil.Invite invite;
+        private final long expires;
+
+        private CachedInvite(InviteUtil.Invite invite, long expires)
+        {
+            this.invite = invite;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import net.dv8tion.jda.entities.*;
+import net.dv8tion.jda.entities.impl.*;
+import net.dv8tion.jda.handle.EntityBuilder;
+import net.dv8tion.jda.utils.SimpleLog;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the members of guilds on demand when {@link #setEnabled(boolean) lazy member loading} is enabled.
+ * <p>
+ * Without it, JDA requests every member of every large guild when it connects and only finishes loading once
+ * all of them arrived. With it, guilds are usable right away with the members Discord sends along with them,
+ * usually the online ones. Further members are added from the events that contain them,
+ * the author of a message from an unknown member is loaded in the background, and members can be
+ * loaded by id or searched by name through {@link net.dv8tion.jda.entities.Guild#retrieveUserById(String)} and
+ * {@link net.dv8tion.jda.entities.Guild#retrieveUsersByName(String, int)}.
+ * <p>
+ * The {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy CachePolicy} decides which of the loaded members are kept.
+ * The own account, the owner of a guild and members in a voice channel are never evicted.
+ * Permission overrides of members that are not loaded are kept by user id and only show up once the member is loaded.
+ * <p>
+ * All changes to the cache happen on the gateway worker, like those caused by events.
+ */
+public class MemberLoader
+{
+    public static final SimpleLog LOG = SimpleLog.getLog("JDAMemberLoader");
+    public static final int MAX_QUERY_LIMIT = 1000;
+    public static final long DEFAULT_RETENTION = TimeUnit.MINUTES.toMillis(30);
+    public static final long QUERY_TIMEOUT = TimeUnit.SECONDS.toMillis(15);
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int SWEEP_BATCH = 100;
+
+    /**
+     * Decides which members stay cached in lazy member loading mode.
+     */
+    public enum CachePolicy
+    {
+        /**
+         * Members stay cached until they leave the guild.
+         */
+        ALL,
+        /**
+         * Members are evicted once they go offline.
+         */
+        ONLINE,
+        /**
+         * Members are evicted once nothing was seen of them for the retention time.
+         * Messages, typing, presence and voice updates count as activity. Evictions happen once per minute.
+         */
+        RECENT
+    }
+
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r ->
+    {
+        Thread t = new Thread(r, "JDA MemberLoader Sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final JDAImpl api;
+    private volatile boolean enabled = false;
+    private volatile CachePolicy cachePolicy = CachePolicy.ALL;
+    private volatile long retention = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RETENTION);
+    private ScheduledFuture<?> sweep = null;
+
+    private final Map<User, Long> lastSeen = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<User>> pendingMembers = new ConcurrentHashMap<>();
+    //only accessed by the gateway worker, which sends the queries and handles their answers in order
+    private final Map<String, Queue<PendingQuery>> pendingQueries = new HashMap<>();
+    //events waiting for their member to be loaded, by guild and user id, only accessed by the gateway worker
+    private final Map<String, List<JSONObject>> pendingRetries = new HashMap<>();
+    private final LongAdder evictedMembers = new LongAdder();
+
+    public MemberLoader(JDAImpl api)
+    {
+        this.api = api;
+    }
+
+    /**
+     * Enables/Disables lazy member loading. Only affects guilds that are loaded afterwards.
+     *
+     * @param enabled
+     *          True - loads members on demand instead of requesting all of them on connect.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Sets which loaded members are kept. Only applies while lazy member loading is enabled.
+     *
+     * @param policy
+     *          The {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy CachePolicy} to apply.
+     * @param retention
+     *          How long members are kept after they were last seen, only used by {@link CachePolicy#RECENT RECENT}.
+     * @param unit
+     *          The unit of the retention time.
+     */
+    public synchronized void setCachePolicy(CachePolicy policy, long retention, TimeUnit unit)
+    {
+        if (policy == null)
+            throw new IllegalArgumentException("The CachePolicy may not be null");
+        if (retention < 1)
+            throw new IllegalArgumentException("The retention time has to be positive");
+        CachePolicy previous = this.cachePolicy;
+        this.cachePolicy = policy;
+        this.retention = unit.toNanos(retention);
+        if (sweep != null)
+        {
+            sweep.cancel(false);
+            sweep = null;
+        }
+        if (policy == CachePolicy.RECENT)
+        {
+            sweep = sweeper.scheduleWithFixedDelay(this::startSweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+            //members loaded before are only tracked from now on
+            WebSocketClient client = api.getClient();
+            if (previous != CachePolicy.RECENT && client != null)
+                client.runOnWorker(this::trackMembers);
+        }
+        if (policy != CachePolicy.RECENT)
+            lastSeen.clear();
+    }
+
+    public CachePolicy getCachePolicy()
+    {
+        return cachePolicy;
+    }
+
+    /**
+     * The amount of members that were evicted by the {@link net.dv8tion.jda.requests.MemberLoader.CachePolicy CachePolicy}.
+     *
+     * @return
+     *      The total amount of evicted members.
+     */
+    public long getEvictedMembers()
+    {
+        return evictedMembers.sum();
+    }
+
+    /**
+     * Loads a member of the given guild by the id of the user through the REST api, unless it is cached already.
+     *
+     * @param guild
+     *          The guild of the member.
+     * @param userId
+     *          The id of the user.
+     * @return
+     *      Future of the user, completed with null if the user is no member of the guild.
+     */
+    public CompletableFuture<User> retrieveMember(Guild guild, String userId)
+    {
+        GuildImpl guildImpl = (GuildImpl) guild;
+        User cached = api.getUserMap().get(userId);
+        if (cached != null && guildImpl.getUserRoles().containsKey(cached))
+            return CompletableFuture.completedFuture(cached);
+
+        String key = guild.getId() + ':' + userId;
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> pending = pendingMembers.putIfAbsent(key, future);
+        if (pending != null)
+            return pending;
+
+        api.getRequester().getAsync(Requester.DISCORD_API_PREFIX + "guilds/" + guild.getId() + "/members/" + userId).whenComplete((response, error) ->
+        {
+            if (error == null && (response.exception != null || response.isRateLimit() || response.code >= 500))
+                error = new IllegalStateException("Could not load the member " + userId + " of " + guild + ": " + response);
+            if (error != null)
+            {
+                pendingMembers.remove(key);
+                future.completeExceptionally(error);
+                return;
+            }
+            JSONObject member = response.isOk() ? response.getObject() : null;
+            api.getClient().runOnWorker(() ->
+            {
+                pendingMembers.remove(key);
+                User user = null;
+                //the guild may have been left or reloaded while the member was requested
+                if (member != null && api.getGuildMap().get(guildImpl.getId()) == guildImpl)
+                    user = new EntityBuilder(api).createMember(guildImpl, member);
+                else if (cached != null)
+                    removeIfUnused(cached);
+                complete(future, user);
+            });
+        });
+        return future;
+    }
+
+    /**
+     * Searches the members of the given guild whose name starts with the given query through the gateway.
+     * The found members are added to the cache.
+     *
+     * @param guild
+     *          The guild to search.
+     * @param query
+     *          The start of the names to search for. An empty query matches every member.
+     * @param limit
+     *          The maximum amount of members to return, at most {@value #MAX_QUERY_LIMIT}.
+     * @return
+     *      Future of the found users. It fails with a {@link java.util.concurrent.TimeoutException TimeoutException}
+     *      if Discord did not answer within {@value #QUERY_TIMEOUT}ms, and with an {@link java.lang.IllegalStateException IllegalStateException}
+     *      if the connection was closed before.
+     */
+    public CompletableFuture<List<User>> requestMembers(Guild guild, String query, int limit)
+    {
+        if (query == null)
+            throw new IllegalArgumentException("The query may not be null");
+        if (limit < 1 || limit > MAX_QUERY_LIMIT)
+            throw new IllegalArgumentException("The limit has to be between 1 and " + MAX_QUERY_LIMIT);
+
+        PendingQuery pending = new PendingQuery(query, limit);
+        WebSocketClient client = api.getClient();
+        client.runOnWorker(() ->
+        {
+            if (!client.isConnected())
+            {
+                fail(pending.future, new IllegalStateException("Not connected to Discord"));
+                return;
+            }
+            String guildId = guild.getId();
+            pendingQueries.computeIfAbsent(guildId, id -> new ArrayDeque<>()).add(pending);
+            pending.timeout = sweeper.schedule(() -> client.runOnWorker(() -> timeOut(guildId, pending)), QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+            client.send(new JSONObject()
+                    .put("op", 8)
+                    .put("d", new JSONObject()
+                            .put("guild_id", guild.getId())
+                            .put("query", query)
+                            .put("limit", limit))
+                    .toString());
+        });
+        return pending.future;
+    }
+
+    /**
+     * Handles a GUILD_MEMBERS_CHUNK that is the answer to {@link #requestMembers(Guild, String, int)}
+     * or that was not requested while the guild was loaded. Called by the gateway worker.
+     * <p>
+     * Discord answers the queries of a guild in order, but the answer does not tell which query it belongs to.
+     * A chunk only completes the oldest pending query if its members fit that query. Others, like the late answer
+     * of a query that timed out, only add their members to the cache.
+     *
+     * @param guildId
+     *          The id of the guild of the members.
+     * @param members
+     *          The members of the chunk.
+     */
+    public void onChunk(String guildId, JSONArray members)
+    {
+        GuildImpl guild = (GuildImpl) api.getGuildMap().get(guildId);
+        List<User> users = new ArrayList<>(members.length());
+        if (guild != null)
+        {
+            EntityBuilder builder = new EntityBuilder(api);
+            for (int i = 0; i < members.length(); i++)
+                users.add(builder.createMember(guild, members.getJSONObject(i)));
+        }
+
+        Queue<PendingQuery> queries = pendingQueries.get(guildId);
+        PendingQuery query = queries == null ? null : queries.peek();
+        if (query == null || !query.matches(users))
+            return;
+        queries.poll();
+        if (queries.isEmpty())
+            pendingQueries.remove(guildId);
+        query.timeout.cancel(false);
+        complete(query.future, Collections.unmodifiableList(users));
+    }
+
+    /**
+     * Fails the pending member queries, their answers will not arrive anymore.
+     * Called by the gateway worker once the connection was closed.
+     */
+    public void onDisconnect()
+    {
+        failQueries(new IllegalStateException("The connection was closed before Discord answered"));
+    }
+
+    /**
+     * Records that a user was active in the given guild and loads it in the background if it is no cached member.
+     * Called by the gateway worker.
+     *
+     * @param guild
+     *          The guild the user was active in.
+     * @param user
+     *          The active user.
+     */
+    public void onActivity(Guild guild, User user)
+    {
+        if (!enabled || user == null)
+            return;
+        touch(user);
+        if (!((GuildImpl) guild).getUserRoles().containsKey(user))
+        {
+            retrieveMember(guild, user.getId()).whenComplete((member, error) ->
+            {
+                if (error != null)
+                    LOG.debug("Could not load the member " + user.getId() + " of " + guild + ": " + error.getMessage());
+            });
+        }
+    }
+
+    /**
+     * Loads the given member and handles the given event again once it is loaded.
+     * Used for events that need a member which is not cached yet. Called by the gateway worker.
+     * <p>
+     * Further events of the same member have to be passed to this method as well while
+     * {@link #hasPendingRetry(Guild, String)} returns true, so they are handled in order once the member is loaded.
+     *
+     * @param guild
+     *          The guild of the member.
+     * @param userId
+     *          The id of the user.
+     * @param type
+     *          The type of the event.
+     * @param content
+     *          The content of the event.
+     */
+    public void retryWithMember(Guild guild, String userId, String type, JSONObject content)
+    {
+        String key = guild.getId() + ':' + userId;
+        JSONObject event = new JSONObject().put("t", type).put("d", content);
+        List<JSONObject> waiting = pendingRetries.get(key);
+        if (waiting != null)
+        {
+            waiting.add(event);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(event);
+        pendingRetries.put(key, waiting);
+
+        retrieveMember(guild, userId).whenComplete((member, error) -> api.getClient().runOnWorker(() ->
+        {
+            List<JSONObject> events = pendingRetries.remove(key);
+            if (events == null)
+                return;     //dropped by clear()
+            if (member != null)
+                api.getClient().handle(events);
+            else
+                LOG.debug("Dropped " + events.size() + " events of " + userId + " which could not be loaded as member of " + guild);
+        }));
+    }
+
+    /**
+     * Whether events of the given member are waiting for it to be loaded, see
+     * {@link #retryWithMember(Guild, String, String, JSONObject)}. Called by the gateway worker.
+     *
+     * @param guild
+     *          The guild of the member.
+     * @param userId
+     *          The id of the user.
+     * @return
+     *      True if later events of this member have to wait as well.
+     */
+    public boolean hasPendingRetry(Guild guild, String userId)
+    {
+        return !pendingRetries.isEmpty() && pendingRetries.containsKey(guild.getId() + ':' + userId);
+    }
+
+    /**
+     * Records that the given user was seen, which keeps it cached with the {@link CachePolicy#RECENT RECENT} policy.
+     *
+     * @param user
+     *          The user that was seen.
+     */
+    public void touch(User user)
+    {
+        if (enabled && cachePolicy == CachePolicy.RECENT)
+            lastSeen.put(user, System.nanoTime());
+    }
+
+    /**
+     * Evicts the given user from all guilds if the {@link CachePolicy#ONLINE ONLINE} policy applies.
+     * Called by the gateway worker.
+     *
+     * @param user
+     *          The user that went offline.
+     */
+    public void onOffline(User user)
+    {
+        if (!enabled || cachePolicy != CachePolicy.ONLINE)
+            return;
+        for (Guild guild : api.getGuildMap().values())
+            evict((GuildImpl) guild, user);
+    }
+
+    /**
+     * Removes the given user from the cache if it is no member of any guild anymore.
+     *
+     * @param user
+     *          The user to check.
+     */
+    public void removeIfUnused(User user)
+    {
+        if (user == api.getSelfInfo() || api.getGuildMap().values().stream().anyMatch(g -> ((GuildImpl) g).getUserRoles().containsKey(user)))
+            return;
+        if (((UserImpl) user).hasPrivateChannel())
+            api.getOffline_pms().put(user.getId(), user.getPrivateChannel().getId());
+        api.getUserMap().remove(user.getId());
+        lastSeen.remove(user);
+    }
+
+    /**
+     * Fails the pending requests and forgets the activity of all users. Called when the cache is invalidated.
+     */
+    public void clear()
+    {
+        failQueries(new IllegalStateException("The session was invalidated"));
+        pendingRetries.clear();
+        lastSeen.clear();
+    }
+
+    public synchronized void shutdown()
+    {
+        if (sweep != null)
+        {
+            sweep.cancel(false);
+            sweep = null;
+        }
+    }
+
+    private void startSweep()
+    {
+        WebSocketClient client = api.getClient();
+        if (client != null && enabled)
+            client.runOnWorker(this::sweep);
+    }
+
+    /**
+     * Evicts up to {@value #SWEEP_BATCH} users that were not seen for the retention time from all guilds.
+     * Only the tracked users are checked, and further batches are queued behind the frames that arrived meanwhile,
+     * so a sweep never holds up the gateway worker for long.
+     */
+    private void sweep()
+    {
+        long now = System.nanoTime();
+        long retention = this.retention;
+        int swept = 0;
+        for (Iterator<Map.Entry<User, Long>> it = lastSeen.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<User, Long> entry = it.next();
+            if (now - entry.getValue() <= retention)
+                continue;
+            if (swept == SWEEP_BATCH)
+            {
+                sweeper.execute(this::startSweep);
+                return;
+            }
+            User user = entry.getKey();
+            it.remove();
+            for (Guild guild : api.getGuildMap().values())
+                evict((GuildImpl) guild, user);
+            //still cached as the owner, in a voice channel or as the own account
+            if (api.getUserMap().get(user.getId()) == user)
+                lastSeen.put(user, now);
+            swept++;
+        }
+    }
+
+    private void trackMembers()
+    {
+        long now = System.nanoTime();
+        for (Guild guild : api.getGuildMap().values())
+        {
+            for (User user : ((GuildImpl) guild).getUserRoles().keySet())
+                lastSeen.putIfAbsent(user, now);
+        }
+    }
+
+    private void evict(GuildImpl guild, User user)
+    {
+        if (user == api.getSelfInfo() || user.getId().equals(guild.getOwnerId()))
+            return;
+        VoiceStatus status = guild.getVoiceStatusMap().get(user);
+        if (status != null && status.inVoiceChannel())
+            return;
+        if (guild.getUserRoles().remove(user) == null)
+            return;
+        guild.getVoiceStatusMap().remove(user);
+        guild.getJoinedAtMap().remove(user);
+        guild.getNickMap().remove(user);
+        guild.getPermissionCache().remove(user);
+        for (TextChannel channel : guild.getTextChannelsMap().values())
+            keepOverride(guild, channel, ((TextChannelImpl) channel).getUserPermissionOverridesMap().remove(user));
+        for (VoiceChannel channel : guild.getVoiceChannelsMap().values())
+            keepOverride(guild, channel, ((VoiceChannelImpl) channel).getUserPermissionOverridesMap().remove(user));
+        evictedMembers.increment();
+        removeIfUnused(user);
+    }
+
+    //the override of an evicted member is created again once it is loaded, like those of members that were never loaded
+    private static void keepOverride(GuildImpl guild, Channel channel, PermissionOverride override)
+    {
+        if (override == null)
+            return;
+        guild.getPendingUserOverridesMap().computeIfAbsent(override.getUser().getId(), id -> new HashMap<>()).put(channel, new JSONObject()
+                .put("id", override.getUser().getId())
+                .put("type", "member")
+                .put("allow", override.getAllowedRaw())
+                .put("deny", override.getDeniedRaw()));
+    }
+
+    private void timeOut(String guildId, PendingQuery query)
+    {
+        Queue<PendingQuery> queries = pendingQueries.get(guildId);
+        if (queries == null || !queries.remove(query))
+            return;
+        if (queries.isEmpty())
+            pendingQueries.remove(guildId);
+        fail(query.future, new TimeoutException("Discord did not answer the member query within " + QUERY_TIMEOUT + "ms"));
+    }
+
+    private void failQueries(Throwable error)
+    {
+        for (Queue<PendingQuery> queries : pendingQueries.values())
+        {
+            for (PendingQuery query : queries)
+            {
+                query.timeout.cancel(false);
+                fail(query.future, error);
+            }
+        }
+        pendingQueries.clear();
+    }
+
+    //callbacks of the futures must not run on the gateway worker
+    private static <T> void complete(CompletableFuture<T> future, T value)
+    {
+        ForkJoinPool.commonPool().execute(() -> future.complete(value));
+    }
+
+    private static void fail(CompletableFuture<?> future, Throwable error)
+    {
+        ForkJoinPool.commonPool().execute(() -> future.completeExceptionally(error));
+    }
+
+    private static class PendingQuery
+    {
+        private final String query;
+        private final int limit;
+        private final CompletableFuture<List<User>> future = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+
+        private PendingQuery(String query, int limit)
+        {
+            this.query = query.toLowerCase();
+            this.limit = limit;
+        }
+
+        private boolean matches(List<User> users)
+        {
+            if (users.size() > limit)
+                return false;
+            for (User user : users)
+            {
+                if (!user.getUsername().toLowerCase().startsWith(query))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import net.dv8tion.jda.entities.Message;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.handle.EntityBuilder;
+import net.dv8tion.jda.utils.SimpleLog;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends and edits messages asynchronously.
+ * <p>
+ * Every channel has its own bounded queue which is worked on in FIFO order, so sends and edits to the same channel
+ * keep their order. Different channels are worked on concurrently, limited only by the
+ * {@link net.dv8tion.jda.requests.RequestEngine RequestEngine} and the configured executor.
+ */
+public class MessageSender
+{
+    public static final SimpleLog LOG = SimpleLog.getLog("JDAMessageSender");
+    public static final int DEFAULT_QUEUE_SIZE = 50;
+
+    /**
+     * Decides what happens when a message is queued into a channel whose queue is already full.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * The new message is rejected by throwing a {@link java.util.concurrent.RejectedExecutionException RejectedExecutionException}.
+         */
+        REJECT,
+        /**
+         * The oldest queued message of the channel is dropped to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The new message is dropped.
+         */
+        DROP_NEWEST
+    }
+
+    private final JDAImpl api;
+    private final Map<String, ChannelQueue> queues = new ConcurrentHashMap<>();
+    private Executor executor = null;
+    private boolean ownsExecutor = false;
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+
+    public MessageSender(JDAImpl api)
+    {
+        this.api = api;
+    }
+
+    /**
+     * Sets the executor that runs the callbacks of sent messages and dispatches the next message of a channel.
+     * If none is set, a small daemon pool is created on first use.
+     *
+     * @param executor
+     *          The executor to use.
+     */
+    public synchronized void setExecutor(Executor executor)
+    {
+        if (ownsExecutor)
+            ((ExecutorService) this.executor).shutdown();
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    public void setQueueSize(int queueSize)
+    {
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The message queue-size has to be at least 1");
+        this.queueSize = queueSize;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        if (overflowPolicy == null)
+            throw new IllegalArgumentException("The OverflowPolicy may not be null");
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Queues the given message to be sent (or edited) in the channel it belongs to.
+     *
+     * @param msg
+     *          The message to send. Its channel-id has to be set.
+     * @param isEdit
+     *          Whether the message is an edit of an existing message.
+     * @param callback
+     *          The callback that receives the resulting message or null if sending failed. May be null.
+     * @throws java.util.concurrent.RejectedExecutionException
+     *          If the queue of the channel is full and the {@link OverflowPolicy OverflowPolicy} is {@link OverflowPolicy#REJECT REJECT}.
+     */
+    public void enqueue(Message msg, boolean isEdit, Consumer<Message> callback)
+    {
+        Task task = new Task(msg, isEdit, callback);
+        //a queue that drained in the meantime removed itself, retry with a new one
+        while (!queues.computeIfAbsent(msg.getChannelId(), ChannelQueue::new).enqueue(task));
+    }
+
+    /**
+     * Returns the amount of messages that are currently waiting to be sent in the given channel.
+     *
+     * @param channelId
+     *          The id of the channel.
+     * @return
+     *      The amount of waiting messages.
+     */
+    public int getQueuedMessages(String channelId)
+    {
+        ChannelQueue queue = queues.get(channelId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    public synchronized void shutdown()
+    {
+        if (ownsExecutor)
+            ((ExecutorService) executor).shutdown();
+    }
+
+    private synchronized Executor getExecutor()
+    {
+        if (executor == null)
+        {
+            AtomicInteger threadCount = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r ->
+            {
+                Thread t = new Thread(r, "JDA MessageSender " + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            ownsExecutor = true;
+        }
+        return executor;
+    }
+
+    private static void fail(Task task)
+    {
+        if (task.callback != null)
+            task.callback.accept(null);
+    }
+
+    private static class Task
+    {
+        private final Message message;
+        private final boolean isEdit;
+        private final Consumer<Message> callback;
+
+        private Task(Message message, boolean isEdit, Consumer<Message> callback)
+        {
+            this.message = message;
+            this.isEdit = isEdit;
+            this.callback = callback;
+        }
+    }
+
+    private class ChannelQueue
+    {
+        private final String channelId;
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private boolean sending = false;
+        private boolean removed = false;
+
+        private ChannelQueue(String channelId)
+        {
+            this.channelId = channelId;
+        }
+
+        private synchronized int size()
+        {
+            return tasks.size();
+        }
+
+        private boolean enqueue(Task task)
+        {
+            Task dropped = null;
+            boolean start = false;
+            synchronized (this)
+            {
+                if (removed)
+                    return false;
+                if (tasks.size() < queueSize)
+                {
+                    tasks.add(task);
+                }
+                else
+                {
+                    switch (overflowPolicy)
+                    {
+                        case REJECT:
+                            throw new RejectedExecutionException("The message queue of channel " + channelId + " is full");
+                        case DROP_OLDEST:
+                            dropped = tasks.poll();
+                            tasks.add(task);
+                            break;
+                        case DROP_NEWEST:
+                            dropped = task;
+                            break;
+                    }
+                }
+                if (!sending)
+                {
+                    sending = true;
+                    start = true;
+                }
+            }
+            if (dropped != null)
+            {
+                LOG.warn("The message queue of channel " + channelId + " is full. Dropping a message.");
+                fail(dropped);
+            }
+            if (start)
+                dispatch(this::sendNext, null);
+            return true;
+        }
+
+        private void sendNext()
+        {
+            Task task;
+            synchronized (this)
+            {
+                task = tasks.poll();
+                if (task == null)
+                {
+                    //drained, the next message of this channel creates a new queue
+                    sending = false;
+                    removed = true;
+                    queues.remove(channelId, this);
+                    return;
+                }
+            }
+            send(task);
+        }
+
+        /**
+         * Runs the given step on the executor. If the executor rejects it, the given in-flight task fails and
+         * the queue stops sending, so the next queued message starts it again.
+         */
+        private void dispatch(Runnable step, Task task)
+        {
+            try
+            {
+                getExecutor().execute(step);
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOG.debug("The executor rejected sending in channel " + channelId + ": " + e.getMessage());
+                synchronized (this)
+                {
+                    sending = false;
+                }
+                if (task != null)
+                    fail(task);
+            }
+        }
+
+        private void send(Task task)
+        {
+            Message msg = task.message;
+            CompletableFuture<Requester.Response> response;
+            if (task.isEdit)
+            {
+                response = api.getRequester().patchAsync(Requester.DISCORD_API_PREFIX + "channels/" + channelId + "/messages/" + msg.getId(),
+                        new JSONObject().put("content", msg.getRawContent()));
+            }
+            else
+            {
+                response = api.getRequester().postAsync(Requester.DISCORD_API_PREFIX + "channels/" + channelId + "/messages",
+                        new JSONObject().put("content", msg.getRawContent()).put("tts", msg.isTTS()));
+            }
+            response.thenAccept(r -> dispatch(() -> handle(task, r), task));
+        }
+
+        private void handle(Task task, Requester.Response response)
+        {
+            if (response.responseText == null)
+            {
+                LOG.debug("Error sending async-message (returned null-text)... Retrying after 1s");
+                try
+                {
+                    api.getRequester().getEngine().schedule(() -> send(task), 1000);
+                    return;
+                }
+                catch (RejectedExecutionException ignored) {}  //JDA is shutting down, give up on this message
+            }
+            try
+            {
+                if (task.callback != null)
+                {
+                    if (response.isOk())
+                    {
+                        task.callback.accept(new EntityBuilder(api).createMessage(response.getObject()));
+                    }
+                    else
+                    {
+                        //if response didn't have id, sending failed (due to permission/blocked pm,...
+                        LOG.fatal("Could not send/update async message. Discord-response: " + response.toString());
+                        task.callback.accept(null);
+                    }
+                }
+            }
+            catch (Exception ex)
+            {
+                LOG.log(ex);
+            }
+            finally
+            {
+                sendNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.requests;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.mashape.unirest.request.BaseRequest;
+import com.mashape.unirest.request.body.RequestBodyEntity;
+import net.dv8tion.jda.requests.Requester.Response;
+import net.dv8tion.jda.utils.SimpleLog;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes requests against the Discord api while keeping track of the rate-limits of every route.
+ * <p>
+ * Requests are grouped into buckets by their http-method and route. The major parameters of a route (channel- and guild-ids)
+ * are kept as part of the bucket-key, all other ids are collapsed, as are invite codes. Every bucket drains its own queue in order,
+ * so a rate-limited channel only stalls requests to that very channel while all other buckets keep running in parallel
+ * on a bounded pool.
+ */
+public class RequestEngine
+{
+    public static final SimpleLog LOG = Requester.LOG;
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final String[] MAJOR_PARAMETERS = {"channels", "guilds"};
+    private static final long PRUNE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_RETRY_AFTER = 1000;
+
+    private final ScheduledThreadPoolExecutor pool;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean(false);
+    private volatile long globalReset = 0;
+
+    public RequestEngine(int poolSize)
+    {
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.pool = new ScheduledThreadPoolExecutor(poolSize, r ->
+        {
+            Thread t = new Thread(r, "JDA RequestEngine " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        //an engine that is not used, like the one of a JDA instance that only resolves an invite, holds no threads
+        pool.setKeepAliveTime(60, TimeUnit.SECONDS);
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Changes the amount of threads used to dispatch queued requests.
+     *
+     * @param poolSize
+     *          The new pool-size. Has to be at least 1.
+     */
+    public void setPoolSize(int poolSize)
+    {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("The pool-size of the RequestEngine has to be at least 1");
+        pool.setCorePoolSize(poolSize);
+    }
+
+    /**
+     * Queues the given request into its bucket. The request is sent as soon as all previously queued requests of
+     * the same bucket are finished and the bucket is no longer rate-limited.
+     *
+     * @param request
+     *          The request to send.
+     * @return
+     *      A future that is completed with the {@link Response Response} of the request.
+     *      Connection-errors are reported via {@link Response#exception Response.exception} instead of completing exceptionally.
+     */
+    public CompletableFuture<Response> queue(BaseRequest request)
+    {
+        QueuedRequest queued = new QueuedRequest(request);
+        String route = getRoute(request);
+        if (route == null)
+        {
+            //not a discord-api request, no rate-limits to respect
+            try
+            {
+                pool.execute(() -> queued.future.complete(execute(request)));
+            }
+            catch (RejectedExecutionException e)
+            {
+                queued.future.complete(new Response(e));
+            }
+        }
+        else
+        {
+            //added inside of compute so the bucket can not be pruned in between
+            buckets.compute(route, (key, bucket) ->
+            {
+                if (bucket == null)
+                    bucket = new Bucket(key);
+                bucket.queue.add(queued);
+                return bucket;
+            }).schedule(0);
+            if (pruning.compareAndSet(false, true))
+                startPruning();
+        }
+        return queued.future;
+    }
+
+    /**
+     * Executes the given request on the current thread.
+     * The request is not delayed if its bucket is rate-limited, but the rate-limit information returned by Discord is still recorded.
+     *
+     * @param request
+     *          The request to send.
+     * @return
+     *      The {@link Response Response} of the request.
+     */
+    public Response execute(BaseRequest request)
+    {
+        String route = getRoute(request);
+        return execute(request, route == null ? null : buckets.computeIfAbsent(route, Bucket::new));
+    }
+
+    /**
+     * Returns the amount of milliseconds until requests of given method to the given url can be sent again.
+     *
+     * @param method
+     *          The http-method of the request.
+     * @param url
+     *          The url of the request.
+     * @return
+     *      The remaining rate-limit in milliseconds or 0 if the route is currently not rate-limited.
+     */
+    public long getRateLimit(HttpMethod method, String url)
+    {
+        String route = getRoute(method, url);
+        Bucket bucket = route == null ? null : buckets.get(route);
+        return bucket == null ? Math.max(0, globalReset - System.currentTimeMillis()) : bucket.getDelay();
+    }
+
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    private void startPruning()
+    {
+        try
+        {
+            pool.scheduleWithFixedDelay(this::pruneBuckets, PRUNE_INTERVAL, PRUNE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException ignored)
+        {
+            //shut down
+        }
+    }
+
+    /**
+     * Removes the buckets that have nothing queued and whose rate-limit has passed.
+     * They are recreated with the next request to their route.
+     */
+    private void pruneBuckets()
+    {
+        long now = System.currentTimeMillis();
+        for (String route : buckets.keySet())
+            buckets.computeIfPresent(route, (key, bucket) -> bucket.isIdle(now) ? null : bucket);
+    }
+
+    void schedule(Runnable task, long delay)
+    {
+        pool.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private Response execute(BaseRequest request, Bucket bucket)
+    {
+        HttpResponse<String> ret;
+        try
+        {
+            String dbg = String.format("Requesting %s -> %s\n\tPayload: %s\n\tResponse: ", request.getHttpRequest().getHttpMethod().name(),
+                    request.getHttpRequest().getUrl(), ((request instanceof RequestBodyEntity) ? ((RequestBodyEntity) request).getBody().toString() : "None"));
+            ret = request.asString();
+            if (ret.getBody() != null && ret.getBody().startsWith("<"))
+            {
+                LOG.debug(String.format("Requesting %s -> %s returned HTML... retrying", request.getHttpRequest().getHttpMethod().name(), request.getHttpRequest().getUrl()));
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException ignored) {}
+                ret = request.asString();
+            }
+            Response response = new Response(ret.getStatus(), ret.getBody());
+            if (bucket != null)
+                bucket.update(ret, response);
+            LOG.trace(dbg + response.code + ": " + response.responseText);
+            return response;
+        }
+        catch (UnirestException e)
+        {
+            if (LOG.getEffectiveLevel().compareTo(SimpleLog.Level.DEBUG) != 1)
+            {
+                LOG.log(e);
+            }
+            return new Response(e);
+        }
+    }
+
+    private static String getRoute(BaseRequest request)
+    {
+        return getRoute(request.getHttpRequest().getHttpMethod(), request.getHttpRequest().getUrl());
+    }
+
+    /**
+     * Builds the bucket-key of a request. Returns null for urls that are not part of the Discord api.
+     */
+    static String getRoute(HttpMethod method, String url)
+    {
+        if (!url.startsWith(Requester.DISCORD_API_PREFIX))
+            return null;
+        int end = url.indexOf('?');
+        String[] parts = url.substring(Requester.DISCORD_API_PREFIX.length(), end == -1 ? url.length() : end).split("/");
+        StringBuilder route = new StringBuilder(method.name()).append(' ');
+        for (int i = 0; i < parts.length; i++)
+        {
+            if (i > 0)
+                route.append('/');
+            String part = parts[i];
+            if (i > 0 && parts[i - 1].equals("invite"))
+                route.append("{code}");
+            else if (i > 0 && isMajorParameter(parts[i - 1]) || !isSnowflake(part))
+                route.append(part);
+            else
+                route.append("{id}");
+        }
+        return route.toString();
+    }
+
+    private static boolean isMajorParameter(String name)
+    {
+        for (String major : MAJOR_PARAMETERS)
+        {
+            if (major.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isSnowflake(String part)
+    {
+        if (part.isEmpty())
+            return false;
+        for (int i = 0; i < part.length(); i++)
+        {
+            if (!Character.isDigit(part.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static String getHeader(HttpResponse<?> response, String name)
+    {
+        if (response.getHeaders() == null)
+            return null;
+        for (Map.Entry<String, List<String>> entry : response.getHeaders().entrySet())
+        {
+            if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty())
+                return entry.getValue().get(0);
+        }
+        return null;
+    }
+
+    private static class QueuedRequest
+    {
+        private final BaseRequest request;
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        private QueuedRequest(BaseRequest request)
+        {
+            this.request = request;
+        }
+    }
+
+    private class Bucket implements Runnable
+    {
+        private final String route;
+        private final Queue<QueuedRequest> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile int remaining = 1;
+        private volatile long reset = 0;
+
+        private Bucket(String route)
+        {
+            this.route = route;
+        }
+
+        private void schedule(long delay)
+        {
+            if (scheduled.compareAndSet(false, true))
+                reschedule(delay);
+        }
+
+        private void reschedule(long delay)
+        {
+            try
+            {
+                pool.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                QueuedRequest request;
+                while ((request = queue.poll()) != null)
+                    request.future.complete(new Response(e));
+                scheduled.set(false);
+            }
+        }
+
+        private boolean isIdle(long now)
+        {
+            return queue.isEmpty() && !scheduled.get() && reset <= now;
+        }
+
+        private long getDelay()
+        {
+            long now = System.currentTimeMillis();
+            long delay = globalReset - now;
+            if (remaining <= 0)
+                delay = Math.max(delay, reset - now);
+            return Math.max(0, delay);
+        }
+
+        private void update(HttpResponse<String> ret, Response response)
+        {
+            long now = System.currentTimeMillis();
+            if (response.isRateLimit())
+            {
+                JSONObject body = response.getObject();
+                long retryAfter = getRetryAfter(body, getHeader(ret, "Retry-After"));
+                if ("true".equalsIgnoreCase(getHeader(ret, "X-RateLimit-Global")) || (body != null && body.optBoolean("global")))
+                {
+                    LOG.debug("Encountered global rate-limit! Retry-After: " + retryAfter);
+                    globalReset = now + retryAfter;
+                }
+                else
+                {
+                    LOG.debug("Encountered rate-limit on route " + route + "! Retry-After: " + retryAfter);
+                    reset = now + retryAfter;
+                    remaining = 0;
+                }
+                return;
+            }
+            try
+            {
+                String remainingHeader = getHeader(ret, "X-RateLimit-Remaining");
+                String resetHeader = getHeader(ret, "X-RateLimit-Reset");
+                if (remainingHeader != null && resetHeader != null)
+                {
+                    reset = Long.parseLong(resetHeader) * 1000;
+                    remaining = Integer.parseInt(remainingHeader);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                LOG.debug("Could not parse rate-limit headers of route " + route);
+            }
+        }
+
+        private long getRetryAfter(JSONObject body, String header)
+        {
+            double retryAfter;
+            try
+            {
+                if (body != null && body.has("retry_after"))
+                    retryAfter = body.getDouble("retry_after");
+                else if (header != null)
+                    retryAfter = Double.parseDouble(header.trim());
+                else
+                    return DEFAULT_RETRY_AFTER;
+            }
+            catch (JSONException | NumberFormatException e)
+            {
+                LOG.debug("Could not parse the Retry-After of route " + route + ", waiting " + DEFAULT_RETRY_AFTER + "ms");
+                return DEFAULT_RETRY_AFTER;
+            }
+            if (Double.isNaN(retryAfter) || Double.isInfinite(retryAfter) || retryAfter < 0)
+                return DEFAULT_RETRY_AFTER;
+            return (long) Math.ceil(retryAfter);
+        }
+
+        @Override
+        public void run()
+        {
+            QueuedRequest request;
+            while ((request = queue.peek()) != null)
+            {
+                long delay = getDelay();
+                if (delay > 0)
+                {
+                    reschedule(delay);
+                    return;
+                }
+                Response response;
+                try
+                {
+                    response = execute(request.request, this);
+                }
+                catch (RuntimeException e)
+                {
+                    LOG.log(e);
+                    response = new Response(e);
+                }
+                if (response.isRateLimit())
+                    continue;   //stays at the head of the queue until the rate-limit passed
+                queue.poll();
+                request.future.complete(response);
+            }
+            scheduled.set(false);
+            if (!queue.isEmpty())
+                schedule(0);
+        }
+    }
+}
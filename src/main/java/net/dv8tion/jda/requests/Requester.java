@@ -15,13 +15,11 @@
  */
 package net.dv8tion.jda.requests;
 
-import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.HttpMethod;
 import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
 import com.mashape.unirest.request.BaseRequest;
 import com.mashape.unirest.request.GetRequest;
 import com.mashape.unirest.request.HttpRequest;
-import com.mashape.unirest.request.body.RequestBodyEntity;
 import net.dv8tion.jda.JDAInfo;
 import net.dv8tion.jda.entities.impl.JDAImpl;
 import net.dv8tion.jda.utils.SimpleLog;
@@ -29,6 +27,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.concurrent.CompletableFuture;
+
 public class Requester
 {
     public static final SimpleLog LOG = SimpleLog.getLog("JDARequester");
@@ -36,10 +36,17 @@ public class Requester
     public static final String DISCORD_API_PREFIX = "https://discordapp.com/api/";
 
     private final JDAImpl api;
+    private final RequestEngine engine;
 
     public Requester(JDAImpl api)
+    {
+        this(api, RequestEngine.DEFAULT_POOL_SIZE);
+    }
+
+    public Requester(JDAImpl api, int poolSize)
     {
         this.api = api;
+        this.engine = new RequestEngine(poolSize);
     }
 
     public Response get(String url)
@@ -82,36 +89,74 @@ public class Requester
         return exec(addHeaders(Unirest.put(url)).body(body.toString()));
     }
 
+    public CompletableFuture<Response> getAsync(String url)
+    {
+        return queue(addHeaders(Unirest.get(url)));
+    }
+
+    public CompletableFuture<Response> deleteAsync(String url)
+    {
+        return queue(addHeaders(Unirest.delete(url)));
+    }
+
+    public CompletableFuture<Response> postAsync(String url, JSONObject body)
+    {
+        return queue(addHeaders(Unirest.post(url)).body(body.toString()));
+    }
+
+    public CompletableFuture<Response> postAsync(String url, JSONArray body)
+    {
+        return queue(addHeaders(Unirest.post(url)).body(body.toString()));
+    }
+
+    public CompletableFuture<Response> patchAsync(String url, JSONObject body)
+    {
+        return queue(addHeaders(Unirest.patch(url)).body(body.toString()));
+    }
+
+    public CompletableFuture<Response> patchAsync(String url, JSONArray body)
+    {
+        return queue(addHeaders(Unirest.patch(url)).body(body.toString()));
+    }
+
+    public CompletableFuture<Response> putAsync(String url, JSONObject body)
+    {
+        return queue(addHeaders(Unirest.put(url)).body(body.toString()));
+    }
+
+    public CompletableFuture<Response> putAsync(String url, JSONArray body)
+    {
+        return queue(addHeaders(Unirest.put(url)).body(body.toString()));
+    }
+
+    /**
+     * Returns the amount of milliseconds until requests of given method to the given url can be sent again.
+     *
+     * @param method
+     *          The http-method of the request.
+     * @param url
+     *          The url of the request.
+     * @return
+     *      The remaining rate-limit in milliseconds or 0 if the route is currently not rate-limited.
+     */
+    public long getRateLimit(HttpMethod method, String url)
+    {
+        return engine.getRateLimit(method, url);
+    }
+
+    public RequestEngine getEngine()
+    {
+        return engine;
+    }
+
     private Response exec(BaseRequest request)
     {
-        HttpResponse<String> ret = null;
-        try
-        {
-            String dbg = String.format("Requesting %s -> %s\n\tPayload: %s\n\tResponse: ", request.getHttpRequest().getHttpMethod().name(),
-                    request.getHttpRequest().getUrl(), ((request instanceof RequestBodyEntity) ? ((RequestBodyEntity) request).getBody().toString() : "None"));
-            ret = request.asString();
-            if (ret.getBody() != null && ret.getBody().startsWith("<"))
-            {
-                LOG.debug(String.format("Requesting %s -> %s returned HTML... retrying", request.getHttpRequest().getHttpMethod().name(), request.getHttpRequest().getUrl()));
-                try
-                {
-                    Thread.sleep(50);
-                }
-                catch (InterruptedException ignored) {}
-                ret = request.asString();
-            }
-            Response response = new Response(ret.getStatus(), ret.getBody());
-            LOG.trace(dbg + response.code + ": " + response.responseText);
-            return response;
-        }
-        catch (UnirestException e)
-        {
-            if (LOG.getEffectiveLevel().compareTo(SimpleLog.Level.DEBUG) != 1)
-            {
-                LOG.log(e);
-            }
-            return new Response(e);
-        }
+        return engine.execute(request);
+    }
+
+    private CompletableFuture<Response> queue(BaseRequest request)
+    {
+        return engine.queue(request);
     }
 
     private <T extends HttpRequest> T addHeaders(T request)
@@ -137,14 +182,14 @@ public class Requester
         public final int code;
         public final String responseText;
 
-        private Response(int code, String response)
+        Response(int code, String response)
         {
             this.code = code;
             this.responseText = response;
             this.exception = null;
         }
 
-        private Response(Exception exception)
+        Response(Exception exception)
         {
             this.code = connectionErrCode;
             this.responseText = null;
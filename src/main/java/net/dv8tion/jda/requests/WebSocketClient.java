@@ -32,18 +32,20 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.time.OffsetDateTime;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 public class WebSocketClient extends WebSocketAdapter implements WebSocketListener
 {
     public static final SimpleLog LOG = SimpleLog.getLog("JDASocket");
+    public static final int DEFAULT_MAX_QUEUED_FRAMES = 1000;
+    private static final Object STOP = new Object();
+    //events that JDA does not handle, their data is skipped while decoding
+    private static final Set<String> IGNORED_EVENTS = new HashSet<>(Arrays.asList("MESSAGE_ACK", "USER_GUILD_SETTINGS_UPDATE"));
 
     private final JDAImpl api;
 
@@ -69,14 +71,72 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
 
     private boolean firstInit = true;
 
-    private WebSocketCustomHandler customHandler;
+    //one handler per event type, shared by all events of that type
+    private final Map<String, SocketHandler> handlers = new ConcurrentHashMap<>();
+    private final Set<String> builtinEvents = new HashSet<>();
+
+    //frames are only queued by the reading thread of the socket and handled in order by the frameWorker
+    private final BlockingQueue<Object> frameQueue;
+    private final Thread frameWorker;
+    //tasks the frameWorker queued for itself, they run right after the current frame
+    private final Queue<Runnable> deferredTasks = new ArrayDeque<>();
+    //set by the frameWorker when it dropped the session, the dispatches of the old connection are skipped
+    private boolean resyncing = false;
+    //set by the frameWorker when the zlib context of the connection is corrupt, the remaining frames of it are skipped
+    private boolean inflaterBroken = false;
+    private final GatewayInflater inflater;
 
     public WebSocketClient(JDAImpl api, HttpHost proxy, int[] sharding)
     {
+        this(api, proxy, sharding, false);
+    }
+
+    public WebSocketClient(JDAImpl api, HttpHost proxy, int[] sharding, boolean transportCompression)
+    {
+        this(api, proxy, sharding, transportCompression, DEFAULT_MAX_QUEUED_FRAMES);
+    }
+
+    /**
+     * Creates the gateway connection.
+     * <p>
+     * Received frames wait in a queue of at most <code>maxQueuedFrames</code> frames for the gateway worker.
+     * Frames are never dropped, as every one of them changes the cache. If the queue is full, the reading thread of the socket
+     * blocks until the worker made room, which also stalls the heartbeats if the worker stays blocked for too long.
+     *
+     * @param api
+     *          The JDA instance.
+     * @param proxy
+     *          The proxy to connect through or null.
+     * @param sharding
+     *          The shard id and shard count or null.
+     * @param transportCompression
+     *          Whether the connection uses zlib-stream transport compression.
+     * @param maxQueuedFrames
+     *          The maximum amount of frames waiting for the gateway worker.
+     */
+    public WebSocketClient(JDAImpl api, HttpHost proxy, int[] sharding, boolean transportCompression, int maxQueuedFrames)
+    {
+        if (maxQueuedFrames < 1)
+            throw new IllegalArgumentException("The maximum amount of queued frames has to be at least 1");
         this.api = api;
+        this.frameQueue = new LinkedBlockingQueue<>(maxQueuedFrames);
         this.sharding = sharding;
         this.proxy = proxy;
-        connect();
+        this.inflater = new GatewayInflater(transportCompression);
+        setupHandlers();
+        //started first, connect() queues its resets and waits for room if the queue is small
+        this.frameWorker = new Thread(this::processFrames, "JDA Gateway-Worker");
+        this.frameWorker.setDaemon(true);
+        this.frameWorker.start();
+        try
+        {
+            connect();
+        }
+        catch (RuntimeException e)
+        {
+            queueFrame(STOP);
+            throw e;
+        }
     }
 
     public void setAutoReconnect(boolean reconnect)
@@ -89,9 +149,44 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         return connected;
     }
 
-    public void setCustomHandler(WebSocketCustomHandler customHandler)
+    /**
+     * Registers a handler for a gateway event type that JDA does not handle itself.
+     * The handler is called on the "JDA Gateway-Worker" thread that handles all received frames in order,
+     * right after the cache was updated by all previous events.
+     *
+     * @param type
+     *          The event type as sent by Discord (e.g. MESSAGE_ACK).
+     * @param handler
+     *          The handler for that type.
+     * @throws IllegalArgumentException
+     *          If JDA already handles the given type.
+     */
+    public void registerHandler(String type, SocketHandler handler)
+    {
+        if (type == null || handler == null)
+            throw new IllegalArgumentException("The event type and handler may not be null");
+        if (builtinEvents.contains(type))
+            throw new IllegalArgumentException("JDA already handles events of type " + type);
+        handlers.put(type, handler);
+    }
+
+    /**
+     * Removes a handler that was registered via {@link #registerHandler(String, SocketHandler)}.
+     *
+     * @param type
+     *          The event type of the handler.
+     * @return
+     *      True if a handler was removed.
+     */
+    public boolean unregisterHandler(String type)
+    {
+        return !builtinEvents.contains(type) && handlers.remove(type) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends SocketHandler> T getHandler(String type)
     {
-        this.customHandler = customHandler;
+        return (T) handlers.get(type);
     }
 
     public void ready()
@@ -131,11 +226,54 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         return !initiating;
     }
 
+    /**
+     * The amount of frames received from the WebSocket that are waiting to be handled.
+     *
+     * @return
+     *      The current amount of queued frames.
+     */
+    public int getQueuedFrames()
+    {
+        return frameQueue.size();
+    }
+
     public void handle(List<JSONObject> events)
     {
         events.forEach(this::handleEvent);
     }
 
+    /**
+     * Handles the given raw events on the gateway worker, after the frame it is currently handling.
+     * Used to replay the events of a guild once its {@link net.dv8tion.jda.requests.GuildLock GuildLock} is released.
+     *
+     * @param events
+     *          The raw events to handle, in order.
+     */
+    void replay(List<JSONObject> events)
+    {
+        runOnWorker(() -> handle(events));
+    }
+
+    /**
+     * Drops the current session and all cached entities and reconnects with a new session,
+     * which makes Discord send the current state of every guild again.
+     * Does nothing if auto-reconnect is disabled.
+     */
+    void resync()
+    {
+        if (!shouldReconnect)
+            return;
+        runOnWorker(() ->
+        {
+            if (resyncing)
+                return;
+            LOG.warn("Resyncing the session. All cached entities are loaded again.");
+            resyncing = true;
+            invalidate();
+            close();
+        });
+    }
+
     public void send(String message)
     {
         LOG.trace("<- " + message);
@@ -171,7 +309,14 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                     throw new RuntimeException("Could not fetch WS-Gateway!");
                 }
             }
-            socket = factory.createSocket(gatewayUrl)
+            //every connection starts with a new zlib context, frames of the old connection might still be queued
+            queueFrame((Runnable) () ->
+            {
+                inflater.reset();
+                inflaterBroken = false;
+                resyncing = false;
+            });
+            socket = factory.createSocket(inflater.isStream() ? gatewayUrl + "&compress=zlib-stream" : gatewayUrl)
                     .addHeader("Accept-Encoding", "gzip")
                     .addListener(this);
             socket.connect();
@@ -214,6 +359,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer)
     {
         connected = false;
+        //after the frames that were received before
+        queueFrame((Runnable) () -> api.getMemberLoader().onDisconnect());
         if (keepAliveThread != null)
         {
             keepAliveThread.interrupt();
@@ -228,7 +375,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                 LOG.info("Reason: " + serverCloseFrame.getCloseReason());
                 LOG.info("Close code: " + serverCloseFrame.getCloseCode());
             }
-            api.getEventManager().handle(new ShutdownEvent(api, OffsetDateTime.now(), dcAudioConnections));
+            queueFrame((Runnable) () -> api.getEventManager().handle(new ShutdownEvent(api, OffsetDateTime.now(), dcAudioConnections)));
+            queueFrame(STOP);
         }
         else
         {
@@ -248,7 +396,8 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                     dcAudioConnections.add(channel);
                 }
             }
-            api.getEventManager().handle(new DisconnectEvent(api, serverCloseFrame, clientCloseFrame, closedByServer, OffsetDateTime.now(), dcAudioConnections));
+            OffsetDateTime disconnectTime = OffsetDateTime.now();
+            queueFrame((Runnable) () -> api.getEventManager().handle(new DisconnectEvent(api, serverCloseFrame, clientCloseFrame, closedByServer, disconnectTime, dcAudioConnections)));
             reconnect();
         }
     }
@@ -280,22 +429,125 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
     @Override
     public void onTextMessage(WebSocket websocket, String message)
     {
-        JSONObject content = new JSONObject(message);
-        int opCode = content.getInt("op");
+        queueFrame(message);
+    }
+
+    /**
+     * Runs the given task on the gateway worker, like a frame. If called by the worker itself,
+     * the task runs right after the current frame, the worker may not wait for room in its own queue.
+     *
+     * @param task
+     *          The task to run.
+     */
+    void runOnWorker(Runnable task)
+    {
+        if (Thread.currentThread() == frameWorker)
+            deferredTasks.add(task);
+        else
+            queueFrame(task);
+    }
 
-        if (content.has("s") && !content.isNull("s"))
+    private void queueFrame(Object frame)
+    {
+        try
         {
-            api.setResponseTotal(content.getInt("s"));
+            frameQueue.put(frame);
         }
+        catch (InterruptedException e)
+        {
+            LOG.warn("Got interrupted while waiting for room in the frame-queue. Dropping frame!");
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        //Allows for custom event handling.
-        if (customHandler != null && customHandler.handle(content))
+    private void processFrames()
+    {
+        while (true)
+        {
+            Object frame;
+            try
+            {
+                frame = frameQueue.take();
+            }
+            catch (InterruptedException e)
+            {
+                continue;
+            }
+            if (frame == STOP)
+            {
+                inflater.close();
+                return;
+            }
+            try
+            {
+                if (frame instanceof Runnable)
+                    ((Runnable) frame).run();
+                else if (frame instanceof byte[])
+                    handleBinary((byte[]) frame);
+                else
+                    handleText((String) frame);
+            }
+            catch (Exception e)
+            {
+                LOG.log(e);
+            }
+            Runnable task;
+            while ((task = deferredTasks.poll()) != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (Exception e)
+                {
+                    LOG.log(e);
+                }
+            }
+        }
+    }
+
+    private void handleBinary(byte[] frame) throws DataFormatException
+    {
+        if (inflaterBroken)
             return;
+        String message;
+        try
+        {
+            message = inflater.inflate(frame);
+        }
+        catch (DataFormatException e)
+        {
+            if (!inflater.isStream())
+                throw e;
+            //all following frames depend on the corrupt context, the next connection starts a new one and resumes
+            LOG.warn("Could not inflate a frame of the zlib-stream, reconnecting: " + e.getMessage());
+            inflaterBroken = true;
+            close();
+            return;
+        }
+        if (message != null)
+            handleText(message);
+    }
+
+    private void handleText(String message)
+    {
+        GatewayPayload payload = GatewayPayload.read(message, type -> IGNORED_EVENTS.contains(type) && !handlers.containsKey(type));
+        int opCode = payload.op;
+
+        if (payload.hasSequence())
+        {
+            api.setResponseTotal(payload.sequence);
+        }
 
         switch (opCode)
         {
             case 0:
-                handleEvent(content);
+                if (resyncing)
+                    LOG.trace("Skipped " + payload.type + " event of the dropped session");
+                else if (payload.data != null)
+                    handleEvent(payload.toJson());
+                else
+                    LOG.trace("Skipped " + payload.type + " event");
                 break;
             case 1:
                 LOG.debug("Got Keep-Alive request (OP 1). Sending response...");
@@ -355,12 +607,12 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
                         )
                         .put("v", 4)
                         .put("large_threshold", 250)
-                        .put("compress", true));
+                        .put("compress", !inflater.isStream()));
         if (sharding != null)
         {
             identify.getJSONObject("d").put("shard", new JSONArray().put(sharding[0]).put(sharding[1]));
         }
-        send(identify.toString()); //Used to make the READY event be given as compressed binary data when over a certain size. TY @ShadowLordAlpha
+        send(identify.toString()); //"compress" is used to make the READY event be given as compressed binary data when over a certain size. TY @ShadowLordAlpha
     }
 
     private void sendResume()
@@ -400,6 +652,7 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         api.getPmChannelMap().clear();
         api.getOffline_pms().clear();
         GuildLock.get(api).clear();
+        api.getMemberLoader().clear();
     }
 
     private void restoreAudioHandlers()
@@ -504,9 +757,9 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         }
 
         if (type.equals("GUILD_MEMBER_ADD"))
-            GuildMembersChunkHandler.modifyExpectedGuildMember(api, raw.getJSONObject("d").getString("guild_id"), 1);
+            this.<GuildMembersChunkHandler>getHandler("GUILD_MEMBERS_CHUNK").modifyExpectedGuildMember(raw.getJSONObject("d").getString("guild_id"), 1);
         if (type.equals("GUILD_MEMBER_REMOVE"))
-            GuildMembersChunkHandler.modifyExpectedGuildMember(api, raw.getJSONObject("d").getString("guild_id"), -1);
+            this.<GuildMembersChunkHandler>getHandler("GUILD_MEMBERS_CHUNK").modifyExpectedGuildMember(raw.getJSONObject("d").getString("guild_id"), -1);
 
         if (initiating && !(type.equals("READY") || type.equals("GUILD_MEMBERS_CHUNK") || type.equals("GUILD_CREATE") || type.equals("RESUMED")))
         {
@@ -519,114 +772,39 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         if(type.equals("PRESENCE_REPLACE"))
         {
             JSONArray presences = raw.getJSONArray("d");
-            LOG.trace(String.format("%s -> %s", type, presences.toString()));
-            PresenceUpdateHandler handler = new PresenceUpdateHandler(api, responseTotal);
+            if (isTraceEnabled())
+                LOG.trace(String.format("%s -> %s", type, presences.toString()));
+            SocketHandler handler = getHandler("PRESENCE_UPDATE");
             for (int i = 0; i < presences.length(); i++)
             {
                 JSONObject presence = presences.getJSONObject(i);
-                handler.handle(presence);
+                handler.handle(responseTotal, new JSONObject().put("t", "PRESENCE_UPDATE").put("d", presence));
             }
             return;
         }
 
         JSONObject content = raw.getJSONObject("d");
-        LOG.trace(String.format("%s -> %s", type, content.toString()));
-
-        try {
-            switch (type) {
-                //INIT types
-                case "READY":
-                    sessionId = content.getString("session_id");
-                    new ReadyHandler(api, responseTotal).handle(raw);
-                    break;
-                case "RESUMED":
-                    initiating = false;
-                    ready();
-                    break;
-                case "GUILD_MEMBERS_CHUNK":
-                    new GuildMembersChunkHandler(api, responseTotal).handle(raw);
-                    break;
-                case "PRESENCE_UPDATE":
-                    new PresenceUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "TYPING_START":
-                    new UserTypingHandler(api, responseTotal).handle(raw);
-                    break;
-                case "MESSAGE_CREATE":
-                    new MessageReceivedHandler(api, responseTotal).handle(raw);
-                    break;
-                case "MESSAGE_UPDATE":
-                    if (content.has("author"))
-                        new MessageUpdateHandler(api, responseTotal).handle(raw);
-                    else
-                        new MessageEmbedHandler(api, responseTotal).handle(raw);
-                    break;
-                case "MESSAGE_DELETE":
-                    new MessageDeleteHandler(api, responseTotal).handle(raw);
-                    break;
-                case "VOICE_STATE_UPDATE":
-                    new VoiceChangeHandler(api, responseTotal).handle(raw);
-                    break;
-                case "VOICE_SERVER_UPDATE":
-                    if (api.isAudioEnabled())
-                        new VoiceServerUpdateHandler(api, responseTotal).handle(raw);
-                    else
-                        LOG.debug("Received VOICE_SERVER_UPDATE event but ignoring due to audio being disabled/not supported.");
-                    break;
-                case "CHANNEL_CREATE":
-                    new ChannelCreateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "CHANNEL_UPDATE":
-                    new ChannelUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "CHANNEL_DELETE":
-                    new ChannelDeleteHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_CREATE":
-                    new GuildJoinHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_UPDATE":
-                    new GuildUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_DELETE":
-                    new GuildLeaveHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_MEMBER_ADD":
-                    new GuildMemberAddHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_MEMBER_UPDATE":
-                    new GuildMemberUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_MEMBER_REMOVE":
-                    new GuildMemberRemoveHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_BAN_ADD":
-                    new GuildMemberBanHandler(api, responseTotal, true).handle(raw);
-                    break;
-                case "GUILD_BAN_REMOVE":
-                    new GuildMemberBanHandler(api, responseTotal, false).handle(raw);
-                    break;
-                case "GUILD_ROLE_CREATE":
-                    new GuildRoleCreateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_ROLE_UPDATE":
-                    new GuildRoleUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "GUILD_ROLE_DELETE":
-                    new GuildRoleDeleteHandler(api, responseTotal).handle(raw);
-                    break;
-                case "USER_UPDATE":
-                    new UserUpdateHandler(api, responseTotal).handle(raw);
-                    break;
-                case "USER_GUILD_SETTINGS_UPDATE":
-                    //TODO: handle notification updates...
-                    break;
-                //Events that Bots shouldn't care about.
-                case "MESSAGE_ACK":
-                    break;
-                default:
-                    LOG.debug("Unrecognized event:\n" + raw);
+        if (isTraceEnabled())
+            LOG.trace(String.format("%s -> %s", type, content.toString()));
+
+        try
+        {
+            if (type.equals("READY"))
+            {
+                sessionId = content.getString("session_id");
+            }
+            else if (type.equals("RESUMED"))
+            {
+                initiating = false;
+                ready();
+                return;
             }
+
+            SocketHandler handler = handlers.get(type);
+            if (handler != null)
+                handler.handle(responseTotal, raw);
+            else if (!IGNORED_EVENTS.contains(type))
+                LOG.debug("Unrecognized event:\n" + raw);
         }
         catch (JSONException ex)
         {
@@ -639,24 +817,45 @@ public class WebSocketClient extends WebSocketAdapter implements WebSocketListen
         }
     }
 
-    @Override
-    public void onBinaryMessage(WebSocket websocket, byte[] binary) throws UnsupportedEncodingException, DataFormatException
-    {
-        //Thanks to ShadowLordAlpha for code and debugging.
-        //Get the compressed message and inflate it
-        StringBuilder builder = new StringBuilder();
-        Inflater decompresser = new Inflater();
-        decompresser.setInput(binary, 0, binary.length);
-        byte[] result = new byte[128];
-        while(!decompresser.finished())
-        {
-            int resultLength = decompresser.inflate(result);
-            builder.append(new String(result, 0, resultLength, "UTF-8"));
-        }
-        decompresser.end();
+    private void setupHandlers()
+    {
+        handlers.put("CHANNEL_CREATE",             new ChannelCreateHandler(api));
+        handlers.put("CHANNEL_DELETE",             new ChannelDeleteHandler(api));
+        handlers.put("CHANNEL_UPDATE",             new ChannelUpdateHandler(api));
+        handlers.put("GUILD_BAN_ADD",              new GuildMemberBanHandler(api, true));
+        handlers.put("GUILD_BAN_REMOVE",           new GuildMemberBanHandler(api, false));
+        handlers.put("GUILD_CREATE",               new GuildJoinHandler(api));
+        handlers.put("GUILD_DELETE",               new GuildLeaveHandler(api));
+        handlers.put("GUILD_MEMBER_ADD",           new GuildMemberAddHandler(api));
+        handlers.put("GUILD_MEMBER_REMOVE",        new GuildMemberRemoveHandler(api));
+        handlers.put("GUILD_MEMBER_UPDATE",        new GuildMemberUpdateHandler(api));
+        handlers.put("GUILD_MEMBERS_CHUNK",        new GuildMembersChunkHandler(api));
+        handlers.put("GUILD_ROLE_CREATE",          new GuildRoleCreateHandler(api));
+        handlers.put("GUILD_ROLE_DELETE",          new GuildRoleDeleteHandler(api));
+        handlers.put("GUILD_ROLE_UPDATE",          new GuildRoleUpdateHandler(api));
+        handlers.put("GUILD_UPDATE",               new GuildUpdateHandler(api));
+        handlers.put("MESSAGE_CREATE",             new MessageReceivedHandler(api));
+        handlers.put("MESSAGE_DELETE",             new MessageDeleteHandler(api));
+        handlers.put("MESSAGE_UPDATE",             new MessageUpdateHandler(api));
+        handlers.put("PRESENCE_UPDATE",            new PresenceUpdateHandler(api));
+        handlers.put("READY",                      new ReadyHandler(api));
+        handlers.put("TYPING_START",               new UserTypingHandler(api));
+        handlers.put("USER_UPDATE",                new UserUpdateHandler(api));
+        handlers.put("VOICE_SERVER_UPDATE",        new VoiceServerUpdateHandler(api));
+        handlers.put("VOICE_STATE_UPDATE",         new VoiceChangeHandler(api));
+        builtinEvents.addAll(handlers.keySet());
+    }
 
-        // send the inflated message to the TextMessage method
-        onTextMessage(websocket, builder.toString());
+    private static boolean isTraceEnabled()
+    {
+        return LOG.getEffectiveLevel().getPriority() <= SimpleLog.Level.TRACE.getPriority();
+    }
+
+    @Override
+    public void onBinaryMessage(WebSocket websocket, byte[] binary)
+    {
+        //inflating happens on the frameWorker, as it has to be done in order when using transport compression
+        queueFrame(binary);
     }
 
     @Override
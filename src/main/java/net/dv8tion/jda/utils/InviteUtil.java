@@ -30,6 +30,7 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class InviteUtil
 {
@@ -49,12 +50,50 @@ public class InviteUtil
     {
         if (code == null)
             throw new NullPointerException("The provided invite code/url was null.");
+        JSONObject object = new JDAImpl(false, false).getRequester().get(Requester.DISCORD_API_PREFIX + "invite/" + toCode(code)).getObject();
+        return toInvite(object);
+    }
+
+    /**
+     * Asynchronous version of {@link #resolve(String)}, which sends the request through the given JDA instance
+     * instead of blocking the calling thread.
+     *
+     * @param code
+     *          The invite url or code
+     * @param jda
+     *          The JDA instance to send the request with.
+     * @return
+     *      A future that completes with the {@link net.dv8tion.jda.utils.InviteUtil.Invite Invite}, or with <code>null</code>
+     *      if the provided code or url is invalid. It completes exceptionally if Discord could not be asked.
+     * @throws java.lang.NullPointerException
+     *      If the provided String is null.
+     */
+    public static CompletableFuture<Invite> resolveAsync(String code, JDA jda)
+    {
+        if (code == null)
+            throw new NullPointerException("The provided invite code/url was null.");
+        String inviteCode = toCode(code);
+        return ((JDAImpl) jda).getRequester().getAsync(Requester.DISCORD_API_PREFIX + "invite/" + inviteCode).thenApply(response ->
+        {
+            //Discord answers unknown invites with a client error, anything else says nothing about the code.
+            if (response.exception != null || response.isRateLimit() || response.code >= 500)
+                throw new IllegalStateException("Could not resolve the invite " + inviteCode + ": " + response);
+            return toInvite(response.getObject());
+        });
+    }
+
+    private static String toCode(String code)
+    {
         if (code.startsWith("http"))
         {
             String[] split = code.split("/");
             code = split[split.length - 1];
         }
-        JSONObject object = new JDAImpl(false, false).getRequester().get(Requester.DISCORD_API_PREFIX + "invite/" + code).getObject();
+        return code;
+    }
+
+    private static Invite toInvite(JSONObject object)
+    {
         if (object != null && object.has("code"))
         {
             JSONObject guild = object.getJSONObject("guild");
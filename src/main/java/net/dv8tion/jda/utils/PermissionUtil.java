@@ -18,6 +18,7 @@ package net.dv8tion.jda.utils;
 import net.dv8tion.jda.Permission;
 import net.dv8tion.jda.entities.*;
 import net.dv8tion.jda.entities.impl.GuildImpl;
+import net.dv8tion.jda.entities.impl.PermissionCache;
 import net.dv8tion.jda.entities.impl.PermissionOverrideImpl;
 import net.dv8tion.jda.entities.impl.TextChannelImpl;
 import net.dv8tion.jda.entities.impl.VoiceChannelImpl;
@@ -124,16 +125,17 @@ public class PermissionUtil
      */
     public static boolean checkPermission(User user, Permission perm, Channel channel)
     {
-        if (channel instanceof TextChannel)
-        {
-            return checkPermission(user, perm, ((GuildImpl) channel.getGuild()),
-                    ((TextChannelImpl) channel).getRolePermissionOverridesMap(), ((TextChannelImpl) channel).getUserPermissionOverridesMap());
-        }
-        else
-        {
-            return checkPermission(user, perm, ((GuildImpl) channel.getGuild()),
-                    ((VoiceChannelImpl) channel).getRolePermissionOverridesMap(), ((VoiceChannelImpl) channel).getUserPermissionOverridesMap());
-        }
+        //--Do we have all permissions possible? (Owner or user has ADMINISTRATOR permission)
+        //--If we have all permissions possible, then we will be able to see this room.
+        //WE DO NOT WANT TO CHECK THIS FOR CHANNELS, AS CHANNELS CAN OVERRIDE MANAGE_PERMISSIONS
+//        if (checkPermission(user, Permission.ADMINISTRATOR, guild))
+//            return true;
+
+        //BUT: WE DO WANT TO CHECK IF HE IS OWNER
+        if (channel.getGuild().getOwnerId().equals(user.getId()))
+            return true;
+
+        return hasPermission(getEffectivePermission(user, channel), perm);
     }
 
     /**
@@ -157,11 +159,7 @@ public class PermissionUtil
     public static boolean checkPermission(User user, Permission perm, Guild guild)
     {
         return guild.getOwnerId().equals(user.getId())
-                || guild.getPublicRole().hasPermission(Permission.ADMINISTRATOR)
-                || guild.getPublicRole().hasPermission(perm)
-                || guild.getRolesForUser(user).stream().anyMatch(role ->
-                            role.hasPermission(Permission.ADMINISTRATOR)
-                            || role.hasPermission(perm));
+                || hasPermission(getEffectivePermission(user, guild), perm);
     }
 
     /**
@@ -180,16 +178,35 @@ public class PermissionUtil
      */
     public static int getEffectivePermission(User user, Channel channel)
     {
+        GuildImpl guild = (GuildImpl) channel.getGuild();
+        PermissionCache cache = guild.getPermissionCache();
+        int slot;
+        int stamp;
+        Map<Role, PermissionOverride> roleOverrides;
+        Map<User, PermissionOverride> userOverrides;
         if (channel instanceof TextChannel)
         {
-            return getEffectivePermission(user, ((GuildImpl) channel.getGuild()),
-                    ((TextChannelImpl) channel).getRolePermissionOverridesMap(), ((TextChannelImpl) channel).getUserPermissionOverridesMap());
+            TextChannelImpl textChannel = (TextChannelImpl) channel;
+            slot = textChannel.getPermissionSlot();
+            stamp = cache.getStamp(user, textChannel.getPermissionGeneration());
+            roleOverrides = textChannel.getRolePermissionOverridesMap();
+            userOverrides = textChannel.getUserPermissionOverridesMap();
         }
         else
         {
-            return getEffectivePermission(user, ((GuildImpl) channel.getGuild()),
-                    ((VoiceChannelImpl) channel).getRolePermissionOverridesMap(), ((VoiceChannelImpl) channel).getUserPermissionOverridesMap());
+            VoiceChannelImpl voiceChannel = (VoiceChannelImpl) channel;
+            slot = voiceChannel.getPermissionSlot();
+            stamp = cache.getStamp(user, voiceChannel.getPermissionGeneration());
+            roleOverrides = voiceChannel.getRolePermissionOverridesMap();
+            userOverrides = voiceChannel.getUserPermissionOverridesMap();
         }
+        int permission = cache.get(user, slot, stamp);
+        if (permission == PermissionCache.MISSING)
+        {
+            permission = getEffectivePermission(user, guild, roleOverrides, userOverrides);
+            cache.put(user, slot, stamp, permission);
+        }
+        return permission;
     }
 
     /**
@@ -209,29 +226,25 @@ public class PermissionUtil
      */
     public static int getEffectivePermission(User user, Guild guild)
     {
-        //Default to binary OR of all global permissions in this guild
-        int permission = guild.getPublicRole().getPermissionsRaw();
-        List<Role> rolesOfUser = guild.getRolesForUser(user);
-        for (Role role : rolesOfUser)
+        PermissionCache cache = ((GuildImpl) guild).getPermissionCache();
+        int stamp = cache.getStamp(user, 0);
+        int permission = cache.get(user, PermissionCache.GUILD_SLOT, stamp);
+        if (permission == PermissionCache.MISSING)
         {
-            permission = permission | role.getPermissionsRaw();
+            //Default to binary OR of all global permissions in this guild
+            permission = guild.getPublicRole().getPermissionsRaw();
+            List<Role> rolesOfUser = guild.getRolesForUser(user);
+            for (Role role : rolesOfUser)
+            {
+                permission = permission | role.getPermissionsRaw();
+            }
+            cache.put(user, PermissionCache.GUILD_SLOT, stamp, permission);
         }
         return permission;
     }
 
-    private static boolean checkPermission(User user, Permission perm, GuildImpl guild, Map<Role, PermissionOverride> roleOverrides, Map<User, PermissionOverride> userOverrides)
+    private static boolean hasPermission(int effectivePerms, Permission perm)
     {
-        //--Do we have all permissions possible? (Owner or user has ADMINISTRATOR permission)
-        //--If we have all permissions possible, then we will be able to see this room.
-        //WE DO NOT WANT TO CHECK THIS FOR CHANNELS, AS CHANNELS CAN OVERRIDE MANAGE_PERMISSIONS
-//        if (checkPermission(user, Permission.ADMINISTRATOR, guild))
-//            return true;
-
-        //BUT: WE DO WANT TO CHECK IF HE IS OWNER
-        if (guild.getOwnerId().equals(user.getId()))
-            return true;
-
-        int effectivePerms = getEffectivePermission(user, guild, roleOverrides, userOverrides);
         return ((effectivePerms & (1 << Permission.ADMINISTRATOR.getOffset())) | (effectivePerms & (1 << perm.getOffset()))) > 0;
     }
 
@@ -0,0 +1,598 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe map that stores its keys as primitive snowflake ids.
+ * <p>
+ * Entries live in open-addressed tables of longs instead of String keys and hash-nodes, which cuts the memory
+ * needed per entry to a fraction of a {@link java.util.HashMap HashMap}. Writes lock one of several segments,
+ * reads never lock. Iteration is weakly consistent, like the one of {@link java.util.concurrent.ConcurrentHashMap ConcurrentHashMap}.
+ * <p>
+ * The map can be used through the regular String-keyed {@link java.util.Map Map} interface. Keys that are not
+ * valid snowflakes are never contained: looking them up or removing them returns null (or false),
+ * while storing them throws an {@link java.lang.IllegalArgumentException IllegalArgumentException}.
+ * Null values are not allowed.
+ *
+ * @param <V>
+ *          The type of the stored values.
+ */
+public class SnowflakeMap<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V>
+{
+    private static final long FREE = 0;
+    private static final long REMOVED = -1;
+    private static final int SEGMENT_SHIFT = 60;
+    private static final int SEGMENTS = 1 << (64 - SEGMENT_SHIFT);
+    private static final int MIN_CAPACITY = 8;
+
+    private final Segment<V>[] segments;
+
+    private Set<Entry<String, V>> entrySet;
+    private Collection<V> values;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SnowflakeMap()
+    {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment<>();
+    }
+
+    public V get(long id)
+    {
+        long hash = hash(id);
+        return segmentFor(hash).get(id, hash);
+    }
+
+    public V put(long id, V value)
+    {
+        checkKey(id);
+        if (value == null)
+            throw new NullPointerException("SnowflakeMap does not allow null values");
+        long hash = hash(id);
+        return segmentFor(hash).put(id, hash, value, false);
+    }
+
+    public V remove(long id)
+    {
+        long hash = hash(id);
+        return segmentFor(hash).remove(id, hash, null);
+    }
+
+    public boolean containsKey(long id)
+    {
+        return get(id) != null;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        long id = toId(key);
+        return id > 0 ? get(id) : null;
+    }
+
+    /**
+     * Maps the given snowflake id to the given value.
+     *
+     * @param key
+     *          The id, has to be a positive snowflake in decimal notation.
+     * @param value
+     *          The value, may not be null.
+     * @return
+     *      The previous value or null.
+     * @throws IllegalArgumentException
+     *          If the key is not a valid snowflake.
+     * @throws NullPointerException
+     *          If the value is null.
+     */
+    @Override
+    public V put(String key, V value)
+    {
+        return put(toId(key), value);
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        long id = toId(key);
+        return id > 0 ? remove(id) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given snowflake id to the given value unless it is mapped already.
+     *
+     * @param key
+     *          The id, has to be a positive snowflake in decimal notation.
+     * @param value
+     *          The value, may not be null.
+     * @return
+     *      The current value or null if the given value was stored.
+     * @throws IllegalArgumentException
+     *          If the key is not a valid snowflake.
+     * @throws NullPointerException
+     *          If the value is null.
+     */
+    @Override
+    public V putIfAbsent(String key, V value)
+    {
+        long id = toId(key);
+        checkKey(id);
+        if (value == null)
+            throw new NullPointerException("SnowflakeMap does not allow null values");
+        long hash = hash(id);
+        return segmentFor(hash).put(id, hash, value, true);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        long id = toId(key);
+        if (id <= 0 || value == null)
+            return false;
+        long hash = hash(id);
+        return segmentFor(hash).remove(id, hash, value) != null;
+    }
+
+    @Override
+    public boolean replace(String key, V oldValue, V newValue)
+    {
+        long id = toId(key);
+        if (id <= 0 || oldValue == null || newValue == null)
+            return false;
+        long hash = hash(id);
+        return segmentFor(hash).replace(id, hash, oldValue, newValue) != null;
+    }
+
+    @Override
+    public V replace(String key, V value)
+    {
+        long id = toId(key);
+        if (id <= 0 || value == null)
+            return null;
+        long hash = hash(id);
+        return segmentFor(hash).replace(id, hash, null, value);
+    }
+
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (Segment<V> segment : segments)
+            size += segment.size;
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (Segment<V> segment : segments)
+        {
+            if (segment.size != 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        for (Segment<V> segment : segments)
+            segment.clear();
+    }
+
+    @Override
+    public Collection<V> values()
+    {
+        if (values == null)
+        {
+            values = new AbstractCollection<V>()
+            {
+                @Override
+                public Iterator<V> iterator()
+                {
+                    return new MapIterator<V>()
+                    {
+                        @Override
+                        V create(long id, V value)
+                        {
+                            return value;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return SnowflakeMap.this.size();
+                }
+
+                @Override
+                public void clear()
+                {
+                    SnowflakeMap.this.clear();
+                }
+            };
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Entry<String, V>>()
+            {
+                @Override
+                public Iterator<Entry<String, V>> iterator()
+                {
+                    return new MapIterator<Entry<String, V>>()
+                    {
+                        @Override
+                        Entry<String, V> create(long id, V value)
+                        {
+                            return new MapEntry(id, value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return SnowflakeMap.this.size();
+                }
+
+                @Override
+                public void clear()
+                {
+                    SnowflakeMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Converts the given key to a snowflake id without throwing on invalid input.
+     *
+     * @param key
+     *          The key to convert.
+     * @return
+     *      The id or 0 if the key is not a valid snowflake.
+     */
+    private static long toId(Object key)
+    {
+        if (!(key instanceof String))
+            return 0;
+        String s = (String) key;
+        int length = s.length();
+        if (length == 0 || length > 19)
+            return 0;
+        long id = 0;
+        for (int i = 0; i < length; i++)
+        {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return 0;
+            id = id * 10 + digit;
+            if (id < 0)         //overflow
+                return 0;
+        }
+        return id;
+    }
+
+    private static void checkKey(long id)
+    {
+        if (id <= 0)
+            throw new IllegalArgumentException("SnowflakeMap only accepts positive snowflake ids as keys");
+    }
+
+    private static long hash(long id)
+    {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private Segment<V> segmentFor(long hash)
+    {
+        return segments[(int) (hash >>> SEGMENT_SHIFT)];
+    }
+
+    private static final class Table<V>
+    {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+
+        private Table(int capacity)
+        {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment<V>
+    {
+        private volatile Table<V> table = new Table<>(MIN_CAPACITY);
+        private volatile int size = 0;
+        private int used = 0;      //live entries and removed markers
+
+        private V get(long id, long hash)
+        {
+            Table<V> t = table;
+            int i = (int) hash & t.mask;
+            while (true)
+            {
+                long key = t.keys.get(i);
+                if (key == id)
+                {
+                    V value = t.values.get(i);
+                    //the slot might have been removed and reused for another id while reading
+                    if (t.keys.get(i) == id)
+                        return value;
+                    return get(id, hash);
+                }
+                if (key == FREE)
+                    return null;
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        private synchronized V put(long id, long hash, V value, boolean onlyIfAbsent)
+        {
+            Table<V> t = table;
+            int i = (int) hash & t.mask;
+            int target = -1;
+            while (true)
+            {
+                long key = t.keys.get(i);
+                if (key == id)
+                {
+                    V old = t.values.get(i);
+                    if (!onlyIfAbsent)
+                        t.values.set(i, value);
+                    return old;
+                }
+                if (key == REMOVED && target == -1)
+                    target = i;
+                if (key == FREE)
+                    break;
+                i = (i + 1) & t.mask;
+            }
+            if (target == -1)
+            {
+                target = i;
+                used++;
+            }
+            //the value has to be visible before the key, readers that find the key read the value afterwards
+            t.values.set(target, value);
+            t.keys.set(target, id);
+            size++;
+            if (used > (t.mask + 1) * 3 / 4)
+                rehash();
+            return null;
+        }
+
+        private synchronized V remove(long id, long hash, Object expected)
+        {
+            Table<V> t = table;
+            int i = (int) hash & t.mask;
+            while (true)
+            {
+                long key = t.keys.get(i);
+                if (key == id)
+                {
+                    V old = t.values.get(i);
+                    if (expected != null && !expected.equals(old))
+                        return null;
+                    t.values.set(i, null);
+                    t.keys.set(i, REMOVED);
+                    size--;
+                    return old;
+                }
+                if (key == FREE)
+                    return null;
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        private synchronized V replace(long id, long hash, V expected, V value)
+        {
+            Table<V> t = table;
+            int i = (int) hash & t.mask;
+            while (true)
+            {
+                long key = t.keys.get(i);
+                if (key == id)
+                {
+                    V old = t.values.get(i);
+                    if (expected != null && !expected.equals(old))
+                        return null;
+                    t.values.set(i, value);
+                    return old;
+                }
+                if (key == FREE)
+                    return null;
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        private synchronized void clear()
+        {
+            table = new Table<>(MIN_CAPACITY);
+            size = 0;
+            used = 0;
+        }
+
+        //builds a new table, readers keep using the old one until it is published
+        private void rehash()
+        {
+            Table<V> old = table;
+            int capacity = MIN_CAPACITY;
+            while (size * 2 > capacity)
+                capacity <<= 1;
+            Table<V> t = new Table<>(capacity);
+            for (int i = 0; i <= old.mask; i++)
+            {
+                long key = old.keys.get(i);
+                if (key == FREE || key == REMOVED)
+                    continue;
+                int j = (int) hash(key) & t.mask;
+                while (t.keys.get(j) != FREE)
+                    j = (j + 1) & t.mask;
+                t.values.set(j, old.values.get(i));
+                t.keys.set(j, key);
+            }
+            used = size;
+            table = t;
+        }
+    }
+
+    private abstract class MapIterator<T> implements Iterator<T>
+    {
+        private int segment = 0;
+        private Table<V> table = segments[0].table;
+        private int index = -1;
+        private T next;
+        private long lastId = 0;
+        private long nextId = 0;
+
+        private MapIterator()
+        {
+            advance();
+        }
+
+        abstract T create(long id, V value);
+
+        private void advance()
+        {
+            next = null;
+            while (true)
+            {
+                index++;
+                if (index > table.mask)
+                {
+                    if (++segment == SEGMENTS)
+                        return;
+                    table = segments[segment].table;
+                    index = 0;
+                }
+                long key = table.keys.get(index);
+                if (key == FREE || key == REMOVED)
+                    continue;
+                V value = table.values.get(index);
+                if (value != null && table.keys.get(index) == key)
+                {
+                    nextId = key;
+                    next = create(key, value);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public T next()
+        {
+            if (next == null)
+                throw new NoSuchElementException();
+            T current = next;
+            lastId = nextId;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (lastId == 0)
+                throw new IllegalStateException();
+            SnowflakeMap.this.remove(lastId);
+            lastId = 0;
+        }
+    }
+
+    private class MapEntry implements Entry<String, V>
+    {
+        private final long id;
+        private V value;
+
+        private MapEntry(long id, V value)
+        {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return Long.toString(id);
+        }
+
+        @Override
+        public V getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            V old = this.value;
+            SnowflakeMap.this.put(id, value);
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Entry))
+                return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return getKey().hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return id + "=" + value;
+        }
+    }
+}
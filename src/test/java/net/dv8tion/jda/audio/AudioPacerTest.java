@@ -0,0 +1,204 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.audio;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the cadence of the {@link net.dv8tion.jda.audio.AudioPacer AudioPacer} on a {@link VirtualClock VirtualClock},
+ * so every deadline and every wait is known exactly and no test depends on the speed of the machine.
+ */
+public class AudioPacerTest
+{
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(AudioConnection.OPUS_FRAME_TIME_AMOUNT);
+    private static final long START = 1000000;
+    private static final int TICKS = 10000;
+
+    @Test
+    public void ticksAreDueAtAbsoluteDeadlines()
+    {
+        VirtualClock clock = new VirtualClock(START);
+        AudioPacer pacer = new AudioPacer(clock, PERIOD, 0);
+        Random load = new Random(19);
+        for (int n = 0; n < TICKS; n++)
+        {
+            assertEquals(n, pacer.awaitTick());
+            assertEquals(START + PERIOD + n * PERIOD, pacer.getDeadline(n));
+            assertEquals("tick " + n + " ran off its deadline", pacer.getDeadline(n), clock.nanoTime());
+            //the work of the tick takes up to 90% of the period
+            clock.advance((long) (load.nextDouble() * PERIOD * 0.9));
+        }
+    }
+
+    @Test
+    public void shortStallRunsAllOverdueTicks()
+    {
+        VirtualClock clock = new VirtualClock(START);
+        AudioPacer pacer = new AudioPacer(clock, PERIOD, 0);
+        for (int n = 0; n < 10; n++)
+            pacer.awaitTick();
+
+        //the deadlines of the ticks 10 to 15 pass, the first of them is followed by the whole catch up window
+        int stalledTicks = AudioPacer.CATCH_UP_TICKS + 1;
+        clock.advance(stalledTicks * PERIOD + PERIOD / 2);
+        long stalled = clock.nanoTime();
+        for (int n = 10; n < 10 + stalledTicks; n++)
+            assertEquals("no tick may be skipped", n, pacer.awaitTick());
+        assertEquals("overdue ticks have to run without waiting", stalled, clock.nanoTime());
+
+        assertEquals(10 + stalledTicks, pacer.awaitTick());
+        assertEquals(pacer.getDeadline(10 + stalledTicks), clock.nanoTime());
+    }
+
+    @Test
+    public void longStallSkipsTicksBeyondCatchUpWindow()
+    {
+        VirtualClock clock = new VirtualClock(START);
+        AudioPacer pacer = new AudioPacer(clock, PERIOD, 0);
+        for (int n = 0; n < 10; n++)
+            pacer.awaitTick();
+
+        //a pause of one second, like a long GC pause, the deadlines of the ticks 10 to 59 pass
+        int stalledTicks = 50;
+        long lastDue = 10 + stalledTicks - 1;
+        clock.advance(stalledTicks * PERIOD + PERIOD / 3);
+        long stalled = clock.nanoTime();
+
+        long first = pacer.awaitTick();
+        assertEquals("the ticks before the catch up window have to be skipped",
+                lastDue - AudioPacer.CATCH_UP_TICKS, first);
+
+        int backToBack = 0;
+        long tick;
+        while (true)
+        {
+            tick = pacer.awaitTick();
+            if (clock.nanoTime() != stalled)
+                break;
+            assertEquals(first + backToBack + 1, tick);
+            backToBack++;
+        }
+        assertEquals(AudioPacer.CATCH_UP_TICKS, backToBack);
+
+        //back on the original grid right after catching up
+        assertEquals(lastDue + 1, tick);
+        assertEquals(pacer.getDeadline(tick), clock.nanoTime());
+        assertEquals(START + PERIOD + tick * PERIOD, clock.nanoTime());
+    }
+
+    @Test
+    public void earlyAndLateWaitsDoNotShiftDeadlines()
+    {
+        VirtualClock clock = new VirtualClock(START);
+        //wakes up to 90% of the wait early or up to 2ms late
+        clock.setWakeUpError(new Random(20), 0.9, TimeUnit.MILLISECONDS.toNanos(2));
+        AudioPacer pacer = new AudioPacer(clock, PERIOD, 0);
+        Random load = new Random(21);
+        long maxLate = 0;
+        for (int n = 0; n < TICKS; n++)
+        {
+            assertEquals("no tick may be skipped", n, pacer.awaitTick());
+            long late = clock.nanoTime() - pacer.getDeadline(n);
+            assertTrue("tick " + n + " ran before its deadline", late >= 0);
+            maxLate = Math.max(maxLate, late);
+            clock.advance((long) (load.nextDouble() * PERIOD / 2));
+        }
+        //late wake ups do not add up, every tick is at most one late wake up behind its own deadline
+        assertTrue("ticks drifted by " + maxLate + "ns", maxLate <= TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(START + PERIOD + (TICKS - 1) * PERIOD, pacer.getDeadline(TICKS - 1));
+    }
+
+    @Test
+    public void spinningEndsWaitsOnTheDeadline()
+    {
+        VirtualClock clock = new VirtualClock(START);
+        //parking oversleeps by up to 1ms, which the spin time of 2ms covers
+        clock.setWakeUpError(new Random(22), 0, TimeUnit.MILLISECONDS.toNanos(1));
+        clock.setReadCost(TimeUnit.MICROSECONDS.toNanos(1));
+        AudioPacer pacer = new AudioPacer(clock, PERIOD, TimeUnit.MILLISECONDS.toNanos(2));
+        for (int n = 0; n < TICKS; n++)
+        {
+            assertEquals(n, pacer.awaitTick());
+            long late = clock.nanoTime() - pacer.getDeadline(n);
+            assertTrue("tick " + n + " ran " + late + "ns late", late >= 0 && late <= 2 * TimeUnit.MICROSECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * A clock that only moves when it is told to, when it is parked and, optionally, a little on every read.
+     */
+    static class VirtualClock implements AudioClock
+    {
+        private long now;
+        private long readCost = 0;
+        private Random wakeUpError = null;
+        private double maxEarly = 0;
+        private long maxLate = 0;
+
+        VirtualClock(long start)
+        {
+            this.now = start;
+        }
+
+        /**
+         * Makes parking return early by up to the given share of the wait, or late by up to the given time.
+         */
+        void setWakeUpError(Random random, double maxEarly, long maxLate)
+        {
+            this.wakeUpError = random;
+            this.maxEarly = maxEarly;
+            this.maxLate = maxLate;
+        }
+
+        /**
+         * Advances the clock on every read, so spinning on the clock terminates.
+         */
+        void setReadCost(long readCost)
+        {
+            this.readCost = readCost;
+        }
+
+        void advance(long nanos)
+        {
+            now += nanos;
+        }
+
+        @Override
+        public long nanoTime()
+        {
+            long time = now;
+            now += readCost;
+            return time;
+        }
+
+        @Override
+        public void parkNanos(long nanos)
+        {
+            if (wakeUpError == null)
+                now += nanos;
+            else if (maxEarly > 0 && wakeUpError.nextBoolean())
+                now += nanos - (long) (nanos * maxEarly * wakeUpError.nextDouble());
+            else
+                now += nanos + (long) (maxLate * wakeUpError.nextDouble());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *     Copyright 2015-2016 Austin Keener & Michael Ritter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dv8tion.jda.handle;
+
+import net.dv8tion.jda.entities.Guild;
+import net.dv8tion.jda.entities.PermissionOverride;
+import net.dv8tion.jda.entities.TextChannel;
+import net.dv8tion.jda.entities.User;
+import net.dv8tion.jda.entities.impl.GuildImpl;
+import net.dv8tion.jda.entities.impl.JDAImpl;
+import net.dv8tion.jda.requests.GuildLock;
+import net.dv8tion.jda.requests.MemberLoader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a large guild with lazy member loading, where a channel has a permission override of a member
+ * that is not part of the GUILD_CREATE because it is offline.
+ */
+public class EntityBuilderTest
+{
+    private static final String GUILD_ID = "100";
+    private static final String CHANNEL_ID = "100";
+    private static final String OWNER_ID = "200";
+    private static final String OFFLINE_ID = "300";
+
+    private JDAImpl api;
+
+    @Before
+    public void setUp()
+    {
+        api = new JDAImpl(false, false);
+        api.getMemberLoader().setEnabled(true);
+    }
+
+    @Test
+    public void lazyGuildCreateKeepsOverrideOfOfflineMember()
+    {
+        GuildImpl guild = createGuild();
+        TextChannel channel = guild.getTextChannels().get(0);
+        assertTrue(channel.getUserPermissionOverrides().isEmpty());
+
+        User user = new EntityBuilder(api).createMember(guild, member(OFFLINE_ID));
+        PermissionOverride override = channel.getOverrideForUser(user);
+        assertNotNull("the override was not created once the member was loaded", override);
+        assertSame(user, override.getUser());
+        assertEquals(1024, override.getAllowedRaw());
+        assertEquals(2048, override.getDeniedRaw());
+    }
+
+    @Test
+    public void channelUpdateReplacesOverrideOfOfflineMember()
+    {
+        GuildImpl guild = createGuild();
+        new ChannelUpdateHandler(api).handle(1, new JSONObject().put("t", "CHANNEL_UPDATE")
+                .put("d", channel(new JSONArray().put(override(OFFLINE_ID, 8192, 0)))));
+
+        User user = new EntityBuilder(api).createMember(guild, member(OFFLINE_ID));
+        PermissionOverride override = guild.getTextChannels().get(0).getOverrideForUser(user);
+        assertNotNull(override);
+        assertEquals(8192, override.getAllowedRaw());
+        assertEquals(0, override.getDeniedRaw());
+    }
+
+    @Test
+    public void channelUpdateRemovesOverrideOfOfflineMember()
+    {
+        GuildImpl guild = createGuild();
+        new ChannelUpdateHandler(api).handle(1, new JSONObject().put("t", "CHANNEL_UPDATE")
+                .put("d", channel(new JSONArray())));
+
+        User user = new EntityBuilder(api).createMember(guild, member(OFFLINE_ID));
+        assertNull(guild.getTextChannels().get(0).getOverrideForUser(user));
+        assertTrue(guild.getPendingUserOverridesMap().isEmpty());
+    }
+
+    @Test
+    public void evictedMemberKeepsOverride()
+    {
+        GuildImpl guild = createGuild();
+        api.getMemberLoader().setCachePolicy(MemberLoader.CachePolicy.ONLINE, 1, TimeUnit.MINUTES);
+        User user = new EntityBuilder(api).createMember(guild, member(OFFLINE_ID));
+        api.getMemberLoader().onOffline(user);
+        assertNull(api.getUserById(OFFLINE_ID));
+        assertTrue(guild.getTextChannels().get(0).getUserPermissionOverrides().isEmpty());
+
+        new ChannelUpdateHandler(api).handle(1, new JSONObject().put("t", "CHANNEL_UPDATE")
+                .put("d", channel(new JSONArray().put(override(OFFLINE_ID, 1024, 0)))));
+
+        user = new EntityBuilder(api).createMember(guild, member(OFFLINE_ID));
+        PermissionOverride override = guild.getTextChannels().get(0).getOverrideForUser(user);
+        assertNotNull(override);
+        assertSame(user, override.getUser());
+        assertEquals(1024, override.getAllowedRaw());
+        assertEquals(0, override.getDeniedRaw());
+    }
+
+    private GuildImpl createGuild()
+    {
+        JSONObject json = new JSONObject()
+                .put("id", GUILD_ID)
+                .put("name", "Guild")
+                .put("icon", JSONObject.NULL)
+                .put("region", "us-east")
+                .put("owner_id", OWNER_ID)
+                .put("afk_timeout", 300)
+                .put("afk_channel_id", JSONObject.NULL)
+                .put("verification_level", 0)
+                .put("large", true)
+                .put("member_count", 2)
+                .put("roles", new JSONArray().put(new JSONObject()
+                        .put("id", GUILD_ID)
+                        .put("name", "@everyone")
+                        .put("permissions", 0)
+                        .put("position", 0)
+                        .put("color", 0)
+                        .put("hoist", false)
+                        .put("managed", false)))
+                .put("members", new JSONArray().put(member(OWNER_ID)))
+                .put("channels", new JSONArray().put(channel(new JSONArray().put(override(OFFLINE_ID, 1024, 2048)))))
+                .put("voice_states", new JSONArray());
+
+        AtomicReference<Guild> loaded = new AtomicReference<>();
+        new EntityBuilder(api).createGuildFirstPass(json, loaded::set);
+        assertNotNull("the guild was not loaded", loaded.get());
+        assertFalse("the guild is still locked", GuildLock.get(api).isLocked(GUILD_ID));
+        assertNull(api.getUserById(OFFLINE_ID));
+        return (GuildImpl) loaded.get();
+    }
+
+    private static JSONObject channel(JSONArray overrides)
+    {
+        return new JSONObject()
+                .put("id", CHANNEL_ID)
+                .put("guild_id", GUILD_ID)
+                .put("type", "text")
+                .put("name", "general")
+                .put("position", 0)
+                .put("topic", JSONObject.NULL)
+                .put("permission_overwrites", overrides);
+    }
+
+    private static JSONObject override(String userId, int allow, int deny)
+    {
+        return new JSONObject()
+                .put("id", userId)
+                .put("type", "member")
+                .put("allow", allow)
+                .put("deny", deny);
+    }
+
+    private static JSONObject member(String userId)
+    {
+        return new JSONObject()
+                .put("user", new JSONObject()
+                        .put("id", userId)
+                        .put("username", "User" + userId)
+                        .put("discriminator", "0001")
+                        .put("avatar", JSONObject.NULL))
+                .put("roles", new JSONArray())
+                .put("deaf", false)
+                .put("mute", false)
+                .put("joined_at", "2016-01-01T00:00:00.000000+00:00");
+    }
+}